@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.contextswitch.ui.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.tracecompass.incubator.internal.contextswitch.ui.view.ContextSwitchHistogram;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link ContextSwitchHistogram} on a small state system with the
+ * cumulative counts of context switches of each CPU
+ *
+ * @author Alexis Cabana-Loriaux
+ */
+public class ContextSwitchHistogramTest {
+
+    private static final String CPUS = "CPUs";
+    private static final long END = 100L;
+
+    private final ITmfStateSystemBuilder fSs = StateSystemFactory.newStateSystem(StateHistoryBackendFactory.createInMemoryBackend("Test", 0L));
+
+    /**
+     * Build the state system. CPU 0 switches at 10, 25, 40, 55 and 95, CPU 1
+     * never switches and CPU 2 switches at 70 and 80.
+     */
+    @Before
+    public void setUp() {
+        ITmfStateSystemBuilder ss = fSs;
+        int cpu0 = ss.getQuarkAbsoluteAndAdd(CPUS, "0");
+        ss.getQuarkAbsoluteAndAdd(CPUS, "1");
+        int cpu2 = ss.getQuarkAbsoluteAndAdd(CPUS, "2");
+        long[] switches0 = { 10L, 25L, 40L, 55L, 95L };
+        for (int i = 0; i < switches0.length; i++) {
+            ss.modifyAttribute(switches0[i], i + 1, cpu0);
+        }
+        ss.modifyAttribute(70L, 1, cpu2);
+        ss.modifyAttribute(80L, 2, cpu2);
+        ss.closeHistory(END);
+    }
+
+    /**
+     * Dispose the state system
+     */
+    @After
+    public void tearDown() {
+        fSs.dispose();
+    }
+
+    /**
+     * Test the buckets of the whole state system. The last bucket goes past
+     * the end of the state system, its bound is clamped to the end.
+     *
+     * @throws StateSystemDisposedException
+     *             the state system was disposed
+     */
+    @Test
+    public void testFullRange() throws StateSystemDisposedException {
+        ContextSwitchHistogram histogram = ContextSwitchHistogram.create(fSs, 0L, END, 30L, new NullProgressMonitor());
+        assertNotNull(histogram);
+        assertEquals(0L, histogram.getStart());
+        assertEquals(30L, histogram.getBucketLength());
+        assertEquals(3, histogram.getNbCpus());
+        /* Buckets [0,30), [30,60), [60,90) and [90,100] */
+        assertArrayEquals(new long[] { 2, 2, 0, 1 }, histogram.getCounts(0));
+        assertArrayEquals(new long[] { 0, 0, 0, 0 }, histogram.getCounts(1));
+        assertArrayEquals(new long[] { 0, 0, 2, 0 }, histogram.getCounts(2));
+        assertNull(histogram.getCounts(3));
+        assertEquals(7L, histogram.getTotal());
+        assertTrue(histogram.matches(0L, END, 30L, END));
+    }
+
+    /**
+     * Test that the count of a bucket is the difference of the cumulative
+     * counts at its bounds, the context switches before the range are not
+     * counted
+     *
+     * @throws StateSystemDisposedException
+     *             the state system was disposed
+     */
+    @Test
+    public void testPartialRange() throws StateSystemDisposedException {
+        ContextSwitchHistogram histogram = ContextSwitchHistogram.create(fSs, 20L, END, 30L, new NullProgressMonitor());
+        assertNotNull(histogram);
+        /* Buckets [20,50), [50,80) and [80,100], CPU 0 has 1 switch at 20 */
+        assertArrayEquals(new long[] { 2, 1, 1 }, histogram.getCounts(0));
+        assertArrayEquals(new long[] { 0, 0, 0 }, histogram.getCounts(1));
+        assertArrayEquals(new long[] { 0, 2, 0 }, histogram.getCounts(2));
+        assertEquals(6L, histogram.getTotal());
+    }
+
+    /**
+     * Test that the bucket length must be positive
+     *
+     * @throws StateSystemDisposedException
+     *             the state system was disposed
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroBucketLength() throws StateSystemDisposedException {
+        ContextSwitchHistogram.create(fSs, 0L, END, 0L, new NullProgressMonitor());
+    }
+}
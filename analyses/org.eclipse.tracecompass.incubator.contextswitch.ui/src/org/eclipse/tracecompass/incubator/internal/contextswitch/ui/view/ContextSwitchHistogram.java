@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.contextswitch.ui.view;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+
+/**
+ * The number of context switches of every CPU in fixed-size buckets of a time
+ * range. The state system of the context switch analysis counts the context
+ * switches of each CPU, so the count of a bucket is the difference of the
+ * counts at its bounds. All the bounds of all the CPUs are read with a single
+ * 2D query, instead of two queries per bucket and per CPU.
+ *
+ * @author Alexis Cabana-Loriaux
+ */
+public final class ContextSwitchHistogram {
+
+    private static final String CPUS = "CPUs"; //$NON-NLS-1$
+
+    private final long fStart;
+    private final long fEnd;
+    private final long fBucketLength;
+    private final long fStateSystemEnd;
+    private final Map<Integer, long[]> fCounts;
+    private final long fTotal;
+
+    private ContextSwitchHistogram(long start, long end, long bucketLength, long stateSystemEnd, Map<Integer, long[]> counts, long total) {
+        fStart = start;
+        fEnd = end;
+        fBucketLength = bucketLength;
+        fStateSystemEnd = stateSystemEnd;
+        fCounts = counts;
+        fTotal = total;
+    }
+
+    /**
+     * Compute the histogram of a time range. The buckets start at the start of
+     * the range and the last one contains the end of the range.
+     *
+     * @param ss
+     *            The state system of the context switch analysis
+     * @param start
+     *            The start of the range, within the state system
+     * @param end
+     *            The end of the range, within the state system
+     * @param bucketLength
+     *            The length of the buckets, strictly positive
+     * @param monitor
+     *            The monitor, canceled when a newer request replaces this one
+     * @return The histogram, or <code>null</code> if the monitor was
+     *         canceled
+     * @throws StateSystemDisposedException
+     *             If the state system is disposed
+     * @throws IllegalArgumentException
+     *             If the bucket length is not positive
+     */
+    public static @Nullable ContextSwitchHistogram create(ITmfStateSystem ss, long start, long end, long bucketLength, IProgressMonitor monitor) throws StateSystemDisposedException {
+        if (bucketLength <= 0) {
+            throw new IllegalArgumentException("The bucket length must be positive: " + bucketLength); //$NON-NLS-1$
+        }
+        int nbBuckets = (int) ((end - start) / bucketLength) + 1;
+        long ssEnd = ss.getCurrentEndTime();
+        /* The bounds of the buckets, the last one clamped to the state system */
+        long[] bounds = new long[nbBuckets + 1];
+        List<Long> times = new ArrayList<>(nbBuckets + 1);
+        for (int i = 0; i <= nbBuckets; i++) {
+            bounds[i] = Math.min(start + i * bucketLength, ssEnd);
+            times.add(bounds[i]);
+        }
+
+        Map<Integer, Integer> cpus = new HashMap<>();
+        for (Integer cpuQuark : ss.getQuarks(CPUS, "*")) { //$NON-NLS-1$
+            cpus.put(cpuQuark, Integer.parseInt(ss.getAttributeName(cpuQuark)));
+        }
+        Map<Integer, List<ITmfStateInterval>> intervals = new HashMap<>();
+        for (ITmfStateInterval interval : ss.query2D(cpus.keySet(), times)) {
+            if (monitor.isCanceled()) {
+                return null;
+            }
+            intervals.computeIfAbsent(interval.getAttribute(), q -> new ArrayList<>()).add(interval);
+        }
+
+        Map<Integer, long[]> counts = new HashMap<>();
+        long total = 0;
+        for (Map.Entry<Integer, Integer> cpu : cpus.entrySet()) {
+            List<ITmfStateInterval> cpuIntervals = intervals.get(cpu.getKey());
+            long[] cpuCounts = new long[nbBuckets];
+            if (cpuIntervals != null) {
+                cpuIntervals.sort(Comparator.comparingLong(ITmfStateInterval::getStartTime));
+                int index = 0;
+                long previous = 0;
+                for (int i = 0; i <= nbBuckets; i++) {
+                    while (index < cpuIntervals.size() - 1 && cpuIntervals.get(index).getEndTime() < bounds[i]) {
+                        index++;
+                    }
+                    ITmfStateInterval interval = cpuIntervals.get(index);
+                    Object value = interval.getStartTime() <= bounds[i] ? interval.getValue() : null;
+                    long current = (value instanceof Number) ? ((Number) value).longValue() : 0;
+                    if (i > 0) {
+                        cpuCounts[i - 1] = current - previous;
+                        total += current - previous;
+                    }
+                    previous = current;
+                }
+            }
+            counts.put(cpu.getValue(), cpuCounts);
+        }
+        return new ContextSwitchHistogram(start, end, bucketLength, ssEnd, counts, total);
+    }
+
+    /**
+     * Whether this histogram is the one of a request
+     *
+     * @param start
+     *            The start of the requested range
+     * @param end
+     *            The end of the requested range
+     * @param bucketLength
+     *            The requested length of the buckets
+     * @param stateSystemEnd
+     *            The current end time of the state system, which may still be
+     *            building
+     * @return <code>true</code> if this histogram has these bounds and
+     *         buckets
+     */
+    public boolean matches(long start, long end, long bucketLength, long stateSystemEnd) {
+        return fStart == start && fEnd == end && fBucketLength == bucketLength && fStateSystemEnd == stateSystemEnd;
+    }
+
+    /**
+     * Get the start of the histogram, which is the start of the first bucket
+     *
+     * @return The start time
+     */
+    public long getStart() {
+        return fStart;
+    }
+
+    /**
+     * Get the length of the buckets
+     *
+     * @return The length of the buckets
+     */
+    public long getBucketLength() {
+        return fBucketLength;
+    }
+
+    /**
+     * Get the number of context switches of a CPU in each bucket
+     *
+     * @param cpu
+     *            The CPU number
+     * @return The count of each bucket, or <code>null</code> if the CPU is
+     *         not in the state system. It should not be modified.
+     */
+    public long @Nullable [] getCounts(int cpu) {
+        return fCounts.get(cpu);
+    }
+
+    /**
+     * Get the total number of context switches of all the CPUs in the buckets
+     *
+     * @return The total number of context switches
+     */
+    public long getTotal() {
+        return fTotal;
+    }
+
+    /**
+     * Get the number of CPUs of the histogram
+     *
+     * @return The number of CPUs
+     */
+    public int getNbCpus() {
+        return fCounts.size();
+    }
+}
@@ -18,15 +18,17 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.contextswitch.KernelContextSwitchAnalysis;
 import org.eclipse.tracecompass.incubator.internal.contextswitch.ui.view.ContextSwitchTimeEvent.ContextSwitchRate;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
-import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 import org.eclipse.tracecompass.tmf.ui.views.timegraph.AbstractTimeGraphView;
 import org.eclipse.tracecompass.tmf.ui.widgets.timegraph.TimeGraphPresentationProvider;
 import org.eclipse.tracecompass.tmf.ui.widgets.timegraph.model.ITimeEvent;
@@ -50,6 +52,9 @@ public class ContextSwitchView extends AbstractTimeGraphView {
 
     private static final long BUILD_UPDATE_TIMEOUT = 500L;
 
+    /** The last histogram computed for each state system */
+    private final Map<ITmfStateSystem, ContextSwitchHistogram> fHistograms = new WeakHashMap<>();
+
     private final Comparator<ITimeGraphEntry> fAscendingTimeGraphEntryComparator = new Comparator<ITimeGraphEntry>() {
 
         @Override
@@ -203,8 +208,8 @@ public class ContextSwitchView extends AbstractTimeGraphView {
     @Override
     protected List<ITimeEvent> getEventList(TimeGraphEntry entry, long startTime, long endTime, long resolution, IProgressMonitor monitor) {
 
-        /* Length of the intervals queried */
-        long bucketLength = 20 * resolution;
+        /* Length of the intervals queried, at least 1 ns when zoomed in */
+        long bucketLength = Math.max(20 * resolution, 1);
 
         /* Get the information about the nb of cpu */
         if (!(entry instanceof ContextSwitchEntry)) {
@@ -229,19 +234,18 @@ public class ContextSwitchView extends AbstractTimeGraphView {
             return null;
         }
 
-        /* Retrieve analysis module */
-        KernelContextSwitchAnalysis kernelContextSwitchSS = TmfTraceUtils.getAnalysisModuleOfClass(contextSwitchEntry.getTrace(), KernelContextSwitchAnalysis.class, KernelContextSwitchAnalysis.ID);
-        if (kernelContextSwitchSS == null) {
-            return null;
-        }
-
         /*
-         * Get the total number of context switch in the width of the view. If
-         * the map returned is empty, no context switch can be retrieved for
-         * this interval.
+         * Compute the buckets of all the CPUs at once, the other entries of
+         * this request then reuse them. The monitor is canceled when a newer
+         * zoom request replaces this one.
          */
-        Map<Integer, Long> cs = kernelContextSwitchSS.getContextSwitchesRange(realStart, realEnd);
-        if (cs.isEmpty()) {
+        ContextSwitchHistogram histogram;
+        try {
+            histogram = getHistogram(sS, realStart, realEnd, bucketLength, monitor);
+        } catch (StateSystemDisposedException e) {
+            return null;
+        }
+        if (histogram == null || histogram.getNbCpus() == 0) {
             return null;
         }
 
@@ -250,40 +254,22 @@ public class ContextSwitchView extends AbstractTimeGraphView {
          * endTime, and divide by the number of cpu and the time to get the mean
          * number of sched_switch per bucket, per cpu, for better classification
          */
-        Long totalCxtSwtInRange = cs.get(KernelContextSwitchAnalysis.TOTAL);
-        if (totalCxtSwtInRange == null) {
-            throw new IllegalStateException("A non-empty map of context switches should at least contain the total number (0)"); //$NON-NLS-1$
-        }
-
         if (!contextSwitchEntry.hasId()) {
             long deltat = realEnd - realStart;
-            double deltaPerCPU = totalCxtSwtInRange;
+            double deltaPerCPU = histogram.getTotal();
             deltaPerCPU /= nbCPU;
 
             contextSwitchEntry.setMean((int) ((deltaPerCPU * bucketLength) / deltat));
             return Collections.emptyList();
         }
-        List<ITimeEvent> eventList = null;
-        eventList = new ArrayList<>();
-        long queryStart = realStart;
-        long queryEnd = queryStart + bucketLength;
-
-        /* Cover 100% of the width */
-        while (queryStart <= realEnd) {
-            if (monitor.isCanceled()) {
-                return null;
-            }
-            Map<Integer, Long> map = kernelContextSwitchSS.getContextSwitchesRange(queryStart, queryEnd);
-
-            if (map.containsKey(Integer.valueOf(contextSwitchEntry.getId()))) {
-                Long nbOfContextSwitchForCPU = map.get(Integer.valueOf(contextSwitchEntry.getId()));
-                if (nbOfContextSwitchForCPU != null) {
-                    ITimeEvent event = new ContextSwitchTimeEvent(entry, queryStart, bucketLength, nbOfContextSwitchForCPU.intValue());
-                    eventList.add(event);
-                }
-            }
-            queryStart = queryEnd;
-            queryEnd += bucketLength;
+        long[] counts = histogram.getCounts(contextSwitchEntry.getId());
+        if (counts == null) {
+            return Collections.emptyList();
+        }
+        List<ITimeEvent> eventList = new ArrayList<>(counts.length);
+        for (int i = 0; i < counts.length; i++) {
+            long queryStart = histogram.getStart() + i * histogram.getBucketLength();
+            eventList.add(new ContextSwitchTimeEvent(entry, queryStart, bucketLength, (int) counts[i]));
         }
         classifyEvents(eventList);
         // eventList = mergeTimeEvents(eventList);
@@ -293,6 +279,20 @@ public class ContextSwitchView extends AbstractTimeGraphView {
         return eventList;
     }
 
+    private @Nullable ContextSwitchHistogram getHistogram(ITmfStateSystem ss, long start, long end, long bucketLength, IProgressMonitor monitor) throws StateSystemDisposedException {
+        synchronized (fHistograms) {
+            ContextSwitchHistogram histogram = fHistograms.get(ss);
+            if (histogram != null && histogram.matches(start, end, bucketLength, ss.getCurrentEndTime())) {
+                return histogram;
+            }
+            histogram = ContextSwitchHistogram.create(ss, start, end, bucketLength, monitor);
+            if (histogram != null) {
+                fHistograms.put(ss, histogram);
+            }
+            return histogram;
+        }
+    }
+
     private static void classifyEvents(List<ITimeEvent> eventList) {
         if (eventList == null || eventList.isEmpty()) {
             return;
@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.eventfieldcount.core.tests.perf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.incubator.internal.fieldcount.core.FieldCountAnalysis;
+import org.eclipse.tracecompass.internal.provisional.analysis.lami.core.module.LamiResultTable;
+import org.eclipse.tracecompass.internal.provisional.analysis.lami.core.module.LamiTableEntry;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceOpenedSignal;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.xml.TmfXmlTraceStub;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.xml.TmfXmlTraceStubNs;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Benchmarks the event field count analysis on a synthetic trace with a field
+ * that has a different value for every event, a field with many values and
+ * one very frequent value, and a field with a few values. The CPU time and the
+ * heap used by the analysis are measured.
+ *
+ * @author Matthew Khouzam
+ */
+public class FieldCountBenchmark {
+
+    /**
+     * Test test ID for the field count benchmarks
+     */
+    public static final String TEST_ID = "org.eclipse.tracecompass.incubator#FieldCount#";
+    private static final String TEST_ANALYSIS = "Event field count analysis";
+
+    private static final long SEED = 7563419834L;
+    private static final int LOOP_COUNT = 5;
+    private static final int NB_EVENTS = 200000;
+    private static final int NB_FILES = 50000;
+    private static final String[] LEVELS = { "debug", "info", "notice", "warning", "error" };
+
+    private static final String ADDRESS = "address";
+    private static final String FILE = "file";
+    private static final String LEVEL = "level";
+
+    private static File fTraceFile;
+
+    /**
+     * Write the synthetic trace
+     *
+     * @throws IOException
+     *             the file cannot be written
+     */
+    @BeforeClass
+    public static void writeTrace() throws IOException {
+        Random random = new Random(SEED);
+        fTraceFile = File.createTempFile("fieldCountBenchmark", ".xml");
+        try (Writer writer = new BufferedWriter(new FileWriter(fTraceFile))) {
+            writer.write("<trace>\n<set_aspects>\n");
+            writer.write("<field name=\"" + ADDRESS + "\" value=\"\" type=\"string\" />\n");
+            writer.write("<field name=\"" + FILE + "\" value=\"\" type=\"string\" />\n");
+            writer.write("<field name=\"" + LEVEL + "\" value=\"\" type=\"string\" />\n");
+            writer.write("</set_aspects>\n");
+            for (int i = 0; i < NB_EVENTS; i++) {
+                /* Half of the accesses are to the same file */
+                int file = random.nextBoolean() ? 0 : random.nextInt(NB_FILES);
+                writer.write("<event timestamp=\"" + (i + 1) + "\" name=\"access\">\n");
+                writer.write("<field name=\"" + ADDRESS + "\" value=\"0x" + Long.toHexString(0x7f0000000000L + i * 64L) + "\" type=\"string\" />\n");
+                writer.write("<field name=\"" + FILE + "\" value=\"/usr/lib/file" + file + "\" type=\"string\" />\n");
+                writer.write("<field name=\"" + LEVEL + "\" value=\"" + LEVELS[random.nextInt(LEVELS.length)] + "\" type=\"string\" />\n");
+                writer.write("</event>\n");
+            }
+            writer.write("</trace>\n");
+        }
+    }
+
+    /**
+     * Delete the synthetic trace
+     */
+    @AfterClass
+    public static void deleteTrace() {
+        fTraceFile.delete();
+    }
+
+    /**
+     * Run the benchmark
+     *
+     * @throws TmfTraceException
+     *             the trace cannot be opened
+     * @throws CoreException
+     *             the analysis fails
+     */
+    @Test
+    public void runBenchmark() throws TmfTraceException, CoreException {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = Objects.requireNonNull(perf.createPerformanceMeter(TEST_ID + TEST_ANALYSIS));
+        perf.tagAsSummary(pm, TEST_ANALYSIS, new Dimension[] { Dimension.CPU_TIME, Dimension.USED_JAVA_HEAP });
+
+        for (int i = 0; i < LOOP_COUNT; i++) {
+            TmfXmlTraceStub trace = new TmfXmlTraceStubNs();
+            try {
+                trace.initTrace(null, fTraceFile.getAbsolutePath(), TmfEvent.class);
+                trace.traceOpened(new TmfTraceOpenedSignal(this, trace, null));
+                FieldCountAnalysis analysis = new FieldCountAnalysis();
+
+                pm.start();
+                List<LamiResultTable> results = analysis.execute(trace, TmfTimeRange.ETERNITY, "", new NullProgressMonitor());
+                pm.stop();
+
+                Map<String, LamiResultTable> tables = new HashMap<>();
+                for (LamiResultTable table : results) {
+                    tables.put(table.getTableClass().getTableClassName(), table);
+                }
+                LamiResultTable addresses = tables.get(ADDRESS);
+                LamiResultTable files = tables.get(FILE);
+                LamiResultTable levels = tables.get(LEVEL);
+                assertNotNull(addresses);
+                assertNotNull(files);
+                assertNotNull(levels);
+                /* The high cardinality fields only keep their most frequent values */
+                assertNotEquals(ADDRESS, addresses.getTableClass().getTableTitle());
+                assertNotEquals(FILE, files.getTableClass().getTableTitle());
+                assertTrue(addresses.getEntries().size() <= 100);
+                assertTrue(files.getEntries().size() <= 100);
+                assertEquals("/usr/lib/file0", files.getEntries().get(0).getValue(0).toString());
+                /* The low cardinality field is counted exactly */
+                long total = 0;
+                for (LamiTableEntry entry : levels.getEntries()) {
+                    total += Long.parseLong(entry.getValue(1).toString());
+                }
+                assertEquals(LEVEL, levels.getTableClass().getTableTitle());
+                assertEquals(LEVELS.length, levels.getEntries().size());
+                assertEquals(NB_EVENTS, total);
+            } finally {
+                trace.dispose();
+            }
+        }
+        pm.commit();
+    }
+}
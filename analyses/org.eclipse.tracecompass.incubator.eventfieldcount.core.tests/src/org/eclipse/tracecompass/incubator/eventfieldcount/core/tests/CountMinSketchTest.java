@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.eventfieldcount.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.tracecompass.incubator.internal.fieldcount.core.CountMinSketch;
+import org.eclipse.tracecompass.incubator.internal.fieldcount.core.FieldValueCounter;
+import org.junit.Test;
+
+/**
+ * Test the {@link CountMinSketch} estimator
+ *
+ * @author Matthew Khouzam
+ */
+public class CountMinSketchTest {
+
+    private static final int NB_VALUES = 20000;
+
+    /**
+     * Test that the counts of a few values are exact
+     */
+    @Test
+    public void testFewValues() {
+        CountMinSketch sketch = new CountMinSketch();
+        assertEquals(3, sketch.add(FieldValueCounter.hash("a"), 3));
+        assertEquals(5, sketch.add(FieldValueCounter.hash("a"), 2));
+        assertEquals(1, sketch.add(FieldValueCounter.hash("b"), 1));
+        assertEquals(5, sketch.estimate(FieldValueCounter.hash("a")));
+        assertEquals(1, sketch.estimate(FieldValueCounter.hash("b")));
+        assertEquals(0, sketch.estimate(FieldValueCounter.hash("c")));
+    }
+
+    /**
+     * Test that with more values than counters, the counts are never
+     * underestimated and the frequent value is overestimated by little
+     */
+    @Test
+    public void testManyValues() {
+        CountMinSketch sketch = new CountMinSketch();
+        for (int i = 0; i < NB_VALUES; i++) {
+            sketch.add(FieldValueCounter.hash("value" + i), 1 + i % 3);
+        }
+        long hot = FieldValueCounter.hash("hot");
+        sketch.add(hot, 1000);
+        for (int i = 0; i < NB_VALUES; i++) {
+            assertTrue(sketch.estimate(FieldValueCounter.hash("value" + i)) >= 1 + i % 3);
+        }
+        long estimate = sketch.estimate(hot);
+        assertTrue(estimate >= 1000);
+        /* The total is about 41000, the error bound is 0.14% of it */
+        assertTrue("Estimate " + estimate, estimate < 1000 + 100);
+    }
+
+    /**
+     * Test that the merged counts are the sums of the counts
+     */
+    @Test
+    public void testMerge() {
+        CountMinSketch first = new CountMinSketch();
+        CountMinSketch second = new CountMinSketch();
+        first.add(FieldValueCounter.hash("a"), 3);
+        first.add(FieldValueCounter.hash("b"), 1);
+        second.add(FieldValueCounter.hash("a"), 4);
+        second.add(FieldValueCounter.hash("c"), 2);
+        first.merge(second);
+        assertEquals(7, first.estimate(FieldValueCounter.hash("a")));
+        assertEquals(1, first.estimate(FieldValueCounter.hash("b")));
+        assertEquals(2, first.estimate(FieldValueCounter.hash("c")));
+        /* The other sketch is unchanged */
+        assertEquals(0, second.estimate(FieldValueCounter.hash("b")));
+    }
+}
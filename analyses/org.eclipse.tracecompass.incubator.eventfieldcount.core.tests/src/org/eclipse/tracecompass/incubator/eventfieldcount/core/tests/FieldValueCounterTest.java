@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.eventfieldcount.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.eclipse.tracecompass.incubator.internal.fieldcount.core.FieldValueCounter;
+import org.junit.Test;
+
+/**
+ * Test the {@link FieldValueCounter}, exact below its limit of distinct values
+ * and estimated above it
+ *
+ * @author Matthew Khouzam
+ */
+public class FieldValueCounterTest {
+
+    private static final int EXACT_LIMIT = 100;
+    private static final int TOP_SIZE = 3;
+
+    /**
+     * Test that the values are counted exactly below the limit, the most
+     * frequent first and the ties by value
+     */
+    @Test
+    public void testExact() {
+        FieldValueCounter counter = new FieldValueCounter(EXACT_LIMIT, TOP_SIZE);
+        add(counter, "b", 2);
+        add(counter, "c", 5);
+        add(counter, "a", 2);
+        add(counter, "d", 1);
+        for (int i = 0; i < EXACT_LIMIT - 4; i++) {
+            counter.add("value" + i);
+        }
+        assertFalse(counter.isApproximate());
+        assertEquals(EXACT_LIMIT, counter.getDistinctCount());
+
+        /* All the values are returned, not only the top ones */
+        List<Entry<String, Long>> values = counter.getValues();
+        assertEquals(EXACT_LIMIT, values.size());
+        assertEntry("c", 5, values.get(0));
+        assertEntry("a", 2, values.get(1));
+        assertEntry("b", 2, values.get(2));
+        assertEntry("d", 1, values.get(3));
+    }
+
+    /**
+     * Test the switch to the sketches when the limit is crossed. The counts
+     * before the switch are kept.
+     */
+    @Test
+    public void testSwitch() {
+        FieldValueCounter counter = new FieldValueCounter(EXACT_LIMIT, TOP_SIZE);
+        add(counter, "hot", 50);
+        for (int i = 0; i < EXACT_LIMIT - 1; i++) {
+            counter.add("value" + i);
+        }
+        assertFalse(counter.isApproximate());
+        counter.add("one more");
+        assertTrue(counter.isApproximate());
+        assertDistinct(EXACT_LIMIT + 1, counter);
+
+        add(counter, "hot", 10);
+        List<Entry<String, Long>> values = counter.getValues();
+        assertEquals(TOP_SIZE, values.size());
+        assertEntry("hot", 60, values.get(0));
+    }
+
+    /**
+     * Test that the most frequent values are kept in order once the counts
+     * are estimated, even if they come after many other values
+     */
+    @Test
+    public void testTopOrder() {
+        FieldValueCounter counter = new FieldValueCounter(EXACT_LIMIT, TOP_SIZE);
+        for (int i = 0; i < 10 * EXACT_LIMIT; i++) {
+            counter.add("value" + i);
+        }
+        for (int i = 0; i < 10; i++) {
+            add(counter, "first", 5);
+            add(counter, "third", 2);
+            add(counter, "second", 3);
+        }
+        assertTrue(counter.isApproximate());
+        List<Entry<String, Long>> values = counter.getValues();
+        assertEquals(TOP_SIZE, values.size());
+        assertEntry("first", 50, values.get(0));
+        assertEntry("second", 30, values.get(1));
+        assertEntry("third", 20, values.get(2));
+    }
+
+    /**
+     * Test the merge of two exact counters, which stays exact
+     */
+    @Test
+    public void testMergeExact() {
+        FieldValueCounter counter = new FieldValueCounter(EXACT_LIMIT, TOP_SIZE);
+        FieldValueCounter other = new FieldValueCounter(EXACT_LIMIT, TOP_SIZE);
+        add(counter, "a", 2);
+        add(other, "a", 3);
+        add(other, "b", 4);
+        counter.merge(other);
+        assertFalse(counter.isApproximate());
+        List<Entry<String, Long>> values = counter.getValues();
+        assertEquals(2, values.size());
+        assertEntry("a", 5, values.get(0));
+        assertEntry("b", 4, values.get(1));
+    }
+
+    /**
+     * Test the merge of an exact counter into an estimated one, and of an
+     * estimated counter into an exact one
+     */
+    @Test
+    public void testMergeExactAndSketch() {
+        FieldValueCounter sketch = createSketch("x");
+        FieldValueCounter exact = new FieldValueCounter(EXACT_LIMIT, TOP_SIZE);
+        add(exact, "hot", 40);
+        add(exact, "y0", 2);
+        sketch.merge(exact);
+        assertTrue(sketch.isApproximate());
+        assertDistinct(2 * EXACT_LIMIT + 2, sketch);
+        assertEntry("hot", 40, sketch.getValues().get(0));
+
+        exact = new FieldValueCounter(EXACT_LIMIT, TOP_SIZE);
+        add(exact, "hot", 40);
+        add(exact, "y0", 2);
+        exact.merge(createSketch("x"));
+        assertTrue(exact.isApproximate());
+        assertDistinct(2 * EXACT_LIMIT + 2, exact);
+        assertEntry("hot", 40, exact.getValues().get(0));
+    }
+
+    /**
+     * Test the merge of two estimated counters. The distinct values are the
+     * union of both and the top values are estimated with the merged counts.
+     */
+    @Test
+    public void testMergeSketches() {
+        FieldValueCounter counter = createSketch("x");
+        FieldValueCounter other = createSketch("y");
+        add(counter, "hot", 20);
+        add(other, "hot", 25);
+        add(other, "warm", 30);
+        counter.merge(other);
+        assertTrue(counter.isApproximate());
+        assertDistinct(4 * EXACT_LIMIT + 2, counter);
+        List<Entry<String, Long>> values = counter.getValues();
+        assertEquals(TOP_SIZE, values.size());
+        assertEntry("hot", 45, values.get(0));
+        assertEntry("warm", 30, values.get(1));
+    }
+
+    /**
+     * Create an estimated counter with twice the limit of values counted
+     * once
+     */
+    private static FieldValueCounter createSketch(String prefix) {
+        FieldValueCounter counter = new FieldValueCounter(EXACT_LIMIT, TOP_SIZE);
+        for (int i = 0; i < 2 * EXACT_LIMIT; i++) {
+            counter.add(prefix + i);
+        }
+        assertTrue(counter.isApproximate());
+        return counter;
+    }
+
+    private static void add(FieldValueCounter counter, String value, int count) {
+        for (int i = 0; i < count; i++) {
+            counter.add(value);
+        }
+    }
+
+    /**
+     * The distinct values of the sketches are estimated within 3 standard
+     * errors of the HyperLogLog
+     */
+    private static void assertDistinct(long expected, FieldValueCounter counter) {
+        long estimate = counter.getDistinctCount();
+        assertTrue("Estimate " + estimate + " for " + expected, Math.abs(estimate - expected) <= expected * 0.05);
+    }
+
+    private static void assertEntry(String value, long count, Entry<String, Long> entry) {
+        assertEquals(value, entry.getKey());
+        assertEquals(Long.valueOf(count), entry.getValue());
+    }
+}
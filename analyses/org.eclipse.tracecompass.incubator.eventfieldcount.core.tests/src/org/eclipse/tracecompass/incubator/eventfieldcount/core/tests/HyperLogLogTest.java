@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.eventfieldcount.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.tracecompass.incubator.internal.fieldcount.core.FieldValueCounter;
+import org.eclipse.tracecompass.incubator.internal.fieldcount.core.HyperLogLog;
+import org.junit.Test;
+
+/**
+ * Test the {@link HyperLogLog} estimator
+ *
+ * @author Matthew Khouzam
+ */
+public class HyperLogLogTest {
+
+    private static final int CARDINALITY = 100000;
+    /* Three times the standard error of 1.6% */
+    private static final double MAX_ERROR = 0.05;
+
+    /**
+     * Test that nothing added is estimated at 0 and that the small
+     * cardinalities are counted closely
+     */
+    @Test
+    public void testSmall() {
+        HyperLogLog hll = new HyperLogLog();
+        assertEquals(0, hll.estimate());
+        for (int i = 0; i < 10; i++) {
+            hll.add(FieldValueCounter.hash("value" + i));
+        }
+        assertEquals(10, hll.estimate());
+    }
+
+    /**
+     * Test the error at a known cardinality, with each value added twice
+     */
+    @Test
+    public void testError() {
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 0; i < CARDINALITY; i++) {
+            hll.add(FieldValueCounter.hash("value" + i));
+            hll.add(FieldValueCounter.hash("value" + i));
+        }
+        assertWithinError(CARDINALITY, hll.estimate());
+    }
+
+    /**
+     * Test that the merge of two estimators estimates the union of their
+     * values, the same as one estimator of all the values
+     */
+    @Test
+    public void testMerge() {
+        HyperLogLog all = new HyperLogLog();
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        /* The halves share a quarter of the values */
+        for (int i = 0; i < CARDINALITY; i++) {
+            long hash = FieldValueCounter.hash("value" + i);
+            all.add(hash);
+            if (i < CARDINALITY * 5 / 8) {
+                first.add(hash);
+            }
+            if (i >= CARDINALITY * 3 / 8) {
+                second.add(hash);
+            }
+        }
+        first.merge(second);
+        assertEquals(all.estimate(), first.estimate());
+        assertWithinError(CARDINALITY, first.estimate());
+    }
+
+    private static void assertWithinError(long expected, long estimate) {
+        assertTrue("Estimate " + estimate + " for " + expected, Math.abs(estimate - expected) <= expected * MAX_ERROR);
+    }
+}
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.fieldcount.core;
+
+/**
+ * Estimator of the number of occurrences of values, in a fixed memory. Each
+ * value increments one counter in each row, chosen by a different hash; its
+ * count is the minimum of its counters, which never underestimates it and
+ * overestimates it by less than 0.14% of the total with high probability.
+ *
+ * @author Matthew Khouzam
+ */
+public final class CountMinSketch {
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 1 << 11;
+    private static final int MASK = WIDTH - 1;
+
+    private final long[][] fCounters = new long[DEPTH][WIDTH];
+
+    /**
+     * Add occurrences of a value
+     *
+     * @param hash
+     *            The 64 bits hash of the value
+     * @param count
+     *            The number of occurrences
+     * @return The estimated count of the value, after the addition
+     */
+    public long add(long hash, long count) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int column = column(hash, row);
+            fCounters[row][column] += count;
+            min = Math.min(min, fCounters[row][column]);
+        }
+        return min;
+    }
+
+    /**
+     * Estimate the number of occurrences of a value
+     *
+     * @param hash
+     *            The 64 bits hash of the value
+     * @return The estimated count, greater or equal to the real one
+     */
+    public long estimate(long hash) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, fCounters[row][column(hash, row)]);
+        }
+        return min;
+    }
+
+    /**
+     * Merge the counts of another sketch in this one
+     *
+     * @param other
+     *            The other sketch
+     */
+    public void merge(CountMinSketch other) {
+        for (int row = 0; row < DEPTH; row++) {
+            for (int column = 0; column < WIDTH; column++) {
+                fCounters[row][column] += other.fCounters[row][column];
+            }
+        }
+    }
+
+    /**
+     * The hash of a row is derived from the two halves of the value's hash
+     */
+    private static int column(long hash, int row) {
+        int low = (int) hash;
+        int high = (int) (hash >>> 32);
+        return (low + row * high) & MASK;
+    }
+}
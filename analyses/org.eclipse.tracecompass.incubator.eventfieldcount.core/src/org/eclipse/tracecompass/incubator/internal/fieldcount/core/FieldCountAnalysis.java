@@ -18,12 +18,20 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -47,9 +55,7 @@ import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
 
-import com.google.common.collect.HashMultiset;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Multiset;
 
 /**
  * Event count analysis, an on-demand analysis that generates Lami Tables while
@@ -63,10 +69,18 @@ public class FieldCountAnalysis extends LamiAnalysis {
 
     private static final long MASK = (1 << 10) - 1L;
     /**
-     * This is a simple way to remove unique elements. There should be a smarter
-     * way to do this.
+     * Number of distinct values of a field counted exactly. Past that, the
+     * counts are estimated in a fixed memory.
      */
-    private static final int MEMORY_SANITY_LIMIT = 10000;
+    private static final int EXACT_LIMIT = 10000;
+    /**
+     * Number of most frequent values shown for the fields with estimated
+     * counts
+     */
+    private static final int TOP_SIZE = 100;
+    private static final int BATCH_SIZE = 1024;
+    /** Marks the end of the events for the workers */
+    private static final List<ITmfEvent> END = new ArrayList<>();
 
     /**
      * Constructor
@@ -107,22 +121,31 @@ public class FieldCountAnalysis extends LamiAnalysis {
         }
         SubMonitor mon = SubMonitor.convert(monitor, "Event Count Analysis", workRemaining(trace));
         AtomicLong done = new AtomicLong();
-        Map<String, Multiset<String>> eventAspectCounts = new HashMap<>();
+
+        /*
+         * The request thread only batches the events, the aspects are resolved
+         * and counted by workers, each in its own counters, merged at the end
+         */
+        int nbWorkers = Math.max(1, Runtime.getRuntime().availableProcessors());
+        BlockingQueue<List<ITmfEvent>> queue = new ArrayBlockingQueue<>(nbWorkers * 2);
+        ExecutorService executor = Executors.newFixedThreadPool(nbWorkers);
+        List<Future<Map<String, FieldValueCounter>>> workers = new ArrayList<>();
+        for (int i = 0; i < nbWorkers; i++) {
+            workers.add(executor.submit(() -> countAspects(queue, aspects)));
+        }
 
         TmfEventRequest req = new TmfEventRequest(ITmfEvent.class, tr, 0, Integer.MAX_VALUE, ExecutionType.BACKGROUND) {
+            private List<ITmfEvent> fBatch = new ArrayList<>(BATCH_SIZE);
+
             @Override
             public void handleData(ITmfEvent event) {
                 if (monitor.isCanceled()) {
                     cancel();
+                    return;
                 }
-                for (ITmfEventAspect<?> aspect : aspects) {
-                    Object resolved = aspect.resolve(event);
-                    if (resolved != null) {
-                        Multiset<String> dataSet = eventAspectCounts.computeIfAbsent(aspect.getName(), unused -> HashMultiset.create());
-                        if (dataSet.size() < MEMORY_SANITY_LIMIT || dataSet.contains(resolved)) {
-                            dataSet.add(String.valueOf(resolved));
-                        }
-                    }
+                fBatch.add(event);
+                if (fBatch.size() == BATCH_SIZE) {
+                    flush();
                 }
                 if ((done.incrementAndGet() & MASK) == 0) {
                     mon.setWorkRemaining(workRemaining(trace));
@@ -131,29 +154,101 @@ public class FieldCountAnalysis extends LamiAnalysis {
                 }
             }
 
+            @Override
+            public void handleCompleted() {
+                if (!fBatch.isEmpty() && !isCancelled()) {
+                    flush();
+                }
+                super.handleCompleted();
+            }
+
+            private void flush() {
+                try {
+                    queue.put(fBatch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancel();
+                }
+                fBatch = new ArrayList<>(BATCH_SIZE);
+            }
         };
         trace.sendRequest(req);
+        Map<String, FieldValueCounter> eventAspectCounts = new HashMap<>();
         try {
             req.waitForCompletion();
-            for (Entry<String, Multiset<String>> entry : eventAspectCounts.entrySet()) {
-                Multiset<String> dataSet = entry.getValue();
-                List<LamiTableEntry> entries = new ArrayList<>();
-                for (String element : dataSet.elementSet()) {
-                    /* A row is an array of cells */
-                    List<LamiData> data = Arrays.asList(new LamiString(element), new LamiLongNumber((long) dataSet.count(element)));
-                    entries.add(new LamiTableEntry(data));
+            for (int i = 0; i < nbWorkers; i++) {
+                queue.put(END);
+            }
+            for (Future<Map<String, FieldValueCounter>> worker : workers) {
+                for (Entry<String, FieldValueCounter> entry : worker.get().entrySet()) {
+                    FieldValueCounter counter = eventAspectCounts.get(entry.getKey());
+                    if (counter == null) {
+                        eventAspectCounts.put(entry.getKey(), entry.getValue());
+                    } else {
+                        counter.merge(entry.getValue());
+                    }
                 }
-                List<LamiTableEntryAspect> tableAspects = Arrays.asList(new LamiCategoryAspect(entry.getKey(), 0), new LamiCountAspect("count", 1));
-                LamiTableClass tableClass = new LamiTableClass(entry.getKey(), entry.getKey(), tableAspects, Collections.emptySet());
-                LamiResultTable lrt = new LamiResultTable(createTimeRange(tr), tableClass, entries);
-                results.add(lrt);
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+            return results;
+        } catch (ExecutionException e) {
+            throw new CoreException(new Status(IStatus.ERROR, Activator.PLUGIN_ID, e.getMessage(), e));
+        } finally {
+            executor.shutdownNow();
+        }
+        if (req.isCancelled()) {
+            return results;
+        }
+        for (Entry<String, FieldValueCounter> entry : eventAspectCounts.entrySet()) {
+            FieldValueCounter counter = entry.getValue();
+            List<LamiTableEntry> entries = new ArrayList<>();
+            for (Entry<String, Long> value : counter.getValues()) {
+                /* A row is an array of cells */
+                List<LamiData> data = Arrays.asList(new LamiString(value.getKey()), new LamiLongNumber(value.getValue()));
+                entries.add(new LamiTableEntry(data));
+            }
+            String title = entry.getKey();
+            if (counter.isApproximate()) {
+                title += " (" + entries.size() + " most frequent of about " + counter.getDistinctCount() + " values)"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            }
+            List<LamiTableEntryAspect> tableAspects = Arrays.asList(new LamiCategoryAspect(entry.getKey(), 0), new LamiCountAspect("count", 1));
+            LamiTableClass tableClass = new LamiTableClass(entry.getKey(), title, tableAspects, Collections.emptySet());
+            LamiResultTable lrt = new LamiResultTable(createTimeRange(tr), tableClass, entries);
+            results.add(lrt);
         }
         return results;
     }
 
+    /**
+     * Resolve and count the aspects of the batches of events of a queue, until
+     * the end of the queue
+     */
+    private static Map<String, FieldValueCounter> countAspects(BlockingQueue<List<ITmfEvent>> queue, List<ITmfEventAspect<?>> aspects) throws InterruptedException {
+        Map<String, FieldValueCounter> counts = new HashMap<>();
+        List<ITmfEvent> batch = queue.take();
+        try {
+            while (batch != END) {
+                for (ITmfEvent event : batch) {
+                    for (ITmfEventAspect<?> aspect : aspects) {
+                        Object resolved = aspect.resolve(event);
+                        if (resolved != null) {
+                            counts.computeIfAbsent(aspect.getName(), unused -> new FieldValueCounter(EXACT_LIMIT, TOP_SIZE)).add(String.valueOf(resolved));
+                        }
+                    }
+                }
+                batch = queue.take();
+            }
+        } catch (RuntimeException e) {
+            /* Keep taking the batches so the request is not blocked */
+            while (batch != END) {
+                batch = queue.take();
+            }
+            throw e;
+        }
+        return counts;
+    }
+
     // copied from TmfEventsEditor
     /**
      * Get the event table for the given trace. It will be of the type defined
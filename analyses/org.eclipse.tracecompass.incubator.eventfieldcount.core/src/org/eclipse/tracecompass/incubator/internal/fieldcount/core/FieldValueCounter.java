@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.fieldcount.core;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Counter of the values of one field. The values are counted exactly until
+ * the field has too many distinct values, then the counter switches to
+ * sketches of fixed size: a {@link HyperLogLog} for the number of distinct
+ * values and a {@link CountMinSketch} with the most frequent values for their
+ * counts. The memory is then bounded whatever the cardinality of the field.
+ *
+ * A counter is not thread safe, each thread fills its own and they are merged
+ * at the end.
+ *
+ * @author Matthew Khouzam
+ */
+public final class FieldValueCounter {
+
+    private static final Comparator<Entry<String, Long>> BY_COUNT = Comparator.<Entry<String, Long>, Long> comparing(Entry::getValue).reversed()
+            .thenComparing(Entry::getKey);
+
+    private final int fExactLimit;
+    private final int fTopSize;
+
+    private @Nullable Map<String, Long> fExact = new HashMap<>();
+    private @Nullable HyperLogLog fDistinct = null;
+    private @Nullable CountMinSketch fCounts = null;
+    /* The candidates for the most frequent values, with their estimated count */
+    private final Map<String, Long> fTop = new HashMap<>();
+    /* A lower bound of the counts of the candidates */
+    private long fTopMin = 0;
+
+    /**
+     * Constructor
+     *
+     * @param exactLimit
+     *            The number of distinct values counted exactly
+     * @param topSize
+     *            The number of most frequent values kept by the sketches
+     */
+    public FieldValueCounter(int exactLimit, int topSize) {
+        fExactLimit = exactLimit;
+        fTopSize = topSize;
+    }
+
+    /**
+     * Count a value
+     *
+     * @param value
+     *            The value
+     */
+    public void add(String value) {
+        add(value, 1);
+    }
+
+    private void add(String value, long count) {
+        Map<String, Long> exact = fExact;
+        if (exact != null) {
+            exact.merge(value, count, Long::sum);
+            if (exact.size() > fExactLimit) {
+                toSketches(exact);
+            }
+            return;
+        }
+        long hash = hash(value);
+        addToSketches(value, hash, count);
+    }
+
+    private void addToSketches(String value, long hash, long count) {
+        HyperLogLog distinct = fDistinct;
+        CountMinSketch counts = fCounts;
+        if (distinct == null || counts == null) {
+            throw new IllegalStateException("The sketches are not initialized"); //$NON-NLS-1$
+        }
+        distinct.add(hash);
+        long estimate = counts.add(hash, count);
+        offerTop(value, estimate);
+    }
+
+    private void offerTop(String value, long estimate) {
+        if (fTop.containsKey(value) || fTop.size() < fTopSize) {
+            fTop.put(value, estimate);
+            return;
+        }
+        if (estimate <= fTopMin) {
+            return;
+        }
+        /* Replace the least frequent candidate, if it is less frequent */
+        String minValue = null;
+        long min = Long.MAX_VALUE;
+        for (Entry<String, Long> entry : fTop.entrySet()) {
+            if (entry.getValue() < min) {
+                min = entry.getValue();
+                minValue = entry.getKey();
+            }
+        }
+        fTopMin = min;
+        if (minValue == null || estimate <= min) {
+            return;
+        }
+        fTop.remove(minValue);
+        fTop.put(value, estimate);
+    }
+
+    private void toSketches(Map<String, Long> exact) {
+        fExact = null;
+        fDistinct = new HyperLogLog();
+        fCounts = new CountMinSketch();
+        for (Entry<String, Long> entry : exact.entrySet()) {
+            addToSketches(entry.getKey(), hash(entry.getKey()), entry.getValue());
+        }
+    }
+
+    /**
+     * Merge the counts of another counter in this one
+     *
+     * @param other
+     *            The other counter, which should not be used afterwards
+     */
+    public void merge(FieldValueCounter other) {
+        Map<String, Long> otherExact = other.fExact;
+        if (otherExact != null) {
+            for (Entry<String, Long> entry : otherExact.entrySet()) {
+                add(entry.getKey(), entry.getValue());
+            }
+            return;
+        }
+        Map<String, Long> exact = fExact;
+        if (exact != null) {
+            toSketches(exact);
+        }
+        HyperLogLog distinct = fDistinct;
+        CountMinSketch counts = fCounts;
+        HyperLogLog otherDistinct = other.fDistinct;
+        CountMinSketch otherCounts = other.fCounts;
+        if (distinct == null || counts == null || otherDistinct == null || otherCounts == null) {
+            throw new IllegalStateException("The sketches are not initialized"); //$NON-NLS-1$
+        }
+        distinct.merge(otherDistinct);
+        counts.merge(otherCounts);
+        /* Estimate all the candidates again with the merged counts */
+        List<String> candidates = new ArrayList<>(fTop.keySet());
+        candidates.addAll(other.fTop.keySet());
+        fTop.clear();
+        fTopMin = 0;
+        for (String candidate : candidates) {
+            offerTop(candidate, counts.estimate(hash(candidate)));
+        }
+    }
+
+    /**
+     * Whether the counts are estimated by sketches
+     *
+     * @return <code>true</code> if the counts are approximate
+     */
+    public boolean isApproximate() {
+        return fExact == null;
+    }
+
+    /**
+     * Get the number of distinct values
+     *
+     * @return The number of distinct values, estimated if the counts are
+     *         approximate
+     */
+    public long getDistinctCount() {
+        Map<String, Long> exact = fExact;
+        if (exact != null) {
+            return exact.size();
+        }
+        HyperLogLog distinct = fDistinct;
+        return distinct == null ? 0 : distinct.estimate();
+    }
+
+    /**
+     * Get the values with their counts, the most frequent first. If the
+     * counts are approximate, only the most frequent values are returned.
+     *
+     * @return The values and their counts
+     */
+    public List<Entry<String, Long>> getValues() {
+        Map<String, Long> exact = fExact;
+        List<Entry<String, Long>> values = new ArrayList<>(exact != null ? exact.entrySet() : fTop.entrySet());
+        values.sort(BY_COUNT);
+        return values;
+    }
+
+    /**
+     * A 64 bits hash of a string, FNV-1a followed by the finalizer of
+     * MurmurHash3 to spread the bits
+     *
+     * @param value
+     *            The value
+     * @return The hash of the value for the sketches
+     */
+    public static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
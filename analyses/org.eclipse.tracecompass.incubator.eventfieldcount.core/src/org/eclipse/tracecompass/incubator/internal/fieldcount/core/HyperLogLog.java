@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.fieldcount.core;
+
+/**
+ * Estimator of the number of distinct values, in a fixed memory of one byte
+ * per register. Each value is hashed, the first bits of the hash select a
+ * register and the register keeps the longest run of leading zeros seen in
+ * the other bits. With 2^12 registers, the standard error is about 1.6%.
+ *
+ * @author Matthew Khouzam
+ */
+public final class HyperLogLog {
+
+    private static final int PRECISION = 12;
+    private static final int NB_REGISTERS = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / NB_REGISTERS);
+
+    private final byte[] fRegisters = new byte[NB_REGISTERS];
+
+    /**
+     * Add a value
+     *
+     * @param hash
+     *            The 64 bits hash of the value
+     */
+    public void add(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        /* The sentinel bit bounds the run when the remaining bits are 0 */
+        long rest = (hash << PRECISION) | (1L << (PRECISION - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > fRegisters[index]) {
+            fRegisters[index] = rank;
+        }
+    }
+
+    /**
+     * Merge the values of another estimator in this one
+     *
+     * @param other
+     *            The other estimator
+     */
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < NB_REGISTERS; i++) {
+            if (other.fRegisters[i] > fRegisters[i]) {
+                fRegisters[i] = other.fRegisters[i];
+            }
+        }
+    }
+
+    /**
+     * Estimate the number of distinct values added
+     *
+     * @return The estimated number of distinct values
+     */
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : fRegisters) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * NB_REGISTERS * NB_REGISTERS / sum;
+        if (estimate <= 2.5 * NB_REGISTERS && zeros > 0) {
+            /* Small cardinalities, count the empty registers instead */
+            estimate = NB_REGISTERS * Math.log((double) NB_REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+}
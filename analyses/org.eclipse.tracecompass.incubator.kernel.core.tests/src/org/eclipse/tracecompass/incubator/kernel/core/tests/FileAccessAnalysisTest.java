@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.kernel.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.analysis.os.linux.core.event.aspect.LinuxTidAspect;
+import org.eclipse.tracecompass.analysis.os.linux.core.trace.DefaultEventLayout;
+import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
+import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelTrace;
+import org.eclipse.tracecompass.incubator.internal.kernel.core.fileaccess.FileAccessAnalysis;
+import org.eclipse.tracecompass.incubator.internal.kernel.core.fileaccess.FileAccessDataProvider;
+import org.eclipse.tracecompass.incubator.internal.kernel.core.filedescriptor.FileDescriptorCounters;
+import org.eclipse.tracecompass.incubator.internal.kernel.core.filedescriptor.ThreadEntryModel;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.model.filters.TimeQueryFilter;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.TimeGraphEntryModel;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.xml.TmfXmlTraceStubNs;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Test the bytes read and written of the {@link FileAccessAnalysis}, which are
+ * counted outside of the state system, also when the analysis is opened again
+ * or rebuilt.
+ *
+ * @author Matthew Khouzam
+ */
+public class FileAccessAnalysisTest {
+
+    private static final String FILE_NAME = "/tmp/file";
+    private static final String TID_FIELD = "tid";
+    private static final int READER = 10;
+    private static final int WRITER = 11;
+
+    /**
+     * A kernel trace whose events have their tid in a field
+     */
+    private static final class FileAccessTraceStub extends TmfXmlTraceStubNs implements IKernelTrace {
+
+        private static final ITmfEventAspect<?> TID_ASPECT = new LinuxTidAspect() {
+            @Override
+            public @Nullable Integer resolve(ITmfEvent event) {
+                Long tid = event.getContent().getFieldValue(Long.class, TID_FIELD);
+                return tid == null ? null : tid.intValue();
+            }
+        };
+
+        @Override
+        public IKernelAnalysisEventLayout getKernelEventLayout() {
+            return DefaultEventLayout.getInstance();
+        }
+
+        @Override
+        public Iterable<ITmfEventAspect<?>> getEventAspects() {
+            return ImmutableSet.<ITmfEventAspect<?>> builder()
+                    .addAll(super.getEventAspects())
+                    .add(TID_ASPECT)
+                    .build();
+        }
+    }
+
+    private File fTraceFile = new File("");
+    private @Nullable FileAccessTraceStub fTrace;
+
+    /**
+     * Write and open the trace. The reader opens the file, reads 100 then 50
+     * bytes; the writer opens it and writes 8 bytes.
+     *
+     * @throws IOException
+     *             the trace cannot be written
+     * @throws TmfTraceException
+     *             the trace cannot be opened
+     */
+    @Before
+    public void setUp() throws IOException, TmfTraceException {
+        IKernelAnalysisEventLayout layout = DefaultEventLayout.getInstance();
+        String entry = layout.eventSyscallEntryPrefix();
+        String exit = layout.eventSyscallExitPrefix();
+        String ret = layout.fieldSyscallRet();
+        fTraceFile = File.createTempFile("fileAccess", ".xml");
+        try (Writer writer = new BufferedWriter(new FileWriter(fTraceFile))) {
+            writer.write("<trace>\n");
+            writeEvent(writer, 1, entry + "openat", READER, layout.fieldFilename(), FILE_NAME);
+            writeEvent(writer, 2, exit + "openat", READER, ret, 3L);
+            writeEvent(writer, 3, entry + "open", WRITER, layout.fieldFilename(), FILE_NAME);
+            writeEvent(writer, 4, exit + "open", WRITER, ret, 4L);
+            writeEvent(writer, 10, entry + "read", READER, "fd", 3L, "count", 100L);
+            writeEvent(writer, 11, exit + "read", READER, ret, 100L);
+            writeEvent(writer, 20, entry + "read", READER, "fd", 3L, "count", 50L);
+            writeEvent(writer, 21, exit + "read", READER, ret, 50L);
+            writeEvent(writer, 30, entry + "write", WRITER, "fd", 4L, "count", 10L);
+            writeEvent(writer, 31, exit + "write", WRITER, ret, 8L);
+            writeEvent(writer, 40, entry + "close", READER, "fd", 3L);
+            writeEvent(writer, 41, exit + "close", READER, ret, 0L);
+            writeEvent(writer, 50, entry + "close", WRITER, "fd", 4L);
+            writeEvent(writer, 51, exit + "close", WRITER, ret, 0L);
+            writer.write("</trace>\n");
+        }
+        FileAccessTraceStub trace = new FileAccessTraceStub();
+        trace.initTrace(null, fTraceFile.getAbsolutePath(), TmfEvent.class);
+        fTrace = trace;
+    }
+
+    private static void writeEvent(Writer writer, long time, String name, int tid, Object... fields) throws IOException {
+        writer.write("<event timestamp=\"" + time + "\" name=\"" + name + "\">\n");
+        writer.write("<field name=\"" + TID_FIELD + "\" value=\"" + tid + "\" type=\"long\" />\n");
+        for (int i = 0; i < fields.length; i += 2) {
+            Object value = fields[i + 1];
+            String type = (value instanceof Long) ? "long" : "string";
+            writer.write("<field name=\"" + fields[i] + "\" value=\"" + value + "\" type=\"" + type + "\" />\n");
+        }
+        writer.write("</event>\n");
+    }
+
+    /**
+     * Dispose the trace and delete the files
+     */
+    @After
+    public void tearDown() {
+        FileAccessTraceStub trace = fTrace;
+        if (trace != null) {
+            File[] files = new File(TmfTraceManager.getSupplementaryFileDir(trace)).listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            trace.dispose();
+        }
+        fTraceFile.delete();
+    }
+
+    /**
+     * Test the bytes of the threads through the data provider, then open the
+     * analysis again from the saved files and rebuild it without its state
+     * system or with counters of another provider version. The bytes must not
+     * be counted twice.
+     *
+     * @throws TmfAnalysisException
+     *             the analysis cannot be created
+     * @throws IOException
+     *             the counters cannot be written
+     */
+    @Test
+    public void testBytes() throws TmfAnalysisException, IOException {
+        FileAccessTraceStub trace = fTrace;
+        assertNotNull(trace);
+        String suppDir = TmfTraceManager.getSupplementaryFileDir(trace);
+        File countersFile = new File(suppDir + FileAccessAnalysis.ID + ".counters");
+        File ssFile = new File(suppDir + FileAccessAnalysis.ID + ".ht");
+
+        // Built from the trace
+        assertBytes(trace);
+        assertTrue(countersFile.exists());
+        assertTrue(ssFile.exists());
+
+        // Opened from the saved files
+        assertBytes(trace);
+
+        // The state system is rebuilt, the counters too
+        assertTrue(ssFile.delete());
+        assertBytes(trace);
+
+        // The counters are from another version of the provider
+        FileDescriptorCounters other = new FileDescriptorCounters();
+        other.addRead(0, 0, 1000);
+        other.write(countersFile, -1);
+        assertBytes(trace);
+    }
+
+    private static void assertBytes(FileAccessTraceStub trace) throws TmfAnalysisException {
+        FileAccessAnalysis module = new FileAccessAnalysis();
+        try {
+            assertTrue(module.setTrace(trace));
+            module.schedule();
+            assertTrue(module.waitForCompletion());
+
+            FileAccessDataProvider dataProvider = new FileAccessDataProvider(trace, module);
+            List<TimeGraphEntryModel> entries = dataProvider.fetchTree(new TimeQueryFilter(0, 100, 2), null).getModel();
+            assertNotNull(entries);
+            long reader = -1;
+            long writer = -1;
+            for (TimeGraphEntryModel entry : entries) {
+                if (entry instanceof ThreadEntryModel) {
+                    int tid = ((ThreadEntryModel) entry).getTid();
+                    if (tid == READER) {
+                        reader = entry.getId();
+                    } else if (tid == WRITER) {
+                        writer = entry.getId();
+                    }
+                }
+            }
+            assertTrue(reader != -1);
+            assertTrue(writer != -1);
+
+            assertEquals(Long.valueOf(150), dataProvider.getBytesRead(0, 100, reader));
+            assertEquals(Long.valueOf(50), dataProvider.getBytesRead(15, 100, reader));
+            assertEquals(Long.valueOf(0), dataProvider.getBytesRead(25, 100, reader));
+            assertNull(dataProvider.getBytesWrite(0, 100, reader));
+
+            assertEquals(Long.valueOf(8), dataProvider.getBytesWrite(0, 100, writer));
+            assertEquals(Long.valueOf(0), dataProvider.getBytesWrite(0, 30, writer));
+            assertNull(dataProvider.getBytesRead(0, 100, writer));
+        } finally {
+            module.dispose();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.kernel.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.eclipse.tracecompass.incubator.internal.kernel.core.filedescriptor.FileDescriptorCounters;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link FileDescriptorCounters}
+ *
+ * @author Matthew Khouzam
+ */
+public class FileDescriptorCountersTest {
+
+    private static final int QUARK = 3;
+    private static final int OTHER_QUARK = 4;
+    private static final int PROVIDER_VERSION = 2;
+
+    private FileDescriptorCounters fCounters = new FileDescriptorCounters();
+
+    /**
+     * Count bytes read at 10, 20 (twice) and 30, and written at 15
+     */
+    @Before
+    public void setUp() {
+        FileDescriptorCounters counters = new FileDescriptorCounters();
+        counters.addRead(QUARK, 10, 5);
+        counters.addRead(QUARK, 20, 7);
+        counters.addRead(QUARK, 20, 3);
+        counters.addRead(QUARK, 30, 1);
+        counters.addWrite(QUARK, 15, 100);
+        fCounters = counters;
+    }
+
+    /**
+     * Test the bytes of time ranges, after the start up to the end
+     * inclusively
+     */
+    @Test
+    public void testRanges() {
+        FileDescriptorCounters counters = fCounters;
+        assertEquals(Long.valueOf(16), counters.getBytesRead(QUARK, 0, 100));
+        assertEquals(Long.valueOf(5), counters.getBytesRead(QUARK, 0, 10));
+        assertEquals(Long.valueOf(10), counters.getBytesRead(QUARK, 10, 20));
+        assertEquals(Long.valueOf(10), counters.getBytesRead(QUARK, 15, 25));
+        assertEquals(Long.valueOf(0), counters.getBytesRead(QUARK, 30, 40));
+        assertEquals(Long.valueOf(0), counters.getBytesRead(QUARK, 0, 5));
+
+        assertEquals(Long.valueOf(100), counters.getBytesWritten(QUARK, 0, 100));
+        assertEquals(Long.valueOf(0), counters.getBytesWritten(QUARK, 15, 100));
+
+        assertNull(counters.getBytesRead(OTHER_QUARK, 0, 100));
+        assertNull(counters.getBytesWritten(OTHER_QUARK, 0, 100));
+    }
+
+    /**
+     * Test that the counters are the same once saved and read back, and that
+     * files of another provider version or invalid files are not read
+     *
+     * @throws IOException
+     *             if the temporary files cannot be written
+     */
+    @Test
+    public void testReadWrite() throws IOException {
+        File file = File.createTempFile("fileaccess", ".counters");
+        try {
+            fCounters.write(file, PROVIDER_VERSION);
+            FileDescriptorCounters read = FileDescriptorCounters.read(file, PROVIDER_VERSION);
+            assertNotNull(read);
+            assertEquals(Long.valueOf(10), read.getBytesRead(QUARK, 15, 25));
+            assertEquals(Long.valueOf(100), read.getBytesWritten(QUARK, 0, 100));
+            assertNull(read.getBytesRead(OTHER_QUARK, 0, 100));
+
+            // Counted by another version of the provider, they must be rebuilt
+            assertNull(FileDescriptorCounters.read(file, PROVIDER_VERSION + 1));
+
+            try (FileOutputStream output = new FileOutputStream(file)) {
+                output.write(new byte[] { 1, 2, 3 });
+            }
+            assertNull(FileDescriptorCounters.read(file, PROVIDER_VERSION));
+        } finally {
+            file.delete();
+        }
+        assertNull(FileDescriptorCounters.read(file, PROVIDER_VERSION));
+    }
+}
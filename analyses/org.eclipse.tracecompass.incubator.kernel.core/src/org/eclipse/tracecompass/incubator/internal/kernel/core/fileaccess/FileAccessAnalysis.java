@@ -9,11 +9,19 @@
 
 package org.eclipse.tracecompass.incubator.internal.kernel.core.fileaccess;
 
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelTrace;
+import org.eclipse.tracecompass.incubator.internal.kernel.core.Activator;
+import org.eclipse.tracecompass.incubator.internal.kernel.core.filedescriptor.FileDescriptorCounters;
 import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 
 /**
  * File access anaylysis
@@ -27,11 +35,15 @@ public class FileAccessAnalysis extends TmfStateSystemAnalysisModule {
      */
     public static final String ID = "org.eclipse.tracecompass.incubator.internal.kernel.core.fileacess"; //$NON-NLS-1$
 
+    private static final String COUNTERS_EXTENSION = ".counters"; //$NON-NLS-1$
+
+    private volatile FileDescriptorCounters fCounters = new FileDescriptorCounters();
+
     @Override
     protected @NonNull ITmfStateProvider createStateProvider() {
         ITmfTrace trace = getTrace();
         if (trace instanceof IKernelTrace) {
-            return new FileAccessStateProvider((IKernelTrace) trace);
+            return new FileAccessStateProvider((IKernelTrace) trace, fCounters);
         }
         throw new IllegalStateException("Trace " + trace + "(" + (trace == null ? "null" : trace.getClass().getCanonicalName()) + ")" + " is not of the type IKernelTrace."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
     }
@@ -40,4 +52,44 @@ public class FileAccessAnalysis extends TmfStateSystemAnalysisModule {
     public String getId() {
         return ID;
     }
+
+    @Override
+    protected boolean executeAnalysis(@Nullable IProgressMonitor monitor) {
+        /*
+         * The provider adds the bytes of each read and write system call to
+         * counters kept beside the state system, per thread and file
+         * attribute. They are saved after the history tree is built and only
+         * loaded when that tree is reused and was built by the same provider
+         * version. If the counters cannot be loaded, the tree is deleted and
+         * the bytes are counted from scratch while it is rebuilt.
+         */
+        ITmfTrace trace = getTrace();
+        File countersFile = (trace == null) ? null : new File(TmfTraceManager.getSupplementaryFileDir(trace) + getId() + COUNTERS_EXTENSION);
+        File ssFile = (trace == null) ? null : new File(TmfTraceManager.getSupplementaryFileDir(trace) + getSsFileName());
+        FileDescriptorCounters saved = (countersFile == null || ssFile == null || !ssFile.exists()) ? null : FileDescriptorCounters.read(countersFile, FileAccessStateProvider.VERSION);
+        if (saved != null) {
+            fCounters = saved;
+        } else if (ssFile != null) {
+            fCounters = new FileDescriptorCounters();
+            ssFile.delete();
+        }
+        boolean ret = super.executeAnalysis(monitor);
+        if (ret && saved == null && countersFile != null) {
+            try {
+                fCounters.write(countersFile, FileAccessStateProvider.VERSION);
+            } catch (IOException e) {
+                Activator.getInstance().logError("Cannot save the file access counters", e); //$NON-NLS-1$
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Get the bytes read and written through the file descriptors
+     *
+     * @return The counters, filled while the analysis runs
+     */
+    public FileDescriptorCounters getCounters() {
+        return fCounters;
+    }
 }
@@ -321,46 +321,31 @@ public class FileAccessDataProvider extends AbstractTimeGraphDataProvider<@NonNu
     }
 
     public @Nullable Long getBytesRead(long start, long end, long attributeId) {
-        ITmfStateSystem ss = getAnalysisModule().getStateSystem();
-        if (ss == null) {
+        Integer quark = getCounterQuark(start, end, attributeId);
+        if (quark == null) {
             return null;
         }
+        return getAnalysisModule().getCounters().getBytesRead(quark, start, end);
+    }
 
-        Map<Long, Integer> selectedEntries = getSelectedEntries(new SelectionTimeQueryFilter(Arrays.asList(start, end), Collections.singleton(attributeId)));
-        Integer startingNodeQuark = selectedEntries.get(attributeId);
-        if (startingNodeQuark == null || startingNodeQuark >= OFFSET) {
+    public @Nullable Long getBytesWrite(long start, long end, long attributeId) {
+        Integer quark = getCounterQuark(start, end, attributeId);
+        if (quark == null) {
             return null;
         }
-        int readQuark = ss.optQuarkRelative(startingNodeQuark, FileDescriptorStateProvider.READ);
-        return getdelta(start, end, ss, readQuark);
+        return getAnalysisModule().getCounters().getBytesWritten(quark, start, end);
     }
 
-    public @Nullable Long getBytesWrite(long start, long end, long attributeId) {
-        ITmfStateSystem ss = getAnalysisModule().getStateSystem();
-        if (ss == null) {
+    private @Nullable Integer getCounterQuark(long start, long end, long attributeId) {
+        if (getAnalysisModule().getStateSystem() == null) {
             return null;
         }
-
         Map<Long, Integer> selectedEntries = getSelectedEntries(new SelectionTimeQueryFilter(Arrays.asList(start, end), Collections.singleton(attributeId)));
         Integer startingNodeQuark = selectedEntries.get(attributeId);
         if (startingNodeQuark == null || startingNodeQuark >= OFFSET) {
             return null;
         }
-        int readQuark = ss.optQuarkRelative(startingNodeQuark, FileDescriptorStateProvider.WRITE);
-        return getdelta(start, end, ss, readQuark);
-    }
-
-    private static @Nullable Long getdelta(long start, long end, ITmfStateSystem ss, int readQuark) {
-        if (readQuark == ITmfStateSystem.INVALID_ATTRIBUTE) {
-            return null;
-        }
-        try {
-            ITmfStateInterval startInterval = ss.querySingleState(start, readQuark);
-            ITmfStateInterval endInterval = ss.querySingleState(end, readQuark);
-            return endInterval.getValueLong() - startInterval.getValueLong();
-        } catch (StateSystemDisposedException e) {
-            return null;
-        }
+        return startingNodeQuark;
     }
 
     @Override
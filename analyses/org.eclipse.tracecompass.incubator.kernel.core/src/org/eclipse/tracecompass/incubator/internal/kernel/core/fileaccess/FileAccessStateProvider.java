@@ -17,6 +17,7 @@ import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelTrace;
 import org.eclipse.tracecompass.incubator.internal.kernel.core.Activator;
+import org.eclipse.tracecompass.incubator.internal.kernel.core.filedescriptor.FileDescriptorCounters;
 import org.eclipse.tracecompass.incubator.internal.kernel.core.filedescriptor.FileDescriptorStateProvider;
 import org.eclipse.tracecompass.incubator.internal.kernel.core.filedescriptor.HandlerParameter;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
@@ -62,7 +63,8 @@ public class FileAccessStateProvider extends FileDescriptorStateProvider {
     private static final String LTTNG_STATEDUMP_FILE_DESCRIPTOR = "lttng_statedump_file_descriptor"; //$NON-NLS-1$
     private static final Set<String> NO_NO_LIST = ImmutableSet.of("socket:", "pipe:"); //$NON-NLS-1$ //$NON-NLS-2$
 
-    private static final int VERSION = 1;
+    /** Version of the provider, also checked by the saved byte counters */
+    static final int VERSION = 2;
 
     private final String fFileName;
     private final Map<Integer, String> fOpenContexts = new HashMap<>();
@@ -74,7 +76,19 @@ public class FileAccessStateProvider extends FileDescriptorStateProvider {
      *            the trace to handle
      */
     public FileAccessStateProvider(IKernelTrace trace) {
-        super(trace, ID);
+        this(trace, new FileDescriptorCounters());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param trace
+     *            the trace to handle
+     * @param counters
+     *            the counters to fill with the bytes read and written
+     */
+    public FileAccessStateProvider(IKernelTrace trace, FileDescriptorCounters counters) {
+        super(trace, ID, counters);
         IKernelAnalysisEventLayout layout = getLayout();
         addEventHandler(layout.eventSyscallEntryPrefix() + OPENAT, this::handleOpen);
         addEventHandler(layout.eventSyscallExitPrefix() + OPENAT, this::handleOpenExit);
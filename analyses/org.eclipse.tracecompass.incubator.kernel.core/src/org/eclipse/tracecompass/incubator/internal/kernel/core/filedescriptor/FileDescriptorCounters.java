@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.kernel.core.filedescriptor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Bytes read and written through the file descriptors, kept outside of the
+ * state system. For each attribute of the state system that counts bytes, the
+ * index keeps the cumulative sum of the bytes after each time it changed, so
+ * the bytes of a time range are the difference of two binary searches.
+ *
+ * The {@link FileDescriptorStateProvider} adds the bytes of the system calls
+ * while the data provider reads the sums, so the accesses are synchronized.
+ * The sums of the attributes are written as they are, after the magic number,
+ * the file format version and the version of the state provider that counted
+ * them: bytes counted by another provider version are not reused, since its
+ * quarks may differ.
+ *
+ * @author Matthew Khouzam
+ */
+public final class FileDescriptorCounters {
+
+    /** Magic number of the counters files, "FDCS" */
+    private static final int MAGIC = 0x53434446;
+    /** Version of the file format */
+    private static final int VERSION = 2;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The cumulative sum of the bytes of one attribute, in time order
+     */
+    private static final class Series {
+        private long[] fTimes;
+        private long[] fSums;
+        private int fSize;
+
+        public Series(int capacity) {
+            fTimes = new long[capacity];
+            fSums = new long[capacity];
+            fSize = 0;
+        }
+
+        public void add(long time, long count) {
+            if (fSize > 0 && fTimes[fSize - 1] == time) {
+                fSums[fSize - 1] += count;
+                return;
+            }
+            if (fSize == fTimes.length) {
+                fTimes = Arrays.copyOf(fTimes, fSize * 2);
+                fSums = Arrays.copyOf(fSums, fSize * 2);
+            }
+            fSums[fSize] = (fSize == 0 ? 0 : fSums[fSize - 1]) + count;
+            fTimes[fSize] = time;
+            fSize++;
+        }
+
+        /**
+         * Get the sum of the bytes up to a time, inclusively
+         */
+        public long getAt(long time) {
+            int low = 0;
+            int high = fSize;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (fTimes[mid] <= time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low == 0 ? 0 : fSums[low - 1];
+        }
+    }
+
+    private final Map<Integer, Series> fRead = new HashMap<>();
+    private final Map<Integer, Series> fWrite = new HashMap<>();
+
+    /**
+     * Add bytes read at a time. The bytes of an attribute are expected in
+     * time order.
+     *
+     * @param quark
+     *            The quark of the attribute counting the bytes
+     * @param time
+     *            The time of the read
+     * @param count
+     *            The number of bytes read
+     */
+    public synchronized void addRead(int quark, long time, long count) {
+        fRead.computeIfAbsent(quark, q -> new Series(INITIAL_CAPACITY)).add(time, count);
+    }
+
+    /**
+     * Add bytes written at a time. The bytes of an attribute are expected in
+     * time order.
+     *
+     * @param quark
+     *            The quark of the attribute counting the bytes
+     * @param time
+     *            The time of the write
+     * @param count
+     *            The number of bytes written
+     */
+    public synchronized void addWrite(int quark, long time, long count) {
+        fWrite.computeIfAbsent(quark, q -> new Series(INITIAL_CAPACITY)).add(time, count);
+    }
+
+    /**
+     * Get the bytes read between two times
+     *
+     * @param quark
+     *            The quark of the attribute counting the bytes
+     * @param start
+     *            The start of the range
+     * @param end
+     *            The end of the range
+     * @return The bytes read after the start, up to the end inclusively, or
+     *         <code>null</code> if nothing was ever read for this attribute
+     */
+    public synchronized @Nullable Long getBytesRead(int quark, long start, long end) {
+        return getDelta(fRead.get(quark), start, end);
+    }
+
+    /**
+     * Get the bytes written between two times
+     *
+     * @param quark
+     *            The quark of the attribute counting the bytes
+     * @param start
+     *            The start of the range
+     * @param end
+     *            The end of the range
+     * @return The bytes written after the start, up to the end inclusively,
+     *         or <code>null</code> if nothing was ever written for this
+     *         attribute
+     */
+    public synchronized @Nullable Long getBytesWritten(int quark, long start, long end) {
+        return getDelta(fWrite.get(quark), start, end);
+    }
+
+    private static @Nullable Long getDelta(@Nullable Series series, long start, long end) {
+        if (series == null) {
+            return null;
+        }
+        return series.getAt(end) - series.getAt(start);
+    }
+
+    /**
+     * Read counters saved in a file
+     *
+     * @param file
+     *            The file, typically in the supplementary files
+     * @param providerVersion
+     *            The version of the state provider that must have counted
+     *            the bytes
+     * @return The counters, or <code>null</code> if the file does not exist,
+     *         cannot be read or was written for another provider version
+     */
+    public static @Nullable FileDescriptorCounters read(File file, int providerVersion) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION || input.readInt() != providerVersion) {
+                return null;
+            }
+            FileDescriptorCounters counters = new FileDescriptorCounters();
+            readSeries(input, counters.fRead);
+            readSeries(input, counters.fWrite);
+            return counters;
+        } catch (IOException e) {
+            /* Truncated or corrupted, it will be rebuilt */
+            return null;
+        }
+    }
+
+    private static void readSeries(DataInputStream input, Map<Integer, Series> map) throws IOException {
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            int quark = input.readInt();
+            int size = input.readInt();
+            if (size < 0) {
+                throw new IOException("Invalid size " + size); //$NON-NLS-1$
+            }
+            Series series = new Series(Math.max(1, size));
+            for (int j = 0; j < size; j++) {
+                series.fTimes[j] = input.readLong();
+                series.fSums[j] = input.readLong();
+            }
+            series.fSize = size;
+            map.put(quark, series);
+        }
+    }
+
+    /**
+     * Save the counters in a file
+     *
+     * @param file
+     *            The file, typically in the supplementary files
+     * @param providerVersion
+     *            The version of the state provider that counted the bytes
+     * @throws IOException
+     *             If the file cannot be written, it is then deleted
+     */
+    public synchronized void write(File file, int providerVersion) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(providerVersion);
+            writeSeries(output, fRead);
+            writeSeries(output, fWrite);
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+    }
+
+    private static void writeSeries(DataOutputStream output, Map<Integer, Series> map) throws IOException {
+        output.writeInt(map.size());
+        for (Entry<Integer, Series> entry : map.entrySet()) {
+            Series series = entry.getValue();
+            output.writeInt(entry.getKey());
+            output.writeInt(series.fSize);
+            for (int i = 0; i < series.fSize; i++) {
+                output.writeLong(series.fTimes[i]);
+                output.writeLong(series.fSums[i]);
+            }
+        }
+    }
+}
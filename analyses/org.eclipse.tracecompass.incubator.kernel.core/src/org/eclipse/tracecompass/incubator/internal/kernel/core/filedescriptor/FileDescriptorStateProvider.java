@@ -91,6 +91,8 @@ public abstract class FileDescriptorStateProvider extends AbstractTmfStateProvid
 
     private final Map<Integer, Long> fToClose = new HashMap<>();
 
+    private final FileDescriptorCounters fCounters;
+
     /**
      * Constructor
      *
@@ -100,8 +102,23 @@ public abstract class FileDescriptorStateProvider extends AbstractTmfStateProvid
      *            Name given to this state change input. Only used internally.
      */
     public FileDescriptorStateProvider(IKernelTrace trace, String id) {
+        this(trace, id, new FileDescriptorCounters());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param trace
+     *            The trace
+     * @param id
+     *            Name given to this state change input. Only used internally.
+     * @param counters
+     *            The counters to fill with the bytes read and written
+     */
+    public FileDescriptorStateProvider(IKernelTrace trace, String id, FileDescriptorCounters counters) {
         super(trace, id);
         fLayout = trace.getKernelEventLayout();
+        fCounters = counters;
 
         addEventHandler(getLayout().eventSyscallEntryPrefix() + CLOSE, this::closeBegin);
         addEventHandler(getLayout().eventSyscallExitPrefix() + CLOSE, this::closeEnd);
@@ -162,6 +179,16 @@ public abstract class FileDescriptorStateProvider extends AbstractTmfStateProvid
         return fLayout;
     }
 
+    /**
+     * Get the counters of the bytes read and written through the file
+     * descriptors, which are kept outside of the state system.
+     *
+     * @return The counters
+     */
+    public final FileDescriptorCounters getCounters() {
+        return fCounters;
+    }
+
     /**
      * Check if a file descriptor is valid. Has it been opened? if not, let's
      * ignore it for now.
@@ -206,27 +233,8 @@ public abstract class FileDescriptorStateProvider extends AbstractTmfStateProvid
     }
 
     private void readEnd(HandlerParameter params) {
-        ITmfEvent event = params.getEvent();
-        Integer tid = params.getTid();
-        ITmfStateSystemBuilder ssb = params.getSsb();
-        long time = params.getTime();
-        Long count = (event.getContent().getFieldValue(Long.class, getLayout().fieldSyscallRet()));
-        Long fd = fToRead.remove(tid);
-        fd = isValidFileDescriptor(ssb, tid, fd);
-        if (fd != null && count != null) {
-            try {
-                int fileNameQuark = ssb.getQuarkAbsoluteAndAdd(TID, String.valueOf(tid), String.valueOf(fd));
-                int readTid = ssb.getQuarkAbsoluteAndAdd(TID, String.valueOf(tid), String.valueOf(fd), READ);
-                StateSystemBuilderUtils.incrementAttributeLong(ssb, time, readTid, count);
-                Object fileNameObj = ssb.queryOngoing(fileNameQuark);
-                if (fileNameObj instanceof String) {
-                    int readFile = ssb.getQuarkAbsoluteAndAdd(RESOURCES, String.valueOf(fileNameObj), String.valueOf(tid), READ);
-                    StateSystemBuilderUtils.incrementAttributeLong(ssb, time, readFile, count);
-                }
-            } catch (StateValueTypeException | AttributeNotFoundException e) {
-                Activator.getInstance().logError(e.getMessage(), e);
-            }
-        }
+        Long fd = fToRead.remove(params.getTid());
+        addBytes(params, fd, false);
     }
 
     private void writeBegin(HandlerParameter params) {
@@ -242,26 +250,39 @@ public abstract class FileDescriptorStateProvider extends AbstractTmfStateProvid
     }
 
     private void writeEnd(HandlerParameter params) {
-        ITmfEvent event = params.getEvent();
-        Integer tid = params.getTid();
+        Long fd = fToWrite.remove(params.getTid());
+        addBytes(params, fd, true);
+    }
+
+    /**
+     * Count the bytes of a read or write in the counters of the thread's file
+     * descriptor and of the file. The counters are kept outside of the state
+     * system, so a completed read or write does not add intervals.
+     */
+    private void addBytes(HandlerParameter params, @Nullable Long fd, boolean write) {
         ITmfStateSystemBuilder ssb = params.getSsb();
+        Integer tid = params.getTid();
+        Long count = params.getEvent().getContent().getFieldValue(Long.class, getLayout().fieldSyscallRet());
+        Long validFd = isValidFileDescriptor(ssb, tid, fd);
+        if (validFd == null || count == null) {
+            return;
+        }
         long time = params.getTime();
-        Long count = (event.getContent().getFieldValue(Long.class, getLayout().fieldSyscallRet()));
-        Long fd = fToWrite.remove(tid);
-        fd = isValidFileDescriptor(ssb, tid, fd);
-        if (fd != null && count != null) {
-            try {
-                int fileNameQuark = ssb.getQuarkAbsoluteAndAdd(TID, String.valueOf(tid), String.valueOf(fd));
-                int writeTid = ssb.getQuarkAbsoluteAndAdd(TID, String.valueOf(tid), String.valueOf(fd), WRITE);
-                StateSystemBuilderUtils.incrementAttributeLong(ssb, time, writeTid, count);
-                Object fileNameObj = ssb.queryOngoing(fileNameQuark);
-                if (fileNameObj instanceof String) {
-                    int writeFile = ssb.getQuarkAbsoluteAndAdd(RESOURCES, String.valueOf(fileNameObj), String.valueOf(tid), WRITE);
-                    StateSystemBuilderUtils.incrementAttributeLong(ssb, time, writeFile, count);
-                }
-            } catch (StateValueTypeException | AttributeNotFoundException e) {
-                Activator.getInstance().logError(e.getMessage(), e);
-            }
+        String tidName = String.valueOf(tid);
+        int tidFileQuark = ssb.getQuarkAbsoluteAndAdd(TID, tidName, String.valueOf(validFd));
+        addBytes(tidFileQuark, time, count, write);
+        Object fileNameObj = ssb.queryOngoing(tidFileQuark);
+        if (fileNameObj instanceof String) {
+            int fileTidQuark = ssb.getQuarkAbsoluteAndAdd(RESOURCES, (String) fileNameObj, tidName);
+            addBytes(fileTidQuark, time, count, write);
+        }
+    }
+
+    private void addBytes(int quark, long time, long count, boolean write) {
+        if (write) {
+            fCounters.addWrite(quark, time, count);
+        } else {
+            fCounters.addRead(quark, time, count);
         }
     }
 
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.lttng2.ust.extras.core.tests.perf;
+
+import static org.junit.Assert.assertFalse;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.analysis.graph.core.base.TmfGraph;
+import org.eclipse.tracecompass.analysis.os.linux.core.event.aspect.LinuxTidAspect;
+import org.eclipse.tracecompass.analysis.os.linux.core.execution.graph.OsExecutionGraphProvider;
+import org.eclipse.tracecompass.incubator.internal.lttng2.ust.extras.core.pthread.PThreadLockGraphHandler;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.xml.TmfXmlTraceStub;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.xml.TmfXmlTraceStubNs;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * Benchmarks the pthread lock handler of the execution graph on a synthetic
+ * trace of threads taking many different mutexes, often contended, among
+ * other userspace events. The events are read before the measure, so only
+ * the graph building is measured, in CPU time and in heap used by the handler
+ * and the graph.
+ *
+ * @author Geneviève Bastien
+ */
+public class PThreadLockGraphBenchmark {
+
+    /**
+     * Test test ID for the pthread lock benchmarks
+     */
+    public static final String TEST_ID = "org.eclipse.tracecompass.incubator#PThreadLock#";
+    private static final String TEST_GRAPH = "PThread lock graph building";
+
+    private static final long SEED = 982364871L;
+    private static final int LOOP_COUNT = 5;
+    private static final int NB_LOCKS = 50000;
+    private static final int NB_THREADS = 16;
+    private static final int NB_MUTEXES = 5000;
+
+    private static final String REQUEST = "lttng_ust_pthread:pthread_mutex_lock_req";
+    private static final String ACQUIRE = "lttng_ust_pthread:pthread_mutex_lock_acq";
+    private static final String UNLOCK = "lttng_ust_pthread:pthread_mutex_unlock";
+    private static final String OTHER = "lttng_ust_cyg_profile:func_entry";
+    private static final String TID_FIELD = "tid";
+
+    /**
+     * The tid of the events is in a field of the synthetic trace
+     */
+    private static final class FieldTidAspect extends LinuxTidAspect {
+        @Override
+        public @Nullable Integer resolve(ITmfEvent event) {
+            Long tid = event.getContent().getFieldValue(Long.class, TID_FIELD);
+            return tid == null ? null : tid.intValue();
+        }
+    }
+
+    private static final ITmfEventAspect<?> TID_ASPECT = new FieldTidAspect();
+
+    private static File fTraceFile;
+    private static long fTs;
+
+    /**
+     * Write the synthetic trace. Each lock is taken by a thread while another
+     * thread requests it, so the other thread is blocked until it is released.
+     *
+     * @throws IOException
+     *             the file cannot be written
+     */
+    @BeforeClass
+    public static void writeTrace() throws IOException {
+        Random random = new Random(SEED);
+        fTraceFile = File.createTempFile("pthreadBenchmark", ".xml");
+        fTs = 0;
+        try (Writer writer = new BufferedWriter(new FileWriter(fTraceFile))) {
+            writer.write("<trace>\n");
+            for (int i = 0; i < NB_LOCKS; i++) {
+                int owner = 100 + random.nextInt(NB_THREADS);
+                int waiter = 100 + (owner - 100 + 1 + random.nextInt(NB_THREADS - 1)) % NB_THREADS;
+                long mutex = 0x600000 + random.nextInt(NB_MUTEXES) * 64L;
+                writeEvent(writer, OTHER, owner, -1);
+                writeEvent(writer, REQUEST, owner, mutex);
+                writeEvent(writer, ACQUIRE, owner, mutex);
+                writeEvent(writer, REQUEST, waiter, mutex);
+                writeEvent(writer, OTHER, owner, -1);
+                writeEvent(writer, UNLOCK, owner, mutex);
+                writeEvent(writer, ACQUIRE, waiter, mutex);
+                writeEvent(writer, UNLOCK, waiter, mutex);
+            }
+            writer.write("</trace>\n");
+        }
+    }
+
+    private static void writeEvent(Writer writer, String name, int tid, long mutex) throws IOException {
+        fTs++;
+        writer.write("<event timestamp=\"" + fTs + "\" name=\"" + name + "\">\n");
+        writer.write("<field name=\"" + TID_FIELD + "\" value=\"" + tid + "\" type=\"long\" />\n");
+        if (mutex >= 0) {
+            writer.write("<field name=\"mutex\" value=\"" + mutex + "\" type=\"long\" />\n");
+        }
+        writer.write("</event>\n");
+    }
+
+    /**
+     * Delete the synthetic trace
+     */
+    @AfterClass
+    public static void deleteTrace() {
+        fTraceFile.delete();
+    }
+
+    /**
+     * Run the benchmark
+     *
+     * @throws TmfTraceException
+     *             the trace cannot be opened
+     */
+    @Test
+    public void runBenchmark() throws TmfTraceException {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = Objects.requireNonNull(perf.createPerformanceMeter(TEST_ID + TEST_GRAPH));
+        perf.tagAsSummary(pm, TEST_GRAPH, new Dimension[] { Dimension.CPU_TIME, Dimension.USED_JAVA_HEAP });
+
+        TmfXmlTraceStub trace = new TmfXmlTraceStubNs() {
+            @Override
+            public Iterable<ITmfEventAspect<?>> getEventAspects() {
+                return Iterables.concat(super.getEventAspects(), Collections.singleton(TID_ASPECT));
+            }
+        };
+        try {
+            trace.initTrace(null, fTraceFile.getAbsolutePath(), TmfEvent.class);
+            List<ITmfEvent> events = new ArrayList<>();
+            ITmfContext context = trace.seekEvent(0L);
+            ITmfEvent event = trace.getNext(context);
+            while (event != null) {
+                events.add(event);
+                event = trace.getNext(context);
+            }
+            context.dispose();
+
+            for (int i = 0; i < LOOP_COUNT; i++) {
+                OsExecutionGraphProvider provider = new OsExecutionGraphProvider(trace);
+                TmfGraph graph = new TmfGraph();
+                provider.assignGraph(graph);
+
+                pm.start();
+                PThreadLockGraphHandler handler = new PThreadLockGraphHandler(provider, 0);
+                for (ITmfEvent ev : events) {
+                    handler.handleEvent(ev);
+                }
+                pm.stop();
+                assertFalse(graph.getWorkers().isEmpty());
+            }
+        } finally {
+            trace.dispose();
+        }
+        pm.commit();
+    }
+}
@@ -0,0 +1,326 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.lttng2.ust.extras.core.tests.pthread;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.analysis.graph.core.base.IGraphWorker;
+import org.eclipse.tracecompass.analysis.graph.core.base.TmfEdge;
+import org.eclipse.tracecompass.analysis.graph.core.base.TmfEdge.EdgeType;
+import org.eclipse.tracecompass.analysis.graph.core.base.TmfGraph;
+import org.eclipse.tracecompass.analysis.graph.core.base.TmfVertex;
+import org.eclipse.tracecompass.analysis.graph.core.base.TmfVertex.EdgeDirection;
+import org.eclipse.tracecompass.analysis.os.linux.core.event.aspect.LinuxTidAspect;
+import org.eclipse.tracecompass.analysis.os.linux.core.execution.graph.OsExecutionGraphProvider;
+import org.eclipse.tracecompass.analysis.os.linux.core.execution.graph.OsWorker;
+import org.eclipse.tracecompass.analysis.os.linux.core.model.HostThread;
+import org.eclipse.tracecompass.incubator.internal.lttng2.ust.extras.core.pthread.PThreadLockGraphHandler;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.xml.TmfXmlTraceStub;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.xml.TmfXmlTraceStubNs;
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * Test the {@link PThreadLockGraphHandler} on small synthetic traces of
+ * threads taking a mutex. The thread IDs are above 127, so they are not
+ * cached {@link Integer}s and a thread is only recognized by its value.
+ *
+ * @author Geneviève Bastien
+ */
+public class PThreadLockGraphHandlerTest {
+
+    private static final String REQUEST = "lttng_ust_pthread:pthread_mutex_lock_req";
+    private static final String ACQUIRE = "lttng_ust_pthread:pthread_mutex_lock_acq";
+    private static final String UNLOCK = "lttng_ust_pthread:pthread_mutex_unlock";
+    private static final String TID_FIELD = "tid";
+
+    private static final long MUTEX = 0x600040L;
+    private static final long OTHER_MUTEX = 0x600080L;
+    private static final int OWNER = 1000;
+    private static final int WAITER = 1001;
+
+    /**
+     * The tid of the events is in a field of the synthetic trace
+     */
+    private static final class FieldTidAspect extends LinuxTidAspect {
+        @Override
+        public @Nullable Integer resolve(ITmfEvent event) {
+            Long tid = event.getContent().getFieldValue(Long.class, TID_FIELD);
+            return tid == null ? null : tid.intValue();
+        }
+    }
+
+    private static final ITmfEventAspect<?> TID_ASPECT = new FieldTidAspect();
+
+    private final StringBuilder fEvents = new StringBuilder();
+    private @Nullable File fTraceFile;
+    private @Nullable TmfXmlTraceStub fTrace;
+    private @Nullable OsExecutionGraphProvider fProvider;
+
+    /**
+     * Dispose the trace and delete its file
+     */
+    @After
+    public void tearDown() {
+        TmfXmlTraceStub trace = fTrace;
+        if (trace != null) {
+            trace.dispose();
+        }
+        File traceFile = fTraceFile;
+        if (traceFile != null) {
+            traceFile.delete();
+        }
+    }
+
+    /**
+     * Test a lock requested by a thread while another thread holds it. The
+     * waiting thread is blocked from its request to its acquisition, and the
+     * unlock of the owner is linked to the acquisition.
+     *
+     * @throws IOException
+     *             the trace cannot be written
+     * @throws TmfTraceException
+     *             the trace cannot be opened
+     */
+    @Test
+    public void testContended() throws IOException, TmfTraceException {
+        addEvent(1, REQUEST, OWNER, MUTEX);
+        addEvent(2, ACQUIRE, OWNER, MUTEX);
+        addEvent(3, REQUEST, WAITER, MUTEX);
+        addEvent(4, UNLOCK, OWNER, MUTEX);
+        addEvent(5, ACQUIRE, WAITER, MUTEX);
+        addEvent(6, UNLOCK, WAITER, MUTEX);
+        TmfGraph graph = buildGraph();
+
+        OsWorker owner = getWorker(OWNER);
+        OsWorker waiter = getWorker(WAITER);
+        assertEquals(Collections.singletonList(4L), getTimes(graph, owner));
+        assertEquals(Arrays.asList(3L, 5L, 6L), getTimes(graph, waiter));
+
+        List<TmfVertex> nodes = graph.getNodesOf(waiter);
+        TmfEdge blocked = nodes.get(0).getEdge(EdgeDirection.OUTGOING_HORIZONTAL_EDGE);
+        assertNotNull(blocked);
+        assertEquals(EdgeType.BLOCKED, blocked.getType());
+        TmfEdge running = nodes.get(1).getEdge(EdgeDirection.OUTGOING_HORIZONTAL_EDGE);
+        assertNotNull(running);
+        assertEquals(EdgeType.RUNNING, running.getType());
+
+        // The unlock of the owner wakes up the waiter
+        TmfEdge link = nodes.get(1).getEdge(EdgeDirection.INCOMING_VERTICAL_EDGE);
+        assertNotNull(link);
+        assertEquals(4L, link.getVertexFrom().getTs());
+        assertSame(owner, graph.getParentOf(link.getVertexFrom()));
+        assertEquals(1, countEdges(graph, EdgeType.BLOCKED));
+        assertEquals(1, countVerticalEdges(graph));
+    }
+
+    /**
+     * Test locks taken one after the other. No thread is blocked and only the
+     * unlocks are in the graph.
+     *
+     * @throws IOException
+     *             the trace cannot be written
+     * @throws TmfTraceException
+     *             the trace cannot be opened
+     */
+    @Test
+    public void testUncontended() throws IOException, TmfTraceException {
+        addEvent(1, REQUEST, OWNER, MUTEX);
+        addEvent(2, ACQUIRE, OWNER, MUTEX);
+        addEvent(3, UNLOCK, OWNER, MUTEX);
+        addEvent(4, REQUEST, WAITER, MUTEX);
+        addEvent(5, ACQUIRE, WAITER, MUTEX);
+        addEvent(6, UNLOCK, WAITER, MUTEX);
+        addEvent(7, REQUEST, OWNER, MUTEX);
+        addEvent(8, ACQUIRE, OWNER, MUTEX);
+        addEvent(9, UNLOCK, OWNER, MUTEX);
+        TmfGraph graph = buildGraph();
+
+        assertEquals(Arrays.asList(3L, 9L), getTimes(graph, getWorker(OWNER)));
+        assertEquals(Collections.singletonList(6L), getTimes(graph, getWorker(WAITER)));
+        assertEquals(0, countEdges(graph, EdgeType.BLOCKED));
+        assertEquals(0, countVerticalEdges(graph));
+    }
+
+    /**
+     * Test a request followed by an unlock of the same thread, without the
+     * acquisition in between. The request is over at the unlock, so an
+     * acquisition that comes later does not block the thread, but the thread
+     * that waited for the unlock is blocked.
+     *
+     * @throws IOException
+     *             the trace cannot be written
+     * @throws TmfTraceException
+     *             the trace cannot be opened
+     */
+    @Test
+    public void testRequestWithoutAcquire() throws IOException, TmfTraceException {
+        addEvent(1, REQUEST, OWNER, MUTEX);
+        addEvent(2, REQUEST, WAITER, MUTEX);
+        addEvent(3, UNLOCK, OWNER, MUTEX);
+        addEvent(4, ACQUIRE, WAITER, MUTEX);
+        addEvent(5, ACQUIRE, OWNER, MUTEX);
+        addEvent(6, UNLOCK, WAITER, MUTEX);
+        addEvent(7, UNLOCK, OWNER, MUTEX);
+        TmfGraph graph = buildGraph();
+
+        OsWorker owner = getWorker(OWNER);
+        assertEquals(Arrays.asList(3L, 7L), getTimes(graph, owner));
+        TmfEdge ownerEdge = graph.getNodesOf(owner).get(0).getEdge(EdgeDirection.OUTGOING_HORIZONTAL_EDGE);
+        assertNotNull(ownerEdge);
+        assertEquals(EdgeType.RUNNING, ownerEdge.getType());
+
+        assertEquals(Arrays.asList(2L, 4L, 6L), getTimes(graph, getWorker(WAITER)));
+        assertEquals(1, countEdges(graph, EdgeType.BLOCKED));
+        assertEquals(1, countVerticalEdges(graph));
+    }
+
+    /**
+     * Test two threads with large IDs taking turns on two mutexes, each one
+     * waiting for the other once per turn. Each thread has a single worker
+     * and each wait is a blocked edge.
+     *
+     * @throws IOException
+     *             the trace cannot be written
+     * @throws TmfTraceException
+     *             the trace cannot be opened
+     */
+    @Test
+    public void testLargeTids() throws IOException, TmfTraceException {
+        int nbTurns = 10;
+        int first = 40000;
+        int second = 40001;
+        long ts = 0;
+        for (int i = 0; i < nbTurns; i++) {
+            int owner = (i % 2 == 0) ? first : second;
+            int waiter = (i % 2 == 0) ? second : first;
+            long mutex = (i % 2 == 0) ? MUTEX : OTHER_MUTEX;
+            addEvent(++ts, REQUEST, owner, mutex);
+            addEvent(++ts, ACQUIRE, owner, mutex);
+            addEvent(++ts, REQUEST, waiter, mutex);
+            addEvent(++ts, UNLOCK, owner, mutex);
+            addEvent(++ts, ACQUIRE, waiter, mutex);
+            addEvent(++ts, UNLOCK, waiter, mutex);
+        }
+        TmfGraph graph = buildGraph();
+
+        assertEquals(2, graph.getWorkers().size());
+        assertEquals(nbTurns, countEdges(graph, EdgeType.BLOCKED));
+        assertEquals(nbTurns, countVerticalEdges(graph));
+        // Per turn, the unlock of the owner, and the request, acquisition and unlock of the waiter
+        assertEquals(2 * nbTurns, getTimes(graph, getWorker(first)).size());
+        assertEquals(2 * nbTurns, getTimes(graph, getWorker(second)).size());
+    }
+
+    private void addEvent(long ts, String name, int tid, long mutex) {
+        fEvents.append("<event timestamp=\"" + ts + "\" name=\"" + name + "\">\n");
+        fEvents.append("<field name=\"" + TID_FIELD + "\" value=\"" + tid + "\" type=\"long\" />\n");
+        fEvents.append("<field name=\"mutex\" value=\"" + mutex + "\" type=\"long\" />\n");
+        fEvents.append("</event>\n");
+    }
+
+    /**
+     * Write the events to a trace and build the graph with the handler
+     */
+    private TmfGraph buildGraph() throws IOException, TmfTraceException {
+        File traceFile = File.createTempFile("pthreadLock", ".xml");
+        fTraceFile = traceFile;
+        try (Writer writer = new BufferedWriter(new FileWriter(traceFile))) {
+            writer.write("<trace>\n");
+            writer.write(fEvents.toString());
+            writer.write("</trace>\n");
+        }
+        TmfXmlTraceStub trace = new TmfXmlTraceStubNs() {
+            @Override
+            public Iterable<ITmfEventAspect<?>> getEventAspects() {
+                return Iterables.concat(super.getEventAspects(), Collections.singleton(TID_ASPECT));
+            }
+        };
+        fTrace = trace;
+        trace.initTrace(null, traceFile.getAbsolutePath(), TmfEvent.class);
+
+        OsExecutionGraphProvider provider = new OsExecutionGraphProvider(trace);
+        fProvider = provider;
+        TmfGraph graph = new TmfGraph();
+        provider.assignGraph(graph);
+        PThreadLockGraphHandler handler = new PThreadLockGraphHandler(provider, 0);
+        ITmfContext context = trace.seekEvent(0L);
+        ITmfEvent event = trace.getNext(context);
+        while (event != null) {
+            handler.handleEvent(event);
+            event = trace.getNext(context);
+        }
+        context.dispose();
+        return graph;
+    }
+
+    private OsWorker getWorker(int tid) {
+        OsExecutionGraphProvider provider = fProvider;
+        TmfXmlTraceStub trace = fTrace;
+        assertNotNull(provider);
+        assertNotNull(trace);
+        OsWorker worker = provider.getSystem().findWorker(new HostThread(trace.getHostId(), tid));
+        assertNotNull(worker);
+        return worker;
+    }
+
+    private static List<Long> getTimes(TmfGraph graph, IGraphWorker worker) {
+        List<Long> times = new ArrayList<>();
+        for (TmfVertex vertex : graph.getNodesOf(worker)) {
+            times.add(vertex.getTs());
+        }
+        return times;
+    }
+
+    private static int countEdges(TmfGraph graph, EdgeType type) {
+        int count = 0;
+        for (IGraphWorker worker : graph.getWorkers()) {
+            for (TmfVertex vertex : graph.getNodesOf(worker)) {
+                TmfEdge edge = vertex.getEdge(EdgeDirection.OUTGOING_HORIZONTAL_EDGE);
+                if (edge != null && edge.getType() == type) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int countVerticalEdges(TmfGraph graph) {
+        int count = 0;
+        for (IGraphWorker worker : graph.getWorkers()) {
+            for (TmfVertex vertex : graph.getNodesOf(worker)) {
+                if (vertex.getEdge(EdgeDirection.OUTGOING_VERTICAL_EDGE) != null) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
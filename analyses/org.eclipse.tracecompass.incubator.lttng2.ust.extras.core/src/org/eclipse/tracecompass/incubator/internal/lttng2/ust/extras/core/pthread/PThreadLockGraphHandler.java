@@ -45,6 +45,14 @@ public class PThreadLockGraphHandler extends AbstractTraceEventHandler {
     private static final Pattern REQUEST_LOCK_EVENT = Pattern.compile("lttng_ust_pthread:pthread_.*_lock_req"); //$NON-NLS-1$
     private static final String MUTEX_FIELD = "mutex"; //$NON-NLS-1$
 
+    /** The kinds of events handled, each event name is classified once */
+    private enum LockEventType {
+        UNLOCK,
+        REQUEST,
+        ACQUIRE,
+        OTHER
+    }
+
     private static class LastLockOwner {
         public final Integer fTid;
         public final TmfVertex fVertex;
@@ -62,9 +70,17 @@ public class PThreadLockGraphHandler extends AbstractTraceEventHandler {
     }
 
     private final OsExecutionGraphProvider fProvider;
-    /** tid, mutex ID, vertex of the last lock request */
-    private final Table<Integer, Long, TmfVertex> fLastRequest;
-    /** mutex ID, last lock owner */
+    /** event name, type of the event */
+    private final Map<String, LockEventType> fEventTypes = new HashMap<>();
+    /**
+     * mutex ID, tid, vertex of the pending lock request. A request is removed
+     * when the thread acquires or releases the lock.
+     */
+    private final Table<Long, Integer, TmfVertex> fPendingRequests;
+    /**
+     * mutex ID, last lock owner. It is only kept while other threads are
+     * waiting for the lock, as it is only needed to unblock them.
+     */
     private final Map<Long, LastLockOwner> fLastLockOwner = new HashMap<>();
 
     /**
@@ -78,7 +94,7 @@ public class PThreadLockGraphHandler extends AbstractTraceEventHandler {
     public PThreadLockGraphHandler(OsExecutionGraphProvider provider, int priority) {
         super(priority);
         fProvider = provider;
-        fLastRequest = HashBasedTable.create();
+        fPendingRequests = HashBasedTable.create();
     }
 
     /**
@@ -107,14 +123,31 @@ public class PThreadLockGraphHandler extends AbstractTraceEventHandler {
 
     @Override
     public void handleEvent(ITmfEvent event) {
-        String name = event.getName();
-        if (UNLOCK_EVENT.matcher(name).matches()) {
+        switch (fEventTypes.computeIfAbsent(event.getName(), PThreadLockGraphHandler::getEventType)) {
+        case UNLOCK:
             handleUnlockEvent(event);
-        } else if (REQUEST_LOCK_EVENT.matcher(name).matches()) {
+            break;
+        case REQUEST:
             handleRequestLockEvent(event);
-        } else if (ACQUIRE_LOCK_EVENT.matcher(name).matches()) {
+            break;
+        case ACQUIRE:
             handleAcquireLockEvent(event);
+            break;
+        case OTHER:
+        default:
+            break;
+        }
+    }
+
+    private static LockEventType getEventType(String name) {
+        if (UNLOCK_EVENT.matcher(name).matches()) {
+            return LockEventType.UNLOCK;
+        } else if (REQUEST_LOCK_EVENT.matcher(name).matches()) {
+            return LockEventType.REQUEST;
+        } else if (ACQUIRE_LOCK_EVENT.matcher(name).matches()) {
+            return LockEventType.ACQUIRE;
         }
+        return LockEventType.OTHER;
     }
 
     private void handleAcquireLockEvent(ITmfEvent event) {
@@ -128,15 +161,15 @@ public class PThreadLockGraphHandler extends AbstractTraceEventHandler {
         }
         OsWorker worker = getOrCreateKernelWorker(event, tid);
 
-        // Get the vertex for the last request
-        TmfVertex lastReqVertex = fLastRequest.get(tid, fieldValue);
+        // Get the vertex for the last request, it is not needed anymore
+        TmfVertex lastReqVertex = fPendingRequests.remove(fieldValue, tid);
         if (lastReqVertex == null) {
             return;
         }
 
         // Get the last lock owner
         LastLockOwner lastOwner = fLastLockOwner.get(fieldValue);
-        if (lastOwner != null && lastOwner.fTid != tid && lastOwner.fVertex.getTs() > lastReqVertex.getTs()) {
+        if (lastOwner != null && !lastOwner.fTid.equals(tid) && lastOwner.fVertex.getTs() > lastReqVertex.getTs()) {
             // This thread has been blocked, add the proper vertices and links
             TmfGraph graph = NonNullUtils.checkNotNull(fProvider.getAssignedGraph());
             // First add a vertex at the time of lock request
@@ -162,7 +195,7 @@ public class PThreadLockGraphHandler extends AbstractTraceEventHandler {
         // Don't add a state change to the worker just yet, let's keep the previous state until we know it's being blocked
         TmfVertex vertex = new TmfVertex(event.getTimestamp().toNanos());
         //TmfVertex stateChange = stateChange(worker, event.getTimestamp().toNanos(), EdgeType.RUNNING);
-        fLastRequest.put(tid, fieldValue, vertex);
+        fPendingRequests.put(fieldValue, tid, vertex);
     }
 
     private void handleUnlockEvent(ITmfEvent event) {
@@ -180,7 +213,13 @@ public class PThreadLockGraphHandler extends AbstractTraceEventHandler {
         TmfGraph graph = NonNullUtils.checkNotNull(fProvider.getAssignedGraph());
         TmfVertex vertex = new TmfVertex(event.getTimestamp().toNanos());
         graph.append(worker, vertex, EdgeType.RUNNING);
-        fLastLockOwner.put(fieldValue, new LastLockOwner(tid, vertex));
+        // A request of this thread, if any, is over
+        fPendingRequests.remove(fieldValue, tid);
+        if (fPendingRequests.containsRow(fieldValue)) {
+            fLastLockOwner.put(fieldValue, new LastLockOwner(tid, vertex));
+        } else {
+            fLastLockOwner.remove(fieldValue);
+        }
     }
 
 }
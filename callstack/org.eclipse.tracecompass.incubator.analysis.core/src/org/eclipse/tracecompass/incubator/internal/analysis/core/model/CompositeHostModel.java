@@ -15,17 +15,17 @@ import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.kernel.KernelAnalysisModule;
 import org.eclipse.tracecompass.analysis.os.linux.core.kernel.KernelThreadInformationProvider;
 import org.eclipse.tracecompass.analysis.os.linux.core.model.ProcessStatus;
-import org.eclipse.tracecompass.common.core.NonNullUtils;
 import org.eclipse.tracecompass.incubator.analysis.core.concepts.AggregatedCallSite;
 import org.eclipse.tracecompass.incubator.analysis.core.concepts.ICpuTimeProvider;
 import org.eclipse.tracecompass.incubator.analysis.core.concepts.ISamplingDataProvider;
@@ -33,17 +33,22 @@ import org.eclipse.tracecompass.incubator.analysis.core.concepts.IThreadOnCpuPro
 import org.eclipse.tracecompass.incubator.analysis.core.concepts.ProcessStatusInterval;
 import org.eclipse.tracecompass.incubator.analysis.core.model.IHostModel;
 import org.eclipse.tracecompass.incubator.internal.analysis.core.model.ModelListener.IModuleWrapper;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
 import org.eclipse.tracecompass.tmf.core.analysis.IAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSignalHandler;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSignalManager;
 import org.eclipse.tracecompass.tmf.core.signal.TmfTraceClosedSignal;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceOpenedSignal;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
+import org.eclipse.tracecompass.tmf.core.util.Pair;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.MapMaker;
 
 /**
  * Operating system model based on analyses who implement certain interfaces to
@@ -56,13 +61,25 @@ import com.google.common.collect.Multimap;
  */
 public class CompositeHostModel implements IHostModel {
 
-    private final Multimap<ITmfTrace, Object> fTraceObjectMap = HashMultimap.create();
-    private final Set<ICpuTimeProvider> fCpuTimeProviders = NonNullUtils.checkNotNull(Collections.newSetFromMap(new WeakHashMap<ICpuTimeProvider, Boolean>()));
-    private final Set<IThreadOnCpuProvider> fThreadOnCpuProviders = NonNullUtils.checkNotNull(Collections.newSetFromMap(new WeakHashMap<IThreadOnCpuProvider, Boolean>()));
-    private final Set<ISamplingDataProvider> fSamplingDataProviders = NonNullUtils.checkNotNull(Collections.newSetFromMap(new WeakHashMap<ISamplingDataProvider, Boolean>()));
-    private final Set<KernelAnalysisModule> fKernelModules = NonNullUtils.checkNotNull(Collections.newSetFromMap(new WeakHashMap<KernelAnalysisModule, Boolean>()));
+    private static final int THREAD_CACHE_SIZE = 10000;
+
+    /*
+     * The providers are registered and read concurrently, they are kept in
+     * concurrent maps with weak keys
+     */
+    private final Map<ITmfTrace, Set<Object>> fTraceObjectMap = new ConcurrentHashMap<>();
+    private final Set<ICpuTimeProvider> fCpuTimeProviders = newWeakSet();
+    private final Set<IThreadOnCpuProvider> fThreadOnCpuProviders = newWeakSet();
+    private final Set<ISamplingDataProvider> fSamplingDataProviders = newWeakSet();
+    private final Set<KernelAnalysisModule> fKernelModules = newWeakSet();
     private final String fHostId;
 
+    /* The kernel modules of the traces of the host, reset when traces are opened or closed */
+    private volatile @Nullable List<KernelAnalysisModule> fHostKernelModules = null;
+    /* The process ID of threads at a time, and the executable name of threads */
+    private final Cache<Pair<Integer, Long>, Integer> fProcessIds = Objects.requireNonNull(CacheBuilder.newBuilder().maximumSize(THREAD_CACHE_SIZE).build());
+    private final Cache<Integer, String> fExecNames = Objects.requireNonNull(CacheBuilder.newBuilder().maximumSize(THREAD_CACHE_SIZE).build());
+
     /**
      * Constructor
      *
@@ -74,6 +91,10 @@ public class CompositeHostModel implements IHostModel {
         TmfSignalManager.register(this);
     }
 
+    private static <T> Set<T> newWeakSet() {
+        return Objects.requireNonNull(Collections.newSetFromMap(new MapMaker().weakKeys().<T, Boolean> makeMap()));
+    }
+
     @Override
     public int getThreadOnCpu(int cpu, long t, boolean block) {
         for (IThreadOnCpuProvider provider : fThreadOnCpuProviders) {
@@ -109,19 +130,53 @@ public class CompositeHostModel implements IHostModel {
 
     @Override
     public int getProcessId(int tid, long t) {
-        Integer pid = fKernelModules.stream()
-                .map(module -> KernelThreadInformationProvider.getProcessId(module, tid, t))
-                .filter(Objects::nonNull)
-                .findFirst().orElse(null);
-        return pid == null ? IHostModel.UNKNOWN_TID : (int) pid;
+        Pair<Integer, Long> key = new Pair<>(tid, t);
+        Integer pid = fProcessIds.getIfPresent(key);
+        if (pid != null) {
+            return pid;
+        }
+        for (KernelAnalysisModule module : fKernelModules) {
+            pid = KernelThreadInformationProvider.getProcessId(module, tid, t);
+            if (pid != null) {
+                if (isBuilt(module)) {
+                    fProcessIds.put(key, pid);
+                }
+                return pid;
+            }
+        }
+        return IHostModel.UNKNOWN_TID;
     }
 
     @Override
     public @Nullable String getExecName(int tid, long t) {
-        return fKernelModules.stream()
-                .map(module -> KernelThreadInformationProvider.getExecutableName(module, tid))
-                .filter(Objects::nonNull)
-                .findFirst().orElse(null);
+        // The kernel analysis gives the last executable name of the thread
+        String execName = fExecNames.getIfPresent(tid);
+        if (execName != null) {
+            return execName;
+        }
+        for (KernelAnalysisModule module : fKernelModules) {
+            execName = KernelThreadInformationProvider.getExecutableName(module, tid);
+            if (execName != null) {
+                if (isBuilt(module)) {
+                    fExecNames.put(tid, execName);
+                }
+                return execName;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Only the values from complete state systems are cached, the others may
+     * still change
+     */
+    private static boolean isBuilt(KernelAnalysisModule module) {
+        ITmfStateSystem ss = module.getStateSystem();
+        return ss != null && ss.waitUntilBuilt(0);
+    }
+
+    private void addTraceObject(ITmfTrace trace, Object object) {
+        fTraceObjectMap.computeIfAbsent(trace, t -> ConcurrentHashMap.newKeySet()).add(object);
     }
 
     /**
@@ -144,7 +199,7 @@ public class CompositeHostModel implements IHostModel {
      */
     public void setCpuTimeProvider(ITmfTrace trace, ICpuTimeProvider provider) {
         fCpuTimeProviders.add(provider);
-        fTraceObjectMap.put(trace, provider);
+        addTraceObject(trace, provider);
     }
 
     /**
@@ -167,7 +222,7 @@ public class CompositeHostModel implements IHostModel {
      */
     public void setThreadOnCpuProvider(ITmfTrace trace, IThreadOnCpuProvider provider) {
         fThreadOnCpuProviders.add(provider);
-        fTraceObjectMap.put(trace, provider);
+        addTraceObject(trace, provider);
     }
 
     /**
@@ -190,7 +245,7 @@ public class CompositeHostModel implements IHostModel {
      */
     public void setSamplingDataProvider(ITmfTrace trace, ISamplingDataProvider provider) {
         fSamplingDataProviders.add(provider);
-        fTraceObjectMap.put(trace, provider);
+        addTraceObject(trace, provider);
     }
 
     /**
@@ -203,7 +258,8 @@ public class CompositeHostModel implements IHostModel {
      */
     public void setKernelModule(ITmfTrace trace, KernelAnalysisModule module) {
         fKernelModules.add(module);
-        fTraceObjectMap.put(trace, module);
+        addTraceObject(trace, module);
+        clearThreadCaches();
     }
 
     @Override
@@ -277,14 +333,31 @@ public class CompositeHostModel implements IHostModel {
         if (tid == IHostModel.UNKNOWN_TID) {
             return Objects.requireNonNull(Collections.emptyList());
         }
-        Iterable<KernelAnalysisModule> modules = TmfTraceUtils.getAnalysisModulesOfClass(fHostId, KernelAnalysisModule.class);
-        if (modules.iterator().hasNext()) {
-            KernelAnalysisModule module = modules.iterator().next();
-            return new ThreadStatusIterable(start, end, module, tid, resolution);
+        List<KernelAnalysisModule> modules = getHostKernelModules();
+        if (!modules.isEmpty()) {
+            return new ThreadStatusIterable(start, end, modules.get(0), tid, resolution);
         }
         return Objects.requireNonNull(Collections.emptyList());
     }
 
+    private List<KernelAnalysisModule> getHostKernelModules() {
+        List<KernelAnalysisModule> modules = fHostKernelModules;
+        if (modules == null) {
+            modules = ImmutableList.copyOf(TmfTraceUtils.getAnalysisModulesOfClass(fHostId, KernelAnalysisModule.class));
+            if (modules.isEmpty()) {
+                // The modules may not be created yet, do not keep the result
+                return modules;
+            }
+            fHostKernelModules = modules;
+        }
+        return modules;
+    }
+
+    private void clearThreadCaches() {
+        fProcessIds.invalidateAll();
+        fExecNames.invalidateAll();
+    }
+
     @Override
     public boolean isSamplingDataAvailable() {
         return !fSamplingDataProviders.isEmpty();
@@ -292,8 +365,7 @@ public class CompositeHostModel implements IHostModel {
 
     @Override
     public boolean isThreadStatusAvailable() {
-        Iterable<KernelAnalysisModule> modules = TmfTraceUtils.getAnalysisModulesOfClass(fHostId, KernelAnalysisModule.class);
-        return modules.iterator().hasNext();
+        return !getHostKernelModules().isEmpty();
     }
 
     /**
@@ -305,8 +377,13 @@ public class CompositeHostModel implements IHostModel {
     @TmfSignalHandler
     public void traceClosed(final TmfTraceClosedSignal signal) {
         ITmfTrace trace = signal.getTrace();
+        fHostKernelModules = null;
+        clearThreadCaches();
         TmfTraceManager.getTraceSetWithExperiment(trace).forEach(t -> {
-            Collection<Object> objects = fTraceObjectMap.removeAll(t);
+            Collection<Object> objects = fTraceObjectMap.remove(t);
+            if (objects == null) {
+                return;
+            }
             for (Object object : objects) {
                 if (object instanceof ICpuTimeProvider) {
                     fCpuTimeProviders.remove(object);
@@ -324,6 +401,17 @@ public class CompositeHostModel implements IHostModel {
         });
     }
 
+    /**
+     * Reset the kernel modules of the host, the opened trace may add some
+     *
+     * @param signal
+     *            The trace opened signal
+     */
+    @TmfSignalHandler
+    public void traceOpened(final TmfTraceOpenedSignal signal) {
+        fHostKernelModules = null;
+    }
+
     @Override
     public void dispose() {
         TmfSignalManager.deregister(this);
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2018 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.callstack.core.tests.perf.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.incubator.analysis.core.model.IHostModel;
+import org.eclipse.tracecompass.incubator.analysis.core.model.ModelManager;
+import org.eclipse.tracecompass.incubator.callstack.core.base.ICallStackElement;
+import org.eclipse.tracecompass.incubator.callstack.core.flamechart.CallStack;
+import org.eclipse.tracecompass.incubator.callstack.core.instrumented.ICalledFunction;
+import org.eclipse.tracecompass.incubator.callstack.core.instrumented.statesystem.CallStackHostUtils;
+import org.eclipse.tracecompass.incubator.callstack.core.instrumented.statesystem.CallStackSeries;
+import org.eclipse.tracecompass.incubator.callstack.core.tests.stubs.CallGraphAnalysisStub;
+import org.eclipse.tracecompass.incubator.internal.callstack.core.instrumented.InstrumentedCallStackElement;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Benchmarks the iteration over all the calls of a deep callstack, comparing
+ * the depth-first walk calling
+ * {@link CallStack#getNextFunction(long, int, ICalledFunction, IHostModel, long, long)}
+ * for each call with {@link CallStack#iterateOverCallStack(long, long, java.util.function.Consumer)}.
+ * The 2D queries must also need fewer state system queries than the walk.
+ *
+ * @author Geneviève Bastien
+ */
+public class CallStackIterationBenchmark {
+
+    /**
+     * Test test ID for the callstack iteration benchmarks
+     */
+    public static final String TEST_ID = "org.eclipse.tracecompass.incubator#CallStack#";
+    private static final String TEST_NEXT_FUNCTION = "Callstack walk with getNextFunction";
+    private static final String TEST_ITERATE = "Callstack iteration with 2D queries";
+
+    private static final int LOOP_COUNT = 10;
+    private static final int NB_ROOT_CALLS = 500;
+    private static final int MAX_DEPTH = 64;
+
+    /**
+     * Run the benchmark
+     */
+    @Test
+    public void runBenchmark() {
+        ITmfStateSystemBuilder ssb = StateSystemFactory.newStateSystem(StateHistoryBackendFactory.createInMemoryBackend("Test", 0L));
+        int threadQuark = ssb.getQuarkAbsoluteAndAdd(CallGraphAnalysisStub.PROCESS_PATH, CallGraphAnalysisStub.THREAD_PATH);
+        int callStackQuark = ssb.getQuarkRelativeAndAdd(threadQuark, CallGraphAnalysisStub.CALLSTACK_PATH);
+        int[] quarks = new int[MAX_DEPTH];
+        for (int i = 0; i < MAX_DEPTH; i++) {
+            quarks[i] = ssb.getQuarkRelativeAndAdd(callStackQuark, Integer.toString(i + 1));
+        }
+        ssb.modifyAttribute(0, 100, threadQuark);
+        long time = 1;
+        for (int i = 0; i < NB_ROOT_CALLS; i++) {
+            time = addCall(ssb, quarks, 0, time) + 1;
+        }
+        ssb.closeHistory(time);
+
+        AtomicLong nbQueries = new AtomicLong();
+        ITmfStateSystem ss = countQueries(ssb, nbQueries);
+        CallStackSeries series = new CallStackSeries(ss, ImmutableList.of(new String[] { CallGraphAnalysisStub.PROCESS_PATH }, new String[] { CallGraphAnalysisStub.THREAD_PATH }),
+                0, "", new CallStackHostUtils.TraceHostIdResolver(null), new CallStackSeries.AttributeValueThreadResolver(1)); //$NON-NLS-1$
+        CallStack callStack = getCallStack(series.getRootElements());
+        IHostModel model = ModelManager.getModelFor(""); //$NON-NLS-1$
+        long nbCalls = NB_ROOT_CALLS * (2L * MAX_DEPTH - 1);
+
+        Performance perf = Performance.getDefault();
+        PerformanceMeter nextFunctionPm = Objects.requireNonNull(perf.createPerformanceMeter(TEST_ID + TEST_NEXT_FUNCTION));
+        perf.tagAsSummary(nextFunctionPm, TEST_NEXT_FUNCTION, Dimension.CPU_TIME);
+        PerformanceMeter iteratePm = Objects.requireNonNull(perf.createPerformanceMeter(TEST_ID + TEST_ITERATE));
+        perf.tagAsSummary(iteratePm, TEST_ITERATE, Dimension.CPU_TIME);
+
+        for (int i = 0; i < LOOP_COUNT; i++) {
+            nbQueries.set(0);
+            AtomicLong count = new AtomicLong();
+            nextFunctionPm.start();
+            ICalledFunction function = callStack.getNextFunction(callStack.getStartTime(), 1, null, model, Long.MIN_VALUE, Long.MAX_VALUE);
+            while (function != null) {
+                count.incrementAndGet();
+                walkCallees(callStack, function, 2, model, count);
+                function = callStack.getNextFunction(function.getEnd(), 1, null, model, Long.MIN_VALUE, Long.MAX_VALUE);
+            }
+            nextFunctionPm.stop();
+            assertEquals(nbCalls, count.get());
+            long walkQueries = nbQueries.get();
+
+            nbQueries.set(0);
+            count.set(0);
+            iteratePm.start();
+            callStack.iterateOverCallStack(Long.MIN_VALUE, Long.MAX_VALUE, f -> count.incrementAndGet());
+            iteratePm.stop();
+            assertEquals(nbCalls, count.get());
+            assertTrue(nbQueries.get() < walkQueries);
+        }
+        nextFunctionPm.commit();
+        iteratePm.commit();
+    }
+
+    /**
+     * Add a call with a leaf callee followed by a callee of the next depth,
+     * recursively to the maximal depth
+     *
+     * @return The end time of the call
+     */
+    private static long addCall(ITmfStateSystemBuilder ssb, int[] quarks, int depth, long start) {
+        ssb.modifyAttribute(start, (long) depth, quarks[depth]);
+        long time = start + 1;
+        if (depth + 1 < MAX_DEPTH) {
+            ssb.modifyAttribute(time, (long) (depth + 1000), quarks[depth + 1]);
+            ssb.modifyAttribute(time + 2, (Object) null, quarks[depth + 1]);
+            time = addCall(ssb, quarks, depth + 1, time + 3) + 1;
+        }
+        ssb.modifyAttribute(time, (Object) null, quarks[depth]);
+        return time;
+    }
+
+    private static void walkCallees(CallStack callStack, ICalledFunction function, int depth, IHostModel model, AtomicLong count) {
+        if (depth > callStack.getMaxDepth()) {
+            return;
+        }
+        ICalledFunction callee = callStack.getNextFunction(function.getStart(), depth, function, model, function.getStart(), function.getEnd());
+        while (callee != null) {
+            count.incrementAndGet();
+            walkCallees(callStack, callee, depth + 1, model, count);
+            callee = callStack.getNextFunction(callee.getEnd(), depth, function, model, function.getStart(), function.getEnd());
+        }
+    }
+
+    private static CallStack getCallStack(Iterable<ICallStackElement> elements) {
+        List<ICallStackElement> toVisit = new ArrayList<>();
+        elements.forEach(toVisit::add);
+        while (!toVisit.isEmpty()) {
+            ICallStackElement element = toVisit.remove(0);
+            if (element instanceof InstrumentedCallStackElement && element.isLeaf()) {
+                return ((InstrumentedCallStackElement) element).getCallStack();
+            }
+            toVisit.addAll(element.getChildren());
+        }
+        throw new IllegalStateException("No callstack"); //$NON-NLS-1$
+    }
+
+    /**
+     * Wrap a state system to count the queries made to it
+     */
+    private static ITmfStateSystem countQueries(ITmfStateSystem ss, AtomicLong nbQueries) {
+        Object proxy = Proxy.newProxyInstance(ITmfStateSystem.class.getClassLoader(), new Class<?>[] { ITmfStateSystem.class }, (p, method, args) -> {
+            if (method.getName().startsWith("query")) { //$NON-NLS-1$
+                nbQueries.incrementAndGet();
+            }
+            try {
+                return method.invoke(ss, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+        assertTrue(proxy instanceof ITmfStateSystem);
+        return (ITmfStateSystem) proxy;
+    }
+}
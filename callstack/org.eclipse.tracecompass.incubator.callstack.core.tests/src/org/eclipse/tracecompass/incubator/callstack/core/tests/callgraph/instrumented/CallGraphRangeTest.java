@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2018 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.callstack.core.tests.callgraph.instrumented;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.tracecompass.incubator.analysis.core.concepts.AggregatedCallSite;
+import org.eclipse.tracecompass.incubator.analysis.core.concepts.ICallStackSymbol;
+import org.eclipse.tracecompass.incubator.callstack.core.base.ICallStackElement;
+import org.eclipse.tracecompass.incubator.callstack.core.callgraph.CallGraph;
+import org.eclipse.tracecompass.incubator.callstack.core.tests.stubs.CallGraphAnalysisStub;
+import org.eclipse.tracecompass.incubator.internal.callstack.core.instrumented.callgraph.AggregatedCalledFunction;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test that the callgraphs of time ranges, built from the time slices of the
+ * whole callgraph, are the same as the ones built by walking the callstack.
+ *
+ * @author Geneviève Bastien
+ */
+public class CallGraphRangeTest {
+
+    private static final int NB_CALLS = 500;
+    private static final long[][] RANGES = {
+            { 0, Long.MAX_VALUE },
+            { 0, 100 },
+            { 5, 4000 },
+            { 1234, 5678 },
+            { 999, 1001 },
+            { 2000, 2000 },
+            { 3333, 100000 },
+    };
+
+    private CallGraphAnalysisStub fCga;
+
+    /**
+     * Dispose the callgraph analysis that has been set
+     */
+    @After
+    public void disposeCga() {
+        CallGraphAnalysisStub cga = fCga;
+        if (cga != null) {
+            cga.dispose();
+        }
+    }
+
+    /**
+     * Test the callgraphs of time ranges of a callstack with many first level
+     * calls of different durations, each with a child call
+     */
+    @Test
+    public void testRanges() {
+        ITmfStateSystemBuilder fixture = StateSystemFactory.newStateSystem(StateHistoryBackendFactory.createInMemoryBackend("Test", 0L));
+        int threadQuark = fixture.getQuarkAbsoluteAndAdd(CallGraphAnalysisStub.PROCESS_PATH, CallGraphAnalysisStub.THREAD_PATH);
+        int parentQuark = fixture.getQuarkRelativeAndAdd(threadQuark, CallGraphAnalysisStub.CALLSTACK_PATH);
+        int firstQuark = fixture.getQuarkRelativeAndAdd(parentQuark, "1");
+        int secondQuark = fixture.getQuarkRelativeAndAdd(parentQuark, "2");
+        fixture.updateOngoingState(TmfStateValue.newValueLong(100), threadQuark);
+        long time = 1;
+        for (int i = 0; i < NB_CALLS; i++) {
+            long duration = 3 + (i * 7) % 20;
+            fixture.modifyAttribute(time, (long) (i % 5), firstQuark);
+            fixture.modifyAttribute(time + 1, (long) (10 + i % 3), secondQuark);
+            fixture.modifyAttribute(time + duration - 1, (Object) null, secondQuark);
+            fixture.modifyAttribute(time + duration, (Object) null, firstQuark);
+            time += duration + i % 4;
+        }
+        fixture.closeHistory(time + 1);
+
+        CallGraphAnalysisStub cga = new CallGraphAnalysisStub(fixture);
+        fCga = cga;
+
+        // Walk the callstack for each range before the slices are built
+        List<CallGraph> expected = new ArrayList<>();
+        for (long[] range : RANGES) {
+            expected.add(cga.getCallGraph(range[0], range[1]));
+        }
+
+        assertTrue(cga.build());
+        for (int i = 0; i < RANGES.length; i++) {
+            CallGraph callGraph = cga.getCallGraph(RANGES[i][0], RANGES[i][1]);
+            String range = RANGES[i][0] + "-" + RANGES[i][1];
+            assertEquals(range, expected.get(i).getElements(), callGraph.getElements());
+            for (ICallStackElement element : getLeafElements(expected.get(i).getElements())) {
+                assertCallSitesEqual(range, expected.get(i).getCallingContextTree(element), callGraph.getCallingContextTree(element));
+            }
+        }
+
+        // The whole callgraph is not modified by the ranges
+        CallGraph whole = cga.getCallGraph();
+        for (ICallStackElement element : getLeafElements(whole.getElements())) {
+            assertCallSitesEqual("whole", expected.get(0).getCallingContextTree(element), whole.getCallingContextTree(element));
+        }
+    }
+
+    private static List<ICallStackElement> getLeafElements(Collection<ICallStackElement> elements) {
+        List<ICallStackElement> leaves = new ArrayList<>();
+        for (ICallStackElement element : elements) {
+            if (element.isLeaf()) {
+                leaves.add(element);
+            } else {
+                leaves.addAll(getLeafElements(element.getChildren()));
+            }
+        }
+        return leaves;
+    }
+
+    private static void assertCallSitesEqual(String message, Collection<AggregatedCallSite> expected, Collection<AggregatedCallSite> actual) {
+        assertEquals(message, expected.size(), actual.size());
+        Map<ICallStackSymbol, AggregatedCallSite> actualSites = new HashMap<>();
+        actual.forEach(site -> actualSites.put(site.getSymbol(), site));
+        for (AggregatedCallSite site : expected) {
+            String siteMessage = message + " " + site.getSymbol();
+            AggregatedCalledFunction expectedFunction = (AggregatedCalledFunction) site;
+            AggregatedCalledFunction actualFunction = (AggregatedCalledFunction) actualSites.get(site.getSymbol());
+            assertNotNull(siteMessage, actualFunction);
+            assertEquals(siteMessage, expectedFunction.getDuration(), actualFunction.getDuration());
+            assertEquals(siteMessage, expectedFunction.getSelfTime(), actualFunction.getSelfTime());
+            assertEquals(siteMessage, expectedFunction.getNbCalls(), actualFunction.getNbCalls());
+            assertCallSitesEqual(siteMessage, expectedFunction.getCallees(), actualFunction.getCallees());
+        }
+    }
+}
@@ -15,6 +15,7 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -333,4 +334,52 @@ public class CallStackTest extends CallStackTestBase {
         assertNull(function);
 
     }
+
+    /**
+     * Test the {@link CallStack#iterateOverCallStack(long, long, java.util.function.Consumer)}
+     * method
+     */
+    @Test
+    public void testCallStackIteration() {
+        CallStack element = getElementToTest();
+
+        /**
+         * <pre>Function calls for this element:
+         * (1, 20)
+         *   (2, 6), (9, 13), (15, 19)
+         *             (10, 11)
+         * </pre>
+         */
+        List<ICalledFunction> functions = new ArrayList<>();
+        element.iterateOverCallStack(START_TIME, END_TIME, functions::add);
+        assertEquals(5, functions.size());
+        assertFunction(1, 20, "op5", null, functions.get(0));
+        assertFunction(2, 6, "op2", functions.get(0), functions.get(1));
+        assertFunction(9, 13, "op2", functions.get(0), functions.get(2));
+        assertFunction(10, 11, "op3", functions.get(2), functions.get(3));
+        assertFunction(15, 19, "op2", functions.get(0), functions.get(4));
+        // The first level call's self time is computed with its callees
+        assertEquals(7, functions.get(0).getSelfTime());
+
+        // The functions are clipped to the range
+        functions.clear();
+        element.iterateOverCallStack(5, 12, functions::add);
+        assertEquals(4, functions.size());
+        assertFunction(5, 12, "op5", null, functions.get(0));
+        assertFunction(5, 6, "op2", functions.get(0), functions.get(1));
+        assertFunction(9, 12, "op2", functions.get(0), functions.get(2));
+        assertFunction(10, 11, "op3", functions.get(2), functions.get(3));
+
+        // A range outside the trace range
+        functions.clear();
+        element.iterateOverCallStack(END_TIME + 1, END_TIME + 3, functions::add);
+        assertEquals(0, functions.size());
+    }
+
+    private static void assertFunction(long start, long end, String symbol, ICalledFunction parent, ICalledFunction function) {
+        assertEquals(start, function.getStart());
+        assertEquals(end, function.getEnd());
+        assertEquals(symbol, function.getSymbol());
+        assertTrue(parent == function.getParent());
+    }
 }
@@ -16,6 +16,7 @@ import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.incubator.analysis.core.model.ModelManager;
+import org.eclipse.tracecompass.incubator.callstack.core.callgraph.CallGraph;
 import org.eclipse.tracecompass.incubator.callstack.core.instrumented.IFlameChartProvider;
 import org.eclipse.tracecompass.incubator.callstack.core.instrumented.statesystem.CallStackHostUtils;
 import org.eclipse.tracecompass.incubator.callstack.core.instrumented.statesystem.CallStackSeries;
@@ -135,6 +136,39 @@ public class CallGraphAnalysisStub extends CallGraphAnalysis {
         return iterateOverCallstackSerie(callStackSeries, ModelManager.getModelFor(""), getCallGraph(), 0, Long.MAX_VALUE, new NullProgressMonitor());
     }
 
+    /**
+     * Will build the callgraph of the whole callstack series and its time
+     * slices, as the analysis does when executed
+     *
+     * @return The return value of the build
+     */
+    public boolean build() {
+        CallStackSeries callStackSeries = fCsProvider.getCallStackSeries();
+        if (callStackSeries == null) {
+            throw new NullPointerException();
+        }
+        return buildCallGraph(callStackSeries, ModelManager.getModelFor(""), new NullProgressMonitor());
+    }
+
+    /**
+     * Get the callgraph of a time range
+     *
+     * @param start
+     *            The start time of the range
+     * @param end
+     *            The end time of the range
+     * @return The callgraph of the range
+     */
+    public CallGraph getCallGraph(long start, long end) {
+        CallStackSeries callStackSeries = fCsProvider.getCallStackSeries();
+        if (callStackSeries == null) {
+            throw new NullPointerException();
+        }
+        CallGraph callGraph = new CallGraph();
+        iterateOverCallstackSerie(callStackSeries, ModelManager.getModelFor(""), callGraph, start, end, new NullProgressMonitor());
+        return callGraph;
+    }
+
     @Override
     public void dispose() {
         super.dispose();
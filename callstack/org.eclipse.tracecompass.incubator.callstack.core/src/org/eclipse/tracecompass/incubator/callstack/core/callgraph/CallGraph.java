@@ -10,22 +10,27 @@
 package org.eclipse.tracecompass.incubator.callstack.core.callgraph;
 
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.tracecompass.incubator.analysis.core.concepts.AggregatedCallSite;
+import org.eclipse.tracecompass.incubator.analysis.core.concepts.ICallStackSymbol;
 import org.eclipse.tracecompass.incubator.callstack.core.base.ICallStackElement;
 import org.eclipse.tracecompass.incubator.callstack.core.base.ICallStackGroupDescriptor;
 
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Multimap;
 
 /**
  * Represents a callgraph, ie the aggregation of callsites per elements.
  *
  * TODO: Have an interface and keep the add* method internal
  *
+ * Callsites can be added concurrently, the callsites of an element are merged
+ * atomically per symbol.
+ *
  * @author Geneviève Bastien
  */
 public class CallGraph {
@@ -36,8 +41,8 @@ public class CallGraph {
      */
     public static final CallGraph EMPTY_GRAPH = new CallGraph();
 
-    private Set<ICallStackElement> fRootElements = new HashSet<>();
-    private final Multimap<ICallStackElement, AggregatedCallSite> fCcts = HashMultimap.create();
+    private final Set<ICallStackElement> fRootElements = ConcurrentHashMap.newKeySet();
+    private final Map<ICallStackElement, Map<ICallStackSymbol, AggregatedCallSite>> fCcts = new ConcurrentHashMap<>();
 
     /**
      * Constructor
@@ -57,7 +62,11 @@ public class CallGraph {
      * @return The aggregated data for the first level of the callgraph
      */
     public Collection<AggregatedCallSite> getCallingContextTree(ICallStackElement element) {
-        return fCcts.get(element);
+        Map<ICallStackSymbol, AggregatedCallSite> callsites = fCcts.get(element);
+        if (callsites == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableCollection(callsites.values());
     }
 
     /**
@@ -75,14 +84,27 @@ public class CallGraph {
         }
         fRootElements.add(root);
         // Add the callsite to the appropriate group
-        Collection<AggregatedCallSite> callsites = fCcts.get(dstGroup);
-        for (AggregatedCallSite site : callsites) {
-            if (site.getSymbol().equals(callsite.getSymbol())) {
-                site.merge(callsite);
-                return;
+        Map<ICallStackSymbol, AggregatedCallSite> callsites = fCcts.computeIfAbsent(dstGroup, group -> new ConcurrentHashMap<>());
+        callsites.merge(callsite.getSymbol(), callsite, (site, other) -> {
+            site.merge(other);
+            return site;
+        });
+    }
+
+    /**
+     * Add all the callsites of another callgraph to this one. The other
+     * callgraph should not be used afterwards, as its callsites may be added
+     * as is to this one.
+     *
+     * @param other
+     *            The callgraph to merge in this one
+     */
+    public void merge(CallGraph other) {
+        for (Entry<ICallStackElement, Map<ICallStackSymbol, AggregatedCallSite>> entry : other.fCcts.entrySet()) {
+            for (AggregatedCallSite callsite : entry.getValue().values()) {
+                addAggregatedCallSite(entry.getKey(), callsite);
             }
         }
-        fCcts.put(dstGroup, callsite);
     }
 
     /**
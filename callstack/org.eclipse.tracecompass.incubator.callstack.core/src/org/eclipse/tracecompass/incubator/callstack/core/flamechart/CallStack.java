@@ -12,7 +12,10 @@ package org.eclipse.tracecompass.incubator.callstack.core.flamechart;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.Consumer;
 
@@ -47,6 +50,12 @@ import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
  */
 public class CallStack {
 
+    /**
+     * Number of time windows in which to cut a callstack iteration, so that
+     * only the intervals of a window are kept in memory
+     */
+    private static final int QUERY_WINDOW_COUNT = 64;
+
     private final @Nullable ICallStackElement fSymbolKeyElement;
     private final @Nullable IThreadIdProvider fThreadIdProvider;
     private final ITmfStateSystem fStateSystem;
@@ -288,7 +297,13 @@ public class CallStack {
     }
 
     /**
-     * Iterate over the callstack in a depth-first manner
+     * Iterate over the callstack in a depth-first manner. The intervals of all
+     * depths are read together with 2D queries on consecutive time windows,
+     * then sorted by start time to rebuild the calls, so each function is
+     * consumed after its parent, which is set as the parent of the function.
+     * Like {@link #getNextFunction(long, int, ICalledFunction, IHostModel, long, long)},
+     * the functions are clipped to the requested time range, and calls without
+     * a caller at the previous depth are ignored.
      *
      * @param startTime
      *            The start time of the iteration
@@ -298,7 +313,50 @@ public class CallStack {
      *            The consumer to consume the function calls
      */
     public void iterateOverCallStack(long startTime, long endTime, Consumer<ICalledFunction> consumer) {
-        // TODO Do we need this? If so, implement me!
+        long start = Math.max(fStateSystem.getStartTime(), startTime);
+        long end = Math.min(fStateSystem.getCurrentEndTime(), endTime);
+        if (start > end || fQuarks.isEmpty()) {
+            return;
+        }
+        Map<Integer, Integer> depths = new HashMap<>();
+        for (int i = 0; i < fQuarks.size(); i++) {
+            depths.put(fQuarks.get(i), i);
+        }
+        IHostModel model = ModelManager.getModelFor(getHostId(start));
+        // The function currently opened at each depth
+        @Nullable ICalledFunction[] stack = new @Nullable ICalledFunction[fQuarks.size()];
+        long window = (end - start) / QUERY_WINDOW_COUNT + 1;
+        try {
+            for (long windowStart = start; windowStart <= end; windowStart += window) {
+                long windowEnd = Math.min(end, windowStart + window - 1);
+                List<ITmfStateInterval> intervals = new ArrayList<>();
+                for (ITmfStateInterval interval : fStateSystem.query2D(fQuarks, windowStart, windowEnd)) {
+                    // Intervals starting before the window were read with the previous one
+                    if (interval.getValue() != null && interval.getStartTime() < endTime && (interval.getStartTime() >= windowStart || windowStart == start)) {
+                        intervals.add(interval);
+                    }
+                }
+                intervals.sort(Comparator.comparingLong(ITmfStateInterval::getStartTime)
+                        .thenComparingInt(interval -> Objects.requireNonNull(depths.get(interval.getAttribute()))));
+                for (ITmfStateInterval interval : intervals) {
+                    int depth = Objects.requireNonNull(depths.get(interval.getAttribute()));
+                    long functionStart = Math.max(startTime, interval.getStartTime());
+                    ICalledFunction parent = (depth == 0 ? null : stack[depth - 1]);
+                    if (depth > 0 && (parent == null || parent.getEnd() <= functionStart)) {
+                        continue;
+                    }
+                    ICalledFunction function = CalledFunctionFactory.create(functionStart, Math.min(endTime, interval.getEndTime() + 1), interval.getValue(),
+                            getSymbolKeyAt(interval.getStartTime()), getThreadId(interval.getStartTime()), parent, model);
+                    stack[depth] = function;
+                    for (int i = depth + 1; i < stack.length && stack[i] != null; i++) {
+                        stack[i] = null;
+                    }
+                    consumer.accept(function);
+                }
+            }
+        } catch (StateSystemDisposedException | TimeRangeException e) {
+            // Stop the iteration
+        }
     }
 
     /**
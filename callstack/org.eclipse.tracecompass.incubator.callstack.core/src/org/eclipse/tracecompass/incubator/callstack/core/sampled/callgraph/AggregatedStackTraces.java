@@ -34,6 +34,19 @@ public class AggregatedStackTraces extends AggregatedCallSite {
         super(symbol);
     }
 
+    /**
+     * Constructor with the number of times the frame pointer was hit
+     *
+     * @param symbol
+     *            The symbol for this frame pointer
+     * @param count
+     *            The number of times it was present in a stack
+     */
+    public AggregatedStackTraces(ICallStackSymbol symbol, int count) {
+        super(symbol);
+        fCount = count;
+    }
+
     private AggregatedStackTraces(AggregatedStackTraces toCopy) {
         super(toCopy);
         fCount = toCopy.fCount;
@@ -43,6 +43,28 @@ import org.eclipse.tracecompass.tmf.core.util.Pair;
  */
 public abstract class ProfilingCallGraphAnalysisModule extends TmfAbstractAnalysisModule implements ICallGraphProvider, IEventCallStackProvider {
 
+    /**
+     * Aggregates the stack traces of the events of a request in a callgraph
+     */
+    protected interface IStackTraceAggregator {
+
+        /**
+         * Add the stack trace of an event, if it has one
+         *
+         * @param event
+         *            The trace event to process
+         */
+        void addEvent(ITmfEvent event);
+
+        /**
+         * Called once all the events of the request have been added, to
+         * complete the callgraph
+         */
+        default void done() {
+            // Nothing to do by default
+        }
+    }
+
     private @Nullable ITmfEventRequest fRequest;
     private final Set<ICallStackElement> fRootElements = new HashSet<>();
 
@@ -130,6 +152,25 @@ public abstract class ProfilingCallGraphAnalysisModule extends TmfAbstractAnalys
      */
     protected abstract @Nullable Pair<ICallStackElement, AggregatedCallSite> getProfiledStackTrace(ITmfEvent event);
 
+    /**
+     * Create the aggregator of the stack traces of a request. By default, the
+     * callsite returned by {@link #getProfiledStackTrace(ITmfEvent)} for each
+     * event is added to the callgraph.
+     *
+     * @param callgraph
+     *            The callgraph to fill
+     * @return The aggregator
+     */
+    protected IStackTraceAggregator createAggregator(CallGraph callgraph) {
+        return event -> {
+            Pair<ICallStackElement, AggregatedCallSite> perfCallSite = getProfiledStackTrace(event);
+            if (perfCallSite == null) {
+                return;
+            }
+            callgraph.addAggregatedCallSite(perfCallSite.getFirst(), perfCallSite.getSecond());
+        };
+    }
+
     @Override
     protected boolean executeAnalysis(@NonNull IProgressMonitor monitor) throws TmfAnalysisException {
         CallGraph callgraph = executeForRange(TmfTimeRange.ETERNITY);
@@ -153,7 +194,8 @@ public abstract class ProfilingCallGraphAnalysisModule extends TmfAbstractAnalys
 
         try {
             CallGraph callGraph = new CallGraph();
-            request = new ProfilingEventRequest(trace, callGraph, range);
+            IStackTraceAggregator aggregator = createAggregator(callGraph);
+            request = new ProfilingEventRequest(trace, aggregator, range);
             fRequest = request;
             trace.sendRequest(request);
 
@@ -161,6 +203,7 @@ public abstract class ProfilingCallGraphAnalysisModule extends TmfAbstractAnalys
             if (!request.isCompleted()) {
                 return null;
             }
+            aggregator.done();
             return callGraph;
         } catch (InterruptedException e) {
             Activator.getInstance().logError("Request interrupted", e); //$NON-NLS-1$
@@ -179,33 +222,33 @@ public abstract class ProfilingCallGraphAnalysisModule extends TmfAbstractAnalys
     private class ProfilingEventRequest extends TmfEventRequest {
 
         private final ITmfTrace fTrace;
-        private final CallGraph fCallGraph;
+        private final IStackTraceAggregator fAggregator;
 
         /**
          * Constructor
          *
          * @param trace
          *            The trace
-         * @param callgraph
-         *            The callgraph to fill
+         * @param aggregator
+         *            The aggregator of the stack traces
          * @param range
          *            The time range of this request
          */
-        public ProfilingEventRequest(ITmfTrace trace, CallGraph callgraph, TmfTimeRange range) {
+        public ProfilingEventRequest(ITmfTrace trace, IStackTraceAggregator aggregator, TmfTimeRange range) {
             super(TmfEvent.class,
                     range,
                     0,
                     ITmfEventRequest.ALL_DATA,
                     ITmfEventRequest.ExecutionType.BACKGROUND);
             fTrace = trace;
-            fCallGraph = callgraph;
+            fAggregator = aggregator;
         }
 
         @Override
         public void handleData(final ITmfEvent event) {
             super.handleData(event);
             if (event.getTrace() == fTrace) {
-                processEvent(event);
+                fAggregator.addEvent(event);
             } else if (fTrace instanceof TmfExperiment) {
                 /*
                  * If the request is for an experiment, check if the event is
@@ -213,19 +256,11 @@ public abstract class ProfilingCallGraphAnalysisModule extends TmfAbstractAnalys
                  */
                 for (ITmfTrace childTrace : ((TmfExperiment) fTrace).getTraces()) {
                     if (childTrace == event.getTrace()) {
-                        processEvent(event);
+                        fAggregator.addEvent(event);
                     }
                 }
             }
         }
-
-        private void processEvent(ITmfEvent event) {
-            Pair<ICallStackElement, AggregatedCallSite> perfCallSite = getProfiledStackTrace(event);
-            if (perfCallSite == null) {
-                return;
-            }
-            fCallGraph.addAggregatedCallSite(perfCallSite.getFirst(), perfCallSite.getSecond());
-        }
     }
 
 }
@@ -135,7 +135,7 @@ public class AggregatedCalledFunction extends AggregatedCallSite {
      * @param aggregatedChild
      *            The aggregated data of the callee
      */
-    public synchronized void addChild(AbstractCalledFunction child, AggregatedCalledFunction aggregatedChild) {
+    public void addChild(AbstractCalledFunction child, AggregatedCalledFunction aggregatedChild) {
         // Update the child's statistics with itself
         fSelfTime -= aggregatedChild.getDuration();
         aggregatedChild.addFunctionCall(child);
@@ -151,7 +151,7 @@ public class AggregatedCalledFunction extends AggregatedCallSite {
      * @param function
      *            The function that was called
      */
-    public synchronized void addFunctionCall(AbstractCalledFunction function) {
+    public void addFunctionCall(AbstractCalledFunction function) {
         // FIXME: Aren't the statistics enough? Do we really need duration, self
         // time and cpu time here?
         addToDuration(function.getLength());
@@ -13,6 +13,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
@@ -39,8 +45,11 @@ import org.eclipse.tracecompass.tmf.core.analysis.TmfAbstractAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.util.Pair;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 /**
  * Call stack analysis used to create a segment for each call function from an
@@ -67,12 +76,27 @@ public class CallGraphAnalysis extends TmfAbstractAnalysisModule implements ICal
      */
     public static final String ID = "org.eclipse.tracecompass.incubator.callstack.callgraph"; //$NON-NLS-1$
 
+    /**
+     * Number of time slices in which the first level calls of each element are
+     * pre-aggregated
+     */
+    private static final int BUCKET_COUNT = 128;
+
+    /**
+     * Number of time range call graphs to keep
+     */
+    private static final int RANGE_CACHE_SIZE = 16;
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
 
     private final IFlameChartProvider fCsProvider;
     private final CallGraph fCallGraph = new CallGraph();
+    private final Map<ICallStackElement, CallGraphBuckets> fBuckets = new ConcurrentHashMap<>();
+    private final Cache<Pair<Long, Long>, CallGraph> fRangeCache = Objects.requireNonNull(CacheBuilder.newBuilder()
+            .maximumSize(RANGE_CACHE_SIZE)
+            .build());
 
     /**
      * Constructor
@@ -114,10 +138,11 @@ public class CallGraphAnalysis extends TmfAbstractAnalysisModule implements ICal
 
     @Override
     protected boolean executeAnalysis(@Nullable IProgressMonitor monitor) {
-        return executeForRange(fCallGraph, TmfTimeRange.ETERNITY, monitor);
+        fBuckets.clear();
+        return executeForRange(fCallGraph, TmfTimeRange.ETERNITY, true, monitor);
     }
 
-    private boolean executeForRange(CallGraph callgraph, TmfTimeRange range, @Nullable IProgressMonitor monitor) {
+    private boolean executeForRange(CallGraph callgraph, TmfTimeRange range, boolean build, @Nullable IProgressMonitor monitor) {
         ITmfTrace trace = getTrace();
         if (monitor == null || trace == null) {
             return false;
@@ -142,7 +167,8 @@ public class CallGraphAnalysis extends TmfAbstractAnalysisModule implements ICal
                 long time1 = range.getEndTime().toNanos();
                 long start = Math.min(time0, time1);
                 long end = Math.max(time0, time1);
-                if (!iterateOverCallstackSerie(callstack, model, callgraph, start, end, monitor)) {
+                boolean success = build ? buildCallGraph(callstack, model, monitor) : iterateOverCallstackSerie(callstack, model, callgraph, start, end, monitor);
+                if (!success) {
                     return false;
                 }
             }
@@ -172,29 +198,111 @@ public class CallGraphAnalysis extends TmfAbstractAnalysisModule implements ICal
      */
     @VisibleForTesting
     protected boolean iterateOverCallstackSerie(CallStackSeries callstackSerie, IHostModel model, CallGraph callgraph, long start, long end, IProgressMonitor monitor) {
+        return iterateOverCallstackSerie(callstackSerie, model, callgraph, start, end, null, monitor);
+    }
+
+    /**
+     * Build the callgraph of the whole callstack series, in the callgraph of
+     * this analysis. The first level calls of each element are also aggregated
+     * per time slice, so that the callgraphs of time ranges can then reuse the
+     * slices they completely cover.
+     *
+     * @param callstackSerie
+     *            The series to iterate over
+     * @param model
+     *            The model of the host on which this callstack was running
+     * @param monitor
+     *            A progress monitor
+     * @return Whether the series was successfully iterated over
+     */
+    @VisibleForTesting
+    protected boolean buildCallGraph(CallStackSeries callstackSerie, IHostModel model, IProgressMonitor monitor) {
+        fRangeCache.invalidateAll();
+        boolean success = iterateOverCallstackSerie(callstackSerie, model, fCallGraph, Long.MIN_VALUE, Long.MAX_VALUE, fBuckets, monitor);
+        fRangeCache.invalidateAll();
+        return success;
+    }
+
+    private boolean iterateOverCallstackSerie(CallStackSeries callstackSerie, IHostModel model, CallGraph callgraph, long start, long end, @Nullable Map<ICallStackElement, CallGraphBuckets> toFill, IProgressMonitor monitor) {
         // The root elements are the same as the one from the callstack series
         Collection<ICallStackElement> rootElements = callstackSerie.getRootElements();
+        List<ICallStackElement> leafElements = new ArrayList<>();
         for (ICallStackElement element : rootElements) {
             if (monitor.isCanceled()) {
                 return false;
             }
-            iterateOverElement(element, model, callgraph, start, end, monitor);
+            addLeafElements(element, leafElements);
+        }
+        /*
+         * The callstacks of the leaf elements are independent, build their
+         * callgraphs in parallel and merge them two by two
+         */
+        CallGraph leavesCallgraph = ForkJoinPool.commonPool().invoke(new LeafElementsTask(leafElements, 0, leafElements.size(), model, start, end, toFill, monitor));
+        if (monitor.isCanceled()) {
+            return false;
         }
+        callgraph.merge(leavesCallgraph);
         return true;
     }
 
-    private void iterateOverElement(ICallStackElement element, IHostModel model, CallGraph callgraph, long start, long end, IProgressMonitor monitor) {
+    private static void addLeafElements(ICallStackElement element, List<ICallStackElement> leafElements) {
         // Iterator over the children of the element until we reach the leaves
         if (element.isLeaf()) {
-            iterateOverLeafElement(element, model, callgraph, start, end, monitor);
+            leafElements.add(element);
             return;
         }
         for (ICallStackElement child : element.getChildren()) {
-            iterateOverElement(child, model, callgraph, start, end, monitor);
+            addLeafElements(child, leafElements);
+        }
+    }
+
+    /**
+     * Builds the callgraph of a range of leaf elements, by splitting the range
+     * until there is one element per task
+     */
+    private class LeafElementsTask extends RecursiveTask<CallGraph> {
+
+        private static final long serialVersionUID = -3529064328717613493L;
+
+        private final List<ICallStackElement> fElements;
+        private final int fFrom;
+        private final int fTo;
+        private final IHostModel fModel;
+        private final long fStart;
+        private final long fEnd;
+        private final @Nullable Map<ICallStackElement, CallGraphBuckets> fToFill;
+        private final IProgressMonitor fMonitor;
+
+        public LeafElementsTask(List<ICallStackElement> elements, int from, int to, IHostModel model, long start, long end, @Nullable Map<ICallStackElement, CallGraphBuckets> toFill, IProgressMonitor monitor) {
+            fElements = elements;
+            fFrom = from;
+            fTo = to;
+            fModel = model;
+            fStart = start;
+            fEnd = end;
+            fToFill = toFill;
+            fMonitor = monitor;
+        }
+
+        @Override
+        protected CallGraph compute() {
+            if (fTo - fFrom > 1) {
+                int middle = (fFrom + fTo) >>> 1;
+                LeafElementsTask first = new LeafElementsTask(fElements, fFrom, middle, fModel, fStart, fEnd, fToFill, fMonitor);
+                first.fork();
+                CallGraph callgraph = new LeafElementsTask(fElements, middle, fTo, fModel, fStart, fEnd, fToFill, fMonitor).compute();
+                callgraph.merge(first.join());
+                return callgraph;
+            }
+            CallGraph callgraph = new CallGraph();
+            if (fTo > fFrom && !fMonitor.isCanceled()) {
+                iterateOverLeafElement(fElements.get(fFrom), fModel, callgraph, fStart, fEnd, fToFill, fMonitor);
+            }
+            return callgraph;
         }
     }
 
-    private void iterateOverLeafElement(ICallStackElement element, IHostModel model, CallGraph callgraph, long start, long end, IProgressMonitor monitor) {
+    private void iterateOverLeafElement(ICallStackElement element, IHostModel model, CallGraph callgraph, long start, long end, @Nullable Map<ICallStackElement, CallGraphBuckets> toFill, IProgressMonitor monitor) {
         if (!(element instanceof InstrumentedCallStackElement)) {
             throw new IllegalStateException("Call Graph Analysis: The element does not have the right type"); //$NON-NLS-1$
         }
@@ -202,50 +310,145 @@ public class CallGraphAnalysis extends TmfAbstractAnalysisModule implements ICal
         CallStack callStack = insElement.getCallStack();
 
         // If there is no children for this callstack, just return
-        if (callStack.getMaxDepth() == 0) {
+        if (callStack.getMaxDepth() == 0 || monitor.isCanceled()) {
             return;
         }
-        // Start with the first function
-        AbstractCalledFunction nextFunction = (AbstractCalledFunction) callStack.getNextFunction(callStack.getStartTime(), 1, null, model, start, end);
-        while (nextFunction != null) {
-            AggregatedCalledFunction aggregatedChild = createCallSite(CallStackSymbolFactory.createSymbol(nextFunction.getSymbol(), element, nextFunction.getStart()));
-            iterateOverCallstack(element, callStack, nextFunction, 2, aggregatedChild, model, start, end, monitor);
-            aggregatedChild.addFunctionCall(nextFunction);
-            // Add the kernel statuses if available
-            Iterable<ProcessStatusInterval> kernelStatuses = callStack.getKernelStatuses(nextFunction, Collections.emptyList());
-            for (ProcessStatusInterval status : kernelStatuses) {
-                aggregatedChild.addKernelStatus(status);
-            }
-            callgraph.addAggregatedCallSite(element, aggregatedChild);
-            nextFunction = (AbstractCalledFunction) callStack.getNextFunction(nextFunction.getEnd(), 1, null, model, start, end);
+
+        if (toFill != null) {
+            CallGraphBuckets fill = new CallGraphBuckets(callStack.getStartTime(), callStack.getEndTime(), BUCKET_COUNT);
+            aggregateCalls(element, callStack, model, callgraph, start, end, fill);
+            toFill.put(element, fill);
+            return;
+        }
+        CallGraphBuckets buckets = fBuckets.get(element);
+        int first = (buckets == null ? 0 : buckets.getFirstCovered(start));
+        int last = (buckets == null ? -1 : buckets.getLastCovered(first, end));
+        if (buckets == null || first > last) {
+            aggregateCalls(element, callStack, model, callgraph, start, end, null);
+            return;
+        }
+
+        /*
+         * Merge the time slices completely covered by the range and only walk
+         * the calls starting before or after them. The walks stop and resume
+         * at the end of the first level calls overlapping the slices' bounds.
+         */
+        buckets.mergeInto(callgraph, element, first, last);
+        long coveredStart = buckets.getSliceStart(first);
+        long coveredEnd = buckets.getSliceStart(last + 1);
+        ICalledFunction function = callStack.getNextFunction(coveredStart - 1, 1, null, model, Long.MIN_VALUE, Long.MAX_VALUE);
+        long headEnd = (function != null && function.getStart() < coveredStart) ? Math.max(coveredStart, function.getEnd()) : coveredStart;
+        aggregateCalls(element, callStack, model, callgraph, start, Math.min(end, headEnd), null);
+        function = callStack.getNextFunction(coveredEnd, 1, null, model, Long.MIN_VALUE, Long.MAX_VALUE);
+        long tailStart = (function != null && function.getStart() < coveredEnd) ? function.getEnd() : coveredEnd;
+        if (tailStart < end) {
+            aggregateCalls(element, callStack, model, callgraph, tailStart, end, null);
         }
     }
 
-    private void iterateOverCallstack(ICallStackElement element, CallStack callstack, ICalledFunction function, int nextLevel, AggregatedCalledFunction aggregatedCall, IHostModel model, long start, long end, IProgressMonitor monitor) {
-        if (nextLevel > callstack.getMaxDepth()) {
-            return;
+    private void aggregateCalls(ICallStackElement element, CallStack callStack, IHostModel model, CallGraph callgraph, long start, long end, @Nullable CallGraphBuckets fill) {
+        CallAggregator aggregator = new CallAggregator(element, callStack, model, callgraph, fill);
+        callStack.iterateOverCallStack(start, end, aggregator);
+        aggregator.closeAll();
+    }
+
+    /**
+     * Aggregates the functions of a callstack, received in depth-first order.
+     * The functions whose callees were all received are added to their
+     * caller's aggregated data, or to the callgraph for the first level
+     * functions.
+     */
+    private class CallAggregator implements Consumer<ICalledFunction> {
+
+        private final ICallStackElement fElement;
+        private final CallStack fCallStack;
+        private final IHostModel fModel;
+        private final CallGraph fCallgraph;
+        private final @Nullable CallGraphBuckets fFill;
+        private final @Nullable AbstractCalledFunction[] fFunctions;
+        private final @Nullable AggregatedCalledFunction[] fAggregated;
+        private final long[] fLastSampleEnds;
+        private int fTop = -1;
+
+        public CallAggregator(ICallStackElement element, CallStack callStack, IHostModel model, CallGraph callgraph, @Nullable CallGraphBuckets fill) {
+            fElement = element;
+            fCallStack = callStack;
+            fModel = model;
+            fCallgraph = callgraph;
+            fFill = fill;
+            fFunctions = new AbstractCalledFunction[callStack.getMaxDepth()];
+            fAggregated = new AggregatedCalledFunction[callStack.getMaxDepth()];
+            fLastSampleEnds = new long[callStack.getMaxDepth()];
         }
-        int threadId = function.getThreadId();
-        long lastSampleEnd = start;
-
-        AbstractCalledFunction nextFunction = (AbstractCalledFunction) callstack.getNextFunction(function.getStart(), nextLevel, function, model, Math.max(function.getStart(), start), Math.min(function.getEnd(), end));
-        while (nextFunction != null) {
-            // Add sampling data of the time between next function and beginning of next
-            // level
-            if (threadId > 0) {
-                Collection<AggregatedCallSite> samplingData = model.getSamplingData(threadId, lastSampleEnd, nextFunction.getStart());
+
+        @Override
+        public void accept(ICalledFunction calledFunction) {
+            AbstractCalledFunction function = (AbstractCalledFunction) calledFunction;
+            ICalledFunction parent = function.getParent();
+            while (fTop >= 0 && fFunctions[fTop] != parent) {
+                close();
+            }
+            if (parent != null && fTop < 0) {
+                // The caller was not received, the function cannot be placed
+                return;
+            }
+            if (fTop >= 0) {
+                // Add sampling data of the time between the previous call and this one
+                int threadId = parent == null ? -1 : parent.getThreadId();
+                AggregatedCalledFunction aggregatedParent = Objects.requireNonNull(fAggregated[fTop]);
+                if (threadId > 0) {
+                    Collection<AggregatedCallSite> samplingData = fModel.getSamplingData(threadId, fLastSampleEnds[fTop], function.getStart());
+                    samplingData.forEach(aggregatedParent::addCallee);
+                    fLastSampleEnds[fTop] = function.getEnd();
+                }
+            }
+            fTop++;
+            fFunctions[fTop] = function;
+            fAggregated[fTop] = createCallSite(CallStackSymbolFactory.createSymbol(function.getSymbol(), fElement, function.getStart()));
+            fLastSampleEnds[fTop] = function.getStart();
+        }
+
+        /**
+         * Close the deepest function, all its callees have been received
+         */
+        private void close() {
+            int depth = fTop;
+            AbstractCalledFunction function = Objects.requireNonNull(fFunctions[depth]);
+            AggregatedCalledFunction aggregatedCall = Objects.requireNonNull(fAggregated[depth]);
+            fFunctions[depth] = null;
+            fAggregated[depth] = null;
+            fTop--;
+            // Get the sampling to the end of the function
+            int threadId = function.getThreadId();
+            if (depth + 1 < fCallStack.getMaxDepth() && threadId > 0) {
+                Collection<AggregatedCallSite> samplingData = fModel.getSamplingData(threadId, fLastSampleEnds[depth], function.getEnd() - fLastSampleEnds[depth]);
                 samplingData.forEach(aggregatedCall::addCallee);
-                lastSampleEnd = nextFunction.getEnd();
             }
-            AggregatedCalledFunction aggregatedChild = createCallSite(CallStackSymbolFactory.createSymbol(nextFunction.getSymbol(), element, nextFunction.getStart()));
-            iterateOverCallstack(element, callstack, nextFunction, nextLevel + 1, aggregatedChild, model, start, end, monitor);
-            aggregatedCall.addChild(nextFunction, aggregatedChild);
-            nextFunction = (AbstractCalledFunction) callstack.getNextFunction(nextFunction.getEnd(), nextLevel, function, model, Math.max(function.getStart(), start), Math.min(function.getEnd(), end));
+            if (depth > 0) {
+                Objects.requireNonNull(fAggregated[depth - 1]).addChild(function, aggregatedCall);
+                return;
+            }
+            aggregatedCall.addFunctionCall(function);
+            // Add the kernel statuses if available
+            Iterable<ProcessStatusInterval> kernelStatuses = fCallStack.getKernelStatuses(function, Collections.emptyList());
+            for (ProcessStatusInterval status : kernelStatuses) {
+                aggregatedCall.addKernelStatus(status);
+            }
+            CallGraphBuckets fill = fFill;
+            if (fill != null) {
+                // The callgraph merges in the first callsite added, keep a copy
+                fill.add(fElement, aggregatedCall.copyOf(), function.getStart(), function.getEnd());
+            }
+            fCallgraph.addAggregatedCallSite(fElement, aggregatedCall);
         }
-        // Get the sampling to the end of the function
-        if (threadId > 0) {
-            Collection<AggregatedCallSite> samplingData = model.getSamplingData(threadId, lastSampleEnd, function.getEnd() - lastSampleEnd);
-            samplingData.forEach(aggregatedCall::addCallee);
+
+        /**
+         * Close all the functions still opened at the end of the iteration
+         */
+        public void closeAll() {
+            while (fTop >= 0) {
+                close();
+            }
         }
     }
 
@@ -271,10 +474,24 @@ public class CallGraphAnalysis extends TmfAbstractAnalysisModule implements ICal
         // Do nothing
     }
 
+    @Override
+    public void dispose() {
+        super.dispose();
+        fBuckets.clear();
+        fRangeCache.invalidateAll();
+    }
+
     @Override
     public CallGraph getCallGraph(ITmfTimestamp start, ITmfTimestamp end) {
-        CallGraph cg = new CallGraph();
-        executeForRange(cg, new TmfTimeRange(start, end), new NullProgressMonitor());
+        Pair<Long, Long> range = new Pair<>(Math.min(start.toNanos(), end.toNanos()), Math.max(start.toNanos(), end.toNanos()));
+        CallGraph cg = fRangeCache.getIfPresent(range);
+        if (cg != null) {
+            return cg;
+        }
+        cg = new CallGraph();
+        if (executeForRange(cg, new TmfTimeRange(start, end), false, new NullProgressMonitor())) {
+            fRangeCache.put(range, cg);
+        }
         return cg;
     }
 
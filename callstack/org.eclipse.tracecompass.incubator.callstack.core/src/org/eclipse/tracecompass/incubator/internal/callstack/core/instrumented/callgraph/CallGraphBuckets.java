@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2018 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.callstack.core.instrumented.callgraph;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.analysis.core.concepts.AggregatedCallSite;
+import org.eclipse.tracecompass.incubator.callstack.core.base.ICallStackElement;
+import org.eclipse.tracecompass.incubator.callstack.core.callgraph.CallGraph;
+
+/**
+ * The call graph of one callstack element, cut in time slices of the same
+ * duration. Each slice aggregates the first level calls that start in it, with
+ * their whole sub-tree, and keeps the latest end time of those calls, so that
+ * the slices completely inside a time range can be merged as is instead of
+ * walking the callstack again.
+ *
+ * @author Geneviève Bastien
+ */
+final class CallGraphBuckets {
+
+    private final long fStart;
+    private final long fWidth;
+    private final @Nullable CallGraph[] fGraphs;
+    private final long[] fEnds;
+
+    /**
+     * Constructor
+     *
+     * @param start
+     *            The start time of the callstack
+     * @param end
+     *            The end time of the callstack
+     * @param count
+     *            The number of slices
+     */
+    public CallGraphBuckets(long start, long end, int count) {
+        fStart = start;
+        fWidth = Math.max(1, (end - start) / count + 1);
+        fGraphs = new CallGraph[count];
+        fEnds = new long[count];
+        Arrays.fill(fEnds, Long.MIN_VALUE);
+    }
+
+    /**
+     * Add a first level call to the slice it starts in
+     *
+     * @param element
+     *            The element of the call
+     * @param callsite
+     *            The aggregated call, it is kept by this object and should not
+     *            be modified afterwards
+     * @param start
+     *            The start time of the call
+     * @param end
+     *            The end time of the call
+     */
+    public void add(ICallStackElement element, AggregatedCallSite callsite, long start, long end) {
+        int index = (int) Math.max(0, Math.min(fGraphs.length - 1, (start - fStart) / fWidth));
+        CallGraph graph = fGraphs[index];
+        if (graph == null) {
+            graph = new CallGraph();
+            fGraphs[index] = graph;
+        }
+        graph.addAggregatedCallSite(element, callsite);
+        fEnds[index] = Math.max(fEnds[index], end);
+    }
+
+    /**
+     * Get the first slice starting strictly after a time. A call starting at
+     * that slice's start is thus never clipped by a range starting at the
+     * time.
+     *
+     * @param start
+     *            The start of the time range
+     * @return The index of the slice, may be the number of slices
+     */
+    public int getFirstCovered(long start) {
+        if (start < fStart) {
+            return 0;
+        }
+        return (int) Math.min(fGraphs.length, (start - fStart) / fWidth + 1);
+    }
+
+    /**
+     * Get the last slice of a run of slices whose calls all end before a time
+     *
+     * @param first
+     *            The first slice of the run
+     * @param end
+     *            The end of the time range
+     * @return The index of the last slice, or <code>first - 1</code> if even
+     *         the first slice is not covered
+     */
+    public int getLastCovered(int first, long end) {
+        int last = first - 1;
+        while (last + 1 < fGraphs.length && getSliceStart(last + 2) <= end && fEnds[last + 1] <= end) {
+            last++;
+        }
+        return last;
+    }
+
+    /**
+     * Get the start time of a slice
+     *
+     * @param index
+     *            The index of the slice, the number of slices gives the end
+     *            time of the last one
+     * @return The start time
+     */
+    public long getSliceStart(int index) {
+        return fStart + index * fWidth;
+    }
+
+    /**
+     * Merge copies of the calls of a run of slices in a call graph
+     *
+     * @param callgraph
+     *            The call graph to fill
+     * @param element
+     *            The element of the calls
+     * @param first
+     *            The first slice
+     * @param last
+     *            The last slice, inclusive
+     */
+    public void mergeInto(CallGraph callgraph, ICallStackElement element, int first, int last) {
+        for (int i = first; i <= last; i++) {
+            CallGraph graph = fGraphs[i];
+            if (graph == null) {
+                continue;
+            }
+            for (AggregatedCallSite callsite : graph.getCallingContextTree(element)) {
+                callgraph.addAggregatedCallSite(element, callsite.copyOf());
+            }
+        }
+    }
+}
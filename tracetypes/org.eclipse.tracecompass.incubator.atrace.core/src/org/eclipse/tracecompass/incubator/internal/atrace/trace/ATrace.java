@@ -11,7 +11,6 @@ package org.eclipse.tracecompass.incubator.internal.atrace.trace;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -138,27 +137,25 @@ public class ATrace extends GenericFtrace {
         if (NULL_LOCATION.equals(location)) {
             return context;
         }
-        RandomAccessFile fileInput = getFileInput();
         try {
+            long lineStartOffset = 0;
             if (location == null) {
-                fileInput.seek(0);
-                long lineStartOffset = fileInput.getFilePointer();
-                String line = fileInput.readLine();
+                CharSequence line = readLine(lineStartOffset);
 
                 // Look for process dump matches
                 Matcher processDumpMatcher = IAtraceConstants.PROCESS_DUMP_PATTERN.matcher(line);
                 Matcher atraceMatcher = IGenericFtraceConstants.FTRACE_PATTERN.matcher(line);
 
                 while (!atraceMatcher.matches() && !processDumpMatcher.matches()) {
-                    lineStartOffset = fileInput.getFilePointer();
-                    line = fileInput.readLine();
+                    lineStartOffset = getNextLineOffset();
+                    line = readLine(lineStartOffset);
                     atraceMatcher = IGenericFtraceConstants.FTRACE_PATTERN.matcher(line);
                     processDumpMatcher = IAtraceConstants.PROCESS_DUMP_PATTERN.matcher(line);
                 }
                 if (processDumpMatcher.matches()) {
                     // Look for the first atrace event to extract timestamp
                     while (!atraceMatcher.matches()) {
-                        line = fileInput.readLine();
+                        line = readLine(getNextLineOffset());
                         atraceMatcher = IGenericFtraceConstants.FTRACE_PATTERN.matcher(line);
                     }
                     GenericFtraceField field = GenericFtraceField.parseLine(line);
@@ -166,12 +163,10 @@ public class ATrace extends GenericFtrace {
                         startingTimestamp = field.getTs();
                     }
                 }
-
-                fileInput.seek(lineStartOffset);
             } else if (location.getLocationInfo() instanceof Long) {
-                fileInput.seek((Long) location.getLocationInfo());
+                lineStartOffset = (Long) location.getLocationInfo();
             }
-            context.setLocation(new TmfLongLocation(fileInput.getFilePointer()));
+            context.setLocation(new TmfLongLocation(lineStartOffset));
             context.setRank(0);
         } catch (NullPointerException | IOException e) {
             Activator.getInstance().logError("Error seeking event." + getPath(), e); //$NON-NLS-1$
@@ -196,19 +191,15 @@ public class ATrace extends GenericFtrace {
             }
             super.parseEvent(context);
             if (locationInfo != null) {
-                RandomAccessFile fileInput = getFileInput();
                 try {
-                    if (!locationInfo.equals(fileInput.getFilePointer())) {
-                        fileInput.seek(locationInfo);
-                    }
-                    String nextLine = fileInput.readLine();
+                    CharSequence nextLine = readLine(locationInfo);
                     // TODO: Check here if matches the following. If it does,
                     // skip line.
                     // - USER PID PPID ..
                     // - html tags </script> <script class="trace-data"
                     // type="application/text">
                     // - Starts with #
-                    SystraceProcessDumpEventField field = SystraceProcessDumpEventField.parseLine(nextLine);
+                    SystraceProcessDumpEventField field = SystraceProcessDumpEventField.parseLine(nextLine == null ? null : nextLine.toString());
                     if (field != null) {
                         return new SystraceProcessDumpEvent(this, context.getRank(), TmfTimestamp.fromNanos(startingTimestamp), field);
                     }
@@ -220,53 +211,53 @@ public class ATrace extends GenericFtrace {
         return event;
     }
 
+    private long getNextLineOffset() {
+        return (Long) getCurrentLocation().getLocationInfo();
+    }
+
     @Override
-    protected @Nullable GenericFtraceField parseLine(String line) {
-        if (line == null || line.isEmpty()) {
+    protected @Nullable GenericFtraceField parseLine(CharSequence line) {
+        if (line.length() == 0) {
             return null;
         }
 
         GenericFtraceField field = GenericFtraceField.parseLine(line);
 
-        if (field != null) {
+        /*
+         * User spaces event that permit us to create the call stack are
+         * inserted in the raw trace. Those events are named
+         * 'tracing_mark_write'. The format in the "function" column is not
+         * like any other ftrace events, so we must handle them separately.
+         */
+        if (field != null && field.getName().equals(ATRACE_TRACEEVENT_EVENT)) {
             Matcher matcher = IGenericFtraceConstants.FTRACE_PATTERN.matcher(line);
             if (matcher.matches()) {
+                String data = matcher.group(IGenericFtraceConstants.FTRACE_DATA_GROUP);
+                Matcher atraceMatcher = IAtraceConstants.TRACE_EVENT_PATTERN.matcher(data);
+                if (atraceMatcher.matches()) {
+                    String phase = atraceMatcher.group(TRACE_EVENT_PHASE_GROUP);
+                    String pname = matcher.group(IGenericFtraceConstants.FTRACE_COMM_GROUP);
+                    String content = atraceMatcher.group(TRACE_EVENT_CONTENT_GROUP);
+                    Integer tid = field.getTid();
+                    Integer pid = field.getPid();
 
-                /*
-                 * User spaces event that permit us to create the call stack are
-                 * inserted in the raw trace. Those events are named
-                 * 'tracing_mark_write'. The format in the "function" column is
-                 * not like any other ftrace events, so we must handle them
-                 * separately.
-                 */
-                if (field.getName().equals(ATRACE_TRACEEVENT_EVENT)) {
-                    String data = matcher.group(IGenericFtraceConstants.FTRACE_DATA_GROUP);
-                    Matcher atraceMatcher = IAtraceConstants.TRACE_EVENT_PATTERN.matcher(data);
-                    if (atraceMatcher.matches()) {
-                        String phase = atraceMatcher.group(TRACE_EVENT_PHASE_GROUP);
-                        String pname = matcher.group(IGenericFtraceConstants.FTRACE_COMM_GROUP);
-                        String content = atraceMatcher.group(TRACE_EVENT_CONTENT_GROUP);
-                        Integer tid = field.getTid();
-                        Integer pid = field.getPid();
-
-                        Map<@NonNull String, @NonNull Object> argmap = new HashMap<>();
-                        if (phase != null) {
-                            argmap.put(ITraceEventConstants.PHASE, phase);
-                        }
-                        if (tid != null) {
-                            argmap.put(ITraceEventConstants.TID, tid);
-                        }
-                        if (pid != null) {
-                            argmap.put("pid", pid); //$NON-NLS-1$
-                        }
-                        if (pname != null) {
-                            argmap.put("tname", pname); //$NON-NLS-1$
-                        }
-                        if (content != null) {
-                            field.setName(content);
-                        }
-                        field.setContent(argmap);
+                    Map<@NonNull String, @NonNull Object> argmap = new HashMap<>();
+                    if (phase != null) {
+                        argmap.put(ITraceEventConstants.PHASE, phase);
+                    }
+                    if (tid != null) {
+                        argmap.put(ITraceEventConstants.TID, tid);
+                    }
+                    if (pid != null) {
+                        argmap.put("pid", pid); //$NON-NLS-1$
+                    }
+                    if (pname != null) {
+                        argmap.put("tname", pname); //$NON-NLS-1$
+                    }
+                    if (content != null) {
+                        field.setName(content);
                     }
+                    field.setContent(argmap);
                 }
             }
         }
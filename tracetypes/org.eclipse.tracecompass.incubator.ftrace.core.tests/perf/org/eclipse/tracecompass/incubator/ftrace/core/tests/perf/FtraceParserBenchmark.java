@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.ftrace.core.tests.perf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.incubator.internal.ftrace.core.event.GenericFtraceField;
+import org.eclipse.tracecompass.incubator.internal.ftrace.core.event.IGenericFtraceConstants;
+import org.eclipse.tracecompass.incubator.internal.ftrace.core.trace.MappedLineReader;
+import org.eclipse.tracecompass.tmf.core.io.BufferedRandomAccessFile;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Benchmark the ftrace text parsers on a synthetic trace.txt. Compares the
+ * mapped line reader with the scanner to the buffered file with the regular
+ * expressions.
+ *
+ * @author Matthew Khouzam
+ */
+public class FtraceParserBenchmark {
+
+    private static final String TEST_ID = "org.eclipse.tracecompass.incubator#Ftrace#";
+    private static final String TEST_PARSE = "Parse lines (%s)";
+
+    private static final long SEED = 473892745896L;
+    private static final int LINE_COUNT = 1000000;
+    private static final int LOOP_COUNT = 5;
+
+    private static final Pattern KEYVAL_PATTERN = Pattern.compile("(?<key>[^\\s=\\[\\],]+)(=|:)\\s*(?<val>[^\\s=\\[\\],]+)");
+    private static final double SECONDS_TO_NANO = 1000000000.0;
+
+    private static File fFile;
+
+    /**
+     * Generate the trace file
+     *
+     * @throws IOException
+     *             the file cannot be written
+     */
+    @BeforeClass
+    public static void writeTrace() throws IOException {
+        fFile = File.createTempFile("trace", ".txt");
+        Random random = new Random(SEED);
+        long ts = 149136514000L;
+        try (BufferedWriter writer = Files.newBufferedWriter(fFile.toPath(), StandardCharsets.ISO_8859_1)) {
+            writer.write("# tracer: nop\n#\n");
+            for (int i = 0; i < LINE_COUNT; i++) {
+                ts += random.nextInt(100000);
+                int cpu = random.nextInt(8);
+                int pid = random.nextInt(32768);
+                String thread = String.format("%16s-%-5d [%03d] d..3 %5d.%06d: ", "kworker/" + cpu + ":" + random.nextInt(4), pid, cpu, ts / 1000000000L, (ts / 1000) % 1000000);
+                switch (random.nextInt(3)) {
+                case 0:
+                    writer.write(thread + "sched_switch: prev_comm=kworker/" + cpu + " prev_pid=" + pid + " prev_prio=120 prev_state=S ==> next_comm=swapper/" + cpu + " next_pid=0 next_prio=120\n");
+                    break;
+                case 1:
+                    writer.write(thread + "sched_wakeup: comm=daemonsu pid=" + random.nextInt(32768) + " prio=120 success=1 target_cpu=00" + cpu + '\n');
+                    break;
+                default:
+                    writer.write(thread + "sys_recvmsg(fd: " + random.nextInt(64) + ", msg: 7ffe3bd38070, flags: 0x" + Integer.toHexString(random.nextInt()) + ")\n");
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete the trace file
+     */
+    @AfterClass
+    public static void deleteTrace() {
+        fFile.delete();
+    }
+
+    /**
+     * Benchmark the mapped line reader and the scanner
+     *
+     * @throws IOException
+     *             the file cannot be read
+     */
+    @Test
+    public void testScanner() throws IOException {
+        Performance perf = Performance.getDefault();
+        String testName = String.format(TEST_PARSE, "Scanner");
+        PerformanceMeter pm = Objects.requireNonNull(perf.createPerformanceMeter(TEST_ID + testName));
+        perf.tagAsSummary(pm, testName, Dimension.CPU_TIME);
+
+        for (int i = 0; i < LOOP_COUNT; i++) {
+            pm.start();
+            int count = 0;
+            try (MappedLineReader reader = new MappedLineReader(fFile)) {
+                long offset = 0;
+                CharSequence line = reader.readLine(offset);
+                while (line != null) {
+                    if (GenericFtraceField.parseLine(line) != null) {
+                        count++;
+                    }
+                    offset = reader.getNextOffset();
+                    line = reader.readLine(offset);
+                }
+            }
+            pm.stop();
+            assertEquals(LINE_COUNT, count);
+        }
+        pm.commit();
+    }
+
+    /**
+     * Benchmark the buffered file and the regular expressions, like the trace
+     * used to parse the lines
+     *
+     * @throws IOException
+     *             the file cannot be read
+     */
+    @Test
+    public void testRegex() throws IOException {
+        Performance perf = Performance.getDefault();
+        String testName = String.format(TEST_PARSE, "Regex");
+        PerformanceMeter pm = Objects.requireNonNull(perf.createPerformanceMeter(TEST_ID + testName));
+        perf.tagAsSummary(pm, testName, Dimension.CPU_TIME);
+
+        for (int i = 0; i < LOOP_COUNT; i++) {
+            pm.start();
+            int count = 0;
+            try (BufferedRandomAccessFile file = new BufferedRandomAccessFile(fFile, "r")) {
+                String line = file.readLine();
+                while (line != null) {
+                    if (parseRegex(line) != null) {
+                        count++;
+                    }
+                    line = file.readLine();
+                }
+            }
+            pm.stop();
+            assertEquals(LINE_COUNT, count);
+        }
+        pm.commit();
+    }
+
+    private static Map<String, Object> parseRegex(String line) {
+        Matcher matcher = IGenericFtraceConstants.FTRACE_PATTERN.matcher(line);
+        if (!matcher.matches()) {
+            return null;
+        }
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("pid", Integer.parseInt(matcher.group(IGenericFtraceConstants.FTRACE_PID_GROUP)));
+        fields.put("cpu", Integer.parseInt(matcher.group(IGenericFtraceConstants.FTRACE_CPU_GROUP)));
+        fields.put("ts", (long) (Double.parseDouble(matcher.group(IGenericFtraceConstants.FTRACE_TIMESTAMP_GROUP)) * SECONDS_TO_NANO));
+        fields.put("name", matcher.group(IGenericFtraceConstants.FTRACE_NAME_GROUP).trim());
+        Matcher keyvalMatcher = KEYVAL_PATTERN.matcher(matcher.group(IGenericFtraceConstants.FTRACE_DATA_GROUP));
+        while (keyvalMatcher.find()) {
+            String value = keyvalMatcher.group("val");
+            fields.put(keyvalMatcher.group("key"), value.chars().allMatch(Character::isDigit) ? (Object) Long.parseUnsignedLong(value) : value);
+        }
+        return fields;
+    }
+}
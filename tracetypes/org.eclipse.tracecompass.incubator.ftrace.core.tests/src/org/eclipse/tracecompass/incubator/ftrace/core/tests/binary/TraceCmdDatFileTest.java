@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.ftrace.core.tests.binary;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.eclipse.tracecompass.incubator.internal.ftrace.core.binary.TraceCmdCpuStream;
+import org.eclipse.tracecompass.incubator.internal.ftrace.core.binary.TraceCmdDatFile;
+import org.eclipse.tracecompass.incubator.internal.ftrace.core.binary.TraceCmdEventFormat;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the trace-cmd data file reader on a generated file, with two CPUs:
+ *
+ * <pre>
+ * CPU 0, page 0: wakeup at 1005, time extend, wakeup at 1010 + (3 << 27)
+ * CPU 0, page 1: wakeup at 5000000000
+ * CPU 1, page 0: padding, wakeup at 2000
+ * </pre>
+ *
+ * @author Matthew Khouzam
+ */
+public class TraceCmdDatFileTest {
+
+    private static final int PAGE_SIZE = 4096;
+    private static final int DATA_OFFSET = 16;
+    private static final int WAKEUP_ID = 10;
+    private static final int WAKEUP_LENGTH = 40;
+
+    private static final String HEADER_PAGE = "\tfield: u64 timestamp;\toffset:0;\tsize:8;\tsigned:0;\n" +
+            "\tfield: local_t commit;\toffset:8;\tsize:8;\tsigned:1;\n" +
+            "\tfield: int overwrite;\toffset:8;\tsize:1;\tsigned:1;\n" +
+            "\tfield: char data;\toffset:16;\tsize:4080;\tsigned:1;\n";
+    private static final String WAKEUP_FORMAT = "name: sched_wakeup\nID: " + WAKEUP_ID + "\nformat:\n" +
+            "\tfield:unsigned short common_type;\toffset:0;\tsize:2;\tsigned:0;\n" +
+            "\tfield:unsigned char common_flags;\toffset:2;\tsize:1;\tsigned:0;\n" +
+            "\tfield:unsigned char common_preempt_count;\toffset:3;\tsize:1;\tsigned:0;\n" +
+            "\tfield:int common_pid;\toffset:4;\tsize:4;\tsigned:1;\n\n" +
+            "\tfield:char comm[16];\toffset:8;\tsize:16;\tsigned:1;\n" +
+            "\tfield:pid_t pid;\toffset:24;\tsize:4;\tsigned:1;\n" +
+            "\tfield:__data_loc char[] name;\toffset:28;\tsize:4;\tsigned:1;\n\n" +
+            "print fmt: \"comm=%s pid=%d\", REC->comm, REC->pid\n";
+
+    private static final long EXTENDED_TIME = 1010L + (3L << 27);
+
+    private static File fFile;
+
+    /**
+     * Write the data file
+     *
+     * @throws IOException
+     *             the file cannot be written
+     */
+    @BeforeClass
+    public static void writeFile() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[] { 0x17, 0x08, 0x44, 't', 'r', 'a', 'c', 'i', 'n', 'g' });
+        putCString(header, "6");
+        header.put((byte) 0);
+        header.put((byte) 8);
+        header.putInt(PAGE_SIZE);
+        putCString(header, "header_page");
+        putSection(header, HEADER_PAGE);
+        putCString(header, "header_event");
+        putSection(header, "# compressed entry header\n");
+        // No ftrace formats, one system with one event
+        header.putInt(0);
+        header.putInt(1);
+        putCString(header, "sched");
+        header.putInt(1);
+        putSection(header, WAKEUP_FORMAT);
+        // kallsyms, printk, cmdlines
+        header.putInt(0);
+        header.putInt(0);
+        header.putLong(0);
+        header.putInt(2);
+        putCString(header, "options  ");
+        header.putShort((short) 8);
+        header.putInt(4);
+        header.putInt(42);
+        header.putShort((short) 0);
+        putCString(header, "flyrecord");
+        header.putLong(PAGE_SIZE);
+        header.putLong(2 * PAGE_SIZE);
+        header.putLong(3 * PAGE_SIZE);
+        header.putLong(PAGE_SIZE);
+
+        ByteBuffer cpu0 = ByteBuffer.allocate(2 * PAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        cpu0.putLong(1000);
+        cpu0.position(DATA_OFFSET);
+        putWakeup(cpu0, 5, 100, "first");
+        // Time extend of 3 << 27 + 2
+        cpu0.putInt(30 | (2 << 5));
+        cpu0.putInt(3);
+        putWakeup(cpu0, 3, 101, "second");
+        cpu0.putLong(8, cpu0.position() - DATA_OFFSET);
+        cpu0.position(PAGE_SIZE);
+        cpu0.putLong(5000000000L);
+        cpu0.position(PAGE_SIZE + DATA_OFFSET);
+        putWakeup(cpu0, 0, 102, "third");
+        cpu0.putLong(PAGE_SIZE + 8, cpu0.position() - PAGE_SIZE - DATA_OFFSET);
+
+        ByteBuffer cpu1 = ByteBuffer.allocate(PAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        cpu1.putLong(1990);
+        cpu1.position(DATA_OFFSET);
+        // Discarded event, a padding of 8 bytes
+        cpu1.putInt(29 | (1 << 5));
+        cpu1.putInt(8);
+        cpu1.putInt(0);
+        putWakeup(cpu1, 10, 200, "other");
+        cpu1.putLong(8, cpu1.position() - DATA_OFFSET);
+
+        fFile = File.createTempFile("trace", ".dat");
+        byte[] content = new byte[4 * PAGE_SIZE];
+        System.arraycopy(header.array(), 0, content, 0, header.position());
+        System.arraycopy(cpu0.array(), 0, content, PAGE_SIZE, 2 * PAGE_SIZE);
+        System.arraycopy(cpu1.array(), 0, content, 3 * PAGE_SIZE, PAGE_SIZE);
+        Files.write(fFile.toPath(), content);
+    }
+
+    /**
+     * Delete the data file
+     */
+    @AfterClass
+    public static void deleteFile() {
+        fFile.delete();
+    }
+
+    private static void putCString(ByteBuffer buffer, String string) {
+        buffer.put(string.getBytes(StandardCharsets.UTF_8));
+        buffer.put((byte) 0);
+    }
+
+    private static void putSection(ByteBuffer buffer, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        buffer.putLong(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static void putWakeup(ByteBuffer buffer, int delta, int pid, String name) {
+        buffer.putInt((WAKEUP_LENGTH / 4) | (delta << 5));
+        int start = buffer.position();
+        buffer.putShort((short) WAKEUP_ID);
+        buffer.put((byte) 0);
+        buffer.put((byte) 0);
+        buffer.putInt(pid);
+        byte[] comm = Arrays.copyOf(("comm" + pid).getBytes(StandardCharsets.UTF_8), 16);
+        buffer.put(comm);
+        buffer.putInt(pid + 1);
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(32 | ((nameBytes.length + 1) << 16));
+        buffer.put(Arrays.copyOf(nameBytes, WAKEUP_LENGTH - 32));
+        assertEquals(start + WAKEUP_LENGTH, buffer.position());
+    }
+
+    /**
+     * Test the headers
+     *
+     * @throws IOException
+     *             the file cannot be read
+     */
+    @Test
+    public void testHeaders() throws IOException {
+        assertTrue(TraceCmdDatFile.hasMagic(fFile));
+        try (TraceCmdDatFile datFile = new TraceCmdDatFile(fFile)) {
+            assertEquals("6", datFile.getVersion());
+            assertEquals(PAGE_SIZE, datFile.getPageSize());
+            assertEquals(8, datFile.getLongSize());
+            assertEquals(2, datFile.getCpuCount());
+            assertEquals(2, datFile.getPageCount(0));
+            assertEquals(1, datFile.getPageCount(1));
+            TraceCmdEventFormat format = datFile.getFormat(WAKEUP_ID);
+            assertNotNull(format);
+            assertEquals("sched_wakeup", format.getName());
+            assertEquals("sched", format.getSystem());
+            TraceCmdEventFormat.Field name = format.getField("name");
+            assertNotNull(name);
+            assertTrue(name.isDataLoc());
+            assertTrue(name.isString());
+        }
+    }
+
+    /**
+     * Test reading the events of a CPU and decoding them
+     *
+     * @throws IOException
+     *             the file cannot be read
+     */
+    @Test
+    public void testRead() throws IOException {
+        try (TraceCmdDatFile datFile = new TraceCmdDatFile(fFile)) {
+            TraceCmdCpuStream stream = new TraceCmdCpuStream(datFile, 0);
+            assertTrue(stream.next());
+            assertEquals(1005, stream.getTime());
+            assertEquals(DATA_OFFSET, stream.getPosition());
+            TraceCmdEventFormat format = datFile.getFormat(stream.getBuffer().getShort(stream.getDataOffset()));
+            assertNotNull(format);
+            assertEquals(Integer.valueOf(100), format.getPid(stream.getBuffer(), stream.getDataOffset(), stream.getDataLength()));
+            Map<String, Object> fields = format.decode(stream.getBuffer(), stream.getDataOffset(), stream.getDataLength());
+            assertArrayEquals(new String[] { "comm", "pid", "name" }, fields.keySet().toArray());
+            assertEquals("comm100", fields.get("comm"));
+            assertEquals(101L, fields.get("pid"));
+            assertEquals("first", fields.get("name"));
+
+            assertTrue(stream.next());
+            assertEquals(EXTENDED_TIME, stream.getTime());
+            long secondPosition = stream.getPosition();
+            assertTrue(stream.next());
+            assertEquals(5000000000L, stream.getTime());
+            assertEquals(PAGE_SIZE + DATA_OFFSET, stream.getPosition());
+            assertFalse(stream.next());
+            assertEquals(2 * PAGE_SIZE, stream.getPosition());
+
+            stream = new TraceCmdCpuStream(datFile, 1);
+            assertTrue(stream.next());
+            assertEquals(2000, stream.getTime());
+            assertFalse(stream.next());
+
+            /* Seeking an event re-reads the time extend before it */
+            stream = new TraceCmdCpuStream(datFile, 0);
+            assertTrue(stream.seek(secondPosition));
+            assertEquals(EXTENDED_TIME, stream.getTime());
+        }
+    }
+
+    /**
+     * Test seeking by time
+     *
+     * @throws IOException
+     *             the file cannot be read
+     */
+    @Test
+    public void testSeekTime() throws IOException {
+        try (TraceCmdDatFile datFile = new TraceCmdDatFile(fFile)) {
+            TraceCmdCpuStream stream = new TraceCmdCpuStream(datFile, 0);
+            assertTrue(stream.seekTime(0));
+            assertEquals(1005, stream.getTime());
+            assertTrue(stream.seekTime(1006));
+            assertEquals(EXTENDED_TIME, stream.getTime());
+            assertTrue(stream.seekTime(EXTENDED_TIME + 1));
+            assertEquals(5000000000L, stream.getTime());
+            assertFalse(stream.seekTime(5000000001L));
+            assertEquals(2 * PAGE_SIZE, stream.getPosition());
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.ftrace.core.tests.binary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.tracecompass.incubator.internal.ftrace.core.binary.TraceCmdLocation;
+import org.eclipse.tracecompass.incubator.internal.ftrace.core.trace.BinaryFTrace;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the serialization of the {@link TraceCmdLocation} of a trace with more
+ * CPUs than there are bytes in a checkpoint for their positions. Every CPU has
+ * two pages, the first event of the second page is at the time of the last
+ * event of the first page, and the CPUs have events at the same times.
+ *
+ * @author Matthew Khouzam
+ */
+public class TraceCmdLocationTest {
+
+    /* More than ITmfCheckpoint.MAX_SERIALIZE_SIZE / Long.BYTES */
+    private static final int NB_CPUS = 150;
+    private static final int PAGE_SIZE = 4096;
+    private static final int DATA_OFFSET = 16;
+    private static final int WAKEUP_ID = 10;
+    private static final int WAKEUP_LENGTH = 32;
+
+    private static final String HEADER_PAGE = "\tfield: u64 timestamp;\toffset:0;\tsize:8;\tsigned:0;\n" +
+            "\tfield: local_t commit;\toffset:8;\tsize:8;\tsigned:1;\n" +
+            "\tfield: char data;\toffset:16;\tsize:4080;\tsigned:1;\n";
+    private static final String WAKEUP_FORMAT = "name: sched_wakeup\nID: " + WAKEUP_ID + "\nformat:\n" +
+            "\tfield:unsigned short common_type;\toffset:0;\tsize:2;\tsigned:0;\n" +
+            "\tfield:unsigned char common_flags;\toffset:2;\tsize:1;\tsigned:0;\n" +
+            "\tfield:unsigned char common_preempt_count;\toffset:3;\tsize:1;\tsigned:0;\n" +
+            "\tfield:int common_pid;\toffset:4;\tsize:4;\tsigned:1;\n\n" +
+            "\tfield:char comm[16];\toffset:8;\tsize:16;\tsigned:1;\n" +
+            "\tfield:pid_t pid;\toffset:24;\tsize:4;\tsigned:1;\n\n" +
+            "print fmt: \"comm=%s pid=%d\", REC->comm, REC->pid\n";
+
+    private static File fFile;
+
+    /**
+     * Write the data file
+     *
+     * @throws IOException
+     *             the file cannot be written
+     */
+    @BeforeClass
+    public static void writeFile() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[] { 0x17, 0x08, 0x44, 't', 'r', 'a', 'c', 'i', 'n', 'g' });
+        putCString(header, "6");
+        header.put((byte) 0);
+        header.put((byte) 8);
+        header.putInt(PAGE_SIZE);
+        putCString(header, "header_page");
+        putSection(header, HEADER_PAGE);
+        putCString(header, "header_event");
+        putSection(header, "# compressed entry header\n");
+        // No ftrace formats, one system with one event
+        header.putInt(0);
+        header.putInt(1);
+        putCString(header, "sched");
+        header.putInt(1);
+        putSection(header, WAKEUP_FORMAT);
+        // kallsyms, printk, cmdlines
+        header.putInt(0);
+        header.putInt(0);
+        header.putLong(0);
+        header.putInt(NB_CPUS);
+        putCString(header, "flyrecord");
+
+        byte[] content = new byte[(1 + 2 * NB_CPUS) * PAGE_SIZE];
+        for (int cpu = 0; cpu < NB_CPUS; cpu++) {
+            int offset = (1 + 2 * cpu) * PAGE_SIZE;
+            header.putLong(offset);
+            header.putLong(2 * PAGE_SIZE);
+
+            long time = 1000 + cpu % 3;
+            ByteBuffer pages = ByteBuffer.allocate(2 * PAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            pages.putLong(time);
+            pages.position(DATA_OFFSET);
+            putWakeup(pages, 0, cpu * 4);
+            putWakeup(pages, 5, cpu * 4 + 1);
+            pages.putLong(8, pages.position() - DATA_OFFSET);
+            pages.position(PAGE_SIZE);
+            pages.putLong(time + 5);
+            pages.position(PAGE_SIZE + DATA_OFFSET);
+            putWakeup(pages, 0, cpu * 4 + 2);
+            putWakeup(pages, 10, cpu * 4 + 3);
+            pages.putLong(PAGE_SIZE + 8, pages.position() - PAGE_SIZE - DATA_OFFSET);
+            System.arraycopy(pages.array(), 0, content, offset, 2 * PAGE_SIZE);
+        }
+
+        fFile = File.createTempFile("trace", ".dat");
+        System.arraycopy(header.array(), 0, content, 0, header.position());
+        Files.write(fFile.toPath(), content);
+    }
+
+    /**
+     * Delete the data file
+     */
+    @AfterClass
+    public static void deleteFile() {
+        fFile.delete();
+    }
+
+    private static void putCString(ByteBuffer buffer, String string) {
+        buffer.put(string.getBytes(StandardCharsets.UTF_8));
+        buffer.put((byte) 0);
+    }
+
+    private static void putSection(ByteBuffer buffer, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        buffer.putLong(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static void putWakeup(ByteBuffer buffer, int delta, int pid) {
+        buffer.putInt((WAKEUP_LENGTH / 4) | (delta << 5));
+        int start = buffer.position();
+        buffer.putShort((short) WAKEUP_ID);
+        buffer.put((byte) 0);
+        buffer.put((byte) 0);
+        buffer.putInt(pid);
+        buffer.put(new byte[16]);
+        buffer.putInt(pid);
+        buffer.putInt(0);
+        assertEquals(start + WAKEUP_LENGTH, buffer.position());
+    }
+
+    /**
+     * Save the location of every event and read it back. The checkpoints
+     * must all have the size of the trace, the restored locations must be
+     * the same and seeking them must read the same event.
+     *
+     * @throws TmfTraceException
+     *             the trace cannot be opened
+     */
+    @Test
+    public void testCheckpoints() throws TmfTraceException {
+        BinaryFTrace trace = new BinaryFTrace();
+        try {
+            trace.initTrace(null, fFile.getAbsolutePath(), TmfEvent.class, fFile.getName(), "");
+            int checkpointSize = trace.getCheckpointSize();
+            assertTrue(checkpointSize <= ITmfCheckpoint.MAX_SERIALIZE_SIZE);
+
+            ITmfContext ctx = trace.seekEvent(0.0);
+            List<ITmfLocation> locations = new ArrayList<>();
+            List<ITmfEvent> events = new ArrayList<>();
+            ITmfEvent event;
+            do {
+                locations.add(ctx.getLocation());
+                event = trace.getNext(ctx);
+                if (event != null) {
+                    events.add(event);
+                }
+            } while (event != null);
+            assertEquals(NB_CPUS * 4, events.size());
+
+            for (int i = 0; i < locations.size(); i++) {
+                ITmfLocation location = locations.get(i);
+                ByteBuffer buffer = ByteBuffer.allocate(ITmfCheckpoint.MAX_SERIALIZE_SIZE);
+                new TmfCheckpoint(TmfTimestamp.fromNanos(0L), location, i).serialize(buffer);
+                assertEquals(checkpointSize, buffer.position());
+
+                buffer.clear();
+                location.serialize(buffer);
+                buffer.flip();
+                ITmfLocation restored = trace.restoreLocation(buffer);
+                assertEquals(location, restored);
+
+                ITmfEvent next = trace.getNext(trace.seekEvent(restored));
+                if (i < events.size()) {
+                    assertNotNull(next);
+                    assertEquals(events.get(i).getTimestamp(), next.getTimestamp());
+                    assertEquals(getPid(events.get(i)), getPid(next));
+                } else {
+                    assertNull(next);
+                }
+            }
+        } finally {
+            trace.dispose();
+        }
+    }
+
+    private static Long getPid(ITmfEvent event) {
+        return event.getContent().getFieldValue(Long.class, "pid");
+    }
+}
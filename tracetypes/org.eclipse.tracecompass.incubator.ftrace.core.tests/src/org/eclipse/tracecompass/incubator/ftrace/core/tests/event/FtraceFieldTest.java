@@ -14,6 +14,7 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 /**
  * FtraceField test class
@@ -154,4 +155,38 @@ public class FtraceFieldTest {
         assertEquals((Long) 9L, field.getContent().getFieldValue(Long.class, "vec"));
         assertEquals("RCU", field.getContent().getFieldValue(String.class, "action"));
     }
+
+    /**
+     * Testing of parse line with a tgid and no flags, the timestamp having a
+     * nanosecond precision
+     */
+    @Test
+    public void testParseTgidLine() {
+        String line = "Binder:1234_2-1301  ( 1234) [003]  1234.567890123: sched_process_fork: comm=Binder:1234_2 parent_pid=1301 child_comm=Binder:1234_2 child_pid=1302";
+
+        GenericFtraceField field = GenericFtraceField.parseLine(line);
+
+        assertNotNull(field);
+        assertEquals((Integer) 3, field.getCpu());
+        assertEquals((Integer) 1234, field.getPid());
+        assertEquals((Integer) 1301, field.getTid());
+        assertEquals(1234567890123L, (long) field.getTs());
+        assertEquals("sched_process_fork", field.getName());
+
+        assertEquals(4, field.getContent().getFields().size());
+        assertEquals("Binder:1234_2", field.getContent().getFieldValue(String.class, "comm"));
+        assertEquals((Long) 1301L, field.getContent().getFieldValue(Long.class, "pid"));
+        assertEquals((Long) 1302L, field.getContent().getFieldValue(Long.class, "child_pid"));
+    }
+
+    /**
+     * Testing of parse line with lines that are not events
+     */
+    @Test
+    public void testParseInvalidLines() {
+        assertNull(GenericFtraceField.parseLine(""));
+        assertNull(GenericFtraceField.parseLine("# tracer: nop"));
+        assertNull(GenericFtraceField.parseLine("kworker/0:0-9514  [000] d..4  3210.263482 sched_wakeup: comm=daemonsu"));
+        assertNull(GenericFtraceField.parseLine("kworker/0:0-9514  [000] d..4  3210.263482: sched_wakeup:comm=daemonsu"));
+    }
 }
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.ftrace.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.tracecompass.incubator.internal.ftrace.core.trace.FtraceLineIndex;
+import org.eclipse.tracecompass.incubator.internal.ftrace.core.trace.MappedLineReader;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the line index of the ftrace text traces on a generated file with
+ * comments between the events and Windows line endings
+ *
+ * @author Matthew Khouzam
+ */
+public class FtraceLineIndexTest {
+
+    private static final long STEP = 64;
+    private static final String EVENT = "kworker/0:0-9514  [000] d..4  3210.2634%02d: sched_wakeup: comm=daemonsu pid=16620";
+
+    private static File fFile;
+    private static File fIndexFile;
+    private static final List<Long> EVENT_OFFSETS = new ArrayList<>();
+
+    /**
+     * Write the trace file
+     *
+     * @throws IOException
+     *             the file cannot be written
+     */
+    @BeforeClass
+    public static void writeFile() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# tracer: nop\n#\n");
+        for (int i = 0; i < 20; i++) {
+            if (i % 5 == 4) {
+                sb.append("#### CPU 1 buffer started ####\n");
+            }
+            EVENT_OFFSETS.add((long) sb.length());
+            sb.append(String.format(EVENT, i)).append(i % 2 == 0 ? "\n" : "\r\n");
+        }
+        fFile = File.createTempFile("trace", ".txt");
+        fIndexFile = File.createTempFile("trace", ".lineindex");
+        fIndexFile.delete();
+        Files.write(fFile.toPath(), sb.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Delete the files
+     */
+    @AfterClass
+    public static void deleteFiles() {
+        fFile.delete();
+        fIndexFile.delete();
+    }
+
+    /**
+     * Test that every offset resynchronizes to the next event line
+     *
+     * @throws IOException
+     *             the file cannot be read
+     */
+    @Test
+    public void testEventOffsets() throws IOException {
+        try (MappedLineReader reader = new MappedLineReader(fFile)) {
+            FtraceLineIndex index = FtraceLineIndex.build(reader, STEP);
+            assertEquals((fFile.length() + STEP - 1) / STEP, index.size());
+            int next = 0;
+            for (long offset = 0; offset <= fFile.length(); offset++) {
+                while (next < EVENT_OFFSETS.size() && EVENT_OFFSETS.get(next) < offset) {
+                    next++;
+                }
+                long expected = next < EVENT_OFFSETS.size() ? EVENT_OFFSETS.get(next) : fFile.length();
+                assertEquals("offset " + offset, expected, index.getEventOffset(reader, offset));
+            }
+        }
+    }
+
+    /**
+     * Test that the index is saved and read back
+     *
+     * @throws IOException
+     *             the file cannot be read
+     */
+    @Test
+    public void testSaved() throws IOException {
+        try (MappedLineReader reader = new MappedLineReader(fFile)) {
+            FtraceLineIndex index = FtraceLineIndex.open(fFile, fIndexFile, reader);
+            assertTrue(fIndexFile.exists());
+            long modified = fIndexFile.lastModified();
+            FtraceLineIndex saved = FtraceLineIndex.open(fFile, fIndexFile, reader);
+            assertEquals(modified, fIndexFile.lastModified());
+            assertEquals(index.size(), saved.size());
+            assertEquals(index.getStep(), saved.getStep());
+            for (long offset = 0; offset <= fFile.length(); offset += 7) {
+                assertEquals(index.getEventOffset(reader, offset), saved.getEventOffset(reader, offset));
+            }
+            assertEquals((long) EVENT_OFFSETS.get(0), saved.getEventOffset(reader, 0));
+        }
+    }
+}
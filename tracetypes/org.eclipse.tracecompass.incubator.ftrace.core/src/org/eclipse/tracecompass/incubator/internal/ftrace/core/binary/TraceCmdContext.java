@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.ftrace.core.binary;
+
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.internal.ftrace.core.event.GenericFtraceEvent;
+import org.eclipse.tracecompass.incubator.internal.ftrace.core.event.GenericFtraceField;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
+
+/**
+ * Context merging the ring buffers of the CPUs by timestamp. The merge can
+ * start at any position in the ring buffers, so seeking a
+ * {@link TraceCmdLocation} only reads the pages of the positions.
+ *
+ * Streams are ordered by the time of their current event, then by CPU so that
+ * the merge order does not depend on where it started.
+ *
+ * @author Matthew Khouzam
+ */
+public class TraceCmdContext extends TmfContext {
+
+    /* The event ID, common_type, is the first field of every event */
+    private static final int COMMON_TYPE_SIZE = Short.BYTES;
+
+    private static final Comparator<TraceCmdCpuStream> ORDER = Comparator.comparingLong(TraceCmdCpuStream::getTime).thenComparingInt(TraceCmdCpuStream::getCpu);
+
+    private final PriorityQueue<TraceCmdCpuStream> fQueue = new PriorityQueue<>(ORDER);
+    private final TraceCmdCpuStream[] fStreams;
+    private final TraceCmdDatFile fFile;
+    private final ITmfTrace fTrace;
+
+    /**
+     * Constructor
+     *
+     * @param file
+     *            the data file
+     * @param positions
+     *            the position of the next event to read of each CPU
+     * @param trace
+     *            trace
+     */
+    public TraceCmdContext(TraceCmdDatFile file, long[] positions, ITmfTrace trace) {
+        fFile = file;
+        fTrace = trace;
+        fStreams = new TraceCmdCpuStream[file.getCpuCount()];
+        for (int cpu = 0; cpu < fStreams.length; cpu++) {
+            TraceCmdCpuStream stream = new TraceCmdCpuStream(file, cpu);
+            fStreams[cpu] = stream;
+            if (stream.seek(positions[cpu])) {
+                fQueue.add(stream);
+            }
+        }
+    }
+
+    /**
+     * Get the location of the next event to read
+     *
+     * @return the location
+     */
+    public TraceCmdLocation getPosition() {
+        long[] positions = new long[fStreams.length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = fStreams[i].getPosition();
+        }
+        TraceCmdCpuStream next = fQueue.peek();
+        if (next == null) {
+            return new TraceCmdLocation(positions, Long.MAX_VALUE, positions.length);
+        }
+        return new TraceCmdLocation(positions, next.getTime(), next.getCpu());
+    }
+
+    /**
+     * Get next event, like an iterator. Events without a format are skipped.
+     *
+     * @return the next event or null
+     */
+    public @Nullable GenericFtraceEvent getNext() {
+        TraceCmdCpuStream stream = fQueue.poll();
+        while (stream != null) {
+            GenericFtraceEvent event = null;
+            ByteBuffer buffer = stream.getBuffer();
+            int offset = stream.getDataOffset();
+            int length = stream.getDataLength();
+            if (length >= COMMON_TYPE_SIZE) {
+                TraceCmdEventFormat format = fFile.getFormat(buffer.getShort(offset) & 0xffff);
+                if (format != null) {
+                    GenericFtraceField field = GenericFtraceField.create(format.getName(), stream.getCpu(), stream.getTime(),
+                            format.getPid(buffer, offset, length), format.decode(buffer, offset, length));
+                    event = new GenericFtraceEvent(fTrace, getRank(), field);
+                }
+            }
+            if (stream.next()) {
+                fQueue.add(stream);
+            }
+            if (event != null) {
+                return event;
+            }
+            stream = fQueue.poll();
+        }
+        return null;
+    }
+}
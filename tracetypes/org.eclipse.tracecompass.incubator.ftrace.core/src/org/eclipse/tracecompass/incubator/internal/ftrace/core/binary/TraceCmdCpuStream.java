@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.ftrace.core.binary;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Cursor over the events of the ring buffer of a CPU. Every page starts with
+ * an absolute timestamp and the events only store the delta to the previous
+ * event, so the position of an event is the page plus the offset in the page
+ * and seeking a position reads the page from its start.
+ *
+ * The position of an event is the index of its first byte in the CPU's ring
+ * buffer, once the events are exhausted the position is the size of the ring
+ * buffer.
+ *
+ * @author Matthew Khouzam
+ */
+@NonNullByDefault
+public final class TraceCmdCpuStream {
+
+    /* Kernel ring buffer event types, from the 5 bits type_len */
+    private static final int TYPE_DATA_LENGTH = 0;
+    private static final int TYPE_PADDING = 29;
+    private static final int TYPE_TIME_EXTEND = 30;
+    private static final int TYPE_TIME_STAMP = 31;
+
+    private static final int TYPE_LEN_BITS = 5;
+    private static final int TS_SHIFT = 27;
+    private static final int TS_MASK = (1 << TS_SHIFT) - 1;
+    private static final long COMMIT_MASK = (1L << 27) - 1;
+
+    private final TraceCmdDatFile fFile;
+    private final int fCpu;
+    private final long fPageCount;
+    private final int fPageSize;
+    private final boolean fLittleEndian;
+
+    /* Current page */
+    private long fPage = -1;
+    private @Nullable ByteBuffer fWindow = null;
+    private int fPageStart;
+    private int fPageEnd;
+    private int fNext;
+    private long fTimestamp;
+
+    /* Current event */
+    private long fPosition;
+    private long fEventTime;
+    private int fEventData;
+    private int fEventLength;
+
+    /**
+     * Constructor, the cursor is before the first event
+     *
+     * @param file
+     *            the data file
+     * @param cpu
+     *            the CPU
+     */
+    public TraceCmdCpuStream(TraceCmdDatFile file, int cpu) {
+        fFile = file;
+        fCpu = cpu;
+        fPageCount = file.getPageCount(cpu);
+        fPageSize = file.getPageSize();
+        fLittleEndian = file.getByteOrder() == ByteOrder.LITTLE_ENDIAN;
+        fPosition = 0;
+    }
+
+    /**
+     * Move to the first event at or after a position
+     *
+     * @param position
+     *            the position
+     * @return true if there is an event, false at the end of the ring buffer
+     */
+    public boolean seek(long position) {
+        long page = Math.max(0, position / fPageSize);
+        int offset = (int) (Math.max(0, position) % fPageSize);
+        if (!loadPage(page)) {
+            return false;
+        }
+        long pagePosition = page * fPageSize;
+        while (next()) {
+            if (fPage != page || fPosition - pagePosition >= offset) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Move to the first event at or after a time. The pages are searched by
+     * their timestamp, then the events are read from the last page starting
+     * before the time, since the events at the time may start on the
+     * previous page.
+     *
+     * @param time
+     *            the time in nanoseconds
+     * @return true if there is an event, false at the end of the ring buffer
+     */
+    public boolean seekTime(long time) {
+        long low = 0;
+        long high = fPageCount - 1;
+        long found = 0;
+        while (low <= high) {
+            long mid = (low + high) >>> 1;
+            if (getPageTime(mid) < time) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (!loadPage(found)) {
+            return false;
+        }
+        while (next()) {
+            if (fEventTime >= time) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long getPageTime(long page) {
+        return fFile.getWindow(fCpu, page).getLong(fFile.getPageStart(page));
+    }
+
+    /**
+     * Load the first non empty page at or after a page
+     */
+    private boolean loadPage(long first) {
+        for (long page = first; page < fPageCount; page++) {
+            ByteBuffer window = fFile.getWindow(fCpu, page);
+            int start = fFile.getPageStart(page);
+            int commitIndex = start + fFile.getCommitOffset();
+            long commit = (fFile.getCommitSize() == Long.BYTES ? window.getLong(commitIndex) : window.getInt(commitIndex)) & COMMIT_MASK;
+            if (commit > 0) {
+                fPage = page;
+                fWindow = window;
+                fPageStart = start;
+                fNext = start + fFile.getDataOffset();
+                fPageEnd = (int) Math.min(fNext + commit, start + (long) fPageSize);
+                fTimestamp = window.getLong(start);
+                return true;
+            }
+        }
+        fPage = fPageCount;
+        fWindow = null;
+        fPosition = fPageCount * fPageSize;
+        return false;
+    }
+
+    /**
+     * Move to the next event
+     *
+     * @return true if there is an event, false at the end of the ring buffer
+     */
+    public boolean next() {
+        if (fPage < 0) {
+            loadPage(0);
+        }
+        ByteBuffer window = fWindow;
+        while (window != null) {
+            if (fNext + Integer.BYTES > fPageEnd) {
+                loadPage(fPage + 1);
+                window = fWindow;
+                continue;
+            }
+            int record = fNext;
+            int header = window.getInt(record);
+            int typeLen;
+            long delta;
+            if (fLittleEndian) {
+                typeLen = header & ((1 << TYPE_LEN_BITS) - 1);
+                delta = header >>> TYPE_LEN_BITS;
+            } else {
+                typeLen = header >>> TS_SHIFT;
+                delta = header & TS_MASK;
+            }
+            int data = record + Integer.BYTES;
+            int length;
+            switch (typeLen) {
+            case TYPE_PADDING:
+                /* A null delta means the rest of the page is empty */
+                length = delta == 0 || data + Integer.BYTES > fPageEnd ? 0 : window.getInt(data);
+                fNext = length <= 0 ? fPageEnd : data + length;
+                continue;
+            case TYPE_TIME_EXTEND:
+                fTimestamp += ((window.getInt(data) & 0xffffffffL) << TS_SHIFT) + delta;
+                fNext = data + Integer.BYTES;
+                continue;
+            case TYPE_TIME_STAMP:
+                fTimestamp = ((window.getInt(data) & 0xffffffffL) << TS_SHIFT) + delta;
+                fNext = data + Integer.BYTES;
+                continue;
+            case TYPE_DATA_LENGTH:
+                /* The length includes its own 4 bytes */
+                length = ((window.getInt(data) - Integer.BYTES) + 3) & ~3;
+                data += Integer.BYTES;
+                break;
+            default:
+                length = typeLen * Integer.BYTES;
+                break;
+            }
+            if (length < 0 || data + length > fPageEnd) {
+                /* Corrupted record, skip the rest of the page */
+                fNext = fPageEnd;
+                continue;
+            }
+            fTimestamp += delta;
+            fNext = data + length;
+            fPosition = fPage * fPageSize + (record - fPageStart);
+            fEventTime = fTimestamp;
+            fEventData = data;
+            fEventLength = length;
+            return true;
+        }
+        fPosition = fPageCount * fPageSize;
+        return false;
+    }
+
+    /**
+     * Get the CPU
+     *
+     * @return the CPU
+     */
+    public int getCpu() {
+        return fCpu;
+    }
+
+    /**
+     * Get the position of the current event, or of the end of the ring
+     * buffer once {@link #next()} returned false
+     *
+     * @return the position in bytes
+     */
+    public long getPosition() {
+        return fPosition;
+    }
+
+    /**
+     * Get the timestamp of the current event
+     *
+     * @return the time in nanoseconds
+     */
+    public long getTime() {
+        return fEventTime;
+    }
+
+    /**
+     * Get the buffer containing the current event, only to be read with
+     * absolute reads
+     *
+     * @return the buffer
+     */
+    public ByteBuffer getBuffer() {
+        ByteBuffer window = fWindow;
+        if (window == null) {
+            throw new IllegalStateException("No current event"); //$NON-NLS-1$
+        }
+        return window;
+    }
+
+    /**
+     * Get the start of the current event data in {@link #getBuffer()}
+     *
+     * @return the index of the data
+     */
+    public int getDataOffset() {
+        return fEventData;
+    }
+
+    /**
+     * Get the length of the current event data
+     *
+     * @return the length in bytes
+     */
+    public int getDataLength() {
+        return fEventLength;
+    }
+}
@@ -0,0 +1,459 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.ftrace.core.binary;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Reader of the trace-cmd data file (.dat) format, version 6. The headers,
+ * the event format descriptors and the layout of the per-CPU ring buffers are
+ * read when the file is opened, the ring buffer pages are then read from
+ * memory-mapped windows of the file.
+ *
+ * The file starts with:
+ *
+ * <pre>
+ * magic, version, endianness, size of a long, page size
+ * "header_page", the ring buffer page header format
+ * "header_event", the ring buffer event header format
+ * the ftrace event formats
+ * the event formats, by event system
+ * kallsyms, printk formats and saved command lines
+ * number of CPUs, options, then "flyrecord" and the offset and size of
+ * the ring buffer of every CPU
+ * </pre>
+ *
+ * @author Matthew Khouzam
+ */
+@NonNullByDefault
+public final class TraceCmdDatFile implements Closeable {
+
+    /** Magic number of the trace-cmd data files */
+    private static final byte[] MAGIC = { 0x17, 0x08, 0x44, 't', 'r', 'a', 'c', 'i', 'n', 'g' };
+    private static final String SUPPORTED_VERSION = "6"; //$NON-NLS-1$
+
+    private static final String HEADER_PAGE = "header_page"; //$NON-NLS-1$
+    private static final String HEADER_EVENT = "header_event"; //$NON-NLS-1$
+    private static final String FTRACE_SYSTEM = "ftrace"; //$NON-NLS-1$
+    private static final String OPTIONS = "options  "; //$NON-NLS-1$
+    private static final String FLYRECORD = "flyrecord"; //$NON-NLS-1$
+    private static final int OPTION_DONE = 0;
+
+    /*
+     * The ring buffers are mapped in windows of 1 GiB, a multiple of any page
+     * size, so pages never straddle two windows.
+     */
+    private static final int WINDOW_SHIFT = 30;
+    private static final long WINDOW_SIZE = 1L << WINDOW_SHIFT;
+
+    private final RandomAccessFile fFile;
+    private final String fVersion;
+    private final ByteOrder fOrder;
+    private final int fLongSize;
+    private final int fPageSize;
+    private final int fCommitOffset;
+    private final int fCommitSize;
+    private final int fDataOffset;
+    private final Map<Integer, TraceCmdEventFormat> fFormats = new HashMap<>();
+    private final long[] fCpuOffsets;
+    private final long[] fCpuSizes;
+    private final ByteBuffer[][] fWindows;
+
+    /**
+     * Open and read the headers of a data file
+     *
+     * @param file
+     *            the file
+     * @throws IOException
+     *             the file cannot be read or is not a version 6 trace-cmd
+     *             data file
+     */
+    public TraceCmdDatFile(File file) throws IOException {
+        fFile = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+        try {
+            FileChannel channel = fFile.getChannel();
+            HeaderReader reader = new HeaderReader(channel);
+            if (!Arrays.equals(MAGIC, reader.getBytes(MAGIC.length))) {
+                throw new IOException("Not a trace-cmd data file: " + file); //$NON-NLS-1$
+            }
+            fVersion = reader.getCString();
+            if (!SUPPORTED_VERSION.equals(fVersion)) {
+                throw new IOException("Unsupported trace-cmd data file version " + fVersion + ": " + file); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            fOrder = reader.get() == 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+            reader.setOrder(fOrder);
+            fLongSize = reader.get();
+            fPageSize = reader.getInt();
+            if (fPageSize <= 0 || Integer.bitCount(fPageSize) != 1 || (fLongSize != 4 && fLongSize != 8)) {
+                throw new IOException("Invalid page or long size: " + file); //$NON-NLS-1$
+            }
+
+            /* The page header gives where the commit and the data are */
+            reader.expect(HEADER_PAGE);
+            String headerPage = reader.getString(reader.getLong());
+            TraceCmdEventFormat pageFormat = TraceCmdEventFormat.parse(HEADER_PAGE, headerPage, fOrder, fLongSize);
+            TraceCmdEventFormat.Field commit = pageFormat.getField("commit"); //$NON-NLS-1$
+            TraceCmdEventFormat.Field data = pageFormat.getField("data"); //$NON-NLS-1$
+            fCommitOffset = commit != null ? commit.getOffset() : 8;
+            fCommitSize = commit != null ? commit.getSize() : fLongSize;
+            fDataOffset = data != null ? data.getOffset() : 8 + fLongSize;
+
+            reader.expect(HEADER_EVENT);
+            reader.skip(reader.getLong());
+
+            int count = reader.getInt();
+            for (int i = 0; i < count; i++) {
+                addFormat(TraceCmdEventFormat.parse(FTRACE_SYSTEM, reader.getString(reader.getLong()), fOrder, fLongSize));
+            }
+            int systems = reader.getInt();
+            for (int i = 0; i < systems; i++) {
+                String system = reader.getCString();
+                count = reader.getInt();
+                for (int j = 0; j < count; j++) {
+                    addFormat(TraceCmdEventFormat.parse(system, reader.getString(reader.getLong()), fOrder, fLongSize));
+                }
+            }
+
+            /* kallsyms, printk formats and command lines */
+            reader.skip(reader.getInt() & 0xffffffffL);
+            reader.skip(reader.getInt() & 0xffffffffL);
+            reader.skip(reader.getLong());
+
+            int cpus = reader.getInt();
+            String section = reader.getCString();
+            if (OPTIONS.equals(section)) {
+                int option = reader.getShort();
+                while (option != OPTION_DONE) {
+                    reader.skip(reader.getInt() & 0xffffffffL);
+                    option = reader.getShort();
+                }
+                section = reader.getCString();
+            }
+            if (!FLYRECORD.equals(section)) {
+                throw new IOException("Unsupported trace-cmd data section \"" + section.trim() + "\": " + file); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            fCpuOffsets = new long[cpus];
+            fCpuSizes = new long[cpus];
+            fWindows = new ByteBuffer[cpus][];
+            for (int cpu = 0; cpu < cpus; cpu++) {
+                fCpuOffsets[cpu] = reader.getLong();
+                fCpuSizes[cpu] = reader.getLong();
+                if (fCpuOffsets[cpu] < 0 || fCpuSizes[cpu] < 0 || fCpuOffsets[cpu] + fCpuSizes[cpu] > channel.size()) {
+                    throw new IOException("Invalid ring buffer of CPU " + cpu + ": " + file); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+                fWindows[cpu] = map(channel, fCpuOffsets[cpu], fCpuSizes[cpu] - fCpuSizes[cpu] % fPageSize);
+            }
+        } catch (IOException | RuntimeException e) {
+            fFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Check whether a file starts with the magic number of trace-cmd data
+     * files
+     *
+     * @param file
+     *            the file
+     * @return true if the file starts with the magic number
+     * @throws IOException
+     *             the file cannot be read
+     */
+    public static boolean hasMagic(File file) throws IOException {
+        if (file.length() <= MAGIC.length) {
+            return false;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) { //$NON-NLS-1$
+            byte[] start = new byte[MAGIC.length];
+            raf.readFully(start);
+            return Arrays.equals(MAGIC, start);
+        }
+    }
+
+    private void addFormat(TraceCmdEventFormat format) {
+        fFormats.put(format.getId(), format);
+    }
+
+    private ByteBuffer[] map(FileChannel channel, long offset, long size) throws IOException {
+        ByteBuffer[] windows = new ByteBuffer[(int) ((size + WINDOW_SIZE - 1) >>> WINDOW_SHIFT)];
+        for (int i = 0; i < windows.length; i++) {
+            long start = (long) i << WINDOW_SHIFT;
+            MappedByteBuffer window = channel.map(MapMode.READ_ONLY, offset + start, Math.min(WINDOW_SIZE, size - start));
+            /* The windows are shared, only absolute reads are used */
+            window.order(fOrder);
+            windows[i] = window;
+        }
+        return windows;
+    }
+
+    /**
+     * Get the version of the file format
+     *
+     * @return the version
+     */
+    public String getVersion() {
+        return fVersion;
+    }
+
+    /**
+     * Get the byte order of the traced machine
+     *
+     * @return the byte order
+     */
+    public ByteOrder getByteOrder() {
+        return fOrder;
+    }
+
+    /**
+     * Get the size of a long on the traced machine
+     *
+     * @return 4 or 8
+     */
+    public int getLongSize() {
+        return fLongSize;
+    }
+
+    /**
+     * Get the size of the ring buffer pages
+     *
+     * @return the page size in bytes
+     */
+    public int getPageSize() {
+        return fPageSize;
+    }
+
+    /**
+     * Get the number of CPUs
+     *
+     * @return the number of ring buffers
+     */
+    public int getCpuCount() {
+        return fCpuSizes.length;
+    }
+
+    /**
+     * Get the number of pages of the ring buffer of a CPU
+     *
+     * @param cpu
+     *            the CPU
+     * @return the number of pages
+     */
+    public long getPageCount(int cpu) {
+        return fCpuSizes[cpu] / fPageSize;
+    }
+
+    /**
+     * Get the size of the ring buffer of a CPU, the positions of its events
+     * are below that size
+     *
+     * @param cpu
+     *            the CPU
+     * @return the size in bytes of the whole pages
+     */
+    public long getSize(int cpu) {
+        return getPageCount(cpu) * fPageSize;
+    }
+
+    /**
+     * Get the format of an event
+     *
+     * @param id
+     *            the ID of the event, its common_type
+     * @return the format, or null if there is no such event
+     */
+    public @Nullable TraceCmdEventFormat getFormat(int id) {
+        return fFormats.get(id);
+    }
+
+    /**
+     * Get the formats of the events
+     *
+     * @return the formats
+     */
+    public Collection<TraceCmdEventFormat> getFormats() {
+        return fFormats.values();
+    }
+
+    /**
+     * Get the mapped window containing a page. The buffer is shared and must
+     * only be read with absolute reads.
+     *
+     * @param cpu
+     *            the CPU
+     * @param page
+     *            the index of the page in the ring buffer of the CPU
+     * @return the window, the page starts at {@link #getPageStart(long)}
+     */
+    ByteBuffer getWindow(int cpu, long page) {
+        return fWindows[cpu][(int) ((page * fPageSize) >>> WINDOW_SHIFT)];
+    }
+
+    /**
+     * Get the start of a page in its window
+     *
+     * @param page
+     *            the index of the page
+     * @return the index of the page's first byte in the window
+     */
+    int getPageStart(long page) {
+        return (int) ((page * fPageSize) & (WINDOW_SIZE - 1));
+    }
+
+    /**
+     * Get the offset of the commit, the size of the data, in a page
+     *
+     * @return the offset in bytes
+     */
+    int getCommitOffset() {
+        return fCommitOffset;
+    }
+
+    /**
+     * Get the size of the commit field of a page
+     *
+     * @return the size in bytes
+     */
+    int getCommitSize() {
+        return fCommitSize;
+    }
+
+    /**
+     * Get the offset of the data, the first event, in a page
+     *
+     * @return the offset in bytes
+     */
+    int getDataOffset() {
+        return fDataOffset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        fFile.close();
+    }
+
+    /**
+     * Sequential reader of the headers, which are read once so they are not
+     * mapped.
+     */
+    private static final class HeaderReader {
+        private final FileChannel fChannel;
+        private final ByteBuffer fBuffer = ByteBuffer.allocate(1 << 16);
+        private long fPosition = 0;
+
+        public HeaderReader(FileChannel channel) {
+            fChannel = channel;
+            fBuffer.limit(0);
+        }
+
+        public void setOrder(ByteOrder order) {
+            fBuffer.order(order);
+        }
+
+        private void require(int bytes) throws IOException {
+            if (fBuffer.remaining() >= bytes) {
+                return;
+            }
+            fBuffer.compact();
+            while (fBuffer.position() < bytes) {
+                int read = fChannel.read(fBuffer, fPosition);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of file at " + fPosition); //$NON-NLS-1$
+                }
+                fPosition += read;
+            }
+            fBuffer.flip();
+        }
+
+        public byte get() throws IOException {
+            require(Byte.BYTES);
+            return fBuffer.get();
+        }
+
+        public int getShort() throws IOException {
+            require(Short.BYTES);
+            return fBuffer.getShort() & 0xffff;
+        }
+
+        public int getInt() throws IOException {
+            require(Integer.BYTES);
+            return fBuffer.getInt();
+        }
+
+        public long getLong() throws IOException {
+            require(Long.BYTES);
+            return fBuffer.getLong();
+        }
+
+        public byte[] getBytes(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            int read = 0;
+            while (read < length) {
+                require(1);
+                int chunk = Math.min(length - read, fBuffer.remaining());
+                fBuffer.get(bytes, read, chunk);
+                read += chunk;
+            }
+            return bytes;
+        }
+
+        public String getString(long length) throws IOException {
+            if (length < 0 || length > Integer.MAX_VALUE) {
+                throw new IOException("Invalid string length " + length); //$NON-NLS-1$
+            }
+            return new String(getBytes((int) length), StandardCharsets.UTF_8);
+        }
+
+        public String getCString() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            byte b = get();
+            while (b != 0) {
+                sb.append((char) (b & 0xff));
+                b = get();
+            }
+            return sb.toString();
+        }
+
+        public void expect(String section) throws IOException {
+            String read = getCString();
+            if (!section.equals(read)) {
+                throw new IOException("Expected section " + section + " but read " + read); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+
+        public void skip(long length) throws IOException {
+            if (length < 0) {
+                throw new IOException("Invalid section length " + length); //$NON-NLS-1$
+            }
+            long inBuffer = Math.min(length, fBuffer.remaining());
+            fBuffer.position(fBuffer.position() + (int) inBuffer);
+            long remaining = length - inBuffer;
+            if (remaining > 0) {
+                fPosition += remaining;
+                fBuffer.limit(0);
+            }
+        }
+    }
+}
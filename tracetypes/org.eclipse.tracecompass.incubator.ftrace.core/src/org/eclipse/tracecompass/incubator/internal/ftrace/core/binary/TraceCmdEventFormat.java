@@ -0,0 +1,454 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.ftrace.core.binary;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Format of an event, as described in the tracefs format files:
+ *
+ * <pre>
+ * name: sched_wakeup
+ * ID: 316
+ * format:
+ *     field:unsigned short common_type;    offset:0;    size:2;    signed:0;
+ *     ...
+ *     field:char comm[16];    offset:8;    size:16;    signed:1;
+ *     field:__data_loc char[] name;    offset:24;    size:4;    signed:1;
+ *
+ * print fmt: ...
+ * </pre>
+ *
+ * The fields are decoded the way "trace-cmd report -R" prints them: numbers
+ * as longs and character arrays as strings, the common fields are left out.
+ *
+ * @author Matthew Khouzam
+ */
+@NonNullByDefault
+public final class TraceCmdEventFormat {
+
+    private static final String NAME = "name:"; //$NON-NLS-1$
+    private static final String ID = "ID:"; //$NON-NLS-1$
+    private static final String FIELD = "field:"; //$NON-NLS-1$
+    private static final String OFFSET = "offset:"; //$NON-NLS-1$
+    private static final String SIZE = "size:"; //$NON-NLS-1$
+    private static final String SIGNED = "signed:"; //$NON-NLS-1$
+    private static final String COMMON_PREFIX = "common_"; //$NON-NLS-1$
+    private static final String COMMON_PID = "common_pid"; //$NON-NLS-1$
+    private static final String DATA_LOC = "__data_loc"; //$NON-NLS-1$
+
+    private final int fId;
+    private final String fName;
+    private final String fSystem;
+    private final ByteOrder fOrder;
+    private final Field[] fFields;
+    private final @Nullable Field fPid;
+
+    private TraceCmdEventFormat(int id, String name, String system, ByteOrder order, Field[] fields) {
+        fId = id;
+        fName = name;
+        fSystem = system;
+        fOrder = order;
+        fFields = fields;
+        Field pid = null;
+        for (Field field : fields) {
+            if (field.getName().equals(COMMON_PID)) {
+                pid = field;
+            }
+        }
+        fPid = pid;
+    }
+
+    /**
+     * Parse a format description
+     *
+     * @param system
+     *            the event system
+     * @param text
+     *            the content of the format file
+     * @param order
+     *            the byte order of the traced machine
+     * @param longSize
+     *            the size of a long on the traced machine
+     * @return the format
+     */
+    public static TraceCmdEventFormat parse(String system, String text, ByteOrder order, int longSize) {
+        int id = -1;
+        String name = system;
+        List<Field> fields = new ArrayList<>();
+        for (String line : text.split("\n")) { //$NON-NLS-1$
+            String trimmed = line.trim();
+            if (trimmed.startsWith(NAME)) {
+                name = trimmed.substring(NAME.length()).trim();
+            } else if (trimmed.startsWith(ID)) {
+                try {
+                    id = Integer.parseInt(trimmed.substring(ID.length()).trim());
+                } catch (NumberFormatException e) {
+                    // Keep the invalid ID, the event cannot be found
+                }
+            } else if (trimmed.startsWith(FIELD)) {
+                Field field = Field.parse(trimmed, longSize);
+                if (field != null) {
+                    fields.add(field);
+                }
+            }
+        }
+        return new TraceCmdEventFormat(id, name, system, order, fields.toArray(new Field[fields.size()]));
+    }
+
+    /**
+     * Get the ID of the event
+     *
+     * @return the ID
+     */
+    public int getId() {
+        return fId;
+    }
+
+    /**
+     * Get the name of the event
+     *
+     * @return the name
+     */
+    public String getName() {
+        return fName;
+    }
+
+    /**
+     * Get the system of the event
+     *
+     * @return the system, like "sched" or "syscalls"
+     */
+    public String getSystem() {
+        return fSystem;
+    }
+
+    /**
+     * Get a field
+     *
+     * @param name
+     *            the name of the field
+     * @return the field, or null if there is no such field
+     */
+    public @Nullable Field getField(String name) {
+        for (Field field : fFields) {
+            if (field.getName().equals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the process ID of an event, its common_pid field
+     *
+     * @param buffer
+     *            the buffer containing the event
+     * @param offset
+     *            the start of the event data in the buffer
+     * @param length
+     *            the length of the event data
+     * @return the process ID, or null if the event has none
+     */
+    public @Nullable Integer getPid(ByteBuffer buffer, int offset, int length) {
+        Field pid = fPid;
+        if (pid == null || pid.getOffset() + pid.getSize() > length) {
+            return null;
+        }
+        return (int) readNumber(buffer, offset + pid.getOffset(), pid.getSize(), true);
+    }
+
+    /**
+     * Decode the fields of an event
+     *
+     * @param buffer
+     *            the buffer containing the event
+     * @param offset
+     *            the start of the event data in the buffer
+     * @param length
+     *            the length of the event data
+     * @return the values of the fields, by name
+     */
+    public Map<String, Object> decode(ByteBuffer buffer, int offset, int length) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Field field : fFields) {
+            if (field.getName().startsWith(COMMON_PREFIX) || field.getOffset() + field.getSize() > length) {
+                continue;
+            }
+            int start = offset + field.getOffset();
+            int size = field.getSize();
+            if (field.isDataLoc()) {
+                /* The low 16 bits are the offset in the event, then the length */
+                int loc = buffer.getInt(start);
+                start = offset + (loc & 0xffff);
+                size = loc >>> 16;
+                if ((loc & 0xffff) + size > length) {
+                    continue;
+                }
+            }
+            if (field.isString()) {
+                values.put(field.getName(), readString(buffer, start, size));
+            } else if (field.isArray()) {
+                values.put(field.getName(), readArray(buffer, start, size, field.getElementSize(), field.isSigned()));
+            } else {
+                values.put(field.getName(), readNumber(buffer, start, size, field.isSigned()));
+            }
+        }
+        return values;
+    }
+
+    private long readNumber(ByteBuffer buffer, int index, int size, boolean signed) {
+        switch (size) {
+        case 1:
+            return signed ? buffer.get(index) : buffer.get(index) & 0xffL;
+        case 2:
+            return signed ? buffer.getShort(index) : buffer.getShort(index) & 0xffffL;
+        case 4:
+            return signed ? buffer.getInt(index) : buffer.getInt(index) & 0xffffffffL;
+        case 8:
+            return buffer.getLong(index);
+        default:
+            /* Unusual size, read it byte by byte */
+            long value = 0;
+            for (int i = 0; i < Math.min(size, Long.BYTES); i++) {
+                int shift = fOrder == ByteOrder.LITTLE_ENDIAN ? i * Byte.SIZE : (size - 1 - i) * Byte.SIZE;
+                value |= (buffer.get(index + i) & 0xffL) << shift;
+            }
+            return value;
+        }
+    }
+
+    private long[] readArray(ByteBuffer buffer, int index, int size, int elementSize, boolean signed) {
+        long[] values = new long[size / elementSize];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readNumber(buffer, index + i * elementSize, elementSize, signed);
+        }
+        return values;
+    }
+
+    private static String readString(ByteBuffer buffer, int index, int size) {
+        int length = 0;
+        while (length < size && buffer.get(index + length) != 0) {
+            length++;
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(index + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return fSystem + ':' + fName + " (" + fId + ')'; //$NON-NLS-1$
+    }
+
+    /**
+     * Field of an event format
+     */
+    public static final class Field {
+        private final String fName;
+        private final int fOffset;
+        private final int fSize;
+        private final boolean fSigned;
+        private final boolean fDataLoc;
+        private final boolean fArray;
+        private final boolean fString;
+        private final int fElementSize;
+
+        private Field(String name, int offset, int size, boolean signed, boolean dataLoc, boolean array, boolean string, int elementSize) {
+            fName = name;
+            fOffset = offset;
+            fSize = size;
+            fSigned = signed;
+            fDataLoc = dataLoc;
+            fArray = array;
+            fString = string;
+            fElementSize = elementSize;
+        }
+
+        /**
+         * Parse a field line, like
+         * "field:char comm[16]; offset:8; size:16; signed:1;"
+         */
+        private static @Nullable Field parse(String line, int longSize) {
+            String[] parts = line.split(";"); //$NON-NLS-1$
+            if (parts.length < 3) {
+                return null;
+            }
+            String declaration = parts[0].substring(FIELD.length()).trim();
+            int offset = -1;
+            int size = -1;
+            boolean signed = false;
+            for (int i = 1; i < parts.length; i++) {
+                String part = parts[i].trim();
+                try {
+                    if (part.startsWith(OFFSET)) {
+                        offset = Integer.parseInt(part.substring(OFFSET.length()).trim());
+                    } else if (part.startsWith(SIZE)) {
+                        size = Integer.parseInt(part.substring(SIZE.length()).trim());
+                    } else if (part.startsWith(SIGNED)) {
+                        signed = !part.substring(SIGNED.length()).trim().equals("0"); //$NON-NLS-1$
+                    }
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+            if (offset < 0 || size <= 0) {
+                return null;
+            }
+
+            /* The name is the last word of the declaration, before any [] */
+            int bracket = declaration.indexOf('[');
+            String type = bracket < 0 ? declaration : declaration.substring(0, bracket).trim();
+            int nameStart = type.length();
+            while (nameStart > 0 && isIdentifierPart(type.charAt(nameStart - 1))) {
+                nameStart--;
+            }
+            String name = type.substring(nameStart);
+            if (name.isEmpty()) {
+                return null;
+            }
+            boolean dataLoc = declaration.startsWith(DATA_LOC);
+            if (dataLoc) {
+                /* "__data_loc char[] name": the name is after the brackets */
+                type = declaration.substring(0, declaration.lastIndexOf(' ')).trim();
+                name = declaration.substring(declaration.lastIndexOf(' ') + 1);
+                type = type.substring(DATA_LOC.length()).replace("[]", "").trim(); //$NON-NLS-1$ //$NON-NLS-2$
+            } else {
+                type = type.substring(0, nameStart).trim();
+            }
+            boolean array = dataLoc || bracket >= 0;
+            boolean string = array && (type.equals("char") || type.equals("const char") || type.equals("unsigned char")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            int elementSize = size;
+            if (array && !string) {
+                elementSize = dataLoc ? elementSize(type, longSize) : Math.max(1, size / arrayLength(declaration, bracket));
+            }
+            return new Field(name, offset, size, signed, dataLoc, array, string, elementSize);
+        }
+
+        private static boolean isIdentifierPart(char c) {
+            return Character.isLetterOrDigit(c) || c == '_';
+        }
+
+        private static int arrayLength(String declaration, int bracket) {
+            int end = declaration.indexOf(']', bracket);
+            try {
+                return Math.max(1, Integer.parseInt(declaration.substring(bracket + 1, end).trim()));
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                return 1;
+            }
+        }
+
+        private static int elementSize(String type, int longSize) {
+            String base = type.replace("unsigned", "").replace("const", "").trim(); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            switch (base) {
+            case "char": //$NON-NLS-1$
+            case "u8": //$NON-NLS-1$
+            case "s8": //$NON-NLS-1$
+                return 1;
+            case "short": //$NON-NLS-1$
+            case "u16": //$NON-NLS-1$
+            case "s16": //$NON-NLS-1$
+                return 2;
+            case "long long": //$NON-NLS-1$
+            case "u64": //$NON-NLS-1$
+            case "s64": //$NON-NLS-1$
+                return 8;
+            case "long": //$NON-NLS-1$
+                return longSize;
+            default:
+                return base.endsWith("*") ? longSize : 4; //$NON-NLS-1$
+            }
+        }
+
+        /**
+         * Get the name
+         *
+         * @return the name
+         */
+        public String getName() {
+            return fName;
+        }
+
+        /**
+         * Get the offset in the event
+         *
+         * @return the offset in bytes
+         */
+        public int getOffset() {
+            return fOffset;
+        }
+
+        /**
+         * Get the size
+         *
+         * @return the size in bytes, for dynamic arrays the size of their
+         *         location
+         */
+        public int getSize() {
+            return fSize;
+        }
+
+        /**
+         * Is the field signed
+         *
+         * @return true if the field is signed
+         */
+        public boolean isSigned() {
+            return fSigned;
+        }
+
+        /**
+         * Is the field a dynamic array, stored after the fixed fields
+         *
+         * @return true if the field is a "__data_loc" array
+         */
+        public boolean isDataLoc() {
+            return fDataLoc;
+        }
+
+        /**
+         * Is the field an array
+         *
+         * @return true if the field is an array
+         */
+        public boolean isArray() {
+            return fArray;
+        }
+
+        /**
+         * Is the field a character array
+         *
+         * @return true if the field is decoded as a string
+         */
+        public boolean isString() {
+            return fString;
+        }
+
+        /**
+         * Get the size of the array elements
+         *
+         * @return the size in bytes of an element
+         */
+        public int getElementSize() {
+            return fElementSize;
+        }
+    }
+}
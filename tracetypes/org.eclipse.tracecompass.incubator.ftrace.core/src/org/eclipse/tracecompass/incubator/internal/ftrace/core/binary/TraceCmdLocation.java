@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.ftrace.core.binary;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+
+/**
+ * Location in a trace-cmd data file, made of the position of the next event
+ * of every CPU. It can be serialized, so the checkpoints of the trace index
+ * are saved on disk. Only the next event to read is serialized, so the size of
+ * a checkpoint does not depend on the number of CPUs; the other positions are
+ * found again from its time when the location is restored.
+ *
+ * @author Matthew Khouzam
+ */
+@NonNullByDefault
+public final class TraceCmdLocation implements ITmfLocation {
+
+    /**
+     * Size of a serialized location: the time, CPU and position of the next
+     * event
+     */
+    public static final int SERIALIZED_SIZE = Long.BYTES + Integer.BYTES + Long.BYTES;
+
+    private final TraceCmdLocationInfo fInfo;
+
+    /**
+     * Constructor
+     *
+     * @param positions
+     *            the position of the next event of each CPU
+     * @param nextTime
+     *            the timestamp of the next event to read
+     * @param nextCpu
+     *            the CPU of the next event to read, the number of CPUs if all
+     *            the events were read
+     */
+    public TraceCmdLocation(long[] positions, long nextTime, int nextCpu) {
+        fInfo = new TraceCmdLocationInfo(positions, nextTime, nextCpu);
+    }
+
+    /**
+     * Constructor from a serialized location
+     *
+     * @param bufferIn
+     *            the buffer to read from
+     * @param file
+     *            the data file
+     */
+    public TraceCmdLocation(ByteBuffer bufferIn, TraceCmdDatFile file) {
+        long nextTime = bufferIn.getLong();
+        int nextCpu = bufferIn.getInt();
+        long nextPosition = bufferIn.getLong();
+        /*
+         * The events before the next one were read: on the CPUs before it,
+         * those up to its time; on the CPUs after it, those before its time.
+         */
+        long[] positions = new long[file.getCpuCount()];
+        for (int cpu = 0; cpu < positions.length; cpu++) {
+            if (cpu == nextCpu) {
+                positions[cpu] = nextPosition;
+            } else if (nextCpu >= positions.length || (cpu < nextCpu && nextTime == Long.MAX_VALUE)) {
+                positions[cpu] = file.getSize(cpu);
+            } else {
+                TraceCmdCpuStream stream = new TraceCmdCpuStream(file, cpu);
+                stream.seekTime(cpu < nextCpu ? nextTime + 1 : nextTime);
+                positions[cpu] = stream.getPosition();
+            }
+        }
+        fInfo = new TraceCmdLocationInfo(positions, nextTime, nextCpu);
+    }
+
+    @Override
+    public TraceCmdLocationInfo getLocationInfo() {
+        return fInfo;
+    }
+
+    @Override
+    public void serialize(ByteBuffer bufferOut) {
+        int nextCpu = fInfo.getNextCpu();
+        bufferOut.putLong(fInfo.getNextTime());
+        bufferOut.putInt(nextCpu);
+        bufferOut.putLong(nextCpu < fInfo.getCount() ? fInfo.getPosition(nextCpu) : 0L);
+    }
+
+    @Override
+    public int hashCode() {
+        return fInfo.hashCode();
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof TraceCmdLocation)) {
+            return false;
+        }
+        return fInfo.equals(((TraceCmdLocation) obj).fInfo);
+    }
+
+    @Override
+    public String toString() {
+        return "TraceCmdLocation [" + fInfo + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.ftrace.core.binary;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The state of the merge of the CPU ring buffers: the position of the next
+ * event to read in the ring buffer of each CPU.
+ *
+ * Every event is read once when merging, so the locations are ordered by the
+ * total number of bytes read. The merge reads the events by time, then by CPU,
+ * so the next event to read is enough to find all the positions.
+ *
+ * @author Matthew Khouzam
+ */
+@NonNullByDefault
+public final class TraceCmdLocationInfo implements Comparable<TraceCmdLocationInfo> {
+
+    private final long[] fPositions;
+    private final long fTotal;
+    private final long fNextTime;
+    private final int fNextCpu;
+
+    /**
+     * Constructor
+     *
+     * @param positions
+     *            the position of the next event of each CPU, the array is not
+     *            copied
+     * @param nextTime
+     *            the timestamp of the next event to read
+     * @param nextCpu
+     *            the CPU of the next event to read, the number of CPUs if all
+     *            the events were read
+     */
+    public TraceCmdLocationInfo(long[] positions, long nextTime, int nextCpu) {
+        fPositions = positions;
+        fNextTime = nextTime;
+        fNextCpu = nextCpu;
+        long total = 0;
+        for (long position : positions) {
+            total += position;
+        }
+        fTotal = total;
+    }
+
+    /**
+     * Get the number of CPUs
+     *
+     * @return the number of positions
+     */
+    public int getCount() {
+        return fPositions.length;
+    }
+
+    /**
+     * Get the position of the next event of a CPU
+     *
+     * @param index
+     *            the CPU
+     * @return the position in bytes
+     */
+    public long getPosition(int index) {
+        return fPositions[index];
+    }
+
+    /**
+     * Get the number of bytes read in all the ring buffers
+     *
+     * @return the sum of the positions
+     */
+    public long getTotal() {
+        return fTotal;
+    }
+
+    /**
+     * Get the timestamp of the next event to read
+     *
+     * @return the time in nanoseconds
+     */
+    public long getNextTime() {
+        return fNextTime;
+    }
+
+    /**
+     * Get the CPU of the next event to read
+     *
+     * @return the CPU, or {@link #getCount()} if all the events were read
+     */
+    public int getNextCpu() {
+        return fNextCpu;
+    }
+
+    @Override
+    public int compareTo(TraceCmdLocationInfo other) {
+        int compare = Long.compare(fTotal, other.fTotal);
+        for (int i = 0; compare == 0 && i < Math.min(fPositions.length, other.fPositions.length); i++) {
+            compare = Long.compare(fPositions[i], other.fPositions[i]);
+        }
+        return compare != 0 ? compare : Integer.compare(fPositions.length, other.fPositions.length);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(fPositions);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof TraceCmdLocationInfo)) {
+            return false;
+        }
+        return Arrays.equals(fPositions, ((TraceCmdLocationInfo) obj).fPositions);
+    }
+
+    @Override
+    public String toString() {
+        return "TraceCmdLocationInfo " + Arrays.toString(fPositions); //$NON-NLS-1$
+    }
+}
@@ -18,10 +18,7 @@ import org.eclipse.tracecompass.analysis.os.linux.core.kernel.LinuxValues;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
 
-import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Ftrace field class
@@ -35,11 +32,6 @@ import java.util.regex.Pattern;
 @NonNullByDefault
 public class GenericFtraceField {
 
-    private static final Pattern KEYVAL_PATTERN = Pattern.compile("(?<key>[^\\s=\\[\\],]+)(=|:)\\s*(?<val>[^\\s=\\[\\],]+)"); //$NON-NLS-1$
-    private static final String KEYVAL_KEY_GROUP = "key"; //$NON-NLS-1$
-    private static final String KEYVAL_VAL_GROUP = "val"; //$NON-NLS-1$
-
-    private static final double SECONDS_TO_NANO = 1000000000.0;
     private static final Map<Character, @NonNull Long> PREV_STATE_LUT;
 
     static {
@@ -63,7 +55,8 @@ public class GenericFtraceField {
     private final Integer fCpu;
     private @Nullable Integer fTid;
     private @Nullable Integer fPid;
-    private ITmfEventField fContent;
+    private Map<String, Object> fFields;
+    private @Nullable ITmfEventField fContent = null;
 
     /**
      * Constructor
@@ -80,108 +73,63 @@ public class GenericFtraceField {
         fCpu = cpu;
         fPid = pid;
         fTid = tid;
-        ITmfEventField[] array = fields.entrySet().stream()
-                .map(entry -> new TmfEventField(entry.getKey(), entry.getValue(), null))
-                .toArray(ITmfEventField[]::new);
-        fContent = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, fields, array);
+        fFields = fields;
         fTs = ts;
     }
 
     /**
      * Parse a line from an ftrace ouput file
      *
-     * @param line The string to parse
+     * @param line The line to parse
      * @return An event field
      */
-    public static @Nullable GenericFtraceField parseLine(String line) {
-        Matcher matcher = IGenericFtraceConstants.FTRACE_PATTERN.matcher(line);
-        if (matcher.matches()) {
-            Integer pid = Integer.parseInt(matcher.group(IGenericFtraceConstants.FTRACE_PID_GROUP));
-            Integer tid = pid;
-            Integer cpu = Integer.parseInt(matcher.group(IGenericFtraceConstants.FTRACE_CPU_GROUP));
-            Double timestampInSec = Double.parseDouble(matcher.group(IGenericFtraceConstants.FTRACE_TIMESTAMP_GROUP));
-            Long timestampInNano = (long) (timestampInSec * SECONDS_TO_NANO);
-
-            String name = matcher.group(IGenericFtraceConstants.FTRACE_NAME_GROUP);
-            name = name.trim();
-
-            String separator = matcher.group(IGenericFtraceConstants.FTRACE_SEPARATOR_GROUP);
-            separator = separator.trim();
-
-            String attributes = matcher.group(IGenericFtraceConstants.FTRACE_DATA_GROUP);
-
-            name = eventNameRewrite(name, separator);
-
-            /*
-             * There's no distinction between pid and tid in scheduling events. However,when there's a mismatch
-             * between the tgid and the pid, we know the event happened on a thread and that
-             * the tgid is the actual pid, and the pid the tid.
-             */
-            String tgid = matcher.group(IGenericFtraceConstants.FTRACE_TGID_GROUP);
-            if (tgid != null) {
-                Integer tgidNumeric = Integer.parseInt(tgid);
-                if (!tgidNumeric.equals(pid)) {
-                    pid = tgidNumeric;
-                }
-            }
-
-            Map<@NonNull String, @NonNull Object> fields = new HashMap<>();
-
-            Matcher keyvalMatcher = KEYVAL_PATTERN.matcher(attributes);
-            while (keyvalMatcher.find()) {
-                String key = keyvalMatcher.group(KEYVAL_KEY_GROUP);
-                String value = keyvalMatcher.group(KEYVAL_VAL_GROUP);
-                if (value != null) {
-                    // This is a temporary solution. Refactor suggestions are welcome.
-                    if (key.equals("prev_state")) { //$NON-NLS-1$
-                        fields.put(key, parsePrevStateValue(value));
-                    } else if (StringUtils.isNumeric(value)) {
-                        if (key.equals("parent_pid") && name.equals("sched_process_fork")) {//$NON-NLS-1$ //$NON-NLS-2$
-                            key = "pid"; //$NON-NLS-1$
-                        }
-                        fields.put(key, Long.parseUnsignedLong(value));
-                    } else {
-                        fields.put(key, decodeString(value));
-                    }
-                }
-            }
-
-            /*
-             * If anything else fails, but we have discovered sort of a valid event
-             * attributes lets just add the unparsed attributes with key "data".
-             */
-            if (fields.isEmpty() && attributes != null && !attributes.isEmpty()) {
-                String key = "data"; //$NON-NLS-1$
-                if (name.equals(IGenericFtraceConstants.FTRACE_EXIT_SYSCALL)) {
-                    key = "ret"; //$NON-NLS-1$
-                }
-                fields.put(key, decodeString(attributes));
-            }
-
-            return new GenericFtraceField(name, cpu, timestampInNano, pid, tid, fields);
-        }
-        return null;
+    public static @Nullable GenericFtraceField parseLine(CharSequence line) {
+        return GenericFtraceLineParser.parse(line);
     }
 
-    private static Object decodeString(String val) {
-        try {
-            if (val.startsWith("0x") || val.startsWith("0X")) { //$NON-NLS-1$ //$NON-NLS-2$
-                // Chances are this is an hexadecimal string. Parse the value
-                return Long.parseUnsignedLong(val.substring(2), 16);
+    /**
+     * Create a field from decoded values, like the binary trace-cmd events.
+     * The names are rewritten like the ones of {@link #parseLine(CharSequence)}.
+     *
+     * @param name
+     *            The event name, as in its format
+     * @param cpu
+     *            The cpu number
+     * @param ts
+     *            The timestamp in ns
+     * @param pid
+     *            The process id, also the thread id
+     * @param values
+     *            The decoded fields of the event, numbers are longs
+     * @return An event field
+     */
+    public static GenericFtraceField create(String name, int cpu, long ts, @Nullable Integer pid, Map<String, Object> values) {
+        String eventName = eventNameRewrite(name, null);
+        if (eventName.equals("sched_process_fork")) { //$NON-NLS-1$
+            Object parentPid = values.remove("parent_pid"); //$NON-NLS-1$
+            if (parentPid != null) {
+                values.put("pid", parentPid); //$NON-NLS-1$
             }
-        } catch (NumberFormatException e) {
-            // Fall back to returning the string
         }
-        return val;
+        return new GenericFtraceField(eventName, cpu, ts, pid, pid, values);
     }
 
     /**
-     * Get the event content
+     * Get the event content, created from the fields the first time it is
+     * read
      *
      * @return the event content
      */
     public ITmfEventField getContent() {
-        return fContent;
+        ITmfEventField content = fContent;
+        if (content == null) {
+            ITmfEventField[] array = fFields.entrySet().stream()
+                    .map(entry -> new TmfEventField(entry.getKey(), entry.getValue(), null))
+                    .toArray(ITmfEventField[]::new);
+            content = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, fFields, array);
+            fContent = content;
+        }
+        return content;
     }
 
     /**
@@ -190,10 +138,8 @@ public class GenericFtraceField {
      * @param fields Map of field values
      */
     public void setContent(Map<String, Object> fields) {
-        ITmfEventField[] array = fields.entrySet().stream()
-                .map(entry -> new TmfEventField(entry.getKey(), entry.getValue(), null))
-                .toArray(ITmfEventField[]::new);
-        fContent = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, fields, array);
+        fFields = fields;
+        fContent = null;
     }
 
     /**
@@ -275,7 +221,7 @@ public class GenericFtraceField {
      *
      * @return the state as a Long
      */
-    private static Long parsePrevStateValue(String value) {
+    static Long parsePrevStateValue(String value) {
         Long state = 0L;
         if (StringUtils.isNumeric(value)) {
             state = Long.parseUnsignedLong(value);
@@ -291,7 +237,7 @@ public class GenericFtraceField {
      *
      * @return the new or original event name
      */
-    private static String eventNameRewrite(@Nullable String name, @Nullable String separator) {
+    static String eventNameRewrite(@Nullable String name, @Nullable String separator) {
         if (name == null) {
             return ""; //$NON-NLS-1$
         }
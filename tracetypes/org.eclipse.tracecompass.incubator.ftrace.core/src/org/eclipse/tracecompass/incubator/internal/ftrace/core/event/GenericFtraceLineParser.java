@@ -0,0 +1,419 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ecole Polytechnique de Montreal
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.ftrace.core.event;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Single pass parser of the ftrace text lines, accepting the lines of
+ * {@link IGenericFtraceConstants#FTRACE_PATTERN}:
+ *
+ * <pre>
+ * kworker/u16:6-214   (214) [002] d...   149.136514: sched_switch: prev_comm=kworker/u16:6 prev_pid=214 ...
+ * &lt;comm&gt;-&lt;pid&gt; (&lt;tgid&gt;) [&lt;cpu&gt;] &lt;flags&gt; &lt;timestamp&gt;: &lt;name&gt;&lt;separator&gt;&lt;data&gt;
+ * </pre>
+ *
+ * The tgid and flags are optional and the separator is ": ", "(" or " -> ".
+ * The numbers are parsed in place and the timestamp is converted to
+ * nanoseconds with integer arithmetic. The data is then scanned for the
+ * "key=value" and "key: value" pairs.
+ *
+ * @author Matthew Khouzam
+ */
+@NonNullByDefault
+public final class GenericFtraceLineParser {
+
+    private static final int NANOS_DIGITS = 9;
+    private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L };
+
+    private static final String PREV_STATE = "prev_state"; //$NON-NLS-1$
+    private static final String PARENT_PID = "parent_pid"; //$NON-NLS-1$
+    private static final String SCHED_PROCESS_FORK = "sched_process_fork"; //$NON-NLS-1$
+    private static final String SEPARATOR_COLON = ":"; //$NON-NLS-1$
+    private static final String SEPARATOR_PARENTHESIS = "("; //$NON-NLS-1$
+
+    private GenericFtraceLineParser() {
+        // Do nothing
+    }
+
+    /**
+     * Parse a line from an ftrace output file
+     *
+     * @param line
+     *            The line to parse
+     * @return An event field, or null if the line is not an event
+     */
+    public static @Nullable GenericFtraceField parse(CharSequence line) {
+        int length = line.length();
+        for (int bracket = indexOf(line, '[', 0, length); bracket >= 0; bracket = indexOf(line, '[', bracket + 1, length)) {
+            GenericFtraceField field = parse(line, bracket, length);
+            if (field != null) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parse a line, the CPU being between the square bracket at an index and
+     * the next one
+     */
+    private static @Nullable GenericFtraceField parse(CharSequence line, int bracket, int length) {
+        /* CPU */
+        int cpuEnd = skipDigits(line, bracket + 1, length);
+        if (cpuEnd == bracket + 1 || cpuEnd >= length || line.charAt(cpuEnd) != ']') {
+            return null;
+        }
+        long cpu = parseDecimal(line, bracket + 1, cpuEnd);
+
+        /* Thread, backwards from the CPU: comm-pid, then the optional tgid */
+        int i = skipWhitespaceBackwards(line, bracket - 1);
+        if (i == bracket - 1 || i < 0) {
+            return null;
+        }
+        long tgid = -1;
+        if (line.charAt(i) == ')') {
+            int tgidEnd = i;
+            int tgidStart = skipDigitsBackwards(line, i - 1) + 1;
+            int open = tgidStart - 1;
+            while (open >= 0 && line.charAt(open) != '(' && !isDigit(line.charAt(open))) {
+                open--;
+            }
+            if (open < 0 || line.charAt(open) != '(') {
+                return null;
+            }
+            if (tgidStart < tgidEnd) {
+                tgid = parseDecimal(line, tgidStart, tgidEnd);
+            }
+            i = skipWhitespaceBackwards(line, open - 1);
+            if (i == open - 1 || i < 0) {
+                return null;
+            }
+        }
+        int pidStart = skipDigitsBackwards(line, i) + 1;
+        if (pidStart > i || pidStart == 0 || line.charAt(pidStart - 1) != '-') {
+            return null;
+        }
+        long pid = parseDecimal(line, pidStart, i + 1);
+
+        /* Flags then timestamp, or only the timestamp */
+        i = skipWhitespace(line, cpuEnd + 1, length);
+        if (i == cpuEnd + 1) {
+            return null;
+        }
+        int timestampEnd = timestampEnd(line, i, length);
+        if (timestampEnd < 0) {
+            int flagsEnd = i;
+            while (flagsEnd < length && !isWhitespace(line.charAt(flagsEnd))) {
+                flagsEnd++;
+            }
+            i = skipWhitespace(line, flagsEnd, length);
+            if (i == flagsEnd) {
+                return null;
+            }
+            timestampEnd = timestampEnd(line, i, length);
+            if (timestampEnd < 0) {
+                return null;
+            }
+        }
+        long timestamp = parseTimestamp(line, i, timestampEnd);
+
+        /* Event name, after the ": " */
+        int nameStart = skipWhitespace(line, timestampEnd + 1, length);
+        int nameEnd = nameStart;
+        while (nameEnd < length && isWordCharacter(line.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        if (nameEnd == nameStart || nameEnd == length) {
+            return null;
+        }
+
+        /* Separator */
+        String separator;
+        int dataStart;
+        char c = line.charAt(nameEnd);
+        if (c == ':') {
+            separator = SEPARATOR_COLON;
+            dataStart = skipWhitespace(line, nameEnd + 1, length);
+            if (dataStart == nameEnd + 1) {
+                return null;
+            }
+        } else if (c == '(') {
+            separator = SEPARATOR_PARENTHESIS;
+            dataStart = nameEnd + 1;
+        } else {
+            int arrow = skipWhitespace(line, nameEnd, length);
+            if (arrow == nameEnd || arrow + 1 >= length || line.charAt(arrow) != '-' || line.charAt(arrow + 1) != '>') {
+                return null;
+            }
+            separator = IGenericFtraceConstants.FTRACE_EXIT_SYSCALL_SEPARATOR;
+            dataStart = skipWhitespace(line, arrow + 2, length);
+            if (dataStart == arrow + 2) {
+                return null;
+            }
+        }
+
+        /* The data ends before an optional closing parenthesis */
+        int dataEnd = length;
+        if (dataEnd > dataStart && line.charAt(dataEnd - 1) == ')') {
+            dataEnd--;
+        }
+        if (indexOf(line, ')', dataStart, dataEnd) >= 0) {
+            return null;
+        }
+
+        if (pid > Integer.MAX_VALUE || cpu > Integer.MAX_VALUE || tgid > Integer.MAX_VALUE) {
+            return null;
+        }
+        String name = GenericFtraceField.eventNameRewrite(line.subSequence(nameStart, nameEnd).toString(), separator);
+
+        /*
+         * There's no distinction between pid and tid in scheduling events.
+         * However,when there's a mismatch between the tgid and the pid, we
+         * know the event happened on a thread and that the tgid is the actual
+         * pid, and the pid the tid.
+         */
+        Integer tid = (int) pid;
+        Integer processId = tgid >= 0 ? (int) tgid : tid;
+
+        Map<String, Object> fields = parseFields(line, dataStart, dataEnd, name);
+
+        /*
+         * If anything else fails, but we have discovered sort of a valid event
+         * attributes lets just add the unparsed attributes with key "data".
+         */
+        if (fields.isEmpty() && dataStart < dataEnd) {
+            String key = "data"; //$NON-NLS-1$
+            if (name.equals(IGenericFtraceConstants.FTRACE_EXIT_SYSCALL)) {
+                key = "ret"; //$NON-NLS-1$
+            }
+            fields.put(key, parseValue(line, dataStart, dataEnd));
+        }
+
+        return new GenericFtraceField(name, (int) cpu, timestamp, processId, tid, fields);
+    }
+
+    /**
+     * Scan the data for the "key=value" and "key: value" pairs. The keys and
+     * values are made of any characters but whitespace, '=', '[', ']' and
+     * ','. Like a regex, the longest key with a value is taken, so
+     * "comm=kworker/2:0H" is the key comm, but "a:b c" is the key a.
+     */
+    private static Map<String, Object> parseFields(CharSequence line, int start, int end, String name) {
+        Map<String, Object> fields = new HashMap<>();
+        int i = start;
+        while (i < end) {
+            if (isSeparator(line.charAt(i))) {
+                i++;
+                continue;
+            }
+            int runEnd = i;
+            while (runEnd < end && !isSeparator(line.charAt(runEnd))) {
+                runEnd++;
+            }
+            int keyEnd = -1;
+            int valueStart = -1;
+            int valueEnd = -1;
+            if (runEnd < end && line.charAt(runEnd) == '=') {
+                valueStart = skipWhitespace(line, runEnd + 1, end);
+                valueEnd = valueEnd(line, valueStart, end);
+                if (valueEnd > valueStart) {
+                    keyEnd = runEnd;
+                }
+            }
+            for (int colon = runEnd - 1; keyEnd < 0 && colon > i; colon--) {
+                if (line.charAt(colon) == ':') {
+                    valueStart = skipWhitespace(line, colon + 1, end);
+                    valueEnd = valueEnd(line, valueStart, end);
+                    if (valueEnd > valueStart) {
+                        keyEnd = colon;
+                    }
+                }
+            }
+            if (keyEnd < 0) {
+                i = runEnd;
+                continue;
+            }
+            String key = line.subSequence(i, keyEnd).toString();
+            if (key.equals(PREV_STATE)) {
+                fields.put(key, GenericFtraceField.parsePrevStateValue(line.subSequence(valueStart, valueEnd).toString()));
+            } else {
+                Object value = parseValue(line, valueStart, valueEnd);
+                if (value instanceof Long && key.equals(PARENT_PID) && name.equals(SCHED_PROCESS_FORK) && isDigits(line, valueStart, valueEnd)) {
+                    key = IGenericFtraceConstants.PID;
+                }
+                fields.put(key, value);
+            }
+            i = valueEnd;
+        }
+        return fields;
+    }
+
+    /**
+     * Parse a value: decimal and hexadecimal numbers are longs, the rest are
+     * strings. The positive decimals are unsigned, like the addresses.
+     */
+    private static Object parseValue(CharSequence line, int start, int end) {
+        if (end - start > 1 && line.charAt(start) == '-' && isDigits(line, start + 1, end)) {
+            long value = 0;
+            for (int i = start + 1; i < end; i++) {
+                int digit = line.charAt(i) - '0';
+                if (value < (Long.MIN_VALUE + digit) / 10) {
+                    /* Out of range of longs */
+                    return line.subSequence(start, end).toString();
+                }
+                value = value * 10 - digit;
+            }
+            return value;
+        }
+        if (isDigits(line, start, end)) {
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                int digit = line.charAt(i) - '0';
+                if (Long.compareUnsigned(value, Long.divideUnsigned(-1L - digit, 10)) > 0) {
+                    /* Out of range of unsigned longs */
+                    return line.subSequence(start, end).toString();
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+        if (end - start > 2 && line.charAt(start) == '0' && (line.charAt(start + 1) == 'x' || line.charAt(start + 1) == 'X') && end - start - 2 <= 16) {
+            long value = 0;
+            for (int i = start + 2; i < end; i++) {
+                int digit = Character.digit(line.charAt(i), 16);
+                if (digit < 0) {
+                    return line.subSequence(start, end).toString();
+                }
+                value = (value << 4) | digit;
+            }
+            return value;
+        }
+        return line.subSequence(start, end).toString();
+    }
+
+    private static long parseTimestamp(CharSequence line, int start, int end) {
+        int dot = indexOf(line, '.', start, end);
+        if (dot < 0) {
+            return parseDecimal(line, start, end) * POWERS_OF_TEN[NANOS_DIGITS];
+        }
+        long seconds = parseDecimal(line, start, dot);
+        int fractionEnd = Math.min(end, dot + 1 + NANOS_DIGITS);
+        long fraction = parseDecimal(line, dot + 1, fractionEnd);
+        return seconds * POWERS_OF_TEN[NANOS_DIGITS] + fraction * POWERS_OF_TEN[NANOS_DIGITS - (fractionEnd - dot - 1)];
+    }
+
+    /**
+     * Get the end of a timestamp, "digits(.digits)?: "
+     *
+     * @return the index of the ':' or -1 if it is not a timestamp
+     */
+    private static int timestampEnd(CharSequence line, int start, int length) {
+        int i = skipDigits(line, start, length);
+        if (i == start) {
+            return -1;
+        }
+        if (i < length && line.charAt(i) == '.') {
+            int fraction = i + 1;
+            i = skipDigits(line, fraction, length);
+            if (i == fraction) {
+                return -1;
+            }
+        }
+        if (i + 1 >= length || line.charAt(i) != ':' || line.charAt(i + 1) != ' ') {
+            return -1;
+        }
+        return i;
+    }
+
+    private static long parseDecimal(CharSequence line, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (line.charAt(i) - '0');
+            if (value < 0) {
+                return Long.MAX_VALUE;
+            }
+        }
+        return value;
+    }
+
+    private static int valueEnd(CharSequence line, int start, int end) {
+        int i = start;
+        while (i < end && !isSeparator(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int indexOf(CharSequence line, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (line.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipDigits(CharSequence line, int start, int end) {
+        int i = start;
+        while (i < end && isDigit(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipDigitsBackwards(CharSequence line, int start) {
+        int i = start;
+        while (i >= 0 && isDigit(line.charAt(i))) {
+            i--;
+        }
+        return i;
+    }
+
+    private static int skipWhitespace(CharSequence line, int start, int end) {
+        int i = start;
+        while (i < end && isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipWhitespaceBackwards(CharSequence line, int start) {
+        int i = start;
+        while (i >= 0 && isWhitespace(line.charAt(i))) {
+            i--;
+        }
+        return i;
+    }
+
+    private static boolean isDigits(CharSequence line, int start, int end) {
+        return end > start && skipDigits(line, start, end) == end;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    private static boolean isWordCharacter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '_';
+    }
+
+    private static boolean isSeparator(char c) {
+        return isWhitespace(c) || c == '=' || c == '[' || c == ']' || c == ',';
+    }
+}
@@ -9,13 +9,9 @@
 
 package org.eclipse.tracecompass.incubator.internal.ftrace.core.trace;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -24,25 +20,40 @@ import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.incubator.internal.ftrace.core.Activator;
+import org.eclipse.tracecompass.incubator.internal.ftrace.core.binary.TraceCmdContext;
+import org.eclipse.tracecompass.incubator.internal.ftrace.core.binary.TraceCmdCpuStream;
+import org.eclipse.tracecompass.incubator.internal.ftrace.core.binary.TraceCmdDatFile;
+import org.eclipse.tracecompass.incubator.internal.ftrace.core.binary.TraceCmdLocation;
+import org.eclipse.tracecompass.incubator.internal.ftrace.core.binary.TraceCmdLocationInfo;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
 import org.eclipse.tracecompass.tmf.core.project.model.ITmfPropertiesProvider;
-import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
-import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.TraceValidationStatus;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfPersistentlyIndexable;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 
 /**
- * Helper to open fTrace traces
+ * Binary ftrace, the data files (.dat) recorded by trace-cmd. The events are
+ * decoded from the ring buffer pages of the file with the event formats it
+ * contains, without running trace-cmd.
  *
  * @author Matthew Khouzam
  *
  */
-public class BinaryFTrace extends GenericFtrace implements ITmfPropertiesProvider {
+public class BinaryFTrace extends GenericFtrace implements ITmfPropertiesProvider, ITmfPersistentlyIndexable {
 
-    private static final String TRACE_CMD = "trace-cmd"; //$NON-NLS-1$
-    private static final String REPORT = "report"; //$NON-NLS-1$
     private final @NonNull Map<@NonNull String, @NonNull String> fProperties = new LinkedHashMap<>();
+    private @Nullable TraceCmdDatFile fDatFile;
+    private @NonNull TraceCmdLocation fCurrentLocation = new TraceCmdLocation(new long[0], Long.MAX_VALUE, 0);
+    private long fSize;
+    private int fCheckpointSize = -1;
 
     @Override
     public IStatus validate(IProject project, String path) {
@@ -55,67 +66,189 @@ public class BinaryFTrace extends GenericFtrace implements ITmfPropertiesProvide
         }
         int confidence = 32;
         try {
-            if (!TmfTraceUtils.isText(file)) {
-                int magicLength = TRACE_CMD_DAT_MAGIC.length;
-                if (file.length() > magicLength) {
-                    try (FileInputStream fis = new FileInputStream(file)) {
-                        byte[] start = new byte[magicLength];
-                        int read = fis.read(start);
-                        if (read == magicLength && Arrays.equals(TRACE_CMD_DAT_MAGIC, start)) {
-                            ProcessBuilder pb = new ProcessBuilder(TRACE_CMD);
-                            Process traceCmd = pb.start();
-                            try (BufferedReader br = new BufferedReader(new InputStreamReader(traceCmd.getInputStream(), Charset.forName("UTF-8")));) { //$NON-NLS-1$
-                                String line = br.readLine();
-                                while (line != null) {
-                                    if (line.contains(REPORT)) {
-                                        return new TraceValidationStatus(confidence, Activator.PLUGIN_ID);
-                                    }
-                                    line = br.readLine();
-                                }
-                            }
-                        }
-                    }
-                    return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Magic mismatch"); //$NON-NLS-1$
-                }
+            if (!TraceCmdDatFile.hasMagic(file)) {
+                return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Magic mismatch"); //$NON-NLS-1$
             }
-        } catch (IOException e) {
-            Activator.getInstance().logError("Error validating file: " + path, e); //$NON-NLS-1$
-            if (e.getMessage().startsWith("Cannot run program: \"" + TRACE_CMD + "\": error=2,")) { //$NON-NLS-1$ //$NON-NLS-2$
-                return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "It appears trace-cmd is not available on your machine. Please install it to use the binary ftrace parser. (sudo apt install trace-cmd)", e); //$NON-NLS-1$
+            /* Read the headers, to reject the unsupported versions */
+            try (TraceCmdDatFile datFile = new TraceCmdDatFile(file)) {
+                return new TraceValidationStatus(confidence, Activator.PLUGIN_ID);
             }
-
-            return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "IOException validating file: " + path, e); //$NON-NLS-1$
+        } catch (IOException e) {
+            return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Not a supported FTrace bin: " + path, e); //$NON-NLS-1$
         }
-        return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Not an FTrace bin"); //$NON-NLS-1$
     }
 
     @Override
     public void initTrace(IResource resource, String path, Class<? extends ITmfEvent> type, String name, String traceTypeId) throws TmfTraceException {
-
         super.initTrace(resource, path, type, name, traceTypeId);
-        fProperties.put("Type", "Trace-Event"); //$NON-NLS-1$ //$NON-NLS-2$
-        String dir = TmfTraceManager.getSupplementaryFileDir(this);
-        if (!new File(dir).exists()) {
-            throw new TmfTraceException("Could not create temporary folder " + dir); //$NON-NLS-1$
+        TraceCmdDatFile datFile;
+        try {
+            datFile = new TraceCmdDatFile(new File(path));
+        } catch (IOException e) {
+            throw new TmfTraceException(e.getMessage(), e);
         }
-        File file = new File(dir + new File(path).getName());
-        if (!file.exists()) {
+        fDatFile = datFile;
+        long size = 0;
+        for (int cpu = 0; cpu < datFile.getCpuCount(); cpu++) {
+            size += datFile.getSize(cpu);
+        }
+        fSize = size;
+        fCurrentLocation = createLocation(datFile, new long[datFile.getCpuCount()]);
+        fProperties.put("Type", "trace-cmd"); //$NON-NLS-1$ //$NON-NLS-2$
+        fProperties.put("Version", datFile.getVersion()); //$NON-NLS-1$
+        fProperties.put("CPUs", String.valueOf(datFile.getCpuCount())); //$NON-NLS-1$
+        fProperties.put("Page size", String.valueOf(datFile.getPageSize())); //$NON-NLS-1$
+    }
+
+    /**
+     * The events are read from the pages of the data file, not by lines
+     */
+    @Override
+    protected @Nullable MappedLineReader createLineReader(File file) {
+        return null;
+    }
 
-            ProcessBuilder pb = new ProcessBuilder(TRACE_CMD, "report", "-i", path, "-R"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-            pb.redirectOutput(file);
+    @Override
+    public synchronized void dispose() {
+        TraceCmdDatFile datFile = fDatFile;
+        fDatFile = null;
+        if (datFile != null) {
             try {
-                pb.start().waitFor();
-            } catch (IOException | InterruptedException e) {
-                throw new TmfTraceException(e.getMessage(), e);
+                datFile.close();
+            } catch (IOException e) {
+                Activator.getInstance().logError("Error disposing trace. File: " + getPath(), e); //$NON-NLS-1$
+            }
+        }
+        super.dispose();
+    }
+
+    @Override
+    public ITmfContext seekEvent(ITmfLocation location) {
+        TraceCmdDatFile datFile = fDatFile;
+        if (datFile == null) {
+            return new TmfContext();
+        }
+        long[] positions = new long[datFile.getCpuCount()];
+        if (location instanceof TraceCmdLocation) {
+            TraceCmdLocationInfo info = ((TraceCmdLocation) location).getLocationInfo();
+            if (info.getCount() == positions.length) {
+                for (int i = 0; i < positions.length; i++) {
+                    positions[i] = info.getPosition(i);
+                }
+                TraceCmdContext context = new TraceCmdContext(datFile, positions, this);
+                context.setLocation(location);
+                context.setRank(info.getTotal() == 0 ? 0 : ITmfContext.UNKNOWN_RANK);
+                return context;
+            }
+        }
+        TraceCmdContext context = new TraceCmdContext(datFile, positions, this);
+        context.setLocation(createLocation(datFile, positions));
+        context.setRank(0);
+        return context;
+    }
+
+    /**
+     * Seek a ratio of the data. The positions are those of the first time
+     * where the requested amount of data is read, found by a binary search on
+     * the time, each CPU searching its pages for that time.
+     */
+    @Override
+    public ITmfContext seekEvent(double ratio) {
+        TraceCmdDatFile datFile = fDatFile;
+        if (datFile == null) {
+            return new TmfContext();
+        }
+        TraceCmdCpuStream[] streams = new TraceCmdCpuStream[datFile.getCpuCount()];
+        long low = Long.MAX_VALUE;
+        for (int cpu = 0; cpu < streams.length; cpu++) {
+            streams[cpu] = new TraceCmdCpuStream(datFile, cpu);
+            if (streams[cpu].seek(0)) {
+                low = Math.min(low, streams[cpu].getTime());
             }
-            if (!file.exists()) {
-                throw new TmfTraceException("Could not create temporary file " + file.getAbsolutePath()); //$NON-NLS-1$
+        }
+        if (low == Long.MAX_VALUE) {
+            return seekEvent((ITmfLocation) null);
+        }
+        long target = (long) (ratio * fSize);
+        long high = Long.MAX_VALUE;
+        while (low < high) {
+            long mid = low + (high - low) / 2;
+            long total = 0;
+            for (TraceCmdCpuStream stream : streams) {
+                stream.seekTime(mid);
+                total += stream.getPosition();
             }
-            if (file.length() <= 0) {
-                throw new TmfTraceException("Empty temporary file " + file.getAbsolutePath()); //$NON-NLS-1$
+            if (total < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
             }
         }
-        setFile(file);
+        long[] positions = new long[streams.length];
+        for (int cpu = 0; cpu < positions.length; cpu++) {
+            streams[cpu].seekTime(low);
+            positions[cpu] = streams[cpu].getPosition();
+        }
+        return seekEvent(createLocation(datFile, positions));
+    }
+
+    /**
+     * Create the location of positions in the ring buffers. The next event to
+     * read is the first one by time, then by CPU, as in the merge.
+     */
+    private TraceCmdLocation createLocation(TraceCmdDatFile datFile, long[] positions) {
+        TraceCmdLocationInfo next = new TraceCmdContext(datFile, positions, this).getPosition().getLocationInfo();
+        return new TraceCmdLocation(positions, next.getNextTime(), next.getNextCpu());
+    }
+
+    @Override
+    public synchronized ITmfEvent parseEvent(ITmfContext context) {
+        if (context instanceof TraceCmdContext) {
+            TraceCmdContext traceCmdContext = (TraceCmdContext) context;
+            ITmfEvent event = traceCmdContext.getNext();
+            if (event != null) {
+                fCurrentLocation = traceCmdContext.getPosition();
+                return event;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized ITmfLocation getCurrentLocation() {
+        return fCurrentLocation;
+    }
+
+    @Override
+    public double getLocationRatio(ITmfLocation location) {
+        if (fSize == 0 || !(location instanceof TraceCmdLocation)) {
+            return 0;
+        }
+        return (double) ((TraceCmdLocation) location).getLocationInfo().getTotal() / fSize;
+    }
+
+    @Override
+    public ITmfLocation restoreLocation(ByteBuffer bufferIn) {
+        TraceCmdDatFile datFile = fDatFile;
+        if (datFile == null) {
+            /* Disposed, there are no CPUs to find the positions in */
+            bufferIn.position(bufferIn.position() + TraceCmdLocation.SERIALIZED_SIZE);
+            return new TraceCmdLocation(new long[0], Long.MAX_VALUE, 0);
+        }
+        return new TraceCmdLocation(bufferIn, datFile);
+    }
+
+    @Override
+    public int getCheckpointSize() {
+        if (fCheckpointSize == -1) {
+            /* The serialized locations all have the same size */
+            TmfCheckpoint checkpoint = new TmfCheckpoint(TmfTimestamp.fromNanos(0L), new TraceCmdLocation(new long[0], Long.MAX_VALUE, 0), 0);
+            ByteBuffer buffer = ByteBuffer.allocate(ITmfCheckpoint.MAX_SERIALIZE_SIZE);
+            buffer.clear();
+            checkpoint.serialize(buffer);
+            fCheckpointSize = buffer.position();
+        }
+        return fCheckpointSize;
     }
 
     @Override
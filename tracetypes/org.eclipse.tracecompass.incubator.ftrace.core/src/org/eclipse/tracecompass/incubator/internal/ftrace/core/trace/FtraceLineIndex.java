@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.ftrace.core.trace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.internal.ftrace.core.event.GenericFtraceLineParser;
+
+/**
+ * Checkpoints of the event lines of an ftrace text file. The file is cut in
+ * steps of a fixed number of bytes and the index keeps, for every step, the
+ * offset of the first event line starting in it or after it. Seeking an
+ * arbitrary offset then starts from the checkpoint of its step, so it always
+ * lands at the start of an event line, never in the middle of a line or on a
+ * comment.
+ *
+ * The index is saved in a file with a small header followed by one offset per
+ * step, it is reused while the trace size and modification time are
+ * unchanged.
+ *
+ * @author Matthew Khouzam
+ */
+@NonNullByDefault
+public final class FtraceLineIndex {
+
+    /** Magic number of the index files, "FLIX" */
+    static final int MAGIC = 0x58494C46;
+    /** Version of the file format */
+    static final int VERSION = 1;
+
+    /** Default size of the steps, in bytes */
+    public static final long DEFAULT_STEP = 1L << 20;
+
+    private final long fSize;
+    private final long fStep;
+    private final long[] fCheckpoints;
+
+    private FtraceLineIndex(long size, long step, long[] checkpoints) {
+        fSize = size;
+        fStep = step;
+        fCheckpoints = checkpoints;
+    }
+
+    /**
+     * Open the index of a trace, building it first if it does not exist or if
+     * the trace changed since it was built.
+     *
+     * @param source
+     *            the trace file
+     * @param indexFile
+     *            the index file, typically in the supplementary files
+     * @param reader
+     *            the line reader of the trace file
+     * @return the index
+     * @throws IOException
+     *             if the files cannot be read or written
+     */
+    public static FtraceLineIndex open(File source, File indexFile, MappedLineReader reader) throws IOException {
+        FtraceLineIndex index = read(indexFile, source);
+        if (index == null) {
+            index = build(reader, DEFAULT_STEP);
+            index.write(indexFile, source);
+        }
+        return index;
+    }
+
+    /**
+     * Build the index in one pass over the steps of a file
+     *
+     * @param reader
+     *            the line reader of the file
+     * @param step
+     *            the size of the steps, in bytes
+     * @return the index
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static FtraceLineIndex build(MappedLineReader reader, long step) throws IOException {
+        long size = reader.getSize();
+        int count = (int) ((size + step - 1) / step);
+        long[] checkpoints = new long[count];
+        long next = -1;
+        for (int i = 0; i < count; i++) {
+            long stepStart = i * step;
+            if (next < stepStart) {
+                next = nextEventLine(reader, stepStart);
+            }
+            checkpoints[i] = next;
+        }
+        return new FtraceLineIndex(size, step, checkpoints);
+    }
+
+    private static @Nullable FtraceLineIndex read(File indexFile, File source) {
+        if (!indexFile.exists()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION ||
+                    input.readLong() != source.length() || input.readLong() != source.lastModified()) {
+                return null;
+            }
+            long step = input.readLong();
+            int count = input.readInt();
+            if (step <= 0 || count != (source.length() + step - 1) / step) {
+                return null;
+            }
+            long[] checkpoints = new long[count];
+            for (int i = 0; i < count; i++) {
+                checkpoints[i] = input.readLong();
+            }
+            return new FtraceLineIndex(source.length(), step, checkpoints);
+        } catch (IOException e) {
+            /* Truncated or corrupted, it will be rebuilt */
+            return null;
+        }
+    }
+
+    private void write(File indexFile, File source) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(source.length());
+            output.writeLong(source.lastModified());
+            output.writeLong(fStep);
+            output.writeInt(fCheckpoints.length);
+            for (long checkpoint : fCheckpoints) {
+                output.writeLong(checkpoint);
+            }
+        } catch (IOException e) {
+            indexFile.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the offset of the first event line starting at or after an offset
+     *
+     * @param reader
+     *            the line reader of the file
+     * @param offset
+     *            the offset, anywhere in the file
+     * @return the offset of the start of the event line, or the size of the
+     *         file if there are no more events
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public long getEventOffset(MappedLineReader reader, long offset) throws IOException {
+        if (offset <= 0) {
+            return fCheckpoints.length == 0 ? fSize : fCheckpoints[0];
+        }
+        if (offset >= fSize) {
+            return fSize;
+        }
+        long checkpoint = fCheckpoints[(int) (offset / fStep)];
+        if (checkpoint >= offset) {
+            /* No event line starts between the step start and the checkpoint */
+            return checkpoint;
+        }
+        return nextEventLine(reader, offset);
+    }
+
+    /**
+     * Get the number of checkpoints
+     *
+     * @return the number of steps of the file
+     */
+    public int size() {
+        return fCheckpoints.length;
+    }
+
+    /**
+     * Get the size of the steps
+     *
+     * @return the size in bytes
+     */
+    public long getStep() {
+        return fStep;
+    }
+
+    /**
+     * Find the first event line at or after an offset, the offset being
+     * anywhere in a line
+     */
+    static long nextEventLine(MappedLineReader reader, long offset) throws IOException {
+        long lineStart = offset;
+        if (offset > 0) {
+            /*
+             * Read from the previous byte: it is either the end of the previous
+             * line, making an empty line, or in the line containing the offset.
+             * Either way the next line starts at or after the offset.
+             */
+            reader.readLine(offset - 1);
+            lineStart = reader.getNextOffset();
+        }
+        CharSequence line = reader.readLine(lineStart);
+        while (line != null) {
+            if (GenericFtraceLineParser.parse(line) != null) {
+                return lineStart;
+            }
+            lineStart = reader.getNextOffset();
+            line = reader.readLine(lineStart);
+        }
+        return reader.getSize();
+    }
+}
@@ -22,18 +22,15 @@ import org.eclipse.tracecompass.incubator.internal.ftrace.core.layout.GenericFtr
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
-import org.eclipse.tracecompass.tmf.core.io.BufferedRandomAccessFile;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.util.regex.Matcher;
 
 /**
  * Generic Ftrace trace.
@@ -50,7 +47,7 @@ public abstract class GenericFtrace extends TmfTrace implements IKernelTrace {
      */
     protected static final byte[] TRACE_CMD_DAT_MAGIC = { 0x17, 0x08, 0x44, 't', 'r', 'a', 'c', 'i', 'n', 'g' };
 
-    private static final int ESTIMATED_EVENT_SIZE = 90;
+    private static final String LINE_INDEX_SUFFIX = ".lineindex"; //$NON-NLS-1$
     private static final TmfLongLocation NULL_LOCATION = new TmfLongLocation(-1L);
     private static final TmfContext INVALID_CONTEXT = new TmfContext(NULL_LOCATION, ITmfContext.UNKNOWN_RANK);
 
@@ -59,19 +56,23 @@ public abstract class GenericFtrace extends TmfTrace implements IKernelTrace {
      */
     private File fFile;
 
-    private RandomAccessFile fFileInput;
+    private @Nullable MappedLineReader fLineReader;
+    private @Nullable FtraceLineIndex fLineIndex;
+
+    /**
+     * Offset of the line after the last line read
+     */
+    private long fNextLineOffset = 0;
 
     /**
      * @param line
      *            Trace line to be parsed. This method can be overridden by
-     *            Trace types that inherits from GenericFtrace.
+     *            Trace types that inherits from GenericFtrace. The line is
+     *            only valid until the next line is read.
      * @return Parsed FtraceField
      */
-    protected @Nullable GenericFtraceField parseLine(String line) {
-        if (line != null) {
-            return GenericFtraceField.parseLine(line);
-        }
-        return null;
+    protected @Nullable GenericFtraceField parseLine(CharSequence line) {
+        return GenericFtraceField.parseLine(line);
     }
 
     @Override
@@ -79,7 +80,7 @@ public abstract class GenericFtrace extends TmfTrace implements IKernelTrace {
         super.initTrace(resource, path, type);
         try {
             fFile = new File(path);
-            fFileInput = new BufferedRandomAccessFile(fFile, "r"); //$NON-NLS-1$
+            setLineReader(createLineReader(fFile));
         } catch (IOException e) {
             throw new TmfTraceException(e.getMessage(), e);
         }
@@ -87,14 +88,18 @@ public abstract class GenericFtrace extends TmfTrace implements IKernelTrace {
 
     @Override
     public synchronized void dispose() {
-        setFileInput(null);
+        setLineReader(null);
         super.dispose();
 
     }
 
     @Override
     public double getLocationRatio(ITmfLocation location) {
-        return ((Long) getCurrentLocation().getLocationInfo()).doubleValue() / getFile().length();
+        File file = getFile();
+        if (file == null || file.length() == 0 || location == null || !(location.getLocationInfo() instanceof Long)) {
+            return 0;
+        }
+        return ((Long) location.getLocationInfo()).doubleValue() / file.length();
     }
 
     @Override
@@ -107,11 +112,7 @@ public abstract class GenericFtrace extends TmfTrace implements IKernelTrace {
             return context;
         }
         try {
-            RandomAccessFile fileInput = getFileInput();
-            return seek(fileInput, location, context);
-        } catch (final FileNotFoundException e) {
-            Activator.getInstance().logError("Error seeking event. File not found: " + getPath(), e); //$NON-NLS-1$
-            return context;
+            return seek(location, context);
         } catch (final IOException e) {
             Activator.getInstance().logError("Error seeking event. File: " + getPath(), e); //$NON-NLS-1$
             return context;
@@ -121,8 +122,6 @@ public abstract class GenericFtrace extends TmfTrace implements IKernelTrace {
     /**
      * Internal seek
      *
-     * @param fileInput
-     *            file to seek
      * @param location
      *            location of file
      * @param context
@@ -131,29 +130,16 @@ public abstract class GenericFtrace extends TmfTrace implements IKernelTrace {
      * @throws IOException
      *             file not found and such
      */
-    protected ITmfContext seek(RandomAccessFile fileInput, ITmfLocation location, final TmfContext context) throws IOException {
-        if (location == null) {
-            fileInput.seek(0);
-            long lineStartOffset = fileInput.getFilePointer();
-            String line = fileInput.readLine();
-            if (line == null) {
-                return context;
-            }
-            Matcher matcher = IGenericFtraceConstants.FTRACE_PATTERN.matcher(line);
-            while (!matcher.matches()) {
-                lineStartOffset = fileInput.getFilePointer();
-                line = fileInput.readLine();
-                if (line == null) {
-                    break;
-                }
-                matcher = IGenericFtraceConstants.FTRACE_PATTERN.matcher(line);
-            }
-            fileInput.seek(lineStartOffset);
-        } else if (location.getLocationInfo() instanceof Long) {
-            fileInput.seek((Long) location.getLocationInfo());
+    protected ITmfContext seek(ITmfLocation location, final TmfContext context) throws IOException {
+        long offset = 0;
+        if (location != null && location.getLocationInfo() instanceof Long) {
+            offset = (Long) location.getLocationInfo();
         }
-        context.setLocation(new TmfLongLocation(fileInput.getFilePointer()));
-        context.setRank(0);
+        offset = getEventOffset(offset);
+        fNextLineOffset = offset;
+        context.setLocation(new TmfLongLocation(offset));
+        /* Only the first event has a known rank, the others are in the index */
+        context.setRank(offset == getEventOffset(0) ? 0 : ITmfContext.UNKNOWN_RANK);
         return context;
     }
 
@@ -163,7 +149,7 @@ public abstract class GenericFtrace extends TmfTrace implements IKernelTrace {
         long rank = context.getRank();
         if (location instanceof TmfLongLocation) {
             TmfLongLocation tmfLongLocation = (TmfLongLocation) location;
-            return parseEvent(getFileInput(), tmfLongLocation, rank);
+            return parseEvent(tmfLongLocation, rank);
         }
         return null;
     }
@@ -171,32 +157,29 @@ public abstract class GenericFtrace extends TmfTrace implements IKernelTrace {
     /**
      * Internal parse
      *
-     * @param fileInput
-     *            file to read
      * @param tmfLongLocation
      *            location of event
      * @param rank
      *            rank of event
      * @return the event or null
      */
-    protected ITmfEvent parseEvent(RandomAccessFile fileInput, TmfLongLocation tmfLongLocation, long rank) {
+    protected ITmfEvent parseEvent(TmfLongLocation tmfLongLocation, long rank) {
         Long locationInfo = tmfLongLocation.getLocationInfo();
         if (tmfLongLocation.equals(NULL_LOCATION)) {
             locationInfo = 0L;
         }
         if (locationInfo != null) {
             try {
-                if (!locationInfo.equals(fileInput.getFilePointer())) {
-                    fileInput.seek(locationInfo);
-                }
-
                 // Sometimes ftrace traces are contains comments starting with
                 // '#' between
                 // events
-                String nextLine;
-                do {
-                    nextLine = fileInput.readLine();
-                } while (nextLine != null && nextLine.startsWith(IGenericFtraceConstants.FTRACE_COMMENT_CHAR));
+                CharSequence nextLine = readLine(locationInfo);
+                while (nextLine != null && isComment(nextLine)) {
+                    nextLine = readLine(fNextLineOffset);
+                }
+                if (nextLine == null) {
+                    return null;
+                }
 
                 GenericFtraceField field = parseLine(nextLine);
                 if (field != null) {
@@ -209,26 +192,96 @@ public abstract class GenericFtrace extends TmfTrace implements IKernelTrace {
         return null;
     }
 
+    private static boolean isComment(CharSequence line) {
+        return line.length() > 0 && line.charAt(0) == IGenericFtraceConstants.FTRACE_COMMENT_CHAR.charAt(0);
+    }
+
+    /**
+     * Read the line starting at an offset of the trace file, the lines are
+     * read from memory-mapped windows of the file. The current location is
+     * then the offset of the next line.
+     *
+     * @param offset
+     *            the offset of the start of the line
+     * @return the line without its terminator, only valid until the next line
+     *         is read, or null at the end of the file
+     * @throws IOException
+     *             the file cannot be read
+     */
+    protected @Nullable CharSequence readLine(long offset) throws IOException {
+        MappedLineReader lineReader = fLineReader;
+        if (lineReader == null) {
+            return null;
+        }
+        CharSequence line = lineReader.readLine(offset);
+        fNextLineOffset = lineReader.getNextOffset();
+        return line;
+    }
+
     @Override
     public ITmfLocation getCurrentLocation() {
-        long temp = -1;
-        try {
-            temp = getFileInput().getFilePointer();
-        } catch (IOException e) {
-            Activator.getInstance().logError(e.getMessage(), e);
+        return new TmfLongLocation(fNextLineOffset);
+    }
+
+    /**
+     * Get the offset of the first event line starting at or after an offset,
+     * from the checkpoints of the line index
+     *
+     * @param offset
+     *            the offset, anywhere in the file
+     * @return the offset of the start of the event line, or the size of the
+     *         file if there are no more events
+     * @throws IOException
+     *             the file cannot be read
+     */
+    protected long getEventOffset(long offset) throws IOException {
+        MappedLineReader lineReader = fLineReader;
+        if (lineReader == null) {
+            return offset;
+        }
+        FtraceLineIndex lineIndex = getLineIndex(lineReader);
+        if (lineIndex == null) {
+            return FtraceLineIndex.nextEventLine(lineReader, offset);
         }
-        return new TmfLongLocation(temp);
+        return lineIndex.getEventOffset(lineReader, offset);
     }
 
+    /**
+     * Get the line index, opening it or building it the first time
+     */
+    private synchronized @Nullable FtraceLineIndex getLineIndex(MappedLineReader lineReader) {
+        FtraceLineIndex lineIndex = fLineIndex;
+        File file = getFile();
+        if (lineIndex == null && file != null) {
+            File indexFile = new File(TmfTraceManager.getSupplementaryFileDir(this) + file.getName() + LINE_INDEX_SUFFIX);
+            try {
+                lineIndex = FtraceLineIndex.open(file, indexFile, lineReader);
+                fLineIndex = lineIndex;
+            } catch (IOException e) {
+                Activator.getInstance().logError("Error indexing the lines. File: " + getPath(), e); //$NON-NLS-1$
+            }
+        }
+        return lineIndex;
+    }
+
+    /**
+     * Seek a ratio of the file. The ratio is a ratio of the bytes, like the
+     * ratio of the locations, and the offset is moved to the first event line
+     * starting at or after it.
+     */
     @Override
     public ITmfContext seekEvent(double ratio) {
         File file = getFile();
         if (file == null) {
             return INVALID_CONTEXT;
         }
-        long filePos = (long) (file.length() * ratio);
-        long estimatedRank = filePos / ESTIMATED_EVENT_SIZE;
-        return seekEvent(new TmfLongLocation(estimatedRank));
+        long offset = (long) (file.length() * ratio);
+        try {
+            offset = getEventOffset(offset);
+        } catch (IOException e) {
+            Activator.getInstance().logError("Error seeking event. File: " + getPath(), e); //$NON-NLS-1$
+        }
+        return seekEvent(new TmfLongLocation(offset));
     }
 
     @Override
@@ -249,21 +302,31 @@ public abstract class GenericFtrace extends TmfTrace implements IKernelTrace {
     }
 
     /**
-     * Get the fTrace file input
+     * Create the reader of the lines of the trace file. Traces which are not
+     * made of text lines do not need to map the file for lines.
      *
-     * @return the fTrace file input
+     * @param file
+     *            the trace file
+     * @return the line reader, or null if the trace is not read by lines
+     * @throws IOException
+     *             the file cannot be mapped
      */
-    protected RandomAccessFile getFileInput() {
-        return fFileInput;
+    protected @Nullable MappedLineReader createLineReader(File file) throws IOException {
+        return new MappedLineReader(file);
     }
 
-    private void setFileInput(RandomAccessFile newFileInput) {
-        try (RandomAccessFile fileInput = getFileInput()) {
-            // do nothing
-        } catch (IOException e) {
-            Activator.getInstance().logError("Error disposing trace. File: " + getPath(), e); //$NON-NLS-1$
+    private void setLineReader(@Nullable MappedLineReader newLineReader) {
+        MappedLineReader lineReader = fLineReader;
+        if (lineReader != null) {
+            try {
+                lineReader.close();
+            } catch (IOException e) {
+                Activator.getInstance().logError("Error disposing trace. File: " + getPath(), e); //$NON-NLS-1$
+            }
         }
-        fFileInput = newFileInput;
+        fLineReader = newLineReader;
+        fLineIndex = null;
+        fNextLineOffset = 0;
     }
 
     /**
@@ -286,7 +349,7 @@ public abstract class GenericFtrace extends TmfTrace implements IKernelTrace {
     protected void setFile(File file) throws TmfTraceException {
         fFile = file;
         try {
-            setFileInput(new BufferedRandomAccessFile(file, "r")); //$NON-NLS-1$
+            setLineReader(createLineReader(file));
         } catch (IOException e) {
             throw new TmfTraceException(e.getMessage(), e);
         }
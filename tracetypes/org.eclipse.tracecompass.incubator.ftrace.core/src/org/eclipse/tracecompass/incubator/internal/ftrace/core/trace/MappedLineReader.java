@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.ftrace.core.trace;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Reads the lines of a text trace from memory-mapped windows of the file. The
+ * lines are returned as views of the mapped bytes, decoded as ISO-8859-1 like
+ * {@link RandomAccessFile#readLine()} does, so reading a line does not copy
+ * it.
+ *
+ * The windows overlap by {@link #MAX_LINE_LENGTH} bytes so that the lines
+ * starting in a window end in it, longer lines are read from the file.
+ *
+ * @author Matthew Khouzam
+ */
+@NonNullByDefault
+public final class MappedLineReader implements Closeable {
+
+    private static final int WINDOW_SHIFT = 26;
+    private static final long WINDOW_SIZE = 1L << WINDOW_SHIFT;
+    private static final int MAX_LINE_LENGTH = 1 << 20;
+    private static final int CHUNK_SIZE = 8192;
+
+    private final RandomAccessFile fFile;
+    private final FileChannel fChannel;
+    private final long fSize;
+    private @Nullable ByteBuffer fWindow = null;
+    private long fWindowStart = -1;
+    private final LineView fLine = new LineView();
+    private long fNextOffset = 0;
+
+    /**
+     * Constructor
+     *
+     * @param file
+     *            the text file
+     * @throws IOException
+     *             the file cannot be opened
+     */
+    public MappedLineReader(File file) throws IOException {
+        fFile = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+        fChannel = fFile.getChannel();
+        fSize = fChannel.size();
+    }
+
+    /**
+     * Read the line starting at an offset. The line is a view that is only
+     * valid until the next line is read, it must be copied to be kept.
+     *
+     * @param offset
+     *            the offset of the start of the line
+     * @return the line without its terminator, or null at the end of the
+     *         file
+     * @throws IOException
+     *             the file cannot be read
+     */
+    public @Nullable CharSequence readLine(long offset) throws IOException {
+        if (offset < 0 || offset >= fSize) {
+            fNextOffset = fSize;
+            return null;
+        }
+        ByteBuffer window = getWindow(offset);
+        int start = (int) (offset - fWindowStart);
+        int limit = window.limit();
+        int end = start;
+        while (end < limit) {
+            byte b = window.get(end);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            end++;
+        }
+        if (end == limit && fWindowStart + limit < fSize) {
+            return readLongLine(offset);
+        }
+        int next = end;
+        if (end < limit) {
+            next = (window.get(end) == '\r' && end + 1 < limit && window.get(end + 1) == '\n') ? end + 2 : end + 1;
+        }
+        fLine.set(window, start, end);
+        fNextOffset = fWindowStart + next;
+        return fLine;
+    }
+
+    /**
+     * Get the offset of the line after the last line read
+     *
+     * @return the offset in bytes
+     */
+    public long getNextOffset() {
+        return fNextOffset;
+    }
+
+    /**
+     * Get the size of the file
+     *
+     * @return the size in bytes
+     */
+    public long getSize() {
+        return fSize;
+    }
+
+    private ByteBuffer getWindow(long offset) throws IOException {
+        ByteBuffer window = fWindow;
+        long windowStart = offset & ~(WINDOW_SIZE - 1);
+        if (window == null || windowStart != fWindowStart) {
+            window = fChannel.map(MapMode.READ_ONLY, windowStart, Math.min(fSize - windowStart, WINDOW_SIZE + MAX_LINE_LENGTH));
+            fWindow = window;
+            fWindowStart = windowStart;
+        }
+        return window;
+    }
+
+    private CharSequence readLongLine(long offset) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        long position = offset;
+        while (true) {
+            chunk.clear();
+            int read = fChannel.read(chunk, position);
+            if (read <= 0) {
+                fNextOffset = position;
+                break;
+            }
+            int i = 0;
+            while (i < read && chunk.get(i) != '\n' && chunk.get(i) != '\r') {
+                i++;
+            }
+            line.write(chunk.array(), 0, i);
+            position += i;
+            if (i < read) {
+                int next = (chunk.get(i) == '\r' && i + 1 < read && chunk.get(i + 1) == '\n') ? 2 : 1;
+                fNextOffset = position + next;
+                break;
+            }
+        }
+        fLine.set(ByteBuffer.wrap(line.toByteArray()), 0, line.size());
+        return fLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        fWindow = null;
+        fFile.close();
+    }
+
+    /**
+     * View of a line in a buffer
+     */
+    private static final class LineView implements CharSequence {
+        private ByteBuffer fBuffer = ByteBuffer.allocate(0);
+        private int fStart;
+        private int fEnd;
+
+        public LineView() {
+            // Empty until a line is read
+        }
+
+        private LineView(ByteBuffer buffer, int start, int end) {
+            set(buffer, start, end);
+        }
+
+        public void set(ByteBuffer buffer, int start, int end) {
+            fBuffer = buffer;
+            fStart = start;
+            fEnd = end;
+        }
+
+        @Override
+        public int length() {
+            return fEnd - fStart;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (fBuffer.get(fStart + index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new LineView(fBuffer, fStart + start, fStart + end);
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[length()];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = fBuffer.get(fStart + i);
+            }
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
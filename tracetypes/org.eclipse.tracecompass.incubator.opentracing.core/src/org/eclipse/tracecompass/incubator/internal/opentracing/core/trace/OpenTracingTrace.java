@@ -22,7 +22,6 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.incubator.internal.opentracing.core.Activator;
@@ -30,7 +29,7 @@ import org.eclipse.tracecompass.incubator.internal.opentracing.core.event.IOpenT
 import org.eclipse.tracecompass.incubator.internal.opentracing.core.event.OpenTracingAspects;
 import org.eclipse.tracecompass.incubator.internal.opentracing.core.event.OpenTracingEvent;
 import org.eclipse.tracecompass.incubator.internal.opentracing.core.event.OpenTracingField;
-import org.eclipse.tracecompass.internal.provisional.jsontrace.core.trace.JsonTrace;
+import org.eclipse.tracecompass.incubator.internal.traceevent.core.trace.IndexedJsonTrace;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfLostEvent;
 import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
@@ -39,15 +38,11 @@ import org.eclipse.tracecompass.tmf.core.io.BufferedRandomAccessFile;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
-import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 import org.eclipse.tracecompass.tmf.core.trace.TraceValidationStatus;
-import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
-import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
 
 import com.google.common.collect.Lists;
 import com.google.gson.Gson;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.stream.JsonReader;
 
@@ -57,7 +52,7 @@ import com.google.gson.stream.JsonReader;
  * @author Katherine Nadeau
  *
  */
-public class OpenTracingTrace extends JsonTrace {
+public class OpenTracingTrace extends IndexedJsonTrace {
 
     private final @NonNull Iterable<@NonNull ITmfEventAspect<?>> fEventAspects;
     private final Map<String, String> fProcesses;
@@ -75,34 +70,13 @@ public class OpenTracingTrace extends JsonTrace {
     public void initTrace(IResource resource, String path, Class<? extends ITmfEvent> type) throws TmfTraceException {
         super.initTrace(resource, path, type);
         fProperties.put("Type", "Open-Tracing"); //$NON-NLS-1$ //$NON-NLS-2$
-        String dir = TmfTraceManager.getSupplementaryFileDir(this);
-        fFile = new File(dir + new File(path).getName());
-        if (!fFile.exists()) {
-            Job sortJob = new OpenTracingSortingJob(this, path);
-            sortJob.schedule();
-            while (sortJob.getResult() == null) {
-                try {
-                    sortJob.join();
-                } catch (InterruptedException e) {
-                    throw new TmfTraceException(e.getMessage(), e);
-                }
-            }
-            IStatus result = sortJob.getResult();
-            if (!result.isOK()) {
-                throw new TmfTraceException("Job failed " + result.getMessage()); //$NON-NLS-1$
-            }
-        }
-        try {
-            fFileInput = new BufferedRandomAccessFile(fFile, "r"); //$NON-NLS-1$
-            goToCorrectStart(fFileInput);
-            registerProcesses(path);
-        } catch (IOException e) {
-            throw new TmfTraceException(e.getMessage(), e);
-        }
+        initIndex(path, 2, IOpenTracingConstants.START_TIME);
+        registerProcesses(path);
     }
 
     /**
-     * Save the processes list
+     * Save the processes list. The spans are skipped without being parsed, so
+     * that only the processes object is read into memory.
      *
      * @param path
      *            trace file path
@@ -111,15 +85,30 @@ public class OpenTracingTrace extends JsonTrace {
         try (FileReader fileReader = new FileReader(path)) {
             try (JsonReader reader = new JsonReader(fileReader);) {
                 Gson gson = new Gson();
-                JsonObject object = gson.fromJson(reader, JsonObject.class);
-                JsonElement trace = object.get("data").getAsJsonArray().get(0); //$NON-NLS-1$
-                JsonObject processes = trace.getAsJsonObject().get("processes").getAsJsonObject(); //$NON-NLS-1$
-                for (int i = 1; i <= processes.size(); i++) {
-                    String processName = "p" + i; //$NON-NLS-1$
-                    fProcesses.put(processName, gson.toJson(processes.get(processName)));
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (!reader.nextName().equals("data")) { //$NON-NLS-1$
+                        reader.skipValue();
+                        continue;
+                    }
+                    reader.beginArray();
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (!reader.nextName().equals("processes")) { //$NON-NLS-1$
+                            reader.skipValue();
+                            continue;
+                        }
+                        JsonObject processes = gson.fromJson(reader, JsonObject.class);
+                        for (int i = 1; i <= processes.size(); i++) {
+                            String processName = "p" + i; //$NON-NLS-1$
+                            fProcesses.put(processName, gson.toJson(processes.get(processName)));
+                        }
+                        return;
+                    }
+                    return;
                 }
             }
-        } catch (IOException e) {
+        } catch (IOException | IllegalStateException e) {
             // Nothing
         }
     }
@@ -214,30 +203,18 @@ public class OpenTracingTrace extends JsonTrace {
 
     @Override
     public ITmfEvent parseEvent(ITmfContext context) {
-        @Nullable
-        ITmfLocation location = context.getLocation();
-        if (location instanceof TmfLongLocation) {
-            TmfLongLocation tmfLongLocation = (TmfLongLocation) location;
-            Long locationInfo = tmfLongLocation.getLocationInfo();
-            if (location.equals(NULL_LOCATION)) {
-                locationInfo = 0L;
-            }
-            try {
-                if (!locationInfo.equals(fFileInput.getFilePointer())) {
-                    fFileInput.seek(locationInfo);
-                }
-                String nextJson = readNextEventString(() -> fFileInput.read());
-                if (nextJson != null) {
-                    String process = fProcesses.get(OpenTracingField.getProcess(nextJson));
-                    OpenTracingField field = OpenTracingField.parseJson(nextJson, process);
-                    if (field == null) {
-                        return null;
-                    }
-                    return new OpenTracingEvent(this, context.getRank(), field);
-                }
-            } catch (IOException e) {
-                Activator.getInstance().logError("Error parsing event", e); //$NON-NLS-1$
+        long position = getPosition(context);
+        if (position < 0) {
+            return null;
+        }
+        String nextJson = readEvent(position);
+        if (nextJson != null) {
+            String process = fProcesses.get(OpenTracingField.getProcess(nextJson));
+            OpenTracingField field = OpenTracingField.parseJson(nextJson, process);
+            if (field == null) {
+                return null;
             }
+            return new OpenTracingEvent(this, context.getRank(), field);
         }
         return null;
     }
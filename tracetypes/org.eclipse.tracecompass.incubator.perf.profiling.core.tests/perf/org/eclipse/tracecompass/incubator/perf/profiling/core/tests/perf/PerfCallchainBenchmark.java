@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2018 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.perf.profiling.core.tests.perf;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Objects;
+import java.util.Random;
+
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.incubator.internal.perf.profiling.core.callgraph.PerfCallchainAnalysisModule;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceOpenedSignal;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestHelper;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.xml.TmfXmlTraceStub;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.xml.TmfXmlTraceStubNs;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Benchmarks the perf callchain analysis on a synthetic trace with many
+ * samples of a few distinct callchains. The CPU time and the heap used by the
+ * analysis are measured.
+ *
+ * @author Geneviève Bastien
+ */
+public class PerfCallchainBenchmark {
+
+    /**
+     * Test test ID for the perf callchain benchmarks
+     */
+    public static final String TEST_ID = "org.eclipse.tracecompass.incubator#PerfProfiling#";
+    private static final String TEST_ANALYSIS = "Perf callchain analysis";
+
+    private static final long SEED = 473892745896L;
+    private static final int LOOP_COUNT = 5;
+    private static final int NB_SAMPLES = 50000;
+    private static final int NB_CALLCHAINS = 500;
+    private static final int MAX_CALLCHAIN_DEPTH = 40;
+    private static final int NB_THREADS = 8;
+
+    private static File fTraceFile;
+
+    /**
+     * Write the synthetic trace
+     *
+     * @throws IOException
+     *             the file cannot be written
+     */
+    @BeforeClass
+    public static void writeTrace() throws IOException {
+        Random random = new Random(SEED);
+        long[][] callchains = new long[NB_CALLCHAINS][];
+        for (int i = 0; i < NB_CALLCHAINS; i++) {
+            long[] callchain = new long[1 + random.nextInt(MAX_CALLCHAIN_DEPTH)];
+            for (int j = 0; j < callchain.length; j++) {
+                // Few addresses so that the callchains share prefixes
+                callchain[j] = 0x400000 + random.nextInt(64) * 0x10;
+            }
+            callchains[i] = callchain;
+        }
+        fTraceFile = File.createTempFile("perfBenchmark", ".xml");
+        try (Writer writer = new BufferedWriter(new FileWriter(fTraceFile))) {
+            writer.write("<trace>\n");
+            for (int i = 0; i < NB_SAMPLES; i++) {
+                int tid = 100 + random.nextInt(NB_THREADS);
+                long[] callchain = callchains[random.nextInt(NB_CALLCHAINS)];
+                StringBuilder sb = new StringBuilder();
+                for (long address : callchain) {
+                    if (sb.length() > 0) {
+                        sb.append(',');
+                    }
+                    sb.append(address);
+                }
+                writer.write("<event timestamp=\"" + (i + 1) + "\" name=\"cycles:ppp\">\n");
+                writer.write("<field name=\"perf_pid\" type=\"long\" value=\"" + tid / 4 + "\" />\n");
+                writer.write("<field name=\"perf_tid\" type=\"long\" value=\"" + tid + "\" />\n");
+                writer.write("<field name=\"perf_callchain\" type=\"longArray\" value=\"" + sb + "\" />\n");
+                writer.write("</event>\n");
+            }
+            writer.write("</trace>\n");
+        }
+    }
+
+    /**
+     * Delete the synthetic trace
+     */
+    @AfterClass
+    public static void deleteTrace() {
+        fTraceFile.delete();
+    }
+
+    /**
+     * Run the benchmark
+     *
+     * @throws TmfTraceException
+     *             the trace cannot be opened
+     */
+    @Test
+    public void runBenchmark() throws TmfTraceException {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = Objects.requireNonNull(perf.createPerformanceMeter(TEST_ID + TEST_ANALYSIS));
+        perf.tagAsSummary(pm, TEST_ANALYSIS, new Dimension[] { Dimension.CPU_TIME, Dimension.USED_JAVA_HEAP });
+
+        for (int i = 0; i < LOOP_COUNT; i++) {
+            TmfXmlTraceStub trace = new TmfXmlTraceStubNs();
+            try {
+                trace.initTrace(null, fTraceFile.getAbsolutePath(), TmfEvent.class);
+                trace.traceOpened(new TmfTraceOpenedSignal(this, trace, null));
+                PerfCallchainAnalysisModule module = TmfTraceUtils.getAnalysisModuleOfClass(trace, PerfCallchainAnalysisModule.class, PerfCallchainAnalysisModule.ID);
+                assertNotNull(module);
+
+                pm.start();
+                TmfTestHelper.executeAnalysis(module);
+                pm.stop();
+                assertFalse(module.getCallGraph().getElements().isEmpty());
+            } finally {
+                trace.dispose();
+            }
+        }
+        pm.commit();
+    }
+}
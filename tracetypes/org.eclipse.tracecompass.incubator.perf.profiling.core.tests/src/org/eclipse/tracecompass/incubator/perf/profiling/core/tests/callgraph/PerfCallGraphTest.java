@@ -117,6 +117,12 @@ public class PerfCallGraphTest {
 
         callsite = samplingData.iterator().next();
         assertEquals("0x4", callsite.getSymbol().resolve(Collections.emptySet()));
+
+        // No samples between the even timestamps or for unknown threads
+        samplingData = module.getSamplingData(2, 5, 5);
+        assertTrue(samplingData.isEmpty());
+        samplingData = module.getSamplingData(42, 0, 50);
+        assertTrue(samplingData.isEmpty());
     }
 
 }
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2018 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.perf.profiling.core.callgraph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.callstack.core.base.ICallStackElement;
+import org.eclipse.tracecompass.incubator.callstack.core.callgraph.CallGraph;
+import org.eclipse.tracecompass.incubator.callstack.core.sampled.callgraph.AggregatedStackTraces;
+import org.eclipse.tracecompass.incubator.callstack.core.symbol.CallStackSymbolFactory;
+
+/**
+ * Prefix tree of the callchains of the samples of each element. The distinct
+ * callchains are interned, so a sample whose callchain was already seen only
+ * increments the counter of the node of its top frame. The aggregated
+ * callsites are created once, when all the samples have been added.
+ *
+ * This class is not thread-safe, it is meant to be filled by one event
+ * request.
+ *
+ * @author Geneviève Bastien
+ */
+final class CallchainTrie {
+
+    private static final class Node {
+        private final long fAddress;
+        private final long fFirstTime;
+        private final Map<Long, Node> fChildren = new HashMap<>();
+        /* The number of samples whose top frame is this node */
+        private int fCount = 0;
+        /* The callchain ending at this node, with the bottom at position 0 */
+        private long @Nullable [] fCallchain = null;
+
+        public Node(long address, long firstTime) {
+            fAddress = address;
+            fFirstTime = firstTime;
+        }
+    }
+
+    /**
+     * Key of the interned callchains, the callchain as in the event, with the
+     * top of the stack at position 0
+     */
+    private static final class CallchainKey {
+        private final ICallStackElement fElement;
+        private final long[] fAddresses;
+        private final int fHashCode;
+
+        public CallchainKey(ICallStackElement element, long[] addresses) {
+            fElement = element;
+            fAddresses = addresses;
+            fHashCode = 31 * System.identityHashCode(element) + Arrays.hashCode(addresses);
+        }
+
+        @Override
+        public int hashCode() {
+            return fHashCode;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (!(obj instanceof CallchainKey)) {
+                return false;
+            }
+            CallchainKey other = (CallchainKey) obj;
+            return fElement == other.fElement && Arrays.equals(fAddresses, other.fAddresses);
+        }
+    }
+
+    private final Map<ICallStackElement, Node> fRoots = new IdentityHashMap<>();
+    private final Map<CallchainKey, Node> fInterned = new HashMap<>();
+
+    /**
+     * Add a sample
+     *
+     * @param element
+     *            The element of the sample
+     * @param callchain
+     *            The callchain of the sample, as in the perf event, with the
+     *            top of the stack at position 0. It is not modified.
+     * @param ts
+     *            The timestamp of the sample
+     * @return The interned callchain of the sample, with the bottom of the
+     *         stack at position 0. The same array is returned for all the
+     *         samples of an element with this callchain, it should not be
+     *         modified.
+     */
+    public long[] add(ICallStackElement element, long[] callchain, long ts) {
+        Node top = fInterned.get(new CallchainKey(element, callchain));
+        if (top == null) {
+            top = insert(element, callchain, ts);
+        }
+        top.fCount++;
+        long[] interned = top.fCallchain;
+        if (interned == null) {
+            /* The node was created as a prefix of another callchain */
+            interned = reverse(callchain);
+            top.fCallchain = interned;
+        }
+        return interned;
+    }
+
+    private Node insert(ICallStackElement element, long[] callchain, long ts) {
+        Node node = fRoots.computeIfAbsent(element, e -> new Node(0, ts));
+        for (int i = callchain.length - 1; i >= 0; i--) {
+            long address = callchain[i];
+            node = node.fChildren.computeIfAbsent(address, a -> new Node(address, ts));
+        }
+        fInterned.put(new CallchainKey(element, callchain.clone()), node);
+        return node;
+    }
+
+    private static long[] reverse(long[] callchain) {
+        int size = callchain.length;
+        long[] reversed = new long[size];
+        for (int i = 0; i < size; i++) {
+            reversed[i] = callchain[size - 1 - i];
+        }
+        return reversed;
+    }
+
+    /**
+     * Add the aggregated callsites of all the samples to a callgraph
+     *
+     * @param callgraph
+     *            The callgraph to fill
+     */
+    public void fillCallGraph(CallGraph callgraph) {
+        for (Entry<ICallStackElement, Node> root : fRoots.entrySet()) {
+            ICallStackElement element = root.getKey();
+            for (Node node : root.getValue().fChildren.values()) {
+                callgraph.addAggregatedCallSite(element, createCallSite(element, node));
+            }
+        }
+    }
+
+    private static AggregatedStackTraces createCallSite(ICallStackElement element, Node node) {
+        int count = node.fCount;
+        AggregatedStackTraces[] callees = new AggregatedStackTraces[node.fChildren.size()];
+        int i = 0;
+        for (Node child : node.fChildren.values()) {
+            AggregatedStackTraces callee = createCallSite(element, child);
+            count += callee.getLength();
+            callees[i++] = callee;
+        }
+        AggregatedStackTraces callsite = new AggregatedStackTraces(CallStackSymbolFactory.createSymbol(node.fAddress, element, node.fFirstTime), count);
+        for (AggregatedStackTraces callee : callees) {
+            callsite.addCallee(callee);
+        }
+        return callsite;
+    }
+}
@@ -12,10 +12,11 @@ package org.eclipse.tracecompass.incubator.internal.perf.profiling.core.callgrap
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.incubator.analysis.core.concepts.AggregatedCallSite;
@@ -24,10 +25,12 @@ import org.eclipse.tracecompass.incubator.callstack.core.base.CallStackElement;
 import org.eclipse.tracecompass.incubator.callstack.core.base.CallStackGroupDescriptor;
 import org.eclipse.tracecompass.incubator.callstack.core.base.ICallStackElement;
 import org.eclipse.tracecompass.incubator.callstack.core.base.ICallStackGroupDescriptor;
+import org.eclipse.tracecompass.incubator.callstack.core.callgraph.CallGraph;
 import org.eclipse.tracecompass.incubator.callstack.core.sampled.callgraph.ProfilingCallGraphAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
@@ -58,6 +61,12 @@ public class PerfCallchainAnalysisModule extends ProfilingCallGraphAnalysisModul
 
     private final CallStackGroupDescriptor fThreadDescriptor;
     private final CallStackGroupDescriptor fProcessDescriptor;
+    /* The index being filled by the analysis pass */
+    private @Nullable PerfSampleIndex fIndexToFill = null;
+    private volatile @Nullable PerfSampleIndex fSampleIndex = null;
+    /* The process elements per pid, and the thread elements per pid and tid */
+    private final Map<Long, ICallStackElement> fProcessElements = new HashMap<>();
+    private final Map<Long, Map<Long, ICallStackElement>> fThreadElements = new HashMap<>();
     // private final ProfilingGroup fGroupNode = new ProfilingGroup("Data",
     // CallGraphAllGroupDescriptor.getInstance());
 
@@ -82,61 +91,104 @@ public class PerfCallchainAnalysisModule extends ProfilingCallGraphAnalysisModul
         }
         long[] value = (long[]) field.getValue();
         int size = value.length;
-        long tmp;
         // Reverse the stack so that element at position 0 is the bottom
-        for (int i = 0, mid = size >> 1, j = size - 1; i < mid; i++, j--) {
-            tmp = value[i];
-            value[i] = value[j];
-            value[j] = tmp;
+        long[] stack = new long[size];
+        for (int i = 0; i < size; i++) {
+            stack[i] = value[size - 1 - i];
         }
-        ICallStackElement element = getElement(event);
-        return new Pair<>(element, getCallSite(element, value, event.getTimestamp().getValue()));
+        ICallStackElement element = getElement(getLongField(event, FIELD_PERF_PID), getLongField(event, FIELD_PERF_TID));
+        return new Pair<>(element, getCallSite(element, stack, event.getTimestamp().getValue()));
     }
 
-    /**
-     * @param event
-     */
-    private ICallStackElement getElement(ITmfEvent event) {
-        // Find a root elements with the same PID
-        Collection<ICallStackElement> rootElements = getRootElements();
-        Long pidField = event.getContent().getFieldValue(Long.class, FIELD_PERF_PID);
-        Long pid = pidField == null ? -1 : pidField;
-        Long tidField = event.getContent().getFieldValue(Long.class, FIELD_PERF_TID);
-        Long tid = tidField == null ? -1 : tidField;
-        Optional<ICallStackElement> process = rootElements.stream()
-                .filter(e -> e.getName().equals(String.valueOf(pid)))
-                .findFirst();
-        if (!process.isPresent()) {
+    @Override
+    protected IStackTraceAggregator createAggregator(CallGraph callgraph) {
+        CallchainTrie trie = new CallchainTrie();
+        PerfSampleIndex index = fIndexToFill;
+        return new IStackTraceAggregator() {
+
+            @Override
+            public void addEvent(ITmfEvent event) {
+                if (!event.getName().startsWith(EVENT_SAMPLING)) {
+                    return;
+                }
+                ITmfEventField field = event.getContent().getField(FIELD_PERF_CALLCHAIN);
+                if (field == null) {
+                    return;
+                }
+                Object value = field.getValue();
+                if (!(value instanceof long[]) || ((long[]) value).length == 0) {
+                    return;
+                }
+                long tid = getLongField(event, FIELD_PERF_TID);
+                ICallStackElement element = getElement(getLongField(event, FIELD_PERF_PID), tid);
+                long ts = event.getTimestamp().getValue();
+                long[] callchain = trie.add(element, (long[]) value, ts);
+                if (index != null) {
+                    index.add((int) tid, element, callchain, ts);
+                }
+            }
+
+            @Override
+            public void done() {
+                trie.fillCallGraph(callgraph);
+            }
+        };
+    }
+
+    private static long getLongField(ITmfEvent event, String name) {
+        Long value = event.getContent().getFieldValue(Long.class, name);
+        return value == null ? -1 : value;
+    }
+
+    @Override
+    protected boolean executeAnalysis(@NonNull IProgressMonitor monitor) throws TmfAnalysisException {
+        /*
+         * Index the samples per thread while reading the trace, so that the
+         * sampling data of a time range does not need to read it again
+         */
+        PerfSampleIndex index = new PerfSampleIndex();
+        fIndexToFill = index;
+        try {
+            if (!super.executeAnalysis(monitor)) {
+                return false;
+            }
+        } finally {
+            fIndexToFill = null;
+        }
+        fSampleIndex = index;
+        return true;
+    }
+
+    private synchronized ICallStackElement getElement(long pid, long tid) {
+        Map<Long, ICallStackElement> threads = fThreadElements.get(pid);
+        ICallStackElement threadEl = threads == null ? null : threads.get(tid);
+        if (threadEl != null) {
+            return threadEl;
+        }
+        ICallStackElement processEl = fProcessElements.get(pid);
+        if (processEl == null) {
             // Process is null, create both process and thread elements and return
-            ICallStackElement processEl = new CallStackElement(String.valueOf(pid), fProcessDescriptor, fThreadDescriptor, null) {
+            processEl = new CallStackElement(String.valueOf(pid), fProcessDescriptor, fThreadDescriptor, null) {
 
                 @Override
                 protected int retrieveSymbolKeyAt(long time) {
-                    return pid.intValue();
+                    return (int) pid;
                 }
 
             };
-            ICallStackElement threadEl = new CallStackElement(String.valueOf(tid), fThreadDescriptor, null, processEl);
+            threadEl = new CallStackElement(String.valueOf(tid), fThreadDescriptor, null, processEl);
             processEl.setSymbolKeyElement(processEl);
             threadEl.setSymbolKeyElement(processEl);
             processEl.addChild(threadEl);
             addRootElement(processEl);
-            return threadEl;
-        }
-        ICallStackElement processEl = process.get();
-
-        // Process exists, find a thread element under it or create it
-        Optional<ICallStackElement> thread = processEl.getChildren().stream()
-                .filter(e -> e.getName().equals(String.valueOf(tid)))
-                .findFirst();
-
-        if (thread.isPresent()) {
-            return thread.get();
+            fProcessElements.put(pid, processEl);
+        } else {
+            // Process exists, create the thread element under it
+            threadEl = new CallStackElement(String.valueOf(tid), fThreadDescriptor, null, processEl);
+            processEl.addChild(threadEl);
         }
-        ICallStackElement threadEl = new CallStackElement(String.valueOf(tid), fThreadDescriptor, null, processEl);
-        processEl.addChild(threadEl);
+        fThreadElements.computeIfAbsent(pid, p -> new HashMap<>()).put(tid, threadEl);
         return threadEl;
-
     }
 
     @Override
@@ -170,7 +222,19 @@ public class PerfCallchainAnalysisModule extends ProfilingCallGraphAnalysisModul
         if (trace == null) {
             return Collections.emptyList();
         }
+        PerfSampleIndex index = fSampleIndex;
+        if (index == null) {
+            schedule();
+            if (waitForCompletion()) {
+                index = fSampleIndex;
+            }
+        }
         List<AggregatedCallSite> callsites = new ArrayList<>();
+        if (index != null) {
+            index.visit(tid, start, end, (element, callchain, ts) -> addSamplingCallSite(callsites, getCallSite(element, callchain, ts)));
+            return callsites;
+        }
+        // The analysis did not complete, read the samples from the trace
         TmfEventRequest request = new PerfProfilingEventRequest(trace, start, end, tid, callsites);
         trace.sendRequest(request);
         try {
@@ -249,15 +313,18 @@ public class PerfCallchainAnalysisModule extends ProfilingCallGraphAnalysisModul
             if (stackTrace == null) {
                 return;
             }
-            AggregatedCallSite perfCallSite = stackTrace.getSecond();
-            for (AggregatedCallSite site : fSites) {
-                if (site.getSymbol().equals(perfCallSite.getSymbol())) {
-                    site.merge(perfCallSite);
-                    return;
-                }
+            addSamplingCallSite(fSites, stackTrace.getSecond());
+        }
+    }
+
+    private static void addSamplingCallSite(List<AggregatedCallSite> callsites, AggregatedCallSite perfCallSite) {
+        for (AggregatedCallSite site : callsites) {
+            if (site.getSymbol().equals(perfCallSite.getSymbol())) {
+                site.merge(perfCallSite);
+                return;
             }
-            fSites.add(perfCallSite);
         }
+        callsites.add(perfCallSite);
     }
 
 }
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2018 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.perf.profiling.core.callgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.tracecompass.incubator.callstack.core.base.ICallStackElement;
+
+/**
+ * Index of the samples of a perf trace per thread. For each tid, it keeps the
+ * timestamps of the samples, in the order of the trace, with the identifier
+ * of their callchain. The callchains are interned by the {@link CallchainTrie}
+ * so each distinct callchain is kept only once.
+ *
+ * The index is filled during the analysis pass and must not be modified once
+ * it is queried.
+ *
+ * @author Geneviève Bastien
+ */
+final class PerfSampleIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Visitor of the samples of a time range
+     */
+    @FunctionalInterface
+    interface ISampleVisitor {
+        /**
+         * Visit a sample
+         *
+         * @param element
+         *            The element of the sample
+         * @param callchain
+         *            The callchain, with the bottom of the stack at position
+         *            0. It is shared between the samples and should not be
+         *            modified.
+         * @param ts
+         *            The timestamp of the sample
+         */
+        void visit(ICallStackElement element, long[] callchain, long ts);
+    }
+
+    private static final class ThreadSamples {
+        private long[] fTimestamps = new long[INITIAL_CAPACITY];
+        private int[] fCallchains = new int[INITIAL_CAPACITY];
+        private int fSize = 0;
+
+        public void add(long ts, int callchain) {
+            if (fSize == fTimestamps.length) {
+                fTimestamps = Arrays.copyOf(fTimestamps, fSize * 2);
+                fCallchains = Arrays.copyOf(fCallchains, fSize * 2);
+            }
+            fTimestamps[fSize] = ts;
+            fCallchains[fSize] = callchain;
+            fSize++;
+        }
+
+        /**
+         * Get the index of the first sample at or after a time
+         */
+        public int indexOf(long ts) {
+            int low = 0;
+            int high = fSize;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (fTimestamps[mid] < ts) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private final Map<Integer, ThreadSamples> fSamples = new HashMap<>();
+    private final Map<long[], Integer> fCallchainIds = new IdentityHashMap<>();
+    private final List<long[]> fCallchains = new ArrayList<>();
+    private final List<ICallStackElement> fElements = new ArrayList<>();
+
+    /**
+     * Add a sample. The samples of a thread are expected in time order.
+     *
+     * @param tid
+     *            The thread ID of the sample
+     * @param element
+     *            The element of the sample
+     * @param callchain
+     *            The interned callchain, with the bottom of the stack at
+     *            position 0. It is kept by the index and should not be
+     *            modified.
+     * @param ts
+     *            The timestamp of the sample
+     */
+    public void add(int tid, ICallStackElement element, long[] callchain, long ts) {
+        Integer id = fCallchainIds.get(callchain);
+        if (id == null) {
+            id = fCallchains.size();
+            fCallchains.add(callchain);
+            fElements.add(element);
+            fCallchainIds.put(callchain, id);
+        }
+        fSamples.computeIfAbsent(tid, t -> new ThreadSamples()).add(ts, id);
+    }
+
+    /**
+     * Visit the samples of a thread in a time range
+     *
+     * @param tid
+     *            The thread ID
+     * @param start
+     *            The start of the range, inclusive
+     * @param end
+     *            The end of the range, inclusive
+     * @param visitor
+     *            The visitor of the samples
+     */
+    public void visit(int tid, long start, long end, ISampleVisitor visitor) {
+        ThreadSamples samples = fSamples.get(tid);
+        if (samples == null) {
+            return;
+        }
+        for (int i = samples.indexOf(start); i < samples.fSize && samples.fTimestamps[i] <= end; i++) {
+            int id = samples.fCallchains[i];
+            visitor.visit(fElements.get(id), fCallchains.get(id), samples.fTimestamps[i]);
+        }
+    }
+}
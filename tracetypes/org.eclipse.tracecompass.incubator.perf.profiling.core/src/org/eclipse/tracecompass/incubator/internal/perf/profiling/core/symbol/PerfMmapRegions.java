@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2018 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.perf.profiling.core.symbol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+
+/**
+ * The regions mapped in the memory of a process, over time. For each base
+ * address, the files mapped at that address are kept sorted by time, so that
+ * finding the region of an address at a time is a floor lookup on the base
+ * addresses and a binary search on the time.
+ *
+ * It is built from a complete state system of the
+ * {@link PerfMmapStateProvider} and does not change afterwards.
+ *
+ * @author Geneviève Bastien
+ */
+final class PerfMmapRegions {
+
+    /**
+     * A file mapped at a base address
+     */
+    static final class Region {
+        private final long fBaseAddress;
+        private final String fFilename;
+
+        private Region(long baseAddress, String filename) {
+            fBaseAddress = baseAddress;
+            fFilename = filename;
+        }
+
+        /**
+         * Get the base address of the region
+         *
+         * @return The base address
+         */
+        public long getBaseAddress() {
+            return fBaseAddress;
+        }
+
+        /**
+         * Get the file mapped in the region
+         *
+         * @return The file name
+         */
+        public String getFilename() {
+            return fFilename;
+        }
+    }
+
+    /**
+     * The successive files mapped at one base address
+     */
+    private static final class Versions {
+        private final long[] fStarts;
+        private final long[] fEnds;
+        private final Region[] fRegions;
+
+        public Versions(List<ITmfStateInterval> intervals, long baseAddress) {
+            int size = intervals.size();
+            fStarts = new long[size];
+            fEnds = new long[size];
+            fRegions = new Region[size];
+            for (int i = 0; i < size; i++) {
+                ITmfStateInterval interval = intervals.get(i);
+                fStarts[i] = interval.getStartTime();
+                fEnds[i] = interval.getEndTime();
+                fRegions[i] = new Region(baseAddress, String.valueOf(interval.getValue()));
+            }
+        }
+
+        public @Nullable Region getAt(long time) {
+            int index = Arrays.binarySearch(fStarts, time);
+            if (index < 0) {
+                // Index of the last interval starting before the time
+                index = -index - 2;
+            }
+            if (index < 0 || fEnds[index] < time) {
+                return null;
+            }
+            return fRegions[index];
+        }
+    }
+
+    private final NavigableMap<Long, Versions> fVersions;
+
+    private PerfMmapRegions(NavigableMap<Long, Versions> versions) {
+        fVersions = versions;
+    }
+
+    /**
+     * Read the mapped regions of a process from the state system
+     *
+     * @param stateSystem
+     *            The state system of the perf mmap analysis, completely built
+     * @param pidQuark
+     *            The quark of the process
+     * @return The regions of the process
+     * @throws StateSystemDisposedException
+     *             If the state system is disposed
+     */
+    public static PerfMmapRegions create(ITmfStateSystem stateSystem, int pidQuark) throws StateSystemDisposedException {
+        List<Integer> baddrQuarks = stateSystem.getSubAttributes(pidQuark, false);
+        NavigableMap<Long, List<ITmfStateInterval>> intervals = new TreeMap<>();
+        try {
+            for (ITmfStateInterval interval : stateSystem.query2D(baddrQuarks, stateSystem.getStartTime(), stateSystem.getCurrentEndTime())) {
+                if (interval.getValue() == null) {
+                    continue;
+                }
+                long baddr = Long.parseLong(stateSystem.getAttributeName(interval.getAttribute()));
+                intervals.computeIfAbsent(baddr, b -> new ArrayList<>()).add(interval);
+            }
+        } catch (TimeRangeException e) {
+            // Empty state system, no region
+        }
+        NavigableMap<Long, Versions> versions = new TreeMap<>();
+        for (Entry<Long, List<ITmfStateInterval>> entry : intervals.entrySet()) {
+            List<ITmfStateInterval> list = entry.getValue();
+            list.sort(Comparator.comparingLong(ITmfStateInterval::getStartTime));
+            versions.put(entry.getKey(), new Versions(list, entry.getKey()));
+        }
+        return new PerfMmapRegions(versions);
+    }
+
+    /**
+     * Get the region containing an address at a time, that is the region with
+     * the highest base address lower than or equal to the address, among the
+     * regions mapped at that time
+     *
+     * @param address
+     *            The address
+     * @param time
+     *            The time
+     * @return The region, or <code>null</code> if no region is mapped below
+     *         the address at that time
+     */
+    public @Nullable Region getRegion(long address, long time) {
+        Entry<Long, Versions> entry = fVersions.floorEntry(address);
+        while (entry != null) {
+            Region region = entry.getValue().getAt(time);
+            if (region != null) {
+                return region;
+            }
+            entry = fVersions.lowerEntry(entry.getKey());
+        }
+        return null;
+    }
+}
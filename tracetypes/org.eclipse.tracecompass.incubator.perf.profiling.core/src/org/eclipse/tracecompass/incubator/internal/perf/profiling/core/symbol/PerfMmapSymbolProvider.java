@@ -13,12 +13,14 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -34,6 +36,9 @@ import org.eclipse.tracecompass.tmf.core.symbols.ISymbolProvider;
 import org.eclipse.tracecompass.tmf.core.symbols.TmfResolvedSymbol;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 /**
  * @author Geneviève Bastien
  */
@@ -41,7 +46,41 @@ public class PerfMmapSymbolProvider implements ISymbolProvider {
 
     private final PerfMmapAnalysisModule fMmapModule;
     private final ITmfTrace fTrace;
-    private final Map<String, IMappingFile> fSymbolMapping = new HashMap<>();
+    private static final int SYMBOL_CACHE_SIZE = 10000;
+
+    private final Map<String, IMappingFile> fSymbolMapping = new ConcurrentHashMap<>();
+    /* The mapped regions per pid, once the state system is built */
+    private final Map<Integer, PerfMmapRegions> fRegions = new ConcurrentHashMap<>();
+    /* The resolved symbols per pid, address and time */
+    private final Cache<SymbolKey, Optional<TmfResolvedSymbol>> fSymbolCache = Objects.requireNonNull(CacheBuilder.newBuilder()
+            .maximumSize(SYMBOL_CACHE_SIZE)
+            .build());
+
+    private static final class SymbolKey {
+        private final int fPid;
+        private final long fAddress;
+        private final long fTime;
+
+        public SymbolKey(int pid, long address, long time) {
+            fPid = pid;
+            fAddress = address;
+            fTime = time;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fPid, fAddress, fTime);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (!(obj instanceof SymbolKey)) {
+                return false;
+            }
+            SymbolKey other = (SymbolKey) obj;
+            return fPid == other.fPid && fAddress == other.fAddress && fTime == other.fTime;
+        }
+    }
 
     /**
      * Constructor
@@ -69,6 +108,15 @@ public class PerfMmapSymbolProvider implements ISymbolProvider {
         if (stateSystem == null) {
             return null;
         }
+        if (stateSystem.waitUntilBuilt(0)) {
+            SymbolKey key = new SymbolKey(pid, address, timestamp);
+            Optional<TmfResolvedSymbol> cached = fSymbolCache.getIfPresent(key);
+            if (cached == null) {
+                cached = Optional.ofNullable(getSymbolInRegions(stateSystem, pid, timestamp, address));
+                fSymbolCache.put(key, cached);
+            }
+            return cached.orElse(null);
+        }
         // Get the quark for the process
         int pidQuark = stateSystem.optQuarkAbsolute(String.valueOf(pid));
         if (pidQuark == ITmfStateSystem.INVALID_ATTRIBUTE) {
@@ -107,6 +155,32 @@ public class PerfMmapSymbolProvider implements ISymbolProvider {
 
     }
 
+    /**
+     * Get the symbol from the regions of the process, read once from the
+     * complete state system
+     */
+    private @Nullable TmfResolvedSymbol getSymbolInRegions(ITmfStateSystem stateSystem, int pid, long timestamp, long address) {
+        PerfMmapRegions regions = fRegions.get(pid);
+        if (regions == null) {
+            int pidQuark = stateSystem.optQuarkAbsolute(String.valueOf(pid));
+            if (pidQuark == ITmfStateSystem.INVALID_ATTRIBUTE) {
+                return null;
+            }
+            try {
+                regions = PerfMmapRegions.create(stateSystem, pidQuark);
+            } catch (StateSystemDisposedException e) {
+                return null;
+            }
+            fRegions.put(pid, regions);
+        }
+        PerfMmapRegions.Region region = regions.getRegion(address, timestamp);
+        if (region == null) {
+            return null;
+        }
+        TmfResolvedSymbol symbol = getSymbolInFile(pid, region.getFilename(), address, region.getBaseAddress());
+        return symbol == null ? new TmfResolvedSymbol(region.getBaseAddress(), region.getFilename()) : symbol;
+    }
+
     private @Nullable TmfResolvedSymbol getSymbolInFile(int pid, String filename, long address, long offset) {
         long addressInFile = address - offset;
         IMappingFile mappingFile = fSymbolMapping.get(filename);
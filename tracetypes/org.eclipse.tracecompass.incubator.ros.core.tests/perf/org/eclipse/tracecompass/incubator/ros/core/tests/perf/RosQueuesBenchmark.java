@@ -0,0 +1,207 @@
+/**********************************************************************
+ * Copyright (c) 2018 Ericsson, École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ **********************************************************************/
+
+package org.eclipse.tracecompass.incubator.ros.core.tests.perf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.queues.RosQueuesStore;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.StateSystemUtils;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Benchmarks the queues of the ROS analysis on a synthetic high-rate trace
+ * of messages enqueued and dequeued in bursts on many topics. The queues are
+ * built and queried once in the state system, each message being pushed and
+ * popped with the queue attribute utilities, and once in the
+ * {@link RosQueuesStore}. The queries get the contents of all the queues at
+ * random times, as the queues view does. The state system is in memory, so
+ * the disk accesses of the analysis' history tree are not counted.
+ *
+ * @author Christophe Bedard
+ */
+public class RosQueuesBenchmark {
+
+    /**
+     * Test test ID for the ROS queues benchmarks
+     */
+    public static final String TEST_ID = "org.eclipse.tracecompass.incubator#RosQueues#";
+    private static final String TEST_SS_BUILD = "State system build";
+    private static final String TEST_SS_QUERY = "State system query";
+    private static final String TEST_STORE_BUILD = "Store build";
+    private static final String TEST_STORE_QUERY = "Store query";
+
+    private static final long SEED = 736152981L;
+    private static final int LOOP_COUNT = 5;
+    private static final int NB_EVENTS = 500000;
+    private static final int NB_QUEUES = 20;
+    private static final int NB_QUERIES = 2000;
+    private static final String QUEUES = "Queues";
+    private static final String QUEUE = "Queue";
+
+    /* The synthetic events: the queue, the message (-1 to dequeue) and the time */
+    private static int[] fQueues;
+    private static long[] fRefs;
+    private static long[] fTimes;
+    private static long[] fQueryTimes;
+
+    /**
+     * Generate the synthetic events. Each topic alternates between bursts
+     * where most messages are enqueued and bursts where most are dequeued.
+     */
+    @BeforeClass
+    public static void generateEvents() {
+        Random random = new Random(SEED);
+        fQueues = new int[NB_EVENTS];
+        fRefs = new long[NB_EVENTS];
+        fTimes = new long[NB_EVENTS];
+        boolean[] filling = new boolean[NB_QUEUES];
+        long time = 0;
+        long ref = 0x7f0000000000L;
+        for (int i = 0; i < NB_EVENTS; i++) {
+            int queue = random.nextInt(NB_QUEUES);
+            if (random.nextInt(100) == 0) {
+                filling[queue] = !filling[queue];
+            }
+            time += 1 + random.nextInt(10);
+            fQueues[i] = queue;
+            fTimes[i] = time;
+            boolean offer = random.nextInt(100) < (filling[queue] ? 80 : 20);
+            fRefs[i] = offer ? ref : -1;
+            ref += 64;
+        }
+        fQueryTimes = new long[NB_QUERIES];
+        for (int i = 0; i < NB_QUERIES; i++) {
+            fQueryTimes[i] = (long) (random.nextDouble() * time);
+        }
+    }
+
+    /**
+     * Run the benchmark
+     *
+     * @throws AttributeNotFoundException
+     *             an attribute of the state system is missing
+     * @throws StateSystemDisposedException
+     *             the state system is disposed while it is queried
+     */
+    @Test
+    public void runBenchmark() throws AttributeNotFoundException, StateSystemDisposedException {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pmSsBuild = Objects.requireNonNull(perf.createPerformanceMeter(TEST_ID + TEST_SS_BUILD));
+        PerformanceMeter pmSsQuery = Objects.requireNonNull(perf.createPerformanceMeter(TEST_ID + TEST_SS_QUERY));
+        PerformanceMeter pmStoreBuild = Objects.requireNonNull(perf.createPerformanceMeter(TEST_ID + TEST_STORE_BUILD));
+        PerformanceMeter pmStoreQuery = Objects.requireNonNull(perf.createPerformanceMeter(TEST_ID + TEST_STORE_QUERY));
+        perf.tagAsSummary(pmSsBuild, TEST_SS_BUILD, Dimension.CPU_TIME);
+        perf.tagAsSummary(pmStoreBuild, TEST_STORE_BUILD, Dimension.CPU_TIME);
+        perf.tagAsSummary(pmSsQuery, TEST_SS_QUERY, Dimension.CPU_TIME);
+        perf.tagAsSummary(pmStoreQuery, TEST_STORE_QUERY, Dimension.CPU_TIME);
+
+        for (int i = 0; i < LOOP_COUNT; i++) {
+            ITmfStateSystemBuilder ss = StateSystemFactory.newStateSystem(StateHistoryBackendFactory.createInMemoryBackend("Test", 0L));
+            int[] quarks = new int[NB_QUEUES];
+            for (int queue = 0; queue < NB_QUEUES; queue++) {
+                quarks[queue] = ss.getQuarkAbsoluteAndAdd(QUEUES, "/topic" + queue, QUEUE);
+            }
+
+            // State system
+            pmSsBuild.start();
+            for (int j = 0; j < NB_EVENTS; j++) {
+                int quark = quarks[fQueues[j]];
+                if (fRefs[j] >= 0) {
+                    StateSystemUtils.queueOfferAttribute(ss, fTimes[j], fRefs[j], quark);
+                } else {
+                    StateSystemUtils.queuePollAttribute(ss, fTimes[j], quark);
+                }
+            }
+            ss.closeHistory(fTimes[NB_EVENTS - 1]);
+            pmSsBuild.stop();
+
+            pmSsQuery.start();
+            long ssTotal = queryStateSystem(ss, quarks);
+            pmSsQuery.stop();
+            ss.dispose();
+
+            // Store
+            pmStoreBuild.start();
+            RosQueuesStore store = new RosQueuesStore();
+            for (int j = 0; j < NB_EVENTS; j++) {
+                int quark = quarks[fQueues[j]];
+                if (fRefs[j] >= 0) {
+                    store.offer(quark, fTimes[j], fRefs[j]);
+                } else {
+                    store.poll(quark, fTimes[j]);
+                }
+            }
+            pmStoreBuild.stop();
+
+            pmStoreQuery.start();
+            long storeTotal = 0;
+            for (long time : fQueryTimes) {
+                for (int quark : quarks) {
+                    for (Long ref : store.getContents(quark, time)) {
+                        storeTotal += ref;
+                    }
+                }
+            }
+            pmStoreQuery.stop();
+
+            assertEquals(ssTotal, storeTotal);
+        }
+        pmSsBuild.commit();
+        pmSsQuery.commit();
+        pmStoreBuild.commit();
+        pmStoreQuery.commit();
+    }
+
+    /**
+     * Get the contents of the queues at each query time from the queue count
+     * and the position attributes, and sum the message references
+     */
+    private static long queryStateSystem(ITmfStateSystem ss, int[] quarks) throws StateSystemDisposedException {
+        List<int[]> positions = new ArrayList<>();
+        for (int quark : quarks) {
+            List<Integer> subAttributes = ss.getSubAttributes(quark, false);
+            int[] queuePositions = new int[subAttributes.size() + 1];
+            for (Integer position : subAttributes) {
+                queuePositions[Integer.parseInt(ss.getAttributeName(position))] = position;
+            }
+            positions.add(queuePositions);
+        }
+        long total = 0;
+        for (long time : fQueryTimes) {
+            List<ITmfStateInterval> state = ss.queryFullState(time);
+            for (int queue = 0; queue < quarks.length; queue++) {
+                Object count = state.get(quarks[queue]).getValue();
+                if (count instanceof Integer) {
+                    int[] queuePositions = positions.get(queue);
+                    for (int position = 1; position <= (Integer) count; position++) {
+                        total += (Long) Objects.requireNonNull(state.get(queuePositions[position]).getValue());
+                    }
+                }
+            }
+        }
+        return total;
+    }
+}
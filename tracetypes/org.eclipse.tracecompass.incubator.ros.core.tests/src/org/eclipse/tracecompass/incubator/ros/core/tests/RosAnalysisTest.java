@@ -0,0 +1,454 @@
+/**********************************************************************
+ * Copyright (c) 2018 Ericsson, École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ **********************************************************************/
+
+package org.eclipse.tracecompass.incubator.ros.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.RosAnalysis;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.RosEventType;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.RosStateProvider;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.connections.RosConnectionsDataProvider;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.nodes.RosNodesDataProvider;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.queues.RosQueuesDataProvider;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.queues.RosQueuesStore;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.tasks.RosTasksDataProvider;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.timers.RosTimersDataProvider;
+import org.eclipse.tracecompass.incubator.internal.ros.core.trace.RosTrace;
+import org.eclipse.tracecompass.incubator.internal.ros.core.trace.layout.IRosEventLayout;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.model.filters.SelectionTimeQueryFilter;
+import org.eclipse.tracecompass.tmf.core.model.filters.TimeQueryFilter;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphDataProvider;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphRowModel;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.ITimeGraphState;
+import org.eclipse.tracecompass.tmf.core.model.timegraph.TimeGraphEntryModel;
+import org.eclipse.tracecompass.tmf.core.response.ITmfResponse.Status;
+import org.eclipse.tracecompass.tmf.core.response.TmfModelResponse;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceOpenedSignal;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
+import org.eclipse.tracecompass.tmf.ctf.core.event.CtfTmfEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Test the {@link RosAnalysis}, which builds all the ROS models in one pass
+ *
+ * @author Christophe Bedard
+ */
+public class RosAnalysisTest {
+
+    private static final String TRACE_PATH = "traces/pub-sub-10";
+    private static final Set<String> MODELS = ImmutableSet.of(RosStateProvider.NODES, RosStateProvider.QUEUES,
+            RosStateProvider.TASKS, RosStateProvider.CONNECTIONS, RosStateProvider.TIMERS);
+
+    /* Separator of the entry names in the paths of the entries */
+    private static final String SEPARATOR = "|";
+    /* Paths of the entries below the trace entry, in the order of the trees */
+    private static final List<String> QUEUES_ENTRIES = ImmutableList.of(
+            "rosout/rosout",
+            "rosout/rosout|Subscribers",
+            "rosout/rosout|Subscribers|/rosout",
+            "rosout/rosout|Subscribers|/rosout|queue",
+            "rosout/rosout|Subscribers|/rosout|queue|1",
+            "rosout/rosout|Subscribers|/rosout|queue|2",
+            "rosout/rosout|Subscribers|/rosout|message processing",
+            "rosout/rosout|Subscribers|/rosout|drops",
+            "rosout/rosout|Subscribers|callbacks",
+            "sub_node/sub_node",
+            "sub_node/sub_node|Subscribers",
+            "sub_node/sub_node|Subscribers|/the_topic_name",
+            "sub_node/sub_node|Subscribers|/the_topic_name|queue",
+            "sub_node/sub_node|Subscribers|/the_topic_name|queue|1",
+            "sub_node/sub_node|Subscribers|/the_topic_name|queue|2",
+            "sub_node/sub_node|Subscribers|/the_topic_name|queue|3",
+            "sub_node/sub_node|Subscribers|/the_topic_name|queue|4",
+            "sub_node/sub_node|Subscribers|/the_topic_name|message processing",
+            "sub_node/sub_node|Subscribers|/the_topic_name|drops",
+            "sub_node/sub_node|Subscribers|callbacks",
+            "sub_node/sub_node|Publishers",
+            "sub_node/sub_node|Publishers|/rosout",
+            "sub_node/sub_node|Publishers|/rosout|queue",
+            "sub_node/sub_node|Publishers|/rosout|queue|1",
+            "sub_node/sub_node|Publishers|/rosout|queue|2",
+            "sub_node/sub_node|Publishers|/rosout|queue|3",
+            "pub_node/pub_node",
+            "pub_node/pub_node|Publishers",
+            "pub_node/pub_node|Publishers|/the_topic_name",
+            "pub_node/pub_node|Publishers|/the_topic_name|queue",
+            "pub_node/pub_node|Publishers|/the_topic_name|queue|1",
+            "pub_node/pub_node|Publishers|/the_topic_name|queue|2",
+            "pub_node/pub_node|Publishers|/the_topic_name|queue|3",
+            "pub_node/pub_node|Publishers|/the_topic_name|queue|4",
+            "pub_node/pub_node|Publishers|/the_topic_name|queue|5",
+            "pub_node/pub_node|Publishers|/the_topic_name|queue|6",
+            "pub_node/pub_node|Publishers|/the_topic_name|queue|7",
+            "pub_node/pub_node|Publishers|/the_topic_name|queue|8",
+            "pub_node/pub_node|Publishers|/the_topic_name|queue|9",
+            "pub_node/pub_node|Publishers|/the_topic_name|queue|10");
+    private static final List<String> TASKS_ENTRIES = ImmutableList.of(
+            "rosout/rosout",
+            "rosout/rosout|PollManager",
+            "rosout/rosout|XMLRPCManager",
+            "rosout/rosout|internal callback queue thread",
+            "rosout/rosout|SingleThreadedSpinner::spin",
+            "sub_node/sub_node",
+            "sub_node/sub_node|XMLRPCManager",
+            "sub_node/sub_node|PollManager",
+            "sub_node/sub_node|rosout appender",
+            "sub_node/sub_node|internal callback queue thread",
+            "sub_node/sub_node|SingleThreadedSpinner::spin",
+            "pub_node/pub_node",
+            "pub_node/pub_node|PollManager",
+            "pub_node/pub_node|XMLRPCManager",
+            "pub_node/pub_node|rosout appender",
+            "pub_node/pub_node|internal callback queue thread",
+            "pub_node/pub_node|SingleThreadedSpinner::spin");
+    /* The connections are numbered, their entries have no name */
+    private static final List<String> CONNECTIONS_ENTRIES = ImmutableList.of(
+            "rosout/rosout",
+            "rosout/rosout|TransportPublisherLink",
+            "rosout/rosout|TransportPublisherLink|/rosout",
+            "rosout/rosout|TransportPublisherLink|/rosout|",
+            "rosout/rosout|TransportPublisherLink|/rosout|",
+            "sub_node/sub_node",
+            "sub_node/sub_node|TransportPublisherLink",
+            "sub_node/sub_node|TransportPublisherLink|/the_topic_name",
+            "sub_node/sub_node|TransportPublisherLink|/the_topic_name|",
+            "sub_node/sub_node|TransportSubscriberLink",
+            "sub_node/sub_node|TransportSubscriberLink|/rosout",
+            "sub_node/sub_node|TransportSubscriberLink|/rosout|",
+            "pub_node/pub_node",
+            "pub_node/pub_node|TransportSubscriberLink",
+            "pub_node/pub_node|TransportSubscriberLink|/the_topic_name",
+            "pub_node/pub_node|TransportSubscriberLink|/the_topic_name|",
+            "pub_node/pub_node|TransportSubscriberLink|/rosout",
+            "pub_node/pub_node|TransportSubscriberLink|/rosout|");
+
+    private RosTrace fTrace;
+
+    /**
+     * Open the trace
+     *
+     * @throws TmfTraceException
+     *             the trace cannot be opened
+     */
+    @Before
+    public void setUp() throws TmfTraceException {
+        RosTrace trace = new RosTrace();
+        fTrace = trace;
+        trace.initTrace(null, TRACE_PATH, CtfTmfEvent.class);
+        deleteSuppFiles(trace);
+        trace.traceOpened(new TmfTraceOpenedSignal(this, trace, null));
+    }
+
+    /**
+     * Dispose the trace
+     */
+    @After
+    public void tearDown() {
+        RosTrace trace = fTrace;
+        if (trace != null) {
+            deleteSuppFiles(trace);
+            trace.dispose();
+        }
+    }
+
+    private static void deleteSuppFiles(@NonNull RosTrace trace) {
+        /* Remove supplementary files */
+        File suppDir = new File(TmfTraceManager.getSupplementaryFileDir(trace));
+        File[] files = suppDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Test that every event of the layout has its own type
+     */
+    @Test
+    public void testEventTypes() {
+        IRosEventLayout layout = fTrace.getEventLayout();
+        Map<String, RosEventType> eventTypes = RosEventType.getEventTypes(layout);
+        assertEquals(RosEventType.values().length, eventTypes.size());
+        for (String eventName : layout.getEventNames()) {
+            assertNotNull(eventName, eventTypes.get(eventName));
+        }
+        assertEquals(RosEventType.INIT_NODE, eventTypes.get(layout.eventInitNode()));
+        assertEquals(RosEventType.NEW_CONNECTION, eventTypes.get(layout.eventNewConnection()));
+    }
+
+    /**
+     * Test that the models are each built under their own attribute, and that
+     * the data providers read their own model: their entries and a few of
+     * their states
+     */
+    @Test
+    @SuppressWarnings("restriction")
+    public void testModels() {
+        RosTrace trace = fTrace;
+        RosAnalysis module = TmfTraceUtils.getAnalysisModuleOfClass(trace, RosAnalysis.class, RosAnalysis.getFullAnalysisId());
+        assertNotNull(module);
+        module.schedule();
+        assertTrue(module.waitForCompletion());
+
+        ITmfStateSystem ss = module.getStateSystem();
+        assertNotNull(ss);
+        List<@NonNull Integer> models = ss.getSubAttributes(ITmfStateSystem.ROOT_ATTRIBUTE, false);
+        assertFalse(models.isEmpty());
+        for (Integer model : models) {
+            assertTrue(ss.getAttributeName(model), MODELS.contains(ss.getAttributeName(model)));
+        }
+        int nodesQuark = ss.optQuarkAbsolute(RosStateProvider.NODES);
+        assertNotEquals(ITmfStateSystem.INVALID_ATTRIBUTE, nodesQuark);
+        int nbNodes = ss.getSubAttributes(nodesQuark, false).size();
+        assertTrue(nbNodes > 0);
+
+        RosNodesDataProvider dataProvider = new RosNodesDataProvider(trace, module);
+        assertEquals(RosNodesDataProvider.getFullDataProviderId(), dataProvider.getId());
+        TmfModelResponse<@NonNull List<@NonNull TimeGraphEntryModel>> response = dataProvider.fetchTree(new TimeQueryFilter(ss.getStartTime(), ss.getCurrentEndTime(), 2), new NullProgressMonitor());
+        assertEquals(Status.COMPLETED, response.getStatus());
+        List<@NonNull TimeGraphEntryModel> entries = response.getModel();
+        assertNotNull(entries);
+        /* The trace entry, then one entry per node */
+        assertEquals(nbNodes + 1, entries.size());
+        assertEquals(trace.getName(), entries.get(0).getName());
+
+        assertQueues(new RosQueuesDataProvider(trace, module), ss);
+        assertTasks(new RosTasksDataProvider(trace, module), ss);
+        assertConnections(new RosConnectionsDataProvider(trace, module), ss);
+        assertTimers(new RosTimersDataProvider(trace, module), ss);
+    }
+
+    /**
+     * Test the tree of the queues and the depth and messages of a subscriber
+     * queue while messages are queued and dropped
+     */
+    private void assertQueues(ITimeGraphDataProvider<@NonNull TimeGraphEntryModel> dataProvider, ITmfStateSystem ss) {
+        assertEquals(RosQueuesDataProvider.getFullDataProviderId(), dataProvider.getId());
+        List<@NonNull TimeGraphEntryModel> entries = fetchTree(dataProvider, ss);
+        assertTree(QUEUES_ENTRIES, entries);
+
+        List<Long> times = Arrays.asList(1539795946493403235L, 1539795946493511575L, 1539795946493528296L, 1539795946493532642L);
+        List<ITimeGraphState> states = fetchStates(dataProvider, entries, "sub_node/sub_node|Subscribers|/the_topic_name|queue", times);
+        assertEquals(4, states.size());
+        assertState(1539795946493403235L, 1539795946493511574L, "1", states.get(0));
+        assertState(1539795946493511575L, 1539795946493528295L, "2", states.get(1));
+        assertState(1539795946493528296L, 1539795946493532641L, "3", states.get(2));
+        // The oldest message is dropped
+        assertState(1539795946493532642L, 1539795946493558032L, "2", states.get(3));
+
+        states = fetchStates(dataProvider, entries, "sub_node/sub_node|Subscribers|/the_topic_name|queue|1", times);
+        assertEquals(2, states.size());
+        assertState(1539795946493403235L, 1539795946493532641L, "0x7f2334001c70", states.get(0));
+        assertState(1539795946493532642L, 1539795946493571772L, "0x7f2334002430", states.get(1));
+
+        // The publisher queue is never emptied
+        states = fetchStates(dataProvider, entries, "pub_node/pub_node|Publishers|/the_topic_name|queue", Collections.singletonList(ss.getCurrentEndTime()));
+        assertEquals(1, states.size());
+        assertState(1539795946493270117L, ss.getCurrentEndTime(), "10", states.get(0));
+    }
+
+    /**
+     * Test the tree of the tasks and the start of a few tasks
+     */
+    private void assertTasks(ITimeGraphDataProvider<@NonNull TimeGraphEntryModel> dataProvider, ITmfStateSystem ss) {
+        assertEquals(RosTasksDataProvider.getFullDataProviderId(), dataProvider.getId());
+        List<@NonNull TimeGraphEntryModel> entries = fetchTree(dataProvider, ss);
+        assertTree(TASKS_ENTRIES, entries);
+
+        List<Long> times = Arrays.asList(ss.getStartTime(), ss.getCurrentEndTime());
+        List<ITimeGraphState> states = fetchStates(dataProvider, entries, "sub_node/sub_node|PollManager", times);
+        assertEquals(1, states.size());
+        assertState(1539795944481871642L, ss.getCurrentEndTime(), "PollManager", states.get(0));
+
+        states = fetchStates(dataProvider, entries, "pub_node/pub_node|SingleThreadedSpinner::spin", times);
+        assertEquals(1, states.size());
+        assertState(1539795946493281529L, ss.getCurrentEndTime(), "SingleThreadedSpinner::spin", states.get(0));
+    }
+
+    /**
+     * Test the tree of the connections and the hosts of a few connections
+     */
+    private void assertConnections(ITimeGraphDataProvider<@NonNull TimeGraphEntryModel> dataProvider, ITmfStateSystem ss) {
+        assertEquals(RosConnectionsDataProvider.getFullDataProviderId(), dataProvider.getId());
+        List<@NonNull TimeGraphEntryModel> entries = fetchTree(dataProvider, ss);
+        assertTree(CONNECTIONS_ENTRIES, entries);
+
+        List<Long> times = Arrays.asList(ss.getStartTime(), ss.getCurrentEndTime());
+        List<ITimeGraphState> states = fetchStates(dataProvider, entries, "sub_node/sub_node|TransportPublisherLink|/the_topic_name|", times);
+        assertEquals(1, states.size());
+        assertState(1539795944751337423L, ss.getCurrentEndTime(), "127.0.0.1:49342/127.0.1.1:35681", states.get(0));
+
+        states = fetchStates(dataProvider, entries, "pub_node/pub_node|TransportSubscriberLink|/rosout|", times);
+        assertEquals(1, states.size());
+        assertState(1539795944752655666L, ss.getCurrentEndTime(), "127.0.1.1:35681/127.0.0.1:49344", states.get(0));
+    }
+
+    /**
+     * Test the tree of the timers. No timer is added in this trace, so there
+     * are no rows, only the trace entry.
+     */
+    private void assertTimers(ITimeGraphDataProvider<@NonNull TimeGraphEntryModel> dataProvider, ITmfStateSystem ss) {
+        assertEquals(RosTimersDataProvider.getFullDataProviderId(), dataProvider.getId());
+        List<@NonNull TimeGraphEntryModel> entries = fetchTree(dataProvider, ss);
+        assertTree(Collections.emptyList(), entries);
+        assertEquals(ITmfStateSystem.INVALID_ATTRIBUTE, ss.optQuarkAbsolute(RosStateProvider.TIMERS));
+    }
+
+    private static List<@NonNull TimeGraphEntryModel> fetchTree(ITimeGraphDataProvider<@NonNull TimeGraphEntryModel> dataProvider, ITmfStateSystem ss) {
+        TmfModelResponse<@NonNull List<@NonNull TimeGraphEntryModel>> response = dataProvider.fetchTree(new TimeQueryFilter(ss.getStartTime(), ss.getCurrentEndTime(), 2), new NullProgressMonitor());
+        assertEquals(Status.COMPLETED, response.getStatus());
+        List<@NonNull TimeGraphEntryModel> entries = response.getModel();
+        assertNotNull(entries);
+        return entries;
+    }
+
+    /**
+     * Assert that the first entry is the trace entry and that the other
+     * entries have the expected paths, which gives both their names and their
+     * parents
+     */
+    private void assertTree(List<String> expected, List<@NonNull TimeGraphEntryModel> entries) {
+        assertEquals(fTrace.getName(), entries.get(0).getName());
+        assertEquals(-1, entries.get(0).getParentId());
+        assertEquals(expected, getPaths(entries));
+    }
+
+    /**
+     * Get the paths of the entries below the trace entry, the names of their
+     * ancestors and their own name
+     */
+    private static List<String> getPaths(List<@NonNull TimeGraphEntryModel> entries) {
+        Map<Long, TimeGraphEntryModel> entriesById = new HashMap<>();
+        for (TimeGraphEntryModel entry : entries) {
+            entriesById.put(entry.getId(), entry);
+        }
+        List<String> paths = new ArrayList<>();
+        for (TimeGraphEntryModel entry : entries) {
+            if (entry.getParentId() == -1) {
+                continue;
+            }
+            String path = entry.getName();
+            TimeGraphEntryModel parent = entriesById.get(entry.getParentId());
+            while (parent != null && parent.getParentId() != -1) {
+                path = parent.getName() + SEPARATOR + path;
+                parent = entriesById.get(parent.getParentId());
+            }
+            paths.add(path);
+        }
+        return paths;
+    }
+
+    /**
+     * Fetch the states of the first entry with a path, at some times
+     */
+    private static List<ITimeGraphState> fetchStates(ITimeGraphDataProvider<@NonNull TimeGraphEntryModel> dataProvider, List<@NonNull TimeGraphEntryModel> entries, String path, List<Long> times) {
+        int index = getPaths(entries).indexOf(path);
+        assertTrue(path, index >= 0);
+        /* The paths do not include the trace entry */
+        long id = entries.get(index + 1).getId();
+        TmfModelResponse<@NonNull List<@NonNull ITimeGraphRowModel>> response = dataProvider.fetchRowModel(new SelectionTimeQueryFilter(times, Collections.singleton(id)), new NullProgressMonitor());
+        assertEquals(Status.COMPLETED, response.getStatus());
+        List<@NonNull ITimeGraphRowModel> rows = response.getModel();
+        assertNotNull(rows);
+        assertEquals(1, rows.size());
+        assertEquals(id, rows.get(0).getEntryID());
+        return rows.get(0).getStates();
+    }
+
+    private static void assertState(long start, long end, String label, ITimeGraphState state) {
+        assertEquals(start, state.getStartTime());
+        assertEquals(end - start + 1, state.getDuration());
+        assertEquals(label, state.getLabel());
+    }
+
+    /**
+     * Test that the queues are saved next to the state system and read back
+     * when the analysis is opened again, and that queues saved by another
+     * version of the provider are not mixed with the rebuilt ones
+     *
+     * @throws TmfAnalysisException
+     *             the analysis cannot be created
+     * @throws IOException
+     *             the queues cannot be written
+     */
+    @Test
+    public void testQueuesRebuild() throws TmfAnalysisException, IOException {
+        RosTrace trace = fTrace;
+        File queuesFile = new File(TmfTraceManager.getSupplementaryFileDir(trace) + RosAnalysis.getFullAnalysisId() + ".queues");
+
+        // Built from the trace
+        Map<Integer, Integer> maxDepths = getMaxDepths(trace);
+        assertFalse(maxDepths.isEmpty());
+        assertTrue(queuesFile.exists());
+
+        // Opened from the saved files
+        assertEquals(maxDepths, getMaxDepths(trace));
+
+        // The queues are from another version of the provider
+        int quark = maxDepths.keySet().iterator().next();
+        RosQueuesStore other = new RosQueuesStore();
+        for (int i = 0; i < 1000; i++) {
+            other.offer(quark, i, i);
+        }
+        other.write(queuesFile, -1);
+        assertEquals(maxDepths, getMaxDepths(trace));
+    }
+
+    /**
+     * Run a new analysis and get the maximum depth of each queue
+     */
+    private static Map<Integer, Integer> getMaxDepths(@NonNull RosTrace trace) throws TmfAnalysisException {
+        RosAnalysis module = new RosAnalysis();
+        try {
+            assertTrue(module.setTrace(trace));
+            module.schedule();
+            assertTrue(module.waitForCompletion());
+            ITmfStateSystem ss = module.getStateSystem();
+            assertNotNull(ss);
+            RosQueuesStore queues = module.getQueues();
+            Map<Integer, Integer> maxDepths = new TreeMap<>();
+            for (int quark = 0; quark < ss.getNbAttributes(); quark++) {
+                if (queues.isQueue(quark)) {
+                    maxDepths.put(quark, queues.getMaxDepth(quark));
+                }
+            }
+            return maxDepths;
+        } finally {
+            module.dispose();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/**********************************************************************
+ * Copyright (c) 2018 Ericsson, École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ **********************************************************************/
+
+package org.eclipse.tracecompass.incubator.ros.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.queues.RosQueuesStore;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Test the {@link RosQueuesStore}
+ *
+ * @author Christophe Bedard
+ */
+public class RosQueuesStoreTest {
+
+    private static final int QUEUE = 5;
+    private static final int POSITION_1 = 6;
+    private static final int POSITION_2 = 7;
+    private static final long END = 100;
+    private static final int PROVIDER_VERSION = 2;
+
+    private RosQueuesStore fStore;
+
+    /**
+     * Fill a queue: two messages are enqueued, one is dequeued, a third one is
+     * enqueued and the queue is then emptied.
+     */
+    @Before
+    public void setUp() {
+        RosQueuesStore store = new RosQueuesStore();
+        assertEquals(1, store.offer(QUEUE, 10, 100));
+        assertEquals(2, store.offer(QUEUE, 20, 200));
+        store.poll(QUEUE, 30);
+        assertEquals(2, store.offer(QUEUE, 40, 300));
+        store.poll(QUEUE, 50);
+        store.poll(QUEUE, 60);
+        // The queue is empty, nothing to dequeue
+        store.poll(QUEUE, 70);
+        fStore = store;
+    }
+
+    /**
+     * Test the depth and the contents of the queue
+     */
+    @Test
+    public void testContents() {
+        RosQueuesStore store = fStore;
+        assertTrue(store.isQueue(QUEUE));
+        assertFalse(store.isQueue(POSITION_1));
+        assertEquals(2, store.getMaxDepth(QUEUE));
+
+        assertEquals(0, store.getDepth(QUEUE, 5));
+        assertEquals(1, store.getDepth(QUEUE, 10));
+        assertEquals(2, store.getDepth(QUEUE, 25));
+        assertEquals(1, store.getDepth(QUEUE, 30));
+        assertEquals(0, store.getDepth(QUEUE, 65));
+
+        assertEquals(Collections.emptyList(), store.getContents(QUEUE, 5));
+        assertEquals(ImmutableList.of(100L, 200L), store.getContents(QUEUE, 25));
+        assertEquals(ImmutableList.of(200L, 300L), store.getContents(QUEUE, 45));
+        assertEquals(ImmutableList.of(300L), store.getContents(QUEUE, 55));
+        assertEquals(Collections.emptyList(), store.getContents(QUEUE, 65));
+        assertEquals(Collections.emptyList(), store.getContents(POSITION_1, 25));
+    }
+
+    /**
+     * Test the intervals of the depth of the queue
+     */
+    @Test
+    public void testDepthIntervals() {
+        RosQueuesStore store = fStore;
+        assertNull(store.getDepthInterval(QUEUE, 5, END));
+        assertInterval(10, 19, QUEUE, 1, store.getDepthInterval(QUEUE, 15, END));
+        assertInterval(20, 29, QUEUE, 2, store.getDepthInterval(QUEUE, 20, END));
+        assertInterval(30, 39, QUEUE, 1, store.getDepthInterval(QUEUE, 39, END));
+        assertInterval(40, 49, QUEUE, 2, store.getDepthInterval(QUEUE, 45, END));
+        assertInterval(50, 59, QUEUE, 1, store.getDepthInterval(QUEUE, 55, END));
+        assertInterval(60, END, QUEUE, 0, store.getDepthInterval(QUEUE, 80, END));
+    }
+
+    /**
+     * Test the intervals of the messages at each position of the queue
+     */
+    @Test
+    public void testMessageIntervals() {
+        RosQueuesStore store = fStore;
+        assertNull(store.getMessageInterval(QUEUE, POSITION_1, 1, 5, END));
+        assertInterval(10, 29, POSITION_1, 100L, store.getMessageInterval(QUEUE, POSITION_1, 1, 25, END));
+        assertInterval(30, 49, POSITION_1, 200L, store.getMessageInterval(QUEUE, POSITION_1, 1, 35, END));
+        assertInterval(50, 59, POSITION_1, 300L, store.getMessageInterval(QUEUE, POSITION_1, 1, 55, END));
+        assertNull(store.getMessageInterval(QUEUE, POSITION_1, 1, 65, END));
+
+        assertInterval(20, 29, POSITION_2, 200L, store.getMessageInterval(QUEUE, POSITION_2, 2, 25, END));
+        assertNull(store.getMessageInterval(QUEUE, POSITION_2, 2, 35, END));
+        assertInterval(40, 49, POSITION_2, 300L, store.getMessageInterval(QUEUE, POSITION_2, 2, 45, END));
+        assertNull(store.getMessageInterval(QUEUE, POSITION_2, 2, 55, END));
+    }
+
+    /**
+     * Test that the queues are the same once saved and read back, and that
+     * files of another provider version or invalid files are not read
+     *
+     * @throws IOException
+     *             if the temporary files cannot be written
+     */
+    @Test
+    public void testReadWrite() throws IOException {
+        File file = File.createTempFile("ros", ".queues");
+        try {
+            fStore.write(file, PROVIDER_VERSION);
+            RosQueuesStore read = RosQueuesStore.read(file, PROVIDER_VERSION);
+            assertNotNull(read);
+            assertEquals(2, read.getMaxDepth(QUEUE));
+            assertEquals(ImmutableList.of(200L, 300L), read.getContents(QUEUE, 45));
+            assertInterval(30, 49, POSITION_1, 200L, read.getMessageInterval(QUEUE, POSITION_1, 1, 35, END));
+
+            // Queued by another version of the provider, they must be rebuilt
+            assertNull(RosQueuesStore.read(file, PROVIDER_VERSION + 1));
+
+            try (FileOutputStream output = new FileOutputStream(file)) {
+                output.write(new byte[] { 1, 2, 3 });
+            }
+            assertNull(RosQueuesStore.read(file, PROVIDER_VERSION));
+        } finally {
+            file.delete();
+        }
+        assertNull(RosQueuesStore.read(file, PROVIDER_VERSION));
+    }
+
+    private static void assertInterval(long start, long end, int quark, Object value, ITmfStateInterval interval) {
+        assertNotNull(interval);
+        assertEquals(start, interval.getStartTime());
+        assertEquals(end, interval.getEndTime());
+        assertEquals(quark, interval.getAttribute());
+        assertEquals(value, interval.getValue());
+    }
+}
@@ -21,7 +21,6 @@ import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
-import org.eclipse.tracecompass.tmf.core.util.Pair;
 
 import com.google.common.collect.Maps;
 
@@ -51,14 +50,20 @@ public abstract class AbstractRosStateProvider extends AbstractTmfStateProvider
 
     private static final int UNKNOWN = -1;
     private static final String UNKNOWN_NODE_NAME = "UNKNOWN_NODE"; //$NON-NLS-1$
+    private static final long NANOS_PER_SECOND = 1000000000L;
 
     /** The event layout */
     protected final IRosEventLayout fLayout;
 
     /**
-     * Map for pid -> (node_type, node_instance_name)
+     * Map for event name -> event type, for the events handled by the analysis
      */
-    private Map<Long, Pair<String, String>> fNodesNamesPid = Maps.newHashMap();
+    private final Map<String, RosEventType> fEventTypes;
+
+    /**
+     * Map for pid -> full node name (node_type + node_instance_name)
+     */
+    private Map<Long, String> fNodesNamesPid = Maps.newHashMap();
 
     /**
      * Constructor
@@ -71,6 +76,7 @@ public abstract class AbstractRosStateProvider extends AbstractTmfStateProvider
     public AbstractRosStateProvider(ITmfTrace trace, @NonNull String id) {
         super(checkNotNull(trace), id);
         fLayout = IRosEventLayout.getDefault();
+        fEventTypes = RosEventType.getEventTypes(fLayout);
     }
 
     @Override
@@ -81,44 +87,35 @@ public abstract class AbstractRosStateProvider extends AbstractTmfStateProvider
         return getNewRosStateProviderInstance(this.getClass(), getTrace());
     }
 
-    /**
-     * Basic check to figure out if further processing should be done with an
-     * event
-     *
-     * @param event
-     *            the event
-     * @return true if the event should be handled, false otherwise
-     */
-    protected static boolean considerEvent(@NonNull ITmfEvent event) {
-        // Consider if the provider name matches
-        return event.getName().startsWith(IRosEventLayout.PROVIDER_NAME);
-    }
-
     @Override
     protected void eventHandle(@NonNull ITmfEvent event) {
+        // Classify the event once, other events are ignored
+        RosEventType type = fEventTypes.get(event.getName());
+        if (type == null) {
+            return;
+        }
+
         // Get node name association from init_node event
-        if (isEvent(event, fLayout.eventInitNode())) {
+        if (type == RosEventType.INIT_NODE) {
             // Add info to map for later
             putNodeName(event);
         }
+        eventHandle(event, type);
     }
 
-    // ------------------------------------------------------------------------
-    // Helpers
-    // ------------------------------------------------------------------------
-
     /**
-     * Check if an event is of a given type
+     * Handle a ROS event
      *
      * @param event
      *            the event
-     * @param eventName
-     *            the event name to check for
-     * @return true if the event is of the given type, false otherwise
+     * @param type
+     *            the type of the event
      */
-    protected static boolean isEvent(@NonNull ITmfEvent event, @NonNull String eventName) {
-        return event.getName().equals(eventName);
-    }
+    protected abstract void eventHandle(@NonNull ITmfEvent event, @NonNull RosEventType type);
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
 
     /**
      * Get field value from an event
@@ -138,8 +135,8 @@ public abstract class AbstractRosStateProvider extends AbstractTmfStateProvider
     }
 
     /**
-     * Add a pid -> (node_type, node_instance_name) association to the map for
-     * later use. This makes it possible to identify a node based on its PID.
+     * Add a pid -> full node name association to the map for later use. This
+     * makes it possible to identify a node based on its PID.
      *
      * @param event
      *            the node_init event
@@ -150,8 +147,7 @@ public abstract class AbstractRosStateProvider extends AbstractTmfStateProvider
          * is available from the node_name field.
          */
         fNodesNamesPid.put((Long) getField(initEvent, fLayout.contextVpid()),
-                new Pair<>((String) getField(initEvent, fLayout.contextProcname()),
-                        (String) getField(initEvent, fLayout.fieldNodeName())));
+                (String) getField(initEvent, fLayout.contextProcname()) + (String) getField(initEvent, fLayout.fieldNodeName()));
     }
 
     /**
@@ -162,11 +158,11 @@ public abstract class AbstractRosStateProvider extends AbstractTmfStateProvider
      * @return the full node name (format: node_type/node_instance_name)
      */
     protected String getNodeName(@NonNull ITmfEvent event) {
-        @Nullable Pair<String, String> nodeNames = fNodesNamesPid.get(getField(event, fLayout.contextVpid()));
-        if (nodeNames == null) {
+        @Nullable String nodeName = fNodesNamesPid.get(getField(event, fLayout.contextVpid()));
+        if (nodeName == null) {
             return UNKNOWN_NODE_NAME;
         }
-        return nodeNames.getFirst() + nodeNames.getSecond();
+        return nodeName;
     }
 
     /**
@@ -194,7 +190,7 @@ public abstract class AbstractRosStateProvider extends AbstractTmfStateProvider
     protected @NonNull Long getTimerPeriodInNs(@NonNull ITmfEvent event) {
         Long sec = (Long) event.getContent().getField(fLayout.fieldPeriodSec()).getValue();
         Long nSec = (Long) event.getContent().getField(fLayout.fieldPeriodNsec()).getValue();
-        return nSec + (sec * (long) Math.pow(10, 9));
+        return nSec + sec * NANOS_PER_SECOND;
     }
 
     /**
@@ -14,7 +14,6 @@ import java.util.Objects;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.incubator.internal.ros.core.Activator;
-import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.nodes.RosNodesStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
@@ -42,7 +41,7 @@ public interface IRosStateProviderInstantiator {
         } catch (InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException | NoSuchMethodException | SecurityException e) {
             e.printStackTrace();
         }
-        Activator.getInstance().logError("Error instantiating state provider; using ROS Nodes state provider instead for: " + stateProvider.toString()); //$NON-NLS-1$
-        return new RosNodesStateProvider(trace);
+        Activator.getInstance().logError("Error instantiating state provider; using ROS state provider instead for: " + stateProvider.toString()); //$NON-NLS-1$
+        return new RosStateProvider(trace);
     }
 }
@@ -0,0 +1,138 @@
+/**********************************************************************
+ * Copyright (c) 2018 Ericsson, École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ **********************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.ros.core.analysis;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.internal.ros.core.Activator;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.connections.RosConnectionsAnalysisRequirement;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.nodes.RosNodesAnalysisRequirement;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.queues.RosQueuesAnalysisRequirement;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.queues.RosQueuesStore;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.tasks.RosTasksAnalysisRequirement;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.timers.RosTimersAnalysisRequirement;
+import org.eclipse.tracecompass.incubator.internal.ros.core.trace.RosTrace;
+import org.eclipse.tracecompass.incubator.internal.ros.core.trace.layout.IRosEventLayout;
+import org.eclipse.tracecompass.tmf.core.analysis.requirements.TmfAbstractAnalysisRequirement;
+import org.eclipse.tracecompass.tmf.core.analysis.requirements.TmfAbstractAnalysisRequirement.PriorityLevel;
+import org.eclipse.tracecompass.tmf.core.analysis.requirements.TmfCompositeAnalysisRequirement;
+import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * ROS analysis. It builds the nodes, queues, tasks, connections and timers
+ * models from a single pass on the trace, see {@link RosStateProvider}.
+ *
+ * @author Christophe Bedard
+ */
+public class RosAnalysis extends AbstractRosAnalysis {
+
+    /** The ID suffix of this analysis module */
+    public static final @NonNull String ID_SUFFIX = ".ros"; //$NON-NLS-1$
+
+    private static final String QUEUES_EXTENSION = ".queues"; //$NON-NLS-1$
+
+    private volatile @NonNull RosQueuesStore fQueues = new RosQueuesStore();
+
+    /**
+     * Constructor
+     */
+    public RosAnalysis() {
+        super(getFullAnalysisId());
+    }
+
+    @Override
+    protected @NonNull ITmfStateProvider createStateProvider() {
+        return new RosStateProvider(checkNotNull(getTrace()), fQueues);
+    }
+
+    @Override
+    protected Class<?> getRosAnalysisStateProviderClass() {
+        return RosStateProvider.class;
+    }
+
+    @Override
+    protected boolean executeAnalysis(@Nullable IProgressMonitor monitor) {
+        /*
+         * Only the queue and position attributes are in the state system, the
+         * messages are queued in a store saved next to the history tree. The
+         * store is keyed by the quarks of the tree, so it is only reused with
+         * the tree it was built with, by the same provider version. Otherwise
+         * the tree is deleted so that both are rebuilt together: reusing the
+         * store while the tree is rebuilt would queue every message twice.
+         */
+        RosTrace trace = getTrace();
+        File queuesFile = (trace == null) ? null : new File(TmfTraceManager.getSupplementaryFileDir(trace) + getId() + QUEUES_EXTENSION);
+        File ssFile = (trace == null) ? null : new File(TmfTraceManager.getSupplementaryFileDir(trace) + getSsFileName());
+        RosQueuesStore saved = (queuesFile == null || ssFile == null || !ssFile.exists()) ? null : RosQueuesStore.read(queuesFile, RosStateProvider.VERSION_NUMBER);
+        if (saved != null) {
+            fQueues = saved;
+        } else if (ssFile != null) {
+            fQueues = new RosQueuesStore();
+            ssFile.delete();
+        }
+        boolean ret = super.executeAnalysis(monitor);
+        if (ret && saved == null && queuesFile != null) {
+            try {
+                fQueues.write(queuesFile, RosStateProvider.VERSION_NUMBER);
+            } catch (IOException e) {
+                Activator.getInstance().logError("Cannot save the ROS queues", e); //$NON-NLS-1$
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Get the messages of the publisher and subscriber queues
+     *
+     * @return The queues, filled while the analysis runs
+     */
+    public @NonNull RosQueuesStore getQueues() {
+        return fQueues;
+    }
+
+    @Override
+    public @NonNull Iterable<@NonNull TmfAbstractAnalysisRequirement> getAnalysisRequirements() {
+        Set<@NonNull TmfAbstractAnalysisRequirement> requirements = fAnalysisRequirements;
+        if (requirements == null) {
+            RosTrace trace = getTrace();
+            IRosEventLayout layout = IRosEventLayout.getDefault();
+            if (trace != null) {
+                layout = trace.getEventLayout();
+            }
+            IRosEventLayout traceLayout = checkNotNull(layout);
+            // One of the models is enough for the analysis to be useful
+            requirements = ImmutableSet.of(new TmfCompositeAnalysisRequirement(ImmutableSet.of(
+                    new RosNodesAnalysisRequirement(traceLayout),
+                    new RosQueuesAnalysisRequirement(traceLayout),
+                    new RosTasksAnalysisRequirement(traceLayout),
+                    new RosConnectionsAnalysisRequirement(traceLayout),
+                    new RosTimersAnalysisRequirement(traceLayout)), PriorityLevel.AT_LEAST_ONE));
+            fAnalysisRequirements = requirements;
+        }
+        return requirements;
+    }
+
+    /**
+     * @return the full ID of this analysis module
+     */
+    public static @NonNull String getFullAnalysisId() {
+        return AbstractRosAnalysis.getAnalysisIdFromSuffix(ID_SUFFIX);
+    }
+}
@@ -0,0 +1,85 @@
+/**********************************************************************
+ * Copyright (c) 2018 Ericsson, École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ **********************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.ros.core.analysis;
+
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.tracecompass.incubator.internal.ros.core.trace.layout.IRosEventLayout;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Types of the ROS events handled by the ROS analysis. An event is classified
+ * once by looking up its name in the table built from the event layout.
+ *
+ * @author Christophe Bedard
+ */
+@NonNullByDefault
+public enum RosEventType {
+
+    /** init_node */
+    INIT_NODE,
+    /** shutdown_node */
+    SHUTDOWN_NODE,
+    /** subscriber_callback_added */
+    SUB_CALLBACK_ADDED,
+    /** callback_start */
+    CALLBACK_START,
+    /** subscriber_callback_start */
+    SUB_CALLBACK_START,
+    /** subscriber_callback_end */
+    SUB_CALLBACK_END,
+    /** callback_end */
+    CALLBACK_END,
+    /** subscription_message_queued */
+    SUB_MSG_QUEUED,
+    /** subscription_message_dropped */
+    SUB_MSG_DROPPED,
+    /** publisher_message_queued */
+    PUB_MSG_QUEUED,
+    /** publisher_link_handle_message */
+    PUB_LINK_HANDLE_MSG,
+    /** task_start */
+    TASK_START,
+    /** timer_added */
+    TIMER_ADDED,
+    /** timer_scheduled */
+    TIMER_SCHEDULED,
+    /** new_connection */
+    NEW_CONNECTION;
+
+    /**
+     * Get the table of the event types by event name for an event layout
+     *
+     * @param layout
+     *            the event layout
+     * @return the event types, by event name
+     */
+    public static Map<String, RosEventType> getEventTypes(IRosEventLayout layout) {
+        return ImmutableMap.<String, RosEventType> builder()
+                .put(layout.eventInitNode(), INIT_NODE)
+                .put(layout.eventShutdownNode(), SHUTDOWN_NODE)
+                .put(layout.eventSubCallbackAdded(), SUB_CALLBACK_ADDED)
+                .put(layout.eventCallbackStart(), CALLBACK_START)
+                .put(layout.eventSubCallbackStart(), SUB_CALLBACK_START)
+                .put(layout.eventSubCallbackEnd(), SUB_CALLBACK_END)
+                .put(layout.eventCallbackEnd(), CALLBACK_END)
+                .put(layout.eventSubMsgQueued(), SUB_MSG_QUEUED)
+                .put(layout.eventSubMsgDropped(), SUB_MSG_DROPPED)
+                .put(layout.eventPubMsgQueued(), PUB_MSG_QUEUED)
+                .put(layout.eventPubLinkHandleMsg(), PUB_LINK_HANDLE_MSG)
+                .put(layout.eventTaskStart(), TASK_START)
+                .put(layout.eventTimerAdded(), TIMER_ADDED)
+                .put(layout.eventTimerScheduled(), TIMER_SCHEDULED)
+                .put(layout.eventNewConnection(), NEW_CONNECTION)
+                .build();
+    }
+}
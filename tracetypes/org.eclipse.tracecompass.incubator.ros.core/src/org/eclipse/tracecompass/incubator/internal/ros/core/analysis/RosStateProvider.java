@@ -0,0 +1,347 @@
+/**********************************************************************
+ * Copyright (c) 2018 Ericsson, École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ **********************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.ros.core.analysis;
+
+import java.util.Objects;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.incubator.internal.ros.core.Activator;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.queues.RosQueuesStore;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemBuilderUtils;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * State provider for the ROS analysis. It builds the models of the nodes,
+ * queues, tasks, connections and timers in a single pass on the trace, each
+ * model under its own top-level attribute of the state system. The messages
+ * of the queues are kept in a {@link RosQueuesStore} rather than in the state
+ * system, only the queue attributes and their positions are created in it.
+ *
+ * @author Christophe Bedard
+ */
+public class RosStateProvider extends AbstractRosStateProvider {
+
+    /** Root attribute of the nodes model */
+    public static final @NonNull String NODES = "Nodes"; //$NON-NLS-1$
+    /** Root attribute of the queues model */
+    public static final @NonNull String QUEUES = "Queues"; //$NON-NLS-1$
+    /** Root attribute of the tasks model */
+    public static final @NonNull String TASKS = "Tasks"; //$NON-NLS-1$
+    /** Root attribute of the connections model */
+    public static final @NonNull String CONNECTIONS = "Connections"; //$NON-NLS-1$
+    /** Root attribute of the timers model */
+    public static final @NonNull String TIMERS = "Timers"; //$NON-NLS-1$
+
+    /** Separator between localhostport and remotehostport */
+    public static final @NonNull String CONNECTION_HOST_SEPARATOR = "/"; //$NON-NLS-1$
+
+    /** Version of the provider, written in the saved queues files */
+    static final int VERSION_NUMBER = 2;
+
+    private final @NonNull RosQueuesStore fQueues;
+
+    /**
+     * Constructor. The messages are queued in a new store, which only this
+     * provider and its new instances fill.
+     *
+     * @param trace
+     *            the trace
+     */
+    public RosStateProvider(ITmfTrace trace) {
+        this(trace, new RosQueuesStore());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param trace
+     *            the trace
+     * @param queues
+     *            the store to fill with the messages of the queues
+     */
+    public RosStateProvider(ITmfTrace trace, @NonNull RosQueuesStore queues) {
+        super(trace, RosAnalysis.getFullAnalysisId());
+        fQueues = queues;
+    }
+
+    @Override
+    public int getVersion() {
+        return VERSION_NUMBER;
+    }
+
+    @Override
+    public @NonNull ITmfStateProvider getNewInstance() {
+        /* The new instance queues the messages in the same store */
+        return new RosStateProvider(getTrace(), fQueues);
+    }
+
+    @Override
+    protected void eventHandle(@NonNull ITmfEvent event, @NonNull RosEventType type) {
+        ITmfStateSystemBuilder ss = Objects.requireNonNull(getStateSystemBuilder());
+
+        long timestamp = event.getTimestamp().toNanos();
+
+        switch (type) {
+        case INIT_NODE:
+        case SHUTDOWN_NODE:
+            handleNodes(ss, timestamp, event, type);
+            break;
+        case SUB_CALLBACK_ADDED:
+        case CALLBACK_START:
+        case SUB_CALLBACK_START:
+        case SUB_CALLBACK_END:
+        case CALLBACK_END:
+        case SUB_MSG_QUEUED:
+        case SUB_MSG_DROPPED:
+        case PUB_MSG_QUEUED:
+            handleQueues(ss, timestamp, event, type);
+            break;
+        case TASK_START:
+            handleTasks(ss, timestamp, event);
+            break;
+        case NEW_CONNECTION:
+            handleConnections(ss, timestamp, event);
+            break;
+        case TIMER_ADDED:
+        case TIMER_SCHEDULED:
+            handleTimers(ss, timestamp, event, type);
+            break;
+        case PUB_LINK_HANDLE_MSG:
+        default:
+            break;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Nodes
+    // ------------------------------------------------------------------------
+
+    private void handleNodes(ITmfStateSystemBuilder ss, long timestamp, ITmfEvent event, RosEventType type) {
+        int nodesQuark = ss.getQuarkAbsoluteAndAdd(NODES);
+        String nodeName = getNodeName(event);
+
+        // Add to nodes list
+        int nodeNameQuark = ss.getQuarkRelativeAndAdd(nodesQuark, nodeName);
+        if (type == RosEventType.INIT_NODE) {
+            long processId = getProcessId(event);
+            ss.modifyAttribute(timestamp, processId, nodeNameQuark);
+        } else {
+            // End state in the node's name attribute
+            ss.modifyAttribute(timestamp, (Object) null, nodeNameQuark);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Queues
+    // ------------------------------------------------------------------------
+
+    private void handleQueues(ITmfStateSystemBuilder ss, long timestamp, ITmfEvent event, RosEventType type) {
+        int queuesQuark = ss.getQuarkAbsoluteAndAdd(QUEUES);
+        String nodeName = getNodeName(event);
+
+        try {
+            switch (type) {
+            case SUB_CALLBACK_ADDED: {
+                String topicName = (String) getField(event, fLayout.fieldSourceName());
+
+                // Add to the node's subscribers list
+                int subsListQuark = ss.getQuarkRelativeAndAdd(queuesQuark, nodeName, SUBSCRIBERS_LIST);
+                try {
+                    StateSystemBuilderUtils.incrementAttributeInt(ss, timestamp, subsListQuark, 1);
+                } catch (StateValueTypeException | AttributeNotFoundException e) {
+                }
+
+                // Increment subscribers list counter
+                int subQuark = ss.getQuarkRelativeAndAdd(subsListQuark, topicName);
+                ss.modifyAttribute(timestamp, topicName, subQuark);
+
+                // Create subscriber-specific quarks right away
+                ss.getQuarkRelativeAndAdd(subsListQuark, CALLBACKS);
+                ss.getQuarkRelativeAndAdd(subQuark, QUEUE);
+                ss.getQuarkRelativeAndAdd(subQuark, SUBSCRIBER_MESSAGE_PROCESSING);
+                ss.getQuarkRelativeAndAdd(subQuark, DROPS);
+                break;
+            }
+            case CALLBACK_START: {
+                Long callbackRef = (Long) getField(event, fLayout.fieldCallbackRef());
+
+                // Start callback in the node's general callbacks list
+                int subCallbacksQuark = ss.getQuarkRelative(queuesQuark, nodeName, SUBSCRIBERS_LIST, CALLBACKS);
+                ss.modifyAttribute(timestamp, callbackRef, subCallbacksQuark);
+                break;
+            }
+            case SUB_CALLBACK_START: {
+                String topicName = (String) getField(event, fLayout.fieldTopic());
+                Long msgRef = (Long) getField(event, fLayout.fieldMsgRef());
+
+                int subsListQuark = ss.getQuarkRelative(queuesQuark, nodeName, SUBSCRIBERS_LIST);
+
+                // Start callback in subscriber
+                int subCallbackQuark = ss.getQuarkRelative(subsListQuark, topicName, SUBSCRIBER_MESSAGE_PROCESSING);
+                ss.modifyAttribute(timestamp, msgRef, subCallbackQuark);
+
+                // Insert state change in the node's general callbacks list
+                int subCallbacksQuark = ss.getQuarkRelative(subsListQuark, CALLBACKS);
+                ss.modifyAttribute(timestamp, msgRef, subCallbacksQuark);
+
+                // Pop from subscriber queue
+                int subQueueQuark = ss.getQuarkRelative(subsListQuark, topicName, QUEUE);
+                fQueues.poll(subQueueQuark, timestamp);
+                break;
+            }
+            case SUB_CALLBACK_END: {
+                String topicName = (String) getField(event, fLayout.fieldTopic());
+
+                int subsListQuark = ss.getQuarkRelative(queuesQuark, nodeName, SUBSCRIBERS_LIST);
+
+                // End callback in subscriber
+                int subCallbackQuark = ss.getQuarkRelative(subsListQuark, topicName, SUBSCRIBER_MESSAGE_PROCESSING);
+                ss.modifyAttribute(timestamp, (Object) null, subCallbackQuark);
+
+                // End state change in node's general callbacks list
+                int subCallbacksQuark = ss.getQuarkRelative(subsListQuark, CALLBACKS);
+                ss.modifyAttribute(timestamp, (Object) null, subCallbacksQuark);
+                break;
+            }
+            case CALLBACK_END: {
+                Long callbackRef = (Long) getField(event, fLayout.fieldCallbackRef());
+
+                // End subscribers callback
+                int subCallbacksQuark = ss.getQuarkRelative(queuesQuark, nodeName, SUBSCRIBERS_LIST, CALLBACKS);
+                ss.updateOngoingState(callbackRef, subCallbacksQuark);
+                ss.modifyAttribute(timestamp, (Object) null, subCallbacksQuark);
+                break;
+            }
+            case SUB_MSG_QUEUED: {
+                String topicName = (String) getField(event, fLayout.fieldTopic());
+                Long msgRef = (Long) getField(event, fLayout.fieldMsgRef());
+
+                // Push to subscriber queue
+                int subQueueQuark = ss.getQuarkRelative(queuesQuark, nodeName, SUBSCRIBERS_LIST, topicName, QUEUE);
+                offer(ss, timestamp, Objects.requireNonNull(msgRef), subQueueQuark);
+                break;
+            }
+            case SUB_MSG_DROPPED: {
+                String topicName = (String) getField(event, fLayout.fieldTopic());
+                Long msgRef = (Long) getField(event, fLayout.fieldMsgRef());
+
+                int subsListQuark = ss.getQuarkRelative(queuesQuark, nodeName, SUBSCRIBERS_LIST);
+
+                // Add drop to the subscriber's drops
+                int subDropsQuark = ss.getQuarkRelative(subsListQuark, topicName, DROPS);
+                ss.modifyAttribute(timestamp - 1, msgRef, subDropsQuark);
+                ss.modifyAttribute(timestamp, (Object) null, subDropsQuark);
+
+                // Pop from subscriber queue
+                int subQueueQuark = ss.getQuarkRelative(subsListQuark, topicName, QUEUE);
+                fQueues.poll(subQueueQuark, timestamp);
+                break;
+            }
+            case PUB_MSG_QUEUED: {
+                String topicName = (String) getField(event, fLayout.fieldTopic());
+                Long buffRef = (Long) getField(event, fLayout.fieldBufferRef());
+
+                // Push to publisher queue
+                int pubQueueQuark = ss.getQuarkRelativeAndAdd(queuesQuark, nodeName, PUBLISHERS_LIST, topicName, QUEUE);
+                offer(ss, timestamp, Objects.requireNonNull(buffRef), pubQueueQuark);
+                break;
+            }
+            // TODO publisher_link_handle_message, assuming this is when a msg
+            // from the pub queue gets "sent", should pop from the publisher
+            // queue
+            default:
+                break;
+            }
+        } catch (AttributeNotFoundException e) {
+            Activator.getInstance().logError("Could not get queue quark; there may be missing events: ", e); //$NON-NLS-1$
+        }
+    }
+
+    private void offer(ITmfStateSystemBuilder ss, long timestamp, long ref, int queueQuark) {
+        int maxDepth = fQueues.getMaxDepth(queueQuark);
+        int depth = fQueues.offer(queueQuark, timestamp, ref);
+        if (depth > maxDepth) {
+            // Create the attribute of the new position, its messages are in the store
+            ss.getQuarkRelativeAndAdd(queueQuark, String.valueOf(depth));
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Tasks
+    // ------------------------------------------------------------------------
+
+    private void handleTasks(ITmfStateSystemBuilder ss, long timestamp, ITmfEvent event) {
+        int tasksQuark = ss.getQuarkAbsoluteAndAdd(TASKS);
+        String nodeName = getNodeName(event);
+        String fullTaskName = (String) getField(event, fLayout.fieldTaskName());
+        String shortTaskName = extractGenericTaskName(fullTaskName);
+
+        // Add to node's tasks list
+        int taskQuark = ss.getQuarkRelativeAndAdd(tasksQuark, nodeName, shortTaskName);
+        ss.modifyAttribute(timestamp, shortTaskName, taskQuark);
+    }
+
+    // ------------------------------------------------------------------------
+    // Connections
+    // ------------------------------------------------------------------------
+
+    private void handleConnections(ITmfStateSystemBuilder ss, long timestamp, ITmfEvent event) {
+        int connectionsQuark = ss.getQuarkAbsoluteAndAdd(CONNECTIONS);
+        String nodeName = getNodeName(event);
+        String channelType = (String) getField(event, fLayout.fieldChannelType());
+        String name = (String) getField(event, fLayout.fieldName());
+        String localHostPort = (String) getField(event, fLayout.fieldLocalHostport());
+        String remoteHostPort = (String) getField(event, fLayout.fieldRemoteHostport());
+        String localRemoteHosts = localHostPort + CONNECTION_HOST_SEPARATOR + remoteHostPort;
+
+        // Increment number of remote connections to local host port
+        int typeQuark = ss.getQuarkRelativeAndAdd(connectionsQuark, nodeName, channelType);
+        Object typeCounterObject = ss.queryOngoing(typeQuark);
+        int typeCounter = (typeCounterObject != null) ? ((Integer) typeCounterObject) + 1 : 1;
+        ss.modifyAttribute(timestamp, typeCounter, typeQuark);
+
+        // Push remote and local
+        int connectionQuark = ss.getQuarkRelativeAndAdd(typeQuark, name);
+        ss.pushAttribute(timestamp, localRemoteHosts, connectionQuark);
+    }
+
+    // ------------------------------------------------------------------------
+    // Timers
+    // ------------------------------------------------------------------------
+
+    private void handleTimers(ITmfStateSystemBuilder ss, long timestamp, ITmfEvent event, RosEventType type) {
+        int timersQuark = ss.getQuarkAbsoluteAndAdd(TIMERS);
+        String nodeName = getNodeName(event);
+        String callbackRef = formatLongDecToHex((Long) getField(event, fLayout.fieldCallbackRef()));
+
+        try {
+            if (type == RosEventType.TIMER_ADDED) {
+                // Add callback to node's timers list
+                int timerCallbackRefQuark = ss.getQuarkRelativeAndAdd(timersQuark, nodeName, callbackRef);
+                Long timerPeriodNs = getTimerPeriodInNs(event);
+                ss.modifyAttribute(timestamp, timerPeriodNs, timerCallbackRefQuark);
+            } else {
+                Long callbackQueueCbRef = (Long) getField(event, fLayout.fieldCallbackQueueCbRef());
+
+                // Add callback ref to scheduled queue
+                int timerCallbackRefQuark = ss.getQuarkRelative(timersQuark, nodeName, callbackRef);
+                int timerScheduledQuark = ss.getQuarkRelativeAndAdd(timerCallbackRefQuark, TIMER_SCHEDULED);
+                ss.pushAttribute(timestamp, callbackQueueCbRef, timerScheduledQuark);
+            }
+        } catch (AttributeNotFoundException e) {
+            Activator.getInstance().logError("Could not get timer callback quark; there may be missing events: ", e); //$NON-NLS-1$
+        }
+    }
+}
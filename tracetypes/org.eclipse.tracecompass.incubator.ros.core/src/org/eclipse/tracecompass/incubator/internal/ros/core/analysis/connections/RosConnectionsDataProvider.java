@@ -22,6 +22,9 @@ import org.apache.commons.lang3.StringUtils;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.AbstractRosAnalysis;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.RosAnalysis;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.RosStateProvider;
 import org.eclipse.tracecompass.internal.tmf.core.model.filters.TimeGraphStateQueryFilter;
 import org.eclipse.tracecompass.internal.tmf.core.model.timegraph.AbstractTimeGraphDataProvider;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
@@ -52,12 +55,15 @@ import com.google.common.collect.TreeMultimap;
  * @author Christophe Bedard
  */
 @SuppressWarnings("restriction")
-public class RosConnectionsDataProvider extends AbstractTimeGraphDataProvider<@NonNull RosConnectionsAnalysis, @NonNull TimeGraphEntryModel> {
+public class RosConnectionsDataProvider extends AbstractTimeGraphDataProvider<@NonNull RosAnalysis, @NonNull TimeGraphEntryModel> {
 
     /** Data provider suffix ID */
     public static final String SUFFIX = ".dataprovider"; //$NON-NLS-1$
 
-    private @NonNull RosConnectionsAnalysis fModule;
+    /** Suffix of the model in the data provider ID */
+    private static final String MODEL_SUFFIX = ".connections"; //$NON-NLS-1$
+
+    private @NonNull RosAnalysis fModule;
 
     /**
      * Constructor
@@ -67,7 +73,7 @@ public class RosConnectionsDataProvider extends AbstractTimeGraphDataProvider<@N
      * @param analysisModule
      *            the corresponding analysis module
      */
-    public RosConnectionsDataProvider(@NonNull ITmfTrace trace, @NonNull RosConnectionsAnalysis analysisModule) {
+    public RosConnectionsDataProvider(@NonNull ITmfTrace trace, @NonNull RosAnalysis analysisModule) {
         super(trace, analysisModule);
         fModule = analysisModule;
     }
@@ -92,7 +98,7 @@ public class RosConnectionsDataProvider extends AbstractTimeGraphDataProvider<@N
 
     @Override
     public @NonNull String getId() {
-        return getAnalysisModule().getId() + SUFFIX;
+        return getFullDataProviderId();
     }
 
     @Override
@@ -146,25 +152,28 @@ public class RosConnectionsDataProvider extends AbstractTimeGraphDataProvider<@N
     @Override
     protected @NonNull List<@NonNull TimeGraphEntryModel> getTree(@NonNull ITmfStateSystem ss, @NonNull TimeQueryFilter filter, @Nullable IProgressMonitor monitor) throws StateSystemDisposedException {
         Builder<@NonNull TimeGraphEntryModel> builder = new Builder<>();
-        long parentId = getId(ITmfStateSystem.ROOT_ATTRIBUTE);
+        int rootQuark = ss.optQuarkAbsolute(RosStateProvider.CONNECTIONS);
+        long parentId = getId(rootQuark);
         builder.add(new TimeGraphEntryModel(parentId, -1, String.valueOf(getTrace().getName()), ss.getStartTime(), ss.getCurrentEndTime()));
-        addChildren(ss, builder, ITmfStateSystem.ROOT_ATTRIBUTE, parentId);
+        if (rootQuark != ITmfStateSystem.INVALID_ATTRIBUTE) {
+            addChildren(ss, builder, rootQuark, rootQuark, parentId);
+        }
         ImmutableList<@NonNull TimeGraphEntryModel> models = builder.build();
         return models;
     }
 
-    private void addChildren(ITmfStateSystem ss, Builder<@NonNull TimeGraphEntryModel> builder, int quark, long parentId) {
+    private void addChildren(ITmfStateSystem ss, Builder<@NonNull TimeGraphEntryModel> builder, int rootQuark, int quark, long parentId) {
         for (Integer child : ss.getSubAttributes(quark, false)) {
             long childId = getId(child);
             String attributeName = ss.getAttributeName(child);
             String name = StringUtils.isNumeric(attributeName) ? StringUtils.EMPTY : attributeName;
             int grandParentQuark = ss.getParentAttributeQuark(quark);
             int grandGrandParentQuark = ss.getParentAttributeQuark(grandParentQuark);
-            boolean isRowModel = quark != ITmfStateSystem.ROOT_ATTRIBUTE
-                    && grandParentQuark != ITmfStateSystem.ROOT_ATTRIBUTE
-                    && grandGrandParentQuark != ITmfStateSystem.ROOT_ATTRIBUTE;
+            boolean isRowModel = quark != rootQuark
+                    && grandParentQuark != rootQuark
+                    && grandGrandParentQuark != rootQuark;
             builder.add(new TimeGraphEntryModel(childId, parentId, name, ss.getStartTime(), ss.getCurrentEndTime(), isRowModel));
-            addChildren(ss, builder, child, childId);
+            addChildren(ss, builder, rootQuark, child, childId);
         }
     }
 
@@ -172,6 +181,6 @@ public class RosConnectionsDataProvider extends AbstractTimeGraphDataProvider<@N
      * @return the full dataprovider ID
      */
     public static String getFullDataProviderId() {
-        return RosConnectionsAnalysis.getFullAnalysisId() + RosConnectionsDataProvider.SUFFIX;
+        return AbstractRosAnalysis.getAnalysisIdFromSuffix(MODEL_SUFFIX) + SUFFIX;
     }
 }
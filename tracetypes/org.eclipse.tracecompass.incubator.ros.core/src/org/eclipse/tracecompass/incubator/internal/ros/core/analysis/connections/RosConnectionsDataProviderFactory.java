@@ -11,6 +11,7 @@ package org.eclipse.tracecompass.incubator.internal.ros.core.analysis.connection
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.RosAnalysis;
 import org.eclipse.tracecompass.tmf.core.dataprovider.IDataProviderFactory;
 import org.eclipse.tracecompass.tmf.core.model.tree.ITmfTreeDataModel;
 import org.eclipse.tracecompass.tmf.core.model.tree.ITmfTreeDataProvider;
@@ -26,7 +27,7 @@ public class RosConnectionsDataProviderFactory implements IDataProviderFactory {
 
     @Override
     public @Nullable ITmfTreeDataProvider<? extends ITmfTreeDataModel> createProvider(@NonNull ITmfTrace trace) {
-        RosConnectionsAnalysis module = TmfTraceUtils.getAnalysisModuleOfClass(trace, RosConnectionsAnalysis.class, RosConnectionsAnalysis.getFullAnalysisId());
+        RosAnalysis module = TmfTraceUtils.getAnalysisModuleOfClass(trace, RosAnalysis.class, RosAnalysis.getFullAnalysisId());
         if (module != null) {
             module.schedule();
             return new RosConnectionsDataProvider(trace, module);
@@ -22,6 +22,9 @@ import java.util.function.Predicate;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.AbstractRosAnalysis;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.RosAnalysis;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.RosStateProvider;
 import org.eclipse.tracecompass.internal.tmf.core.model.filters.TimeGraphStateQueryFilter;
 import org.eclipse.tracecompass.internal.tmf.core.model.timegraph.AbstractTimeGraphDataProvider;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
@@ -50,11 +53,14 @@ import com.google.common.collect.TreeMultimap;
  * @author Christophe Bedard
  */
 @SuppressWarnings("restriction")
-public class RosNodesDataProvider extends AbstractTimeGraphDataProvider<@NonNull RosNodesAnalysis, @NonNull TimeGraphEntryModel> {
+public class RosNodesDataProvider extends AbstractTimeGraphDataProvider<@NonNull RosAnalysis, @NonNull TimeGraphEntryModel> {
 
     /** Data provider suffix ID */
     public static final String SUFFIX = ".dataprovider"; //$NON-NLS-1$
 
+    /** Suffix of the model in the data provider ID */
+    private static final String MODEL_SUFFIX = ".nodes"; //$NON-NLS-1$
+
     /**
      * Constructor
      *
@@ -63,7 +69,7 @@ public class RosNodesDataProvider extends AbstractTimeGraphDataProvider<@NonNull
      * @param analysisModule
      *            the corresponding analysis module
      */
-    public RosNodesDataProvider(@NonNull ITmfTrace trace, @NonNull RosNodesAnalysis analysisModule) {
+    public RosNodesDataProvider(@NonNull ITmfTrace trace, @NonNull RosAnalysis analysisModule) {
         super(trace, analysisModule);
     }
 
@@ -79,7 +85,7 @@ public class RosNodesDataProvider extends AbstractTimeGraphDataProvider<@NonNull
 
     @Override
     public @NonNull String getId() {
-        return getAnalysisModule().getId() + SUFFIX;
+        return getFullDataProviderId();
     }
 
     @Override
@@ -133,9 +139,12 @@ public class RosNodesDataProvider extends AbstractTimeGraphDataProvider<@NonNull
     @Override
     protected @NonNull List<@NonNull TimeGraphEntryModel> getTree(@NonNull ITmfStateSystem ss, @NonNull TimeQueryFilter filter, @Nullable IProgressMonitor monitor) throws StateSystemDisposedException {
         Builder<@NonNull TimeGraphEntryModel> builder = new Builder<>();
-        long parentId = getId(ITmfStateSystem.ROOT_ATTRIBUTE);
+        int rootQuark = ss.optQuarkAbsolute(RosStateProvider.NODES);
+        long parentId = getId(rootQuark);
         builder.add(new TimeGraphEntryModel(parentId, -1, String.valueOf(getTrace().getName()), ss.getStartTime(), ss.getCurrentEndTime()));
-        addChildren(ss, builder, ITmfStateSystem.ROOT_ATTRIBUTE, parentId);
+        if (rootQuark != ITmfStateSystem.INVALID_ATTRIBUTE) {
+            addChildren(ss, builder, rootQuark, parentId);
+        }
         ImmutableList<@NonNull TimeGraphEntryModel> models = builder.build();
         return models;
     }
@@ -153,6 +162,6 @@ public class RosNodesDataProvider extends AbstractTimeGraphDataProvider<@NonNull
      * @return the full dataprovider ID
      */
     public static String getFullDataProviderId() {
-        return RosNodesAnalysis.getFullAnalysisId() + RosNodesDataProvider.SUFFIX;
+        return AbstractRosAnalysis.getAnalysisIdFromSuffix(MODEL_SUFFIX) + SUFFIX;
     }
 }
@@ -21,8 +21,11 @@ import java.util.function.Predicate;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.AbstractRosAnalysis;
 import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.AbstractRosStateProvider;
 import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.ElementReferenceState;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.RosAnalysis;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.RosStateProvider;
 import org.eclipse.tracecompass.internal.tmf.core.model.filters.TimeGraphStateQueryFilter;
 import org.eclipse.tracecompass.internal.tmf.core.model.timegraph.AbstractTimeGraphDataProvider;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
@@ -51,11 +54,14 @@ import com.google.common.collect.TreeMultimap;
  * @author Christophe Bedard
  */
 @SuppressWarnings("restriction")
-public class RosQueuesDataProvider extends AbstractTimeGraphDataProvider<@NonNull RosQueuesAnalysis, @NonNull TimeGraphEntryModel> {
+public class RosQueuesDataProvider extends AbstractTimeGraphDataProvider<@NonNull RosAnalysis, @NonNull TimeGraphEntryModel> {
 
     /** Data provider suffix ID */
     public static final String SUFFIX = ".dataprovider"; //$NON-NLS-1$
 
+    /** Suffix of the model in the data provider ID */
+    private static final String MODEL_SUFFIX = ".queues"; //$NON-NLS-1$
+
     /**
      * Constructor
      *
@@ -64,7 +70,7 @@ public class RosQueuesDataProvider extends AbstractTimeGraphDataProvider<@NonNul
      * @param analysisModule
      *            the corresponding analysis module
      */
-    public RosQueuesDataProvider(@NonNull ITmfTrace trace, @NonNull RosQueuesAnalysis analysisModule) {
+    public RosQueuesDataProvider(@NonNull ITmfTrace trace, @NonNull RosAnalysis analysisModule) {
         super(trace, analysisModule);
     }
 
@@ -80,7 +86,7 @@ public class RosQueuesDataProvider extends AbstractTimeGraphDataProvider<@NonNul
 
     @Override
     public @NonNull String getId() {
-        return getAnalysisModule().getId() + SUFFIX;
+        return getFullDataProviderId();
     }
 
     @Override
@@ -90,8 +96,34 @@ public class RosQueuesDataProvider extends AbstractTimeGraphDataProvider<@NonNul
         Map<@NonNull Long, @NonNull Integer> entries = getSelectedEntries(filter);
         Collection<Long> times = getTimes(filter, ss.getStartTime(), ss.getCurrentEndTime());
 
+        // The queues and their positions are read from the store
+        RosQueuesStore queues = getAnalysisModule().getQueues();
+        long endTime = ss.getCurrentEndTime();
+        List<@NonNull Integer> quarks = new ArrayList<>();
+        for (Integer quark : entries.values()) {
+            int parentQuark = ss.getParentAttributeQuark(quark);
+            if (queues.isQueue(quark)) {
+                for (long time : times) {
+                    ITmfStateInterval interval = queues.getDepthInterval(quark, time, endTime);
+                    if (interval != null) {
+                        intervals.put(quark, interval);
+                    }
+                }
+            } else if (queues.isQueue(parentQuark)) {
+                int position = Integer.parseInt(ss.getAttributeName(quark));
+                for (long time : times) {
+                    ITmfStateInterval interval = queues.getMessageInterval(parentQuark, quark, position, time, endTime);
+                    if (interval != null) {
+                        intervals.put(quark, interval);
+                    }
+                }
+            } else {
+                quarks.add(quark);
+            }
+        }
+
         // Query
-        for (ITmfStateInterval interval : ss.query2D(entries.values(), times)) {
+        for (ITmfStateInterval interval : ss.query2D(quarks, times)) {
             if (monitor != null && monitor.isCanceled()) {
                 return Collections.emptyList();
             }
@@ -141,23 +173,26 @@ public class RosQueuesDataProvider extends AbstractTimeGraphDataProvider<@NonNul
     @Override
     protected @NonNull List<@NonNull TimeGraphEntryModel> getTree(@NonNull ITmfStateSystem ss, @NonNull TimeQueryFilter filter, @Nullable IProgressMonitor monitor) throws StateSystemDisposedException {
         Builder<@NonNull TimeGraphEntryModel> builder = new Builder<>();
-        long parentId = getId(ITmfStateSystem.ROOT_ATTRIBUTE);
+        int rootQuark = ss.optQuarkAbsolute(RosStateProvider.QUEUES);
+        long parentId = getId(rootQuark);
         builder.add(new TimeGraphEntryModel(parentId, -1, String.valueOf(getTrace().getName()), ss.getStartTime(), ss.getCurrentEndTime()));
-        addChildren(ss, builder, ITmfStateSystem.ROOT_ATTRIBUTE, parentId);
+        if (rootQuark != ITmfStateSystem.INVALID_ATTRIBUTE) {
+            addChildren(ss, builder, rootQuark, rootQuark, parentId);
+        }
         ImmutableList<@NonNull TimeGraphEntryModel> models = builder.build();
         return models;
     }
 
-    private void addChildren(ITmfStateSystem ss, Builder<@NonNull TimeGraphEntryModel> builder, int quark, long parentId) {
+    private void addChildren(ITmfStateSystem ss, Builder<@NonNull TimeGraphEntryModel> builder, int rootQuark, int quark, long parentId) {
         for (Integer child : ss.getSubAttributes(quark, false)) {
             long childId = getId(child);
             String name = ss.getAttributeName(child);
-            boolean isRowModel = quark != ITmfStateSystem.ROOT_ATTRIBUTE
+            boolean isRowModel = quark != rootQuark
                     && !name.equals(AbstractRosStateProvider.SUBSCRIBERS_LIST)
                     && !name.equals(AbstractRosStateProvider.PUBLISHERS_LIST)
                     && !name.startsWith(AbstractRosStateProvider.TOPIC_PREFIX);
             builder.add(new TimeGraphEntryModel(childId, parentId, name, ss.getStartTime(), ss.getCurrentEndTime(), isRowModel));
-            addChildren(ss, builder, child, childId);
+            addChildren(ss, builder, rootQuark, child, childId);
         }
     }
 
@@ -165,6 +200,6 @@ public class RosQueuesDataProvider extends AbstractTimeGraphDataProvider<@NonNul
      * @return the full dataprovider ID
      */
     public static String getFullDataProviderId() {
-        return RosQueuesAnalysis.getFullAnalysisId() + RosQueuesDataProvider.SUFFIX;
+        return AbstractRosAnalysis.getAnalysisIdFromSuffix(MODEL_SUFFIX) + SUFFIX;
     }
 }
@@ -0,0 +1,391 @@
+/**********************************************************************
+ * Copyright (c) 2018 Ericsson, École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ **********************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.ros.core.analysis.queues;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.TmfStateInterval;
+
+/**
+ * Contents of the publisher and subscriber queues, kept outside of the state
+ * system. Each message of a queue is a segment from the time it is enqueued
+ * to the time it is dequeued. The queues are FIFO, so both the enqueue and
+ * the dequeue times are sorted, and the depth of a queue or the messages it
+ * contains at a time are found with two binary searches.
+ *
+ * The queues are filled by the ROS state provider while the queues view
+ * already queries them, so the accesses are synchronized. They are keyed by
+ * the quarks of the queue attributes and hold the messages the provider
+ * queued, so a saved store only matches the history tree built with it by the
+ * same version of the provider. That version is saved in the file header and
+ * checked when the store is read back.
+ *
+ * @author Christophe Bedard
+ */
+@NonNullByDefault
+public final class RosQueuesStore {
+
+    /** Magic number of the queues files, "RSQS" */
+    private static final int MAGIC = 0x53515352;
+    /** Version of the file format */
+    private static final int VERSION = 2;
+
+    private static final int INITIAL_CAPACITY = 16;
+    /** Dequeue time of the messages still in the queue */
+    private static final long IN_QUEUE = Long.MAX_VALUE;
+
+    /**
+     * The messages of one queue, in the order they were enqueued
+     */
+    private static final class Queue {
+        private long[] fRefs;
+        private long[] fEnqueued;
+        private long[] fDequeued;
+        private int fSize;
+        /* Index of the first message still in the queue */
+        private int fHead;
+        private int fMaxDepth;
+
+        public Queue(int capacity) {
+            fRefs = new long[capacity];
+            fEnqueued = new long[capacity];
+            fDequeued = new long[capacity];
+            fSize = 0;
+            fHead = 0;
+            fMaxDepth = 0;
+        }
+
+        public int offer(long time, long ref) {
+            if (fSize == fRefs.length) {
+                fRefs = Arrays.copyOf(fRefs, fSize * 2);
+                fEnqueued = Arrays.copyOf(fEnqueued, fSize * 2);
+                fDequeued = Arrays.copyOf(fDequeued, fSize * 2);
+            }
+            fRefs[fSize] = ref;
+            fEnqueued[fSize] = time;
+            fDequeued[fSize] = IN_QUEUE;
+            fSize++;
+            int depth = fSize - fHead;
+            fMaxDepth = Math.max(fMaxDepth, depth);
+            return depth;
+        }
+
+        public void poll(long time) {
+            if (fHead < fSize) {
+                fDequeued[fHead] = time;
+                fHead++;
+            }
+        }
+
+        /**
+         * Get the number of messages enqueued at or before a time
+         */
+        public int enqueuedAt(long time) {
+            return upperBound(fEnqueued, fSize, time);
+        }
+
+        /**
+         * Get the number of messages dequeued at or before a time, which is
+         * also the index of the first message in the queue at that time
+         */
+        public int dequeuedAt(long time) {
+            return upperBound(fDequeued, fSize, time);
+        }
+    }
+
+    private final Map<Integer, Queue> fQueues = new HashMap<>();
+
+    /**
+     * Push a message to a queue. The messages of a queue are expected in time
+     * order.
+     *
+     * @param quark
+     *            The quark of the queue attribute
+     * @param time
+     *            The time the message is enqueued
+     * @param ref
+     *            The reference of the message
+     * @return The depth of the queue after the message is enqueued
+     */
+    public synchronized int offer(int quark, long time, long ref) {
+        return fQueues.computeIfAbsent(quark, q -> new Queue(INITIAL_CAPACITY)).offer(time, ref);
+    }
+
+    /**
+     * Pop the oldest message of a queue, if it is not empty
+     *
+     * @param quark
+     *            The quark of the queue attribute
+     * @param time
+     *            The time the message is dequeued
+     */
+    public synchronized void poll(int quark, long time) {
+        Queue queue = fQueues.get(quark);
+        if (queue != null) {
+            queue.poll(time);
+        }
+    }
+
+    /**
+     * Get whether an attribute is a queue of this store
+     *
+     * @param quark
+     *            The quark of the attribute
+     * @return <code>true</code> if messages were enqueued in this queue
+     */
+    public synchronized boolean isQueue(int quark) {
+        return fQueues.containsKey(quark);
+    }
+
+    /**
+     * Get the maximum depth a queue ever reached
+     *
+     * @param quark
+     *            The quark of the queue attribute
+     * @return The maximum depth, 0 if nothing was enqueued
+     */
+    public synchronized int getMaxDepth(int quark) {
+        Queue queue = fQueues.get(quark);
+        return queue == null ? 0 : queue.fMaxDepth;
+    }
+
+    /**
+     * Get the depth of a queue at a time
+     *
+     * @param quark
+     *            The quark of the queue attribute
+     * @param time
+     *            The time
+     * @return The number of messages in the queue at that time
+     */
+    public synchronized int getDepth(int quark, long time) {
+        Queue queue = fQueues.get(quark);
+        if (queue == null) {
+            return 0;
+        }
+        return queue.enqueuedAt(time) - queue.dequeuedAt(time);
+    }
+
+    /**
+     * Get the messages in a queue at a time
+     *
+     * @param quark
+     *            The quark of the queue attribute
+     * @param time
+     *            The time
+     * @return The references of the messages, the oldest first
+     */
+    public synchronized List<Long> getContents(int quark, long time) {
+        Queue queue = fQueues.get(quark);
+        if (queue == null) {
+            return new ArrayList<>();
+        }
+        int first = queue.dequeuedAt(time);
+        int last = queue.enqueuedAt(time);
+        List<Long> contents = new ArrayList<>(Math.max(0, last - first));
+        for (int i = first; i < last; i++) {
+            contents.add(queue.fRefs[i]);
+        }
+        return contents;
+    }
+
+    /**
+     * Get the interval of the depth of a queue that contains a time. The
+     * depth changes each time a message is enqueued or dequeued.
+     *
+     * @param quark
+     *            The quark of the queue attribute, which is the attribute of
+     *            the interval
+     * @param time
+     *            The time
+     * @param endTime
+     *            The end time of the last interval
+     * @return The interval with the {@link Integer} depth as value, or
+     *         <code>null</code> if no message was enqueued yet
+     */
+    public synchronized @Nullable ITmfStateInterval getDepthInterval(int quark, long time, long endTime) {
+        Queue queue = fQueues.get(quark);
+        if (queue == null) {
+            return null;
+        }
+        int enqueued = queue.enqueuedAt(time);
+        if (enqueued == 0) {
+            return null;
+        }
+        int dequeued = queue.dequeuedAt(time);
+        long start = queue.fEnqueued[enqueued - 1];
+        if (dequeued > 0) {
+            start = Math.max(start, queue.fDequeued[dequeued - 1]);
+        }
+        long end = endTime;
+        if (enqueued < queue.fSize) {
+            end = Math.min(end, queue.fEnqueued[enqueued] - 1);
+        }
+        if (dequeued < queue.fSize && queue.fDequeued[dequeued] != IN_QUEUE) {
+            end = Math.min(end, queue.fDequeued[dequeued] - 1);
+        }
+        return new TmfStateInterval(start, Math.max(start, end), quark, enqueued - dequeued);
+    }
+
+    /**
+     * Get the interval of the message at a position of a queue that contains
+     * a time. The message at a position changes each time the queue moves.
+     *
+     * @param quark
+     *            The quark of the queue attribute
+     * @param positionQuark
+     *            The quark of the position attribute, which is the attribute
+     *            of the interval
+     * @param position
+     *            The position in the queue, starting at 1 for the oldest
+     *            message
+     * @param time
+     *            The time
+     * @param endTime
+     *            The end time of the last interval
+     * @return The interval with the {@link Long} message reference as value,
+     *         or <code>null</code> if there is no message at this position
+     */
+    public synchronized @Nullable ITmfStateInterval getMessageInterval(int quark, int positionQuark, int position, long time, long endTime) {
+        Queue queue = fQueues.get(quark);
+        if (queue == null || position < 1) {
+            return null;
+        }
+        int head = queue.dequeuedAt(time);
+        int index = head + position - 1;
+        if (index >= queue.enqueuedAt(time)) {
+            return null;
+        }
+        /* The message got to this position when it was enqueued or when the queue last moved */
+        long start = queue.fEnqueued[index];
+        if (head > 0) {
+            start = Math.max(start, queue.fDequeued[head - 1]);
+        }
+        /* It stays at this position until the queue moves again */
+        long end = endTime;
+        if (queue.fDequeued[head] != IN_QUEUE) {
+            end = Math.min(end, queue.fDequeued[head] - 1);
+        }
+        return new TmfStateInterval(start, Math.max(start, end), positionQuark, queue.fRefs[index]);
+    }
+
+    /**
+     * Get the index of the first element greater than a value in the sorted
+     * start of an array
+     */
+    private static int upperBound(long[] array, int size, long value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (array[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Read queues saved in a file
+     *
+     * @param file
+     *            The file, typically in the supplementary files
+     * @param providerVersion
+     *            The version of the state provider that must have queued the
+     *            messages
+     * @return The queues, or <code>null</code> if the file does not exist,
+     *         cannot be read or was written for another provider version
+     */
+    public static @Nullable RosQueuesStore read(File file, int providerVersion) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION || input.readInt() != providerVersion) {
+                return null;
+            }
+            RosQueuesStore store = new RosQueuesStore();
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                int quark = input.readInt();
+                int maxDepth = input.readInt();
+                int size = input.readInt();
+                if (size < 0) {
+                    throw new IOException("Invalid size " + size); //$NON-NLS-1$
+                }
+                Queue queue = new Queue(Math.max(1, size));
+                for (int j = 0; j < size; j++) {
+                    queue.fRefs[j] = input.readLong();
+                    queue.fEnqueued[j] = input.readLong();
+                    queue.fDequeued[j] = input.readLong();
+                }
+                queue.fSize = size;
+                queue.fHead = queue.dequeuedAt(IN_QUEUE - 1);
+                queue.fMaxDepth = maxDepth;
+                store.fQueues.put(quark, queue);
+            }
+            return store;
+        } catch (IOException e) {
+            /* Truncated or corrupted, it will be rebuilt */
+            return null;
+        }
+    }
+
+    /**
+     * Save the queues in a file
+     *
+     * @param file
+     *            The file, typically in the supplementary files
+     * @param providerVersion
+     *            The version of the state provider that queued the messages
+     * @throws IOException
+     *             If the file cannot be written, it is then deleted
+     */
+    public synchronized void write(File file, int providerVersion) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(providerVersion);
+            output.writeInt(fQueues.size());
+            for (Entry<Integer, Queue> entry : fQueues.entrySet()) {
+                Queue queue = entry.getValue();
+                output.writeInt(entry.getKey());
+                output.writeInt(queue.fMaxDepth);
+                output.writeInt(queue.fSize);
+                for (int i = 0; i < queue.fSize; i++) {
+                    output.writeLong(queue.fRefs[i]);
+                    output.writeLong(queue.fEnqueued[i]);
+                    output.writeLong(queue.fDequeued[i]);
+                }
+            }
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+    }
+}
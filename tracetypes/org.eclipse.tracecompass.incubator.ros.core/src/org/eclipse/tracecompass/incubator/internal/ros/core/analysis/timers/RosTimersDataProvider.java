@@ -21,8 +21,11 @@ import java.util.function.Predicate;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.AbstractRosAnalysis;
 import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.ElementReferenceState;
 import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.PeriodState;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.RosAnalysis;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.RosStateProvider;
 import org.eclipse.tracecompass.internal.tmf.core.model.filters.TimeGraphStateQueryFilter;
 import org.eclipse.tracecompass.internal.tmf.core.model.timegraph.AbstractTimeGraphDataProvider;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
@@ -51,11 +54,14 @@ import com.google.common.collect.TreeMultimap;
  * @author Christophe Bedard
  */
 @SuppressWarnings("restriction")
-public class RosTimersDataProvider extends AbstractTimeGraphDataProvider<@NonNull RosTimersAnalysis, @NonNull TimeGraphEntryModel> {
+public class RosTimersDataProvider extends AbstractTimeGraphDataProvider<@NonNull RosAnalysis, @NonNull TimeGraphEntryModel> {
 
     /** Data provider suffix ID */
     public static final String SUFFIX = ".dataprovider"; //$NON-NLS-1$
 
+    /** Suffix of the model in the data provider ID */
+    private static final String MODEL_SUFFIX = ".timers"; //$NON-NLS-1$
+
     /**
      * Constructor
      *
@@ -64,7 +70,7 @@ public class RosTimersDataProvider extends AbstractTimeGraphDataProvider<@NonNul
      * @param analysisModule
      *            the corresponding analysis module
      */
-    public RosTimersDataProvider(@NonNull ITmfTrace trace, @NonNull RosTimersAnalysis analysisModule) {
+    public RosTimersDataProvider(@NonNull ITmfTrace trace, @NonNull RosAnalysis analysisModule) {
         super(trace, analysisModule);
     }
 
@@ -80,7 +86,7 @@ public class RosTimersDataProvider extends AbstractTimeGraphDataProvider<@NonNul
 
     @Override
     public @NonNull String getId() {
-        return getAnalysisModule().getId() + SUFFIX;
+        return getFullDataProviderId();
     }
 
     @Override
@@ -149,20 +155,23 @@ public class RosTimersDataProvider extends AbstractTimeGraphDataProvider<@NonNul
     @Override
     protected @NonNull List<@NonNull TimeGraphEntryModel> getTree(@NonNull ITmfStateSystem ss, @NonNull TimeQueryFilter filter, @Nullable IProgressMonitor monitor) throws StateSystemDisposedException {
         Builder<@NonNull TimeGraphEntryModel> builder = new Builder<>();
-        long parentId = getId(ITmfStateSystem.ROOT_ATTRIBUTE);
+        int rootQuark = ss.optQuarkAbsolute(RosStateProvider.TIMERS);
+        long parentId = getId(rootQuark);
         builder.add(new TimeGraphEntryModel(parentId, -1, String.valueOf(getTrace().getName()), ss.getStartTime(), ss.getCurrentEndTime()));
-        addChildren(ss, builder, ITmfStateSystem.ROOT_ATTRIBUTE, parentId);
+        if (rootQuark != ITmfStateSystem.INVALID_ATTRIBUTE) {
+            addChildren(ss, builder, rootQuark, rootQuark, parentId);
+        }
         ImmutableList<@NonNull TimeGraphEntryModel> models = builder.build();
         return models;
     }
 
-    private void addChildren(ITmfStateSystem ss, Builder<@NonNull TimeGraphEntryModel> builder, int quark, long parentId) {
+    private void addChildren(ITmfStateSystem ss, Builder<@NonNull TimeGraphEntryModel> builder, int rootQuark, int quark, long parentId) {
         for (Integer child : ss.getSubAttributes(quark, false)) {
             long childId = getId(child);
             String name = ss.getAttributeName(child);
-            boolean isRowModel = quark != ITmfStateSystem.ROOT_ATTRIBUTE;
+            boolean isRowModel = quark != rootQuark;
             builder.add(new TimeGraphEntryModel(childId, parentId, name, ss.getStartTime(), ss.getCurrentEndTime(), isRowModel));
-            addChildren(ss, builder, child, childId);
+            addChildren(ss, builder, rootQuark, child, childId);
         }
     }
 
@@ -170,6 +179,6 @@ public class RosTimersDataProvider extends AbstractTimeGraphDataProvider<@NonNul
      * @return the full dataprovider ID
      */
     public static String getFullDataProviderId() {
-        return RosTimersAnalysis.getFullAnalysisId() + RosTimersDataProvider.SUFFIX;
+        return AbstractRosAnalysis.getAnalysisIdFromSuffix(MODEL_SUFFIX) + SUFFIX;
     }
 }
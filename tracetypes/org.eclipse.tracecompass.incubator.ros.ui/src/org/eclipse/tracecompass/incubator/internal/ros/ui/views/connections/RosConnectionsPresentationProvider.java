@@ -13,7 +13,7 @@ import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jdt.annotation.NonNull;
-import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.connections.RosConnectionsStateProvider;
+import org.eclipse.tracecompass.incubator.internal.ros.core.analysis.RosStateProvider;
 import org.eclipse.tracecompass.incubator.internal.ros.ui.views.AbstractRosPresentationProvider;
 import org.eclipse.tracecompass.incubator.internal.ros.ui.views.Messages;
 import org.eclipse.tracecompass.tmf.core.util.Pair;
@@ -52,7 +52,7 @@ public class RosConnectionsPresentationProvider extends AbstractRosPresentationP
     }
 
     private static Pair<String, String> getLocalAndRemoteHosts(String label) {
-        @NonNull String[] remoteLocal = label.split(RosConnectionsStateProvider.CONNECTION_HOST_SEPARATOR);
+        @NonNull String[] remoteLocal = label.split(RosStateProvider.CONNECTION_HOST_SEPARATOR);
         return new Pair<>(remoteLocal[0], remoteLocal[1]);
     }
 }
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.traceevent.core.tests.perf;
+
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.incubator.internal.traceevent.core.event.TraceEventField;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Benchmark the trace event JSON parsers. Compares the streaming parser with
+ * the Gson tree one on a synthetic trace.
+ *
+ * @author Matthew Khouzam
+ */
+public class TraceEventParserBenchmark {
+
+    private static final String TEST_ID = "org.eclipse.tracecompass.incubator#TraceEvent#";
+    private static final String TEST_PARSE = "Parse events (%s)";
+
+    private static final long SEED = 473892745896L;
+    private static final int EVENT_COUNT = 200000;
+    private static final int LOOP_COUNT = 10;
+    private static final String[] PHASES = { "B", "E", "X", "i", "C", "b", "e" };
+
+    private static final List<String> EVENTS = new ArrayList<>();
+
+    /**
+     * Generate the synthetic events
+     */
+    @BeforeClass
+    public static void generateEvents() {
+        Random random = new Random(SEED);
+        long ts = 94824347413117L;
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            ts += random.nextInt(1000);
+            int tid = random.nextInt(64);
+            String phase = PHASES[random.nextInt(PHASES.length)];
+            EVENTS.add("{\"ts\":" + ts + '.' + random.nextInt(1000) +
+                    ",\"ph\":\"" + phase +
+                    "\",\"pid\":" + (tid / 8) +
+                    ",\"tid\":" + tid +
+                    ",\"name\":\"function" + random.nextInt(200) +
+                    "\",\"cat\":\"category" + random.nextInt(8) +
+                    "\",\"id\":\"0x" + Integer.toHexString(random.nextInt()) +
+                    "\",\"dur\":" + random.nextInt(5000) +
+                    ",\"args\":{\"value\":" + random.nextInt() + ",\"path\":\"/usr/lib/lib" + random.nextInt(50) + ".so\"}}");
+        }
+    }
+
+    /**
+     * Benchmark the streaming parser
+     */
+    @Test
+    public void testStreamingParser() {
+        runBenchmark("Streaming", TraceEventField::parseJson);
+    }
+
+    /**
+     * Benchmark the Gson tree parser
+     */
+    @Test
+    public void testTreeParser() {
+        runBenchmark("Gson tree", TraceEventField::parseJsonTree);
+    }
+
+    private static void runBenchmark(String name, Function<String, @Nullable TraceEventField> parser) {
+        Performance perf = Performance.getDefault();
+        String testName = String.format(TEST_PARSE, name);
+        PerformanceMeter pm = Objects.requireNonNull(perf.createPerformanceMeter(TEST_ID + testName));
+        perf.tagAsSummary(pm, testName, Dimension.CPU_TIME);
+
+        for (int i = 0; i < LOOP_COUNT; i++) {
+            pm.start();
+            for (String event : EVENTS) {
+                TraceEventField field = parser.apply(event);
+                assertNotNull(field);
+                // The timestamp, phase and name are what the indexing uses
+                field.getTs();
+            }
+            pm.stop();
+        }
+        pm.commit();
+    }
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.traceevent.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.tracecompass.incubator.internal.traceevent.core.index.JsonEventIndex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the sorted event index of JSON traces
+ *
+ * @author Matthew Khouzam
+ */
+public class JsonEventIndexTest {
+
+    private static final String EVENT_1 = "{\"ts\": 3, \"name\": \"a\"}";
+    private static final String EVENT_2 = "{\"name\": \"b\", \"args\": {\"ts\": 0, \"s\": \"]}\"}, \"ts\": 1.5}";
+    private static final String EVENT_3 = "{\"ts\": 2, \"name\": \"c\"}";
+
+    private static final long SEED = 5839217L;
+    private static final int NB_EVENTS = 2000;
+    /** Small enough to split the trace at many places inside the events */
+    private static final long SMALL_CHUNK_SIZE = 16;
+
+    private File fTrace;
+    private File fIndex;
+
+    /**
+     * Create the trace file
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    @Before
+    public void before() throws IOException {
+        fTrace = File.createTempFile("trace", ".json");
+        fIndex = new File(fTrace.getPath() + ".eventindex");
+        String content = "{\"traceEvents\": [\n" + EVENT_1 + ",\n" + EVENT_2 + " , " + EVENT_3 + "\n]}";
+        Files.write(fTrace.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Delete the files
+     */
+    @After
+    public void after() {
+        fTrace.delete();
+        fIndex.delete();
+    }
+
+    /**
+     * Test that the events are read back in timestamp order, also after
+     * reopening an existing index
+     *
+     * @throws IOException
+     *             if the index cannot be built
+     */
+    @Test
+    public void testSorted() throws IOException {
+        for (int i = 0; i < 2; i++) {
+            try (JsonEventIndex index = JsonEventIndex.open(fTrace, fIndex, 1, "ts", new NullProgressMonitor())) {
+                assertEquals(3, index.size());
+                assertEquals(EVENT_2, index.readEvent(0));
+                assertEquals(EVENT_3, index.readEvent(1));
+                assertEquals(EVENT_1, index.readEvent(2));
+                assertNull(index.readEvent(3));
+                assertNull(index.readEvent(-1));
+            }
+        }
+    }
+
+    /**
+     * Test that timestamps in exponent notation are sorted on their value
+     *
+     * @throws IOException
+     *             if the index cannot be built
+     */
+    @Test
+    public void testExponent() throws IOException {
+        String event1 = "{\"ts\": 1.5e6, \"name\": \"a\"}";
+        String event2 = "{\"ts\": 2E+3, \"name\": \"b\"}";
+        String event3 = "{\"ts\": 2500.25, \"name\": \"c\"}";
+        String event4 = "{\"ts\": \"-5e-1\", \"name\": \"d\"}";
+        String content = "[" + event1 + ",\n" + event2 + ",\n" + event3 + ",\n" + event4 + "]";
+        Files.write(fTrace.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        try (JsonEventIndex index = JsonEventIndex.open(fTrace, fIndex, 1, "ts", new NullProgressMonitor())) {
+            assertEquals(4, index.size());
+            assertEquals(event4, index.readEvent(0));
+            assertEquals(event2, index.readEvent(1));
+            assertEquals(event3, index.readEvent(2));
+            assertEquals(event1, index.readEvent(3));
+        }
+    }
+
+    /**
+     * Test that an index built from many small chunks has the same offsets
+     * as an index built from a single chunk. The guessed chunk starts also
+     * fall between the objects of the nested arguments and in strings that
+     * look like event boundaries.
+     *
+     * @throws IOException
+     *             if the index cannot be built
+     */
+    @Test
+    public void testChunks() throws IOException {
+        Random random = new Random(SEED);
+        StringBuilder content = new StringBuilder("{\"traceEvents\": [\n");
+        for (int i = 0; i < NB_EVENTS; i++) {
+            if (i > 0) {
+                content.append(",\n");
+            }
+            content.append("{\"ts\": ").append(random.nextInt(NB_EVENTS)).append(", \"name\": \"e").append(i).append('"');
+            switch (i % 3) {
+            case 0:
+                content.append(", \"args\": {\"list\": [{\"a\": 1},{\"b\": 2}, {\"c\": [{},{}]}]}");
+                break;
+            case 1:
+                content.append(", \"args\": {\"s\": \"},{\\\"ts\\\": 0},{\"}");
+                break;
+            default:
+                break;
+            }
+            content.append('}');
+        }
+        content.append("\n]}");
+        Files.write(fTrace.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+
+        File singleIndex = new File(fTrace.getPath() + ".single");
+        try (JsonEventIndex single = JsonEventIndex.open(fTrace, singleIndex, 1, "ts", Long.MAX_VALUE, new NullProgressMonitor());
+                JsonEventIndex chunked = JsonEventIndex.open(fTrace, fIndex, 1, "ts", SMALL_CHUNK_SIZE, new NullProgressMonitor())) {
+            assertEquals(NB_EVENTS, single.size());
+            assertEquals(NB_EVENTS, chunked.size());
+            for (long i = 0; i < NB_EVENTS; i++) {
+                assertEquals(single.getOffset(i), chunked.getOffset(i));
+            }
+            assertEquals(single.readEvent(NB_EVENTS - 1), chunked.readEvent(NB_EVENTS - 1));
+        } finally {
+            singleIndex.delete();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.traceevent.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Map;
+
+import org.eclipse.tracecompass.incubator.internal.traceevent.core.event.ITraceEventConstants;
+import org.eclipse.tracecompass.incubator.internal.traceevent.core.event.TraceEventField;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.junit.Test;
+
+/**
+ * Test the streaming trace event parser against the Gson tree based one
+ *
+ * @author Matthew Khouzam
+ */
+public class TraceEventFieldTest {
+
+    private static final String[] EVENTS = {
+            "{\"cat\": \"PERF\", \"pid\": 22630, \"tid\": 22630, \"ts\": 826, \"ph\": \"C\", \"name\": \"counter\", \"args\": {\"value\": 10}}",
+            "{\"cat\": \"PERF\", \"pid\": 22630, \"tid\": 22631, \"ts\": 826.5, \"ph\": \"B\", \"name\": \"A long name\", \"args\": {\"name_false\": false, \"value_true\": true}}",
+            "{\"cat\": \"PERF\", \"pid\": 22630, \"ts\": 835, \"ph\": \"I\", \"s\": \"p\", \"name\": \"ProcessWideEvent1\", \"args\": {}}",
+            "{\"pid\":\"Browser\",\"tid\":1,\"ts\":100,\"ph\":\"X\",\"dur\":12.25,\"name\":\"task\",\"id\":\"0x12\",\"args\":{\"nested\":{\"a\":[1,2,{\"b\":\"}\"}]}}}",
+            "{\"ph\":\"E\",\"ts\":200,\"tid\":3,\"pid\":1}",
+            "{\"name\":\"esc\\\"aped\\u0041\",\"ph\":\"n\",\"ts\":\"300\",\"tid\":\"7\",\"id\":26,\"bind_id\":{\"x\":\"y\"}}",
+    };
+
+    /**
+     * Test that both parsers agree on the common events
+     */
+    @Test
+    public void testSameAsTree() {
+        for (String json : EVENTS) {
+            TraceEventField expected = TraceEventField.parseJsonTree(json);
+            TraceEventField actual = TraceEventField.parseJson(json);
+            assertNotNull(json, expected);
+            assertNotNull(json, actual);
+            assertEquals(json, expected.getName(), actual.getName());
+            assertEquals(json, expected.getTs(), actual.getTs());
+            assertEquals(json, expected.getPhase(), actual.getPhase());
+            assertEquals(json, expected.getTid(), actual.getTid());
+            assertEquals(json, String.valueOf(expected.getPid()), String.valueOf(actual.getPid()));
+            assertEquals(json, expected.getCategory(), actual.getCategory());
+            assertEquals(json, expected.getId(), actual.getId());
+            assertEquals(json, expected.getDuration(), actual.getDuration());
+            assertEquals(json, expected.getArgs(), actual.getArgs());
+        }
+    }
+
+    /**
+     * Test that the content is built with the same fields
+     */
+    @Test
+    public void testContent() {
+        TraceEventField field = TraceEventField.parseJson(EVENTS[3]);
+        assertNotNull(field);
+        ITmfEventField content = field.getContent();
+        assertEquals(Long.valueOf(100000), content.getFieldValue(Long.class, ITraceEventConstants.TIMESTAMP));
+        assertEquals("X", content.getFieldValue(String.class, ITraceEventConstants.PHASE));
+        assertEquals("Browser", content.getFieldValue(String.class, ITraceEventConstants.PID));
+        assertEquals(Integer.valueOf(1), content.getFieldValue(Integer.class, ITraceEventConstants.TID));
+        assertEquals(Double.valueOf(12250.0), content.getFieldValue(Double.class, ITraceEventConstants.DURATION));
+        assertEquals("{\"a\":[1,2,{\"b\":\"}\"}]}", content.getFieldValue(String.class, ITraceEventConstants.ARGS + "/nested"));
+        assertSame(content, field.getContent());
+    }
+
+    /**
+     * Test that timestamps in microseconds are converted exactly
+     */
+    @Test
+    public void testExactTimestamp() {
+        TraceEventField field = TraceEventField.parseJson("{\"ts\":94824347413117.001,\"ph\":\"i\"}");
+        assertNotNull(field);
+        assertEquals(94824347413117001L, field.getTs());
+        field = TraceEventField.parseJson("{\"ts\":1.5e3,\"ph\":\"i\"}");
+        assertNotNull(field);
+        assertEquals(1500000L, field.getTs());
+        field = TraceEventField.parseJson("{\"ts\":-2.1,\"ph\":\"i\"}");
+        assertNotNull(field);
+        assertEquals(-2100L, field.getTs());
+    }
+
+    /**
+     * Test that durations are converted exactly like timestamps, where the
+     * tree parser multiplies doubles
+     */
+    @Test
+    public void testExactDuration() {
+        String json = "{\"ts\":0,\"ph\":\"X\",\"dur\":1.001}";
+        TraceEventField field = TraceEventField.parseJson(json);
+        TraceEventField tree = TraceEventField.parseJsonTree(json);
+        assertNotNull(field);
+        assertNotNull(tree);
+        assertEquals(Long.valueOf(1001), field.getDuration());
+        assertEquals(Long.valueOf(1000), tree.getDuration());
+        assertEquals(Double.valueOf(1001.0), field.getContent().getFieldValue(Double.class, ITraceEventConstants.DURATION));
+        field = TraceEventField.parseJson("{\"ts\":0,\"ph\":\"X\",\"dur\":\"2.5\"}");
+        assertNotNull(field);
+        assertEquals(Long.valueOf(2500), field.getDuration());
+    }
+
+    /**
+     * Test that numeric pids are plain numbers with the same string value as
+     * with the tree parser, and that string pids are kept
+     */
+    @Test
+    public void testPid() {
+        TraceEventField field = TraceEventField.parseJson(EVENTS[0]);
+        assertNotNull(field);
+        assertEquals(Integer.valueOf(22630), field.getPid());
+        field = TraceEventField.parseJson("{\"ts\":0,\"ph\":\"i\",\"pid\":5000000000}");
+        assertNotNull(field);
+        assertEquals(Long.valueOf(5000000000L), field.getPid());
+        field = TraceEventField.parseJson("{\"ts\":0,\"ph\":\"i\",\"pid\":1.5}");
+        TraceEventField tree = TraceEventField.parseJsonTree("{\"ts\":0,\"ph\":\"i\",\"pid\":1.5}");
+        assertNotNull(field);
+        assertNotNull(tree);
+        assertEquals(Double.valueOf(1.5), field.getPid());
+        assertEquals(String.valueOf(tree.getPid()), String.valueOf(field.getPid()));
+        field = TraceEventField.parseJson(EVENTS[3]);
+        assertNotNull(field);
+        assertEquals("Browser", field.getPid());
+    }
+
+    /**
+     * Test that tids are read like the tree parser: numbers are truncated to
+     * an int and strings must be ints
+     */
+    @Test
+    public void testTid() {
+        String[] events = {
+                "{\"ts\":0,\"ph\":\"i\",\"tid\":12.7}",
+                "{\"ts\":0,\"ph\":\"i\",\"tid\":5000000000}",
+                "{\"ts\":0,\"ph\":\"i\",\"tid\":\"-4\"}",
+        };
+        for (String json : events) {
+            TraceEventField field = TraceEventField.parseJson(json);
+            TraceEventField tree = TraceEventField.parseJsonTree(json);
+            assertNotNull(json, field);
+            assertNotNull(json, tree);
+            assertEquals(json, tree.getTid(), field.getTid());
+        }
+        TraceEventField field = TraceEventField.parseJson(events[0]);
+        assertNotNull(field);
+        assertEquals(Integer.valueOf(12), field.getTid());
+        field = TraceEventField.parseJson(events[1]);
+        assertNotNull(field);
+        assertEquals(Integer.valueOf((int) 5000000000L), field.getTid());
+        /* The tree parser throws on these, the event is invalid */
+        assertNull(TraceEventField.parseJson("{\"ts\":0,\"ph\":\"i\",\"tid\":\"main\"}"));
+        assertNull(TraceEventField.parseJson("{\"ts\":0,\"ph\":\"i\",\"tid\":\"1.5\"}"));
+    }
+
+    /**
+     * Test that repeated names are shared between events
+     */
+    @Test
+    public void testPooledNames() {
+        TraceEventField first = TraceEventField.parseJson(EVENTS[0]);
+        TraceEventField second = TraceEventField.parseJson(EVENTS[0]);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertSame(first.getName(), second.getName());
+        assertSame(first.getCategory(), second.getCategory());
+    }
+
+    /**
+     * Test the arguments
+     */
+    @Test
+    public void testArgs() {
+        TraceEventField field = TraceEventField.parseJson(EVENTS[1]);
+        assertNotNull(field);
+        Map<String, Object> args = field.getArgs();
+        assertNotNull(args);
+        assertEquals("false", args.get("name_false"));
+        assertEquals("true", args.get("value_true"));
+        field = TraceEventField.parseJson(EVENTS[2]);
+        assertNotNull(field);
+        assertNull(field.getArgs());
+    }
+
+    /**
+     * Test invalid strings
+     */
+    @Test
+    public void testInvalid() {
+        assertNull(TraceEventField.parseJson(""));
+        assertNull(TraceEventField.parseJson("[1, 2]"));
+        assertNull(TraceEventField.parseJson("{\"ts\":12"));
+        assertNull(TraceEventField.parseJson("{\"ts\" 12}"));
+        assertNull(TraceEventField.parseJson("{\"ts\":abc}"));
+    }
+}
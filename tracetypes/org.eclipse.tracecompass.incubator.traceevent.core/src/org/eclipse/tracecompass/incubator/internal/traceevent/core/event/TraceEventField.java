@@ -10,6 +10,7 @@
 package org.eclipse.tracecompass.incubator.internal.traceevent.core.event;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Map.Entry;
@@ -29,6 +30,10 @@ import com.google.gson.JsonPrimitive;
 /**
  * Trace Event fields. Used as a quick wrapper for Trace Event log data.
  *
+ * The arguments and the event content are only built when they are requested,
+ * most events are indexed or filtered on their timestamp, phase, name or ids
+ * only.
+ *
  * @author Matthew Khouzam
  */
 @NonNullByDefault
@@ -38,13 +43,15 @@ public class TraceEventField {
     private final long fTs;
     private final char fPhase;
     private final String fName;
-    private ITmfEventField fContent;
-    private final @Nullable Map<String, Object> fArgs;
     private final @Nullable Integer fTid;
     private final @Nullable String fCategory;
     private final @Nullable String fId;
     private final @Nullable Long fDuration;
     private final @Nullable Object fPid;
+    /** Raw JSON of the "args" object, parsed when first requested */
+    private final @Nullable String fRawArgs;
+    private volatile @Nullable Map<String, Object> fArgs;
+    private volatile @Nullable ITmfEventField fContent;
 
     private static final Gson G_SON = new Gson();
 
@@ -53,11 +60,25 @@ public class TraceEventField {
      *
      * @param fieldsString
      *            the string
-     * @return an event field
+     * @return an event field, or <code>null</code> if the string is not a
+     *         trace event
      */
     public static @Nullable TraceEventField parseJson(String fieldsString) {
         // looks like this
         // {"ts":94824347413117,"phase":"B","tid":39,"name":"TimeGraphView:BuildThread","args"={"trace":"django-httpd"}}
+        return TraceEventFieldParser.parse(fieldsString);
+    }
+
+    /**
+     * Parse a JSON string by building the complete Gson tree of the event. This
+     * is the reference implementation of {@link #parseJson(String)}, it is
+     * much slower and is only kept for comparison purposes.
+     *
+     * @param fieldsString
+     *            the string
+     * @return an event field
+     */
+    public static @Nullable TraceEventField parseJsonTree(String fieldsString) {
         JsonObject root;
         Map<@NonNull String, @NonNull Object> argsMap = new HashMap<>();
         root = G_SON.fromJson(fieldsString, JsonObject.class);
@@ -119,6 +140,24 @@ public class TraceEventField {
         return new TraceEventField(name, ts, phase, pid, tid, category, id, duration, argsMap);
     }
 
+    /**
+     * Parse the raw JSON of an "args" object into a map of string values
+     */
+    private static @Nullable Map<String, Object> parseArgs(String rawArgs) {
+        JsonObject args = G_SON.fromJson(rawArgs, JsonObject.class);
+        if (args == null || args.size() == 0) {
+            return null;
+        }
+        Map<String, Object> argsMap = new LinkedHashMap<>();
+        for (Entry<String, JsonElement> entry : args.entrySet()) {
+            String key = Objects.requireNonNull(entry.getKey());
+            JsonElement element = Objects.requireNonNull(entry.getValue());
+            String value = String.valueOf(element.isJsonPrimitive() ? element.getAsJsonPrimitive().getAsString() : element.toString());
+            argsMap.put(key, value);
+        }
+        return argsMap;
+    }
+
     private static double optDouble(JsonObject root, String key) {
         JsonElement jsonElement = root.get(key);
         return jsonElement != null ? jsonElement.getAsDouble() : Double.NaN;
@@ -185,7 +224,44 @@ public class TraceEventField {
                 })
                 .collect(Collectors.toMap(entry -> entry.getKey().substring(5), Entry::getValue));
         fArgs = args.isEmpty() ? null : args;
+        fRawArgs = null;
+    }
 
+    /**
+     * Constructor with deferred arguments, used by the streaming parser
+     *
+     * @param name
+     *            event name
+     * @param ts
+     *            the timestamp in ns
+     * @param phase
+     *            the phase of the event
+     * @param pid
+     *            the process id
+     * @param tid
+     *            the threadId
+     * @param category
+     *            the category
+     * @param id
+     *            the ID of the event stream
+     * @param duration
+     *            the duration in ns
+     * @param rawArgs
+     *            the raw JSON text of the arguments object, or
+     *            <code>null</code> if there are no arguments
+     */
+    TraceEventField(String name, long ts, String phase, @Nullable Object pid, @Nullable Integer tid, @Nullable String category, @Nullable String id, @Nullable Long duration, @Nullable String rawArgs) {
+        fName = name;
+        fPid = pid;
+        fTid = tid;
+        fCategory = category;
+        fId = id;
+        fTs = ts;
+        fDuration = duration;
+        fPhase = phase.charAt(0);
+        fRawArgs = rawArgs;
+        fArgs = null;
+        fContent = null;
     }
 
     /**
@@ -203,7 +279,45 @@ public class TraceEventField {
      * @return the event content
      */
     public ITmfEventField getContent() {
-        return fContent;
+        ITmfEventField content = fContent;
+        if (content == null) {
+            Map<String, Object> fields = new LinkedHashMap<>();
+            Map<String, Object> args = getArgs();
+            if (args != null) {
+                for (Entry<String, Object> entry : args.entrySet()) {
+                    fields.put(ITraceEventConstants.ARGS + "/" + entry.getKey(), entry.getValue()); //$NON-NLS-1$
+                }
+            }
+            fields.put(ITraceEventConstants.TIMESTAMP, fTs);
+            fields.put(ITraceEventConstants.PHASE, String.valueOf(fPhase));
+            fields.put(ITraceEventConstants.NAME, fName);
+            Integer tid = fTid;
+            if (tid != null) {
+                fields.put(ITraceEventConstants.TID, tid);
+            }
+            Object pid = fPid;
+            if (pid != null) {
+                fields.put(ITraceEventConstants.PID, pid);
+            }
+            Long duration = fDuration;
+            if (duration != null) {
+                fields.put(ITraceEventConstants.DURATION, duration.doubleValue());
+            }
+            String category = fCategory;
+            if (category != null) {
+                fields.put(ITraceEventConstants.CATEGORY, category);
+            }
+            String id = fId;
+            if (id != null) {
+                fields.put(ITraceEventConstants.ID, id);
+            }
+            ITmfEventField[] array = fields.entrySet().stream()
+                    .map(entry -> new TmfEventField(entry.getKey(), entry.getValue(), null))
+                    .toArray(ITmfEventField[]::new);
+            content = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, fields, array);
+            fContent = content;
+        }
+        return content;
     }
 
     /**
@@ -278,6 +392,12 @@ public class TraceEventField {
      */
     @Nullable
     public Map<String, Object> getArgs() {
-        return fArgs;
+        Map<String, Object> args = fArgs;
+        String rawArgs = fRawArgs;
+        if (args == null && rawArgs != null) {
+            args = parseArgs(rawArgs);
+            fArgs = args;
+        }
+        return args;
     }
 }
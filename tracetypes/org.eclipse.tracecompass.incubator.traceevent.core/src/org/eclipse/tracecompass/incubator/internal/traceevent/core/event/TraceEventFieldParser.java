@@ -0,0 +1,544 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.traceevent.core.event;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Streaming parser for a single trace event JSON object. It scans the string
+ * once, reads the well known keys directly into primitives and keeps the
+ * "args" object as raw text, so that it is only materialized if somebody asks
+ * for it.
+ *
+ * Names, categories and phases are highly repetitive in a trace, so they go
+ * through a small shared pool to avoid keeping a copy of the same string per
+ * event.
+ *
+ * The values have the same types as with the Gson tree, except for these:
+ * <ul>
+ * <li>A numeric pid is an {@link Integer}, a {@link Long} or a {@link Double}
+ * instead of a Gson number. Its string value is the same for integers.</li>
+ * <li>The timestamp and duration are converted to nanoseconds on the decimal
+ * digits instead of being multiplied as doubles, so "1.001" gives 1001 and
+ * not 1000.</li>
+ * </ul>
+ * The tid is read like Gson's getAsInt: numbers are truncated to an int and
+ * a string must be an int, or the event is invalid.
+ *
+ * @author Matthew Khouzam
+ */
+@NonNullByDefault
+final class TraceEventFieldParser {
+
+    private static final int UNKNOWN_KEY = -1;
+    private static final int KEY_TS = 0;
+    private static final int KEY_PHASE = 1;
+    private static final int KEY_PID = 2;
+    private static final int KEY_TID = 3;
+    private static final int KEY_NAME = 4;
+    private static final int KEY_CATEGORY = 5;
+    private static final int KEY_ID = 6;
+    private static final int KEY_DURATION = 7;
+    private static final int KEY_ARGS = 8;
+
+    /** Number of decimal digits kept after the point, microseconds to nanos */
+    private static final int NANO_DIGITS = 3;
+    /** Above this many integer digits, the exact conversion could overflow */
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final long MICRO_TO_NANO = 1000L;
+
+    private static final StringPool POOL = new StringPool(4096);
+
+    private final String fJson;
+    private final int fLength;
+    private int fPos = 0;
+
+    private TraceEventFieldParser(String json) {
+        fJson = json;
+        fLength = json.length();
+    }
+
+    /**
+     * Parse a trace event JSON object
+     *
+     * @param json
+     *            the JSON string of one event
+     * @return the event field or <code>null</code> if the string is not a
+     *         valid trace event object
+     */
+    public static @Nullable TraceEventField parse(String json) {
+        try {
+            return new TraceEventFieldParser(json).parseObject();
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            // Truncated or invalid JSON
+            return null;
+        }
+    }
+
+    private @Nullable TraceEventField parseObject() {
+        skipWhitespace();
+        if (fJson.charAt(fPos) != '{') {
+            return null;
+        }
+        fPos++;
+        long ts = 0;
+        String phase = null;
+        String name = null;
+        Object pid = null;
+        Integer tid = null;
+        String category = null;
+        String id = null;
+        Long duration = null;
+        String rawArgs = null;
+
+        skipWhitespace();
+        if (fJson.charAt(fPos) == '}') {
+            fPos++;
+        } else {
+            while (true) {
+                skipWhitespace();
+                if (fJson.charAt(fPos) != '"') {
+                    return null;
+                }
+                int key = readKey();
+                skipWhitespace();
+                if (fJson.charAt(fPos) != ':') {
+                    return null;
+                }
+                fPos++;
+                skipWhitespace();
+                if (fJson.startsWith("null", fPos)) { //$NON-NLS-1$
+                    // A null value is the same as an absent key
+                    key = UNKNOWN_KEY;
+                }
+                switch (key) {
+                case KEY_TS:
+                    ts = readNanos();
+                    break;
+                case KEY_PHASE:
+                    phase = readPooledText();
+                    break;
+                case KEY_PID:
+                    pid = readPid();
+                    break;
+                case KEY_TID:
+                    tid = readTid();
+                    break;
+                case KEY_NAME:
+                    name = readPooledText();
+                    break;
+                case KEY_CATEGORY:
+                    category = readPooledText();
+                    break;
+                case KEY_ID:
+                    id = readText();
+                    break;
+                case KEY_DURATION:
+                    duration = readNanos();
+                    break;
+                case KEY_ARGS:
+                    rawArgs = readRawArgs();
+                    break;
+                default:
+                    skipValue();
+                    break;
+                }
+                skipWhitespace();
+                char c = fJson.charAt(fPos++);
+                if (c == '}') {
+                    break;
+                }
+                if (c != ',') {
+                    return null;
+                }
+            }
+        }
+        if (phase == null || phase.isEmpty()) {
+            phase = TraceEventPhases.INSTANT;
+        }
+        if (name == null) {
+            name = TraceEventPhases.DURATION_END.equals(phase) ? "exit" : "unknown"; //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return new TraceEventField(name, ts, phase, pid, tid, category, id, duration, rawArgs);
+    }
+
+    // ------------------------------------------------------------------------
+    // Keys
+    // ------------------------------------------------------------------------
+
+    private int readKey() {
+        int start = fPos + 1;
+        int end = findStringEnd(start);
+        fPos = end + 1;
+        if (hasEscape(start, end)) {
+            // Escaped keys are never one of ours, but decode to be exact
+            String key = unescape(start, end);
+            return matchKey(key, 0, key.length());
+        }
+        return matchKey(fJson, start, end - start);
+    }
+
+    private static int matchKey(String source, int start, int length) {
+        switch (length) {
+        case 2:
+            if (source.regionMatches(start, ITraceEventConstants.TIMESTAMP, 0, 2)) {
+                return KEY_TS;
+            }
+            if (source.regionMatches(start, ITraceEventConstants.PHASE, 0, 2)) {
+                return KEY_PHASE;
+            }
+            if (source.regionMatches(start, ITraceEventConstants.ID, 0, 2)) {
+                return KEY_ID;
+            }
+            return UNKNOWN_KEY;
+        case 3:
+            if (source.regionMatches(start, ITraceEventConstants.PID, 0, 3)) {
+                return KEY_PID;
+            }
+            if (source.regionMatches(start, ITraceEventConstants.TID, 0, 3)) {
+                return KEY_TID;
+            }
+            if (source.regionMatches(start, ITraceEventConstants.CATEGORY, 0, 3)) {
+                return KEY_CATEGORY;
+            }
+            if (source.regionMatches(start, ITraceEventConstants.DURATION, 0, 3)) {
+                return KEY_DURATION;
+            }
+            return UNKNOWN_KEY;
+        case 4:
+            if (source.regionMatches(start, ITraceEventConstants.NAME, 0, 4)) {
+                return KEY_NAME;
+            }
+            if (source.regionMatches(start, ITraceEventConstants.ARGS, 0, 4)) {
+                return KEY_ARGS;
+            }
+            return UNKNOWN_KEY;
+        default:
+            return UNKNOWN_KEY;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Values
+    // ------------------------------------------------------------------------
+
+    /**
+     * Read a timestamp or duration in microseconds, as a number or a numeric
+     * string, and return it in nanoseconds. The conversion is done on the
+     * digits so it does not suffer from floating point rounding.
+     */
+    private long readNanos() {
+        if (fJson.charAt(fPos) == '"') {
+            int start = fPos + 1;
+            int end = findStringEnd(start);
+            fPos = end + 1;
+            return toNanos(start, end);
+        }
+        int start = fPos;
+        int end = findLiteralEnd(start);
+        fPos = end;
+        return toNanos(start, end);
+    }
+
+    private long toNanos(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && fJson.charAt(i) == '-') {
+            negative = true;
+            i++;
+        }
+        long integral = 0;
+        int digits = 0;
+        while (i < end && isDigit(fJson.charAt(i))) {
+            integral = integral * 10 + (fJson.charAt(i) - '0');
+            digits++;
+            i++;
+        }
+        long fraction = 0;
+        int fractionDigits = 0;
+        if (i < end && fJson.charAt(i) == '.') {
+            i++;
+            while (i < end && isDigit(fJson.charAt(i))) {
+                if (fractionDigits < NANO_DIGITS) {
+                    fraction = fraction * 10 + (fJson.charAt(i) - '0');
+                }
+                fractionDigits++;
+                i++;
+            }
+        }
+        if (i != end || digits > MAX_EXACT_DIGITS || (digits == 0 && fractionDigits == 0)) {
+            // Exponents and huge values take the slow path
+            return (long) (Double.parseDouble(fJson.substring(start, end)) * MICRO_TO_NANO);
+        }
+        for (int f = Math.min(fractionDigits, NANO_DIGITS); f < NANO_DIGITS; f++) {
+            fraction *= 10;
+        }
+        long value = integral * MICRO_TO_NANO + fraction;
+        return negative ? -value : value;
+    }
+
+    private Object readPid() {
+        if (fJson.charAt(fPos) == '"') {
+            return readPooledText();
+        }
+        int start = fPos;
+        int end = findLiteralEnd(start);
+        fPos = end;
+        return toNumber(start, end);
+    }
+
+    private Integer readTid() {
+        if (fJson.charAt(fPos) == '"') {
+            int start = fPos + 1;
+            int end = findStringEnd(start);
+            fPos = end + 1;
+            return Integer.parseInt(fJson.substring(start, end));
+        }
+        int start = fPos;
+        int end = findLiteralEnd(start);
+        fPos = end;
+        return ((Number) toNumber(start, end)).intValue();
+    }
+
+    /**
+     * Convert a number to an {@link Integer} when possible, a {@link Long} if
+     * it is too big and a {@link Double} if it is not an integer.
+     */
+    private Object toNumber(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && fJson.charAt(i) == '-') {
+            negative = true;
+            i++;
+        }
+        if (i == end || end - i > 18) {
+            return Double.parseDouble(fJson.substring(start, end));
+        }
+        long value = 0;
+        while (i < end) {
+            char c = fJson.charAt(i++);
+            if (!isDigit(c)) {
+                return Double.parseDouble(fJson.substring(start, end));
+            }
+            value = value * 10 + (c - '0');
+        }
+        value = negative ? -value : value;
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return (int) value;
+        }
+        return value;
+    }
+
+    /**
+     * Read a string, or the textual representation of a number, without
+     * pooling it.
+     */
+    private String readText() {
+        if (fJson.charAt(fPos) == '"') {
+            int start = fPos + 1;
+            int end = findStringEnd(start);
+            fPos = end + 1;
+            if (hasEscape(start, end)) {
+                return unescape(start, end);
+            }
+            return fJson.substring(start, end);
+        }
+        int start = fPos;
+        skipValue();
+        return fJson.substring(start, fPos);
+    }
+
+    private String readPooledText() {
+        if (fJson.charAt(fPos) == '"') {
+            int start = fPos + 1;
+            int end = findStringEnd(start);
+            fPos = end + 1;
+            if (hasEscape(start, end)) {
+                return unescape(start, end);
+            }
+            return POOL.get(fJson, start, end);
+        }
+        int start = fPos;
+        skipValue();
+        return POOL.get(fJson, start, fPos);
+    }
+
+    /**
+     * Get the raw text of the args object, or <code>null</code> if there are
+     * no arguments.
+     */
+    private @Nullable String readRawArgs() {
+        int start = fPos;
+        if (fJson.charAt(start) != '{') {
+            skipValue();
+            return null;
+        }
+        skipValue();
+        int end = fPos;
+        // Ignore empty objects
+        for (int i = start + 1; i < end - 1; i++) {
+            if (!Character.isWhitespace(fJson.charAt(i))) {
+                return fJson.substring(start, end);
+            }
+        }
+        return null;
+    }
+
+    // ------------------------------------------------------------------------
+    // Scanning helpers
+    // ------------------------------------------------------------------------
+
+    private void skipWhitespace() {
+        while (fPos < fLength && Character.isWhitespace(fJson.charAt(fPos))) {
+            fPos++;
+        }
+    }
+
+    private void skipValue() {
+        char c = fJson.charAt(fPos);
+        if (c == '"') {
+            fPos = findStringEnd(fPos + 1) + 1;
+        } else if (c == '{' || c == '[') {
+            int depth = 0;
+            do {
+                c = fJson.charAt(fPos);
+                if (c == '"') {
+                    fPos = findStringEnd(fPos + 1);
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+                fPos++;
+            } while (depth > 0);
+        } else {
+            fPos = findLiteralEnd(fPos);
+        }
+    }
+
+    /**
+     * Find the index of the closing quote of a string starting at start
+     */
+    private int findStringEnd(int start) {
+        int i = start;
+        while (true) {
+            char c = fJson.charAt(i);
+            if (c == '"') {
+                return i;
+            }
+            if (c == '\\') {
+                i++;
+            }
+            i++;
+        }
+    }
+
+    private int findLiteralEnd(int start) {
+        int i = start;
+        while (i < fLength) {
+            char c = fJson.charAt(i);
+            if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+                break;
+            }
+            i++;
+        }
+        if (i == start) {
+            throw new NumberFormatException("Empty value at " + start); //$NON-NLS-1$
+        }
+        return i;
+    }
+
+    private boolean hasEscape(int start, int end) {
+        int index = fJson.indexOf('\\', start);
+        return index >= 0 && index < end;
+    }
+
+    private String unescape(int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        int i = start;
+        while (i < end) {
+            char c = fJson.charAt(i++);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char escaped = fJson.charAt(i++);
+            switch (escaped) {
+            case 'b':
+                sb.append('\b');
+                break;
+            case 'f':
+                sb.append('\f');
+                break;
+            case 'n':
+                sb.append('\n');
+                break;
+            case 'r':
+                sb.append('\r');
+                break;
+            case 't':
+                sb.append('\t');
+                break;
+            case 'u':
+                sb.append((char) Integer.parseInt(fJson.substring(i, i + 4), 16));
+                i += 4;
+                break;
+            default:
+                sb.append(escaped);
+                break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * A fixed size, direct mapped string cache. Collisions simply replace the
+     * previous entry, so the memory used is bounded whatever the number of
+     * distinct strings. Races only cause extra misses since strings are
+     * immutable.
+     */
+    private static final class StringPool {
+
+        private static final int MAX_POOLED_LENGTH = 256;
+
+        private final @Nullable String[] fTable;
+        private final int fMask;
+
+        public StringPool(int size) {
+            int capacity = Integer.highestOneBit(size);
+            fTable = new String[capacity];
+            fMask = capacity - 1;
+        }
+
+        public String get(String source, int start, int end) {
+            int length = end - start;
+            if (length > MAX_POOLED_LENGTH) {
+                return source.substring(start, end);
+            }
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + source.charAt(i);
+            }
+            int index = (hash ^ (hash >>> 16)) & fMask;
+            String candidate = fTable[index];
+            if (candidate != null && candidate.length() == length && candidate.regionMatches(0, source, start, length)) {
+                return candidate;
+            }
+            String value = source.substring(start, end);
+            fTable[index] = value;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.traceevent.core.index;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Sorted index of the events of a JSON trace file. Instead of rewriting a
+ * sorted copy of the trace, only the offsets of the events in the original
+ * file are kept, in timestamp order, and the events are read back through a
+ * memory mapping of the original file.
+ *
+ * The index file contains a small header followed by one offset per event,
+ * each stored on as few bytes as needed to address the trace file.
+ *
+ * @author Matthew Khouzam
+ */
+public final class JsonEventIndex implements Closeable {
+
+    /** Magic number of the index files, "JEIX" */
+    static final int MAGIC = 0x5849454A;
+    /** Version of the file format */
+    static final int VERSION = 2;
+
+    private static final int MAGIC_POSITION = 0;
+    private static final int VERSION_POSITION = 4;
+    private static final int SIZE_POSITION = 8;
+    private static final int MODIFIED_POSITION = 16;
+    private static final int COUNT_POSITION = 24;
+    private static final int WIDTH_POSITION = 32;
+    private static final int HEADER_SIZE = 33;
+
+    private final MappedFile fSource;
+    private final MappedFile fIndex;
+    private final long fCount;
+    private final int fWidth;
+
+    private JsonEventIndex(MappedFile source, MappedFile index) {
+        fSource = source;
+        fIndex = index;
+        fCount = index.getLong(COUNT_POSITION, Long.BYTES);
+        fWidth = (int) index.getLong(WIDTH_POSITION, 1);
+    }
+
+    /**
+     * Open the index of a JSON trace, building it first if it does not exist
+     * or if the trace changed since it was built.
+     *
+     * @param source
+     *            the JSON trace file
+     * @param indexFile
+     *            the index file, typically in the supplementary files
+     * @param bracketsToSkip
+     *            the number of '[' before the events array content
+     * @param sortKey
+     *            the name of the numerical field to sort the events on
+     * @param monitor
+     *            the progress monitor for the index building
+     * @return the index
+     * @throws IOException
+     *             if the files cannot be read or written
+     */
+    public static JsonEventIndex open(File source, File indexFile, int bracketsToSkip, String sortKey, IProgressMonitor monitor) throws IOException {
+        return open(source, indexFile, bracketsToSkip, sortKey, JsonEventIndexBuilder.MIN_CHUNK_SIZE, monitor);
+    }
+
+    /**
+     * Open the index of a JSON trace, building it first with chunks of a
+     * given minimal size if it does not exist or if the trace changed since it
+     * was built. Small chunks split even small traces, to test the parallel
+     * building.
+     *
+     * @param source
+     *            the JSON trace file
+     * @param indexFile
+     *            the index file, typically in the supplementary files
+     * @param bracketsToSkip
+     *            the number of '[' before the events array content
+     * @param sortKey
+     *            the name of the numerical field to sort the events on
+     * @param minChunkSize
+     *            the minimal size of the chunks of the trace scanned in
+     *            parallel
+     * @param monitor
+     *            the progress monitor for the index building
+     * @return the index
+     * @throws IOException
+     *             if the files cannot be read or written
+     */
+    public static JsonEventIndex open(File source, File indexFile, int bracketsToSkip, String sortKey, long minChunkSize, IProgressMonitor monitor) throws IOException {
+        MappedFile sourceMap = new MappedFile(source);
+        try {
+            if (!isUpToDate(indexFile, source)) {
+                JsonEventIndexBuilder.build(sourceMap, source.lastModified(), bracketsToSkip, sortKey, minChunkSize, indexFile, monitor);
+            }
+            return new JsonEventIndex(sourceMap, new MappedFile(indexFile));
+        } catch (IOException | RuntimeException e) {
+            sourceMap.close();
+            throw e;
+        }
+    }
+
+    private static boolean isUpToDate(File indexFile, File source) throws IOException {
+        if (!indexFile.exists() || indexFile.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (MappedFile index = new MappedFile(indexFile)) {
+            long count = index.getLong(COUNT_POSITION, Long.BYTES);
+            long width = index.getLong(WIDTH_POSITION, 1);
+            return index.getLong(MAGIC_POSITION, Integer.BYTES) == MAGIC &&
+                    index.getLong(VERSION_POSITION, Integer.BYTES) == VERSION &&
+                    index.getLong(SIZE_POSITION, Long.BYTES) == source.length() &&
+                    index.getLong(MODIFIED_POSITION, Long.BYTES) == source.lastModified() &&
+                    index.size() == HEADER_SIZE + count * width;
+        }
+    }
+
+    /**
+     * Get the number of events
+     *
+     * @return the number of events in the index
+     */
+    public long size() {
+        return fCount;
+    }
+
+    /**
+     * Get the offset of an event in the trace file
+     *
+     * @param position
+     *            the position of the event in timestamp order
+     * @return the offset of the event's opening brace in the trace file
+     */
+    public long getOffset(long position) {
+        return fIndex.getLong(HEADER_SIZE + position * fWidth, fWidth);
+    }
+
+    /**
+     * Read an event
+     *
+     * @param position
+     *            the position of the event in timestamp order
+     * @return the JSON string of the event or <code>null</code> if the
+     *         position is out of the index
+     */
+    public @Nullable String readEvent(long position) {
+        if (position < 0 || position >= fCount) {
+            return null;
+        }
+        long offset = getOffset(position);
+        long end = JsonEventIndexBuilder.findObjectEnd(fSource, offset);
+        if (end < 0 || end - offset > Integer.MAX_VALUE) {
+            return null;
+        }
+        return new String(fSource.getBytes(offset, (int) (end - offset)), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            fIndex.close();
+        } finally {
+            fSource.close();
+        }
+    }
+}
@@ -0,0 +1,555 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.traceevent.core.index;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * Builds the sorted offset index of a JSON event array.
+ *
+ * The mapped file is cut into chunks, each chunk starting at what looks like an
+ * event boundary. The chunks are scanned in parallel to get the offset and sort
+ * key of each event, then every chunk is sorted and they are merged. Since the
+ * chunk boundaries are only a guess, a closing brace, comma and opening brace
+ * that may as well be in the arguments or in a string of an event, a chunk is
+ * only kept if the previous one ended exactly where it starts. Otherwise it is
+ * scanned again from where the previous one really ended.
+ *
+ * @author Matthew Khouzam
+ */
+final class JsonEventIndexBuilder {
+
+    /** Do not bother splitting below this size */
+    static final long MIN_CHUNK_SIZE = 1L << 22;
+    private static final int CHUNKS_PER_CORE = 4;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NANO_DIGITS = 3;
+    /** Longer exponents cannot give a timestamp that fits in a long */
+    private static final int MAX_EXPONENT_DIGITS = 2;
+    /** Sort key of events without the key, they go first, like metadata */
+    private static final long NO_KEY = Long.MIN_VALUE;
+
+    private final MappedFile fSource;
+    private final byte[] fKey;
+    private final long fMinChunkSize;
+    private final IProgressMonitor fMonitor;
+
+    private JsonEventIndexBuilder(MappedFile source, String sortKey, long minChunkSize, IProgressMonitor monitor) {
+        fSource = source;
+        fKey = sortKey.getBytes(StandardCharsets.UTF_8);
+        fMinChunkSize = Math.max(1, minChunkSize);
+        fMonitor = monitor;
+    }
+
+    /**
+     * Build the index file
+     *
+     * @param source
+     *            the mapped JSON file
+     * @param lastModified
+     *            the modification time of the JSON file, to detect stale
+     *            indexes
+     * @param bracketsToSkip
+     *            the number of '[' before the events array content
+     * @param sortKey
+     *            the name of the numerical field to sort the events on
+     * @param minChunkSize
+     *            the minimal size of the chunks scanned in parallel
+     * @param target
+     *            the index file to write
+     * @param monitor
+     *            the progress monitor
+     * @throws IOException
+     *             if the index cannot be written
+     */
+    public static void build(MappedFile source, long lastModified, int bracketsToSkip, String sortKey, long minChunkSize, File target, IProgressMonitor monitor) throws IOException {
+        JsonEventIndexBuilder builder = new JsonEventIndexBuilder(source, sortKey, minChunkSize, monitor);
+        long[] offsets = builder.sortedOffsets(bracketsToSkip);
+        builder.write(offsets, lastModified, target);
+    }
+
+    private long[] sortedOffsets(int bracketsToSkip) {
+        long end = fSource.size();
+        long start = findEventsStart(bracketsToSkip);
+        int nbChunks = (int) Math.max(1, Math.min((long) Runtime.getRuntime().availableProcessors() * CHUNKS_PER_CORE, (end - start) / fMinChunkSize));
+        fMonitor.beginTask("Indexing " + fSource.size() + " bytes", nbChunks + 1); //$NON-NLS-1$ //$NON-NLS-2$
+
+        long[] starts = new long[nbChunks + 1];
+        starts[0] = start;
+        starts[nbChunks] = end;
+        long chunkSize = (end - start) / nbChunks;
+        for (int i = 1; i < nbChunks; i++) {
+            starts[i] = Math.max(starts[i - 1], findEventBoundary(start + i * chunkSize));
+        }
+
+        AtomicInteger done = new AtomicInteger();
+        Chunk[] chunks = IntStream.range(0, nbChunks).parallel()
+                .mapToObj(i -> {
+                    Chunk chunk = new Chunk();
+                    chunk.scan(starts[i], starts[i + 1]);
+                    chunk.sort();
+                    done.incrementAndGet();
+                    return chunk;
+                })
+                .toArray(Chunk[]::new);
+        fMonitor.worked(done.get());
+
+        int validChunks = resynchronize(chunks, starts);
+        long[] offsets = merge(chunks, validChunks);
+        fMonitor.worked(1);
+        return offsets;
+    }
+
+    /**
+     * Scan again the chunks that did not start at an event boundary. The
+     * first chunk starts at the first event, and a chunk starts at an event
+     * boundary if the previous one stopped exactly at its start. Otherwise
+     * its guessed start was inside an event, so it is scanned again from
+     * where the previous one stopped, up to the start of the next one.
+     *
+     * @return the number of chunks to use, the ones after the end of the
+     *         events are ignored
+     */
+    private int resynchronize(Chunk[] chunks, long[] starts) {
+        for (int i = 0; i < chunks.length; i++) {
+            if (i > 0 && chunks[i - 1].fStop != starts[i]) {
+                Chunk chunk = new Chunk();
+                chunk.scan(chunks[i - 1].fStop, starts[i + 1]);
+                chunk.sort();
+                chunks[i] = chunk;
+            }
+            Chunk chunk = chunks[i];
+            if (chunk.fEndOfArray || chunk.fInvalid) {
+                // Whatever is after the array or the invalid data is not events
+                return i + 1;
+            }
+        }
+        return chunks.length;
+    }
+
+    private static long[] merge(Chunk[] chunks, int count) {
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += chunks[i].fSize;
+        }
+        if (sum > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Too many events to index: " + sum); //$NON-NLS-1$
+        }
+        int total = (int) sum;
+        if (count == 1) {
+            return Arrays.copyOf(chunks[0].fOffsets, total);
+        }
+        int[] heads = new int[count];
+        PriorityQueue<Integer> queue = new PriorityQueue<>(count, (a, b) -> {
+            Chunk first = chunks[a];
+            Chunk second = chunks[b];
+            int cmp = Long.compare(first.fKeys[heads[a]], second.fKeys[heads[b]]);
+            return cmp != 0 ? cmp : Long.compare(first.fOffsets[heads[a]], second.fOffsets[heads[b]]);
+        });
+        for (int i = 0; i < count; i++) {
+            if (chunks[i].fSize > 0) {
+                queue.add(i);
+            }
+        }
+        long[] offsets = new long[total];
+        int index = 0;
+        while (!queue.isEmpty()) {
+            int chunkIndex = Objects.requireNonNull(queue.poll());
+            Chunk chunk = chunks[chunkIndex];
+            offsets[index++] = chunk.fOffsets[heads[chunkIndex]++];
+            if (heads[chunkIndex] < chunk.fSize) {
+                queue.add(chunkIndex);
+            }
+        }
+        return offsets;
+    }
+
+    private void write(long[] offsets, long lastModified, File target) throws IOException {
+        int width = Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(fSource.size()) + 7) / Byte.SIZE);
+        File temp = new File(target.getPath() + ".tmp"); //$NON-NLS-1$
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+            writeLong(out, JsonEventIndex.MAGIC, Integer.BYTES);
+            writeLong(out, JsonEventIndex.VERSION, Integer.BYTES);
+            writeLong(out, fSource.size(), Long.BYTES);
+            writeLong(out, lastModified, Long.BYTES);
+            writeLong(out, offsets.length, Long.BYTES);
+            writeLong(out, width, 1);
+            for (long offset : offsets) {
+                writeLong(out, offset, width);
+            }
+        }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeLong(OutputStream out, long value, int width) throws IOException {
+        for (int i = 0; i < width; i++) {
+            out.write((int) (value >>> (i * Byte.SIZE)));
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Scanning
+    // ------------------------------------------------------------------------
+
+    private long findEventsStart(int bracketsToSkip) {
+        long end = fSource.size();
+        int brackets = 0;
+        long position = 0;
+        while (brackets < bracketsToSkip && position < end) {
+            byte b = fSource.get(position);
+            if (b == '"') {
+                position = skipString(fSource, position + 1);
+                continue;
+            }
+            if (b == '[') {
+                brackets++;
+            }
+            position++;
+        }
+        return Math.min(position, end);
+    }
+
+    /**
+     * Guess the start of an event from an arbitrary position, by looking for
+     * the end of an object followed by a comma and the start of another. This
+     * may also be between two objects of the arguments of an event or in a
+     * string, see {@link #resynchronize(Chunk[], long[])}.
+     */
+    private long findEventBoundary(long from) {
+        long end = fSource.size();
+        for (long i = from; i < end; i++) {
+            if (fSource.get(i) != '}') {
+                continue;
+            }
+            long j = skipWhitespace(i + 1);
+            if (j >= end || fSource.get(j) != ',') {
+                continue;
+            }
+            j = skipWhitespace(j + 1);
+            if (j < end && fSource.get(j) == '{') {
+                return j;
+            }
+        }
+        return end;
+    }
+
+    private long skipWhitespace(long from) {
+        long end = fSource.size();
+        long i = from;
+        while (i < end && isWhitespace(fSource.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Find the end of the JSON object starting at an offset
+     *
+     * @param source
+     *            the mapped file
+     * @param offset
+     *            the offset of the opening brace
+     * @return the offset after the closing brace or -1 if the object is
+     *         truncated
+     */
+    static long findObjectEnd(MappedFile source, long offset) {
+        long end = source.size();
+        int depth = 0;
+        long i = offset;
+        while (i < end) {
+            byte b = source.get(i);
+            if (b == '"') {
+                i = skipString(source, i + 1);
+                continue;
+            }
+            if (b == '{' || b == '[') {
+                depth++;
+            } else if ((b == '}' || b == ']') && --depth == 0) {
+                return i + 1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * Skip a string
+     *
+     * @return the position after the closing quote
+     */
+    private static long skipString(MappedFile source, long from) {
+        long end = source.size();
+        long i = from;
+        while (i < end) {
+            byte b = source.get(i);
+            if (b == '"') {
+                return i + 1;
+            }
+            if (b == '\\') {
+                i++;
+            }
+            i++;
+        }
+        return end;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /**
+     * The events of a range of the file
+     */
+    private final class Chunk {
+
+        private long[] fKeys = new long[INITIAL_CAPACITY];
+        private long[] fOffsets = new long[INITIAL_CAPACITY];
+        private int fSize = 0;
+        private long fStop;
+        private boolean fEndOfArray = false;
+        private boolean fInvalid = false;
+
+        /**
+         * Read the events starting before the limit
+         */
+        public void scan(long from, long limit) {
+            long end = fSource.size();
+            long position = from;
+            while (true) {
+                while (position < end && (isWhitespace(fSource.get(position)) || fSource.get(position) == ',')) {
+                    position++;
+                }
+                if (position >= limit || position >= end) {
+                    fStop = position;
+                    return;
+                }
+                byte b = fSource.get(position);
+                if (b == ']') {
+                    fEndOfArray = true;
+                    fStop = position;
+                    return;
+                }
+                if (b != '{') {
+                    fInvalid = true;
+                    fStop = position;
+                    return;
+                }
+                long next = scanEvent(position);
+                if (next < 0) {
+                    // Truncated last event
+                    fStop = end;
+                    return;
+                }
+                position = next;
+                if ((fSize & 0xffff) == 0 && fMonitor.isCanceled()) {
+                    throw new OperationCanceledException();
+                }
+            }
+        }
+
+        /**
+         * Scan one event object, looking for the sort key in its first level
+         */
+        private long scanEvent(long offset) {
+            long end = fSource.size();
+            long key = NO_KEY;
+            int depth = 0;
+            long i = offset;
+            while (i < end) {
+                byte b = fSource.get(i);
+                if (b == '"') {
+                    if (depth == 1 && key == NO_KEY && matchesKey(i + 1)) {
+                        key = readKey(i + 1 + fKey.length + 1);
+                    }
+                    i = skipString(fSource, i + 1);
+                    continue;
+                }
+                if (b == '{' || b == '[') {
+                    depth++;
+                } else if ((b == '}' || b == ']') && --depth == 0) {
+                    add(key, offset);
+                    return i + 1;
+                }
+                i++;
+            }
+            return -1;
+        }
+
+        private boolean matchesKey(long from) {
+            if (from + fKey.length >= fSource.size()) {
+                return false;
+            }
+            for (int k = 0; k < fKey.length; k++) {
+                if (fSource.get(from + k) != fKey[k]) {
+                    return false;
+                }
+            }
+            return fSource.get(from + fKey.length) == '"';
+        }
+
+        /**
+         * Read the numerical value after a key, in thousandths to keep 3
+         * decimals without floating point
+         */
+        private long readKey(long afterKey) {
+            long end = fSource.size();
+            long i = skipWhitespace(afterKey);
+            if (i >= end || fSource.get(i) != ':') {
+                return NO_KEY;
+            }
+            i = skipWhitespace(i + 1);
+            if (i < end && fSource.get(i) == '"') {
+                i++;
+            }
+            long numberStart = i;
+            boolean negative = false;
+            if (i < end && fSource.get(i) == '-') {
+                negative = true;
+                i++;
+            }
+            long value = 0;
+            boolean hasDigits = false;
+            while (i < end && isDigit(fSource.get(i))) {
+                value = value * 10 + (fSource.get(i) - '0');
+                hasDigits = true;
+                i++;
+            }
+            int decimals = 0;
+            if (i < end && fSource.get(i) == '.') {
+                i++;
+                while (i < end && isDigit(fSource.get(i)) && decimals < NANO_DIGITS) {
+                    value = value * 10 + (fSource.get(i) - '0');
+                    decimals++;
+                    i++;
+                }
+                while (i < end && isDigit(fSource.get(i))) {
+                    i++;
+                }
+            }
+            if (!hasDigits && decimals == 0) {
+                return NO_KEY;
+            }
+            if (i < end && (fSource.get(i) == 'e' || fSource.get(i) == 'E')) {
+                return readExponentKey(numberStart, i + 1);
+            }
+            for (; decimals < NANO_DIGITS; decimals++) {
+                value *= 10;
+            }
+            return negative ? -value : value;
+        }
+
+        /**
+         * Read a value in exponent notation, rare enough to go through
+         * BigDecimal. The value is truncated to thousandths like the others.
+         */
+        private long readExponentKey(long numberStart, long exponentStart) {
+            long end = fSource.size();
+            long i = exponentStart;
+            if (i < end && (fSource.get(i) == '+' || fSource.get(i) == '-')) {
+                i++;
+            }
+            long digitsStart = i;
+            while (i < end && isDigit(fSource.get(i))) {
+                i++;
+            }
+            if (i == digitsStart || i - digitsStart > MAX_EXPONENT_DIGITS) {
+                return NO_KEY;
+            }
+            StringBuilder number = new StringBuilder();
+            for (long k = numberStart; k < i; k++) {
+                number.append((char) fSource.get(k));
+            }
+            try {
+                return new BigDecimal(number.toString()).movePointRight(NANO_DIGITS).setScale(0, RoundingMode.DOWN).longValueExact();
+            } catch (NumberFormatException | ArithmeticException e) {
+                return NO_KEY;
+            }
+        }
+
+        private void add(long key, long offset) {
+            if (fSize == fKeys.length) {
+                fKeys = Arrays.copyOf(fKeys, fSize * 2);
+                fOffsets = Arrays.copyOf(fOffsets, fSize * 2);
+            }
+            fKeys[fSize] = key;
+            fOffsets[fSize] = offset;
+            fSize++;
+        }
+
+        /**
+         * Sort on the key then the offset, which is the same as a stable sort
+         * on the key since the events were added in file order
+         */
+        public void sort() {
+            if (isSorted()) {
+                return;
+            }
+            long[] keys = fKeys;
+            long[] offsets = fOffsets;
+            long[] otherKeys = new long[fSize];
+            long[] otherOffsets = new long[fSize];
+            for (int width = 1; width < fSize; width *= 2) {
+                for (int low = 0; low < fSize; low += 2 * width) {
+                    int middle = Math.min(low + width, fSize);
+                    int high = Math.min(low + 2 * width, fSize);
+                    int left = low;
+                    int right = middle;
+                    for (int k = low; k < high; k++) {
+                        if (left < middle && (right >= high || keys[left] <= keys[right])) {
+                            otherKeys[k] = keys[left];
+                            otherOffsets[k] = offsets[left++];
+                        } else {
+                            otherKeys[k] = keys[right];
+                            otherOffsets[k] = offsets[right++];
+                        }
+                    }
+                }
+                long[] swap = keys;
+                keys = otherKeys;
+                otherKeys = swap;
+                swap = offsets;
+                offsets = otherOffsets;
+                otherOffsets = swap;
+            }
+            fKeys = keys;
+            fOffsets = offsets;
+        }
+
+        private boolean isSorted() {
+            for (int i = 1; i < fSize; i++) {
+                if (fKeys[i - 1] > fKeys[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
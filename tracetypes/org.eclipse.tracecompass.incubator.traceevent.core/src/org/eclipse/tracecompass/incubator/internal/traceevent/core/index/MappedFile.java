@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.traceevent.core.index;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only memory mapping of a whole file. Files bigger than what a single
+ * {@link MappedByteBuffer} can address are mapped in consecutive windows. Only
+ * absolute reads are used, so an instance can be shared between threads.
+ *
+ * @author Matthew Khouzam
+ */
+public final class MappedFile implements Closeable {
+
+    private static final int WINDOW_SHIFT = 30;
+    private static final long WINDOW_SIZE = 1L << WINDOW_SHIFT;
+    private static final long WINDOW_MASK = WINDOW_SIZE - 1;
+
+    private final FileChannel fChannel;
+    private final MappedByteBuffer[] fWindows;
+    private final long fSize;
+
+    /**
+     * Constructor
+     *
+     * @param file
+     *            the file to map
+     * @throws IOException
+     *             if the file cannot be opened or mapped
+     */
+    public MappedFile(File file) throws IOException {
+        fChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            fSize = fChannel.size();
+            int count = (int) ((fSize + WINDOW_MASK) >>> WINDOW_SHIFT);
+            fWindows = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long position = (long) i << WINDOW_SHIFT;
+                fWindows[i] = fChannel.map(MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, fSize - position));
+            }
+        } catch (IOException e) {
+            fChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the size of the file
+     *
+     * @return the size in bytes
+     */
+    public long size() {
+        return fSize;
+    }
+
+    /**
+     * Get the byte at a position
+     *
+     * @param position
+     *            the position in the file, must be smaller than
+     *            {@link #size()}
+     * @return the byte
+     */
+    public byte get(long position) {
+        return fWindows[(int) (position >>> WINDOW_SHIFT)].get((int) (position & WINDOW_MASK));
+    }
+
+    /**
+     * Read a little endian unsigned number stored on a few bytes
+     *
+     * @param position
+     *            the position of the first byte
+     * @param width
+     *            the number of bytes, at most 8
+     * @return the value
+     */
+    public long getLong(long position, int width) {
+        long value = 0;
+        for (int i = width - 1; i >= 0; i--) {
+            value = (value << 8) | (get(position + i) & 0xff);
+        }
+        return value;
+    }
+
+    /**
+     * Copy a range of the file
+     *
+     * @param position
+     *            the start of the range
+     * @param length
+     *            the length of the range
+     * @return the bytes
+     */
+    public byte[] getBytes(long position, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = get(position + i);
+        }
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        fChannel.close();
+    }
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.traceevent.core.trace;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.internal.traceevent.core.Activator;
+import org.eclipse.tracecompass.incubator.internal.traceevent.core.index.JsonEventIndex;
+import org.eclipse.tracecompass.internal.provisional.jsontrace.core.trace.JsonTrace;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
+
+/**
+ * JSON trace read through a {@link JsonEventIndex}. The events are read in
+ * timestamp order directly from a memory mapping of the trace file, and the
+ * location of an event is its position in the index.
+ *
+ * @author Matthew Khouzam
+ */
+public abstract class IndexedJsonTrace extends JsonTrace {
+
+    private static final String INDEX_SUFFIX = ".eventindex"; //$NON-NLS-1$
+
+    private @Nullable JsonEventIndex fIndex;
+    private long fCurrentPosition = 0;
+
+    /**
+     * Open the event index of the trace, building it if needed. To be called
+     * by the implementations' initTrace.
+     *
+     * @param path
+     *            the path of the trace file
+     * @param bracketsToSkip
+     *            the number of '[' before the events array content
+     * @param sortKey
+     *            the name of the timestamp field to sort the events on
+     * @throws TmfTraceException
+     *             if the index cannot be built or read
+     */
+    protected void initIndex(String path, int bracketsToSkip, String sortKey) throws TmfTraceException {
+        File source = new File(path);
+        File indexFile = new File(TmfTraceManager.getSupplementaryFileDir(this) + source.getName() + INDEX_SUFFIX);
+        Job indexJob = new Job("Indexing " + source.getName()) { //$NON-NLS-1$
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                try {
+                    fIndex = JsonEventIndex.open(source, indexFile, bracketsToSkip, sortKey, monitor);
+                } catch (OperationCanceledException e) {
+                    indexFile.delete();
+                    return Status.CANCEL_STATUS;
+                } catch (IOException e) {
+                    indexFile.delete();
+                    return new Status(IStatus.ERROR, Activator.PLUGIN_ID, e.getMessage(), e);
+                }
+                return Status.OK_STATUS;
+            }
+        };
+        indexJob.schedule();
+        while (indexJob.getResult() == null) {
+            try {
+                indexJob.join();
+            } catch (InterruptedException e) {
+                throw new TmfTraceException(e.getMessage(), e);
+            }
+        }
+        IStatus result = indexJob.getResult();
+        if (!result.isOK()) {
+            throw new TmfTraceException("Job failed " + result.getMessage()); //$NON-NLS-1$
+        }
+        /* The events are read through the index, the file is not opened */
+        fFile = source;
+    }
+
+    /**
+     * Get the position in the index of the context's location
+     *
+     * @param context
+     *            the context
+     * @return the position or -1 if the location is not a position
+     */
+    protected static long getPosition(ITmfContext context) {
+        ITmfLocation location = context.getLocation();
+        if (NULL_LOCATION.equals(location)) {
+            return 0L;
+        }
+        if (location instanceof TmfLongLocation) {
+            Long position = ((TmfLongLocation) location).getLocationInfo();
+            return position == null ? -1L : position;
+        }
+        return -1L;
+    }
+
+    /**
+     * Read the JSON string of an event and move the current location after
+     * it
+     *
+     * @param position
+     *            the position of the event in the index
+     * @return the JSON string or <code>null</code> if there are no more events
+     */
+    protected synchronized @Nullable String readEvent(long position) {
+        JsonEventIndex index = fIndex;
+        if (index == null) {
+            return null;
+        }
+        fCurrentPosition = position + 1;
+        return index.readEvent(position);
+    }
+
+    @Override
+    public ITmfContext seekEvent(@Nullable ITmfLocation location) {
+        JsonEventIndex index = fIndex;
+        final TmfContext context = new TmfContext(NULL_LOCATION, ITmfContext.UNKNOWN_RANK);
+        if (index == null || NULL_LOCATION.equals(location)) {
+            return context;
+        }
+        long position = 0;
+        if (location != null && location.getLocationInfo() instanceof Long) {
+            position = (Long) location.getLocationInfo();
+        }
+        position = Math.max(0, Math.min(position, index.size()));
+        context.setLocation(new TmfLongLocation(position));
+        context.setRank(position == 0 ? 0 : ITmfContext.UNKNOWN_RANK);
+        return context;
+    }
+
+    @Override
+    public ITmfContext seekEvent(double ratio) {
+        JsonEventIndex index = fIndex;
+        if (index == null) {
+            return new TmfContext(NULL_LOCATION, ITmfContext.UNKNOWN_RANK);
+        }
+        return seekEvent(new TmfLongLocation((long) (ratio * index.size())));
+    }
+
+    @Override
+    public double getLocationRatio(@Nullable ITmfLocation location) {
+        JsonEventIndex index = fIndex;
+        if (index == null || index.size() == 0 || location == null || !(location.getLocationInfo() instanceof Long)) {
+            return 0;
+        }
+        return ((Long) location.getLocationInfo()).doubleValue() / index.size();
+    }
+
+    @Override
+    public synchronized ITmfLocation getCurrentLocation() {
+        return new TmfLongLocation(fCurrentPosition);
+    }
+
+    @Override
+    public synchronized void dispose() {
+        JsonEventIndex index = fIndex;
+        if (index != null) {
+            try {
+                index.close();
+            } catch (IOException e) {
+                Activator.getInstance().logError("Error closing the event index", e); //$NON-NLS-1$
+            }
+            fIndex = null;
+        }
+        super.dispose();
+    }
+}
@@ -24,24 +24,20 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.incubator.internal.traceevent.core.Activator;
+import org.eclipse.tracecompass.incubator.internal.traceevent.core.event.ITraceEventConstants;
 import org.eclipse.tracecompass.incubator.internal.traceevent.core.event.TraceEventAspects;
 import org.eclipse.tracecompass.incubator.internal.traceevent.core.event.TraceEventEvent;
 import org.eclipse.tracecompass.incubator.internal.traceevent.core.event.TraceEventField;
-import org.eclipse.tracecompass.internal.provisional.jsontrace.core.trace.JsonTrace;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
 import org.eclipse.tracecompass.tmf.core.io.BufferedRandomAccessFile;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
-import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 import org.eclipse.tracecompass.tmf.core.trace.TraceValidationStatus;
-import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
-import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
 
 import com.google.common.collect.Lists;
 
@@ -51,7 +47,7 @@ import com.google.common.collect.Lists;
  * @author Matthew Khouzam
  *
  */
-public class TraceEventTrace extends JsonTrace {
+public class TraceEventTrace extends IndexedJsonTrace {
 
     /**
      * Tid prefix to add to thread name
@@ -163,29 +159,7 @@ public class TraceEventTrace extends JsonTrace {
     public void initTrace(IResource resource, String path, Class<? extends ITmfEvent> type) throws TmfTraceException {
         super.initTrace(resource, path, type);
         fProperties.put("Type", "Trace-Event"); //$NON-NLS-1$ //$NON-NLS-2$
-        String dir = TmfTraceManager.getSupplementaryFileDir(this);
-        fFile = new File(dir + new File(path).getName());
-        if (!fFile.exists()) {
-            Job sortJob = new TraceEventSortingJob(this, path);
-            sortJob.schedule();
-            while (sortJob.getResult() == null) {
-                try {
-                    sortJob.join();
-                } catch (InterruptedException e) {
-                    throw new TmfTraceException(e.getMessage(), e);
-                }
-            }
-            IStatus result = sortJob.getResult();
-            if (!result.isOK()) {
-                throw new TmfTraceException("Job failed " + result.getMessage()); //$NON-NLS-1$
-            }
-        }
-        try {
-            fFileInput = new BufferedRandomAccessFile(fFile, "r"); //$NON-NLS-1$
-            goToCorrectStart(fFileInput);
-        } catch (IOException e) {
-            throw new TmfTraceException(e.getMessage(), e);
-        }
+        initIndex(path, 1, ITraceEventConstants.TIMESTAMP);
     }
 
     private static void goToCorrectStart(RandomAccessFile rafile) throws IOException {
@@ -224,35 +198,22 @@ public class TraceEventTrace extends JsonTrace {
 
     @Override
     public ITmfEvent parseEvent(ITmfContext context) {
-        @Nullable
-        ITmfLocation location = context.getLocation();
-        if (location instanceof TmfLongLocation) {
-            TmfLongLocation tmfLongLocation = (TmfLongLocation) location;
-            Long locationInfo = tmfLongLocation.getLocationInfo();
-            if (location.equals(NULL_LOCATION)) {
-                locationInfo = 0L;
+        long position = getPosition(context);
+        if (position < 0) {
+            return null;
+        }
+        String nextJson = readEvent(position);
+        while (nextJson != null) {
+            TraceEventField field = TraceEventField.parseJson(nextJson);
+            if (field == null) {
+                return null;
             }
-            if (locationInfo != null) {
-                try {
-                    if (!locationInfo.equals(fFileInput.getFilePointer())) {
-                        fFileInput.seek(locationInfo);
-                    }
-                    String nextJson = readNextEventString(() -> fFileInput.read());
-                    while (nextJson != null) {
-                        TraceEventField field = TraceEventField.parseJson(nextJson);
-                        if (field == null) {
-                            return null;
-                        }
-                        if (field.getPhase() != 'M') {
-                            return new TraceEventEvent(this, context.getRank(), field);
-                        }
-                        parseMetadata(field);
-                        nextJson = readNextEventString(() -> fFileInput.read());
-                    }
-                } catch (IOException e) {
-                    Activator.getInstance().logError("Error parsing event", e); //$NON-NLS-1$
-                }
+            if (field.getPhase() != 'M') {
+                return new TraceEventEvent(this, context.getRank(), field);
             }
+            parseMetadata(field);
+            position++;
+            nextJson = readEvent(position);
         }
         return null;
     }
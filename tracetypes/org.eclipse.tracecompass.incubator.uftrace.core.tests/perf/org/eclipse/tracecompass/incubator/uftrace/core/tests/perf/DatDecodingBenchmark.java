@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.uftrace.core.tests.perf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.function.ToLongFunction;
+
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.incubator.internal.uftrace.core.trace.DatCursor;
+import org.eclipse.tracecompass.incubator.internal.uftrace.core.trace.DatEvent;
+import org.eclipse.tracecompass.incubator.internal.uftrace.core.trace.DatParser;
+import org.junit.Test;
+
+/**
+ * Benchmark the decoding of uftrace data files. Compares the records read as
+ * {@link DatEvent} objects with the records read through a {@link DatCursor}.
+ *
+ * @author Matthew Khouzam
+ */
+public class DatDecodingBenchmark {
+
+    private static final String TEST_ID = "org.eclipse.tracecompass.incubator#UFTrace#";
+    private static final String TEST_DECODE = "Decode records (%s)";
+    private static final File DAT_FILE = new File("res/uftrace-ls/26228.dat");
+
+    private static final int LOOP_COUNT = 50;
+    private static final long RECORD_COUNT = 113752;
+
+    /**
+     * Benchmark the decoding to objects
+     */
+    @Test
+    public void testDatEvents() {
+        runBenchmark("DatEvent", parser -> {
+            long count = 0;
+            Iterator<DatEvent> iterator = parser.iterator();
+            while (iterator.hasNext()) {
+                DatEvent event = iterator.next();
+                // Read what the call stack needs
+                event.getTime();
+                event.getType();
+                event.getAddress();
+                event.getTid();
+                count++;
+            }
+            return count;
+        });
+    }
+
+    /**
+     * Benchmark the decoding with a cursor
+     */
+    @Test
+    public void testCursor() {
+        runBenchmark("Cursor", parser -> {
+            long count = 0;
+            DatCursor cursor = parser.cursor(0);
+            while (cursor.next()) {
+                cursor.getTime();
+                cursor.getType();
+                cursor.getAddress();
+                cursor.getTid();
+                count++;
+            }
+            return count;
+        });
+    }
+
+    private static void runBenchmark(String name, ToLongFunction<DatParser> reader) {
+        Performance perf = Performance.getDefault();
+        String testName = String.format(TEST_DECODE, name);
+        PerformanceMeter pm = Objects.requireNonNull(perf.createPerformanceMeter(TEST_ID + testName));
+        perf.tagAsSummary(pm, testName, Dimension.CPU_TIME);
+
+        DatParser parser = new DatParser(DAT_FILE);
+        for (int i = 0; i < LOOP_COUNT; i++) {
+            pm.start();
+            assertEquals(RECORD_COUNT, reader.applyAsLong(parser));
+            pm.stop();
+        }
+        pm.commit();
+    }
+}
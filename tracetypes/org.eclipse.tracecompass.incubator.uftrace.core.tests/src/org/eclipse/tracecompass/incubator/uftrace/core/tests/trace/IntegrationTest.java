@@ -10,11 +10,19 @@
 package org.eclipse.tracecompass.incubator.uftrace.core.tests.trace;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import org.eclipse.tracecompass.incubator.internal.uftrace.core.trace.Uftrace;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 import org.junit.Test;
 
 /**
@@ -39,7 +47,46 @@ public class IntegrationTest {
         while (uft.getNext(ctx) != null) {
             cnt++;
         }
-        assertEquals("event count", 113751, cnt);
+        assertEquals("event count", 113752, cnt);
+        uft.dispose();
+    }
+
+    /**
+     * Seek locations and ratios without reading the trace from the start
+     *
+     * @throws TmfTraceException
+     *             something went wrong
+     */
+    @Test
+    public void seekTrace() throws TmfTraceException {
+        Uftrace uft = new Uftrace();
+        uft.initTrace(null, "res/uftrace-ls", TmfEvent.class);
+        ITmfContext ctx = uft.seekEvent(0);
+        List<ITmfLocation> locations = new ArrayList<>();
+        List<ITmfTimestamp> timestamps = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            locations.add(ctx.getLocation());
+            ITmfEvent event = uft.getNext(ctx);
+            assertNotNull(event);
+            timestamps.add(event.getTimestamp());
+        }
+        for (int i = 999; i >= 0; i -= 111) {
+            ctx = uft.seekEvent(locations.get(i));
+            ITmfEvent event = uft.getNext(ctx);
+            assertNotNull(event);
+            assertEquals(timestamps.get(i), event.getTimestamp());
+        }
+
+        ctx = uft.seekEvent(0.5);
+        double ratio = uft.getLocationRatio(ctx.getLocation());
+        assertEquals(0.5, ratio, 0.01);
+        ITmfEvent previous = uft.getNext(ctx);
+        assertNotNull(previous);
+        ITmfEvent event = uft.getNext(ctx);
+        assertNotNull(event);
+        assertTrue(event.getTimestamp().compareTo(previous.getTimestamp()) >= 0);
+        assertTrue(uft.getLocationRatio(ctx.getLocation()) > ratio);
+        uft.dispose();
     }
 
 }
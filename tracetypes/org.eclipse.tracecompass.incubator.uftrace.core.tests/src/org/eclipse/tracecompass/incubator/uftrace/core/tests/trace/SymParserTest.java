@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.uftrace.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.eclipse.tracecompass.incubator.internal.uftrace.core.trace.SymParser;
+import org.eclipse.tracecompass.incubator.internal.uftrace.core.trace.SymParser.Symbol;
+import org.junit.Test;
+
+/**
+ * Test the symbol file parser
+ *
+ * @author Matthew Khouzam
+ */
+public class SymParserTest {
+
+    /**
+     * Read the symbols of the test trace
+     *
+     * @throws IOException
+     *             the file cannot be read
+     */
+    @Test
+    public void testTraceSymbols() throws IOException {
+        SymParser parser = SymParser.parse(new File("res/uftrace-ls/ls.sym"));
+        assertEquals(512, parser.size());
+        assertNull(parser.floor(0x226f));
+        Symbol symbol = parser.floor(0x2270);
+        assertNotNull(symbol);
+        assertEquals("getenv", symbol.getName());
+        assertEquals('P', symbol.getType());
+        symbol = parser.floor(0x227f);
+        assertNotNull(symbol);
+        assertEquals("getenv", symbol.getName());
+    }
+
+    /**
+     * Read unsorted symbols, with duplicate addresses
+     *
+     * @throws IOException
+     *             the file cannot be read
+     */
+    @Test
+    public void testUnsorted() throws IOException {
+        File file = File.createTempFile("unsorted", ".sym");
+        try {
+            Files.write(file.toPath(), Arrays.asList("30 T third", "10 P first", "20\tt  second one", "10 T first again", "40 w"), StandardCharsets.UTF_8);
+            SymParser parser = SymParser.parse(file);
+            assertEquals(4, parser.size());
+            Symbol symbol = parser.floor(0x1f);
+            assertNotNull(symbol);
+            assertEquals("first again", symbol.getName());
+            symbol = parser.floor(0x20);
+            assertNotNull(symbol);
+            assertEquals("second one", symbol.getName());
+            assertEquals('t', symbol.getType());
+            symbol = parser.floor(0x100);
+            assertNotNull(symbol);
+            assertEquals("", symbol.getName());
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Read an invalid file
+     *
+     * @throws IOException
+     *             the file cannot be read
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalid() throws IOException {
+        File file = File.createTempFile("invalid", ".sym");
+        try {
+            Files.write(file.toPath(), Arrays.asList("10 P first", "zz T second"), StandardCharsets.UTF_8);
+            SymParser.parse(file);
+        } finally {
+            file.delete();
+        }
+    }
+}
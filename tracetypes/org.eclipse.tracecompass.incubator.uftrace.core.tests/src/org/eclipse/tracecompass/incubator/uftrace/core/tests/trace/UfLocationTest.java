@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.uftrace.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.tracecompass.incubator.internal.uftrace.core.trace.UfEvent;
+import org.eclipse.tracecompass.incubator.internal.uftrace.core.trace.UfLocation;
+import org.eclipse.tracecompass.incubator.internal.uftrace.core.trace.Uftrace;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the serialization of the {@link UfLocation} of a trace with more data
+ * files than there are bytes in a checkpoint for their offsets
+ *
+ * @author Matthew Khouzam
+ */
+public class UfLocationTest {
+
+    /* More than ITmfCheckpoint.MAX_SERIALIZE_SIZE / Long.BYTES */
+    private static final int NB_FILES = 300;
+    private static final int NB_RECORDS = 6;
+    private static final long ENTRY = 5 << 3;
+
+    private File fDir = new File("");
+
+    /**
+     * Write the data files. The threads have records at the same times, and
+     * each thread has two records at the same time.
+     *
+     * @throws IOException
+     *             the files cannot be written
+     */
+    @Before
+    public void setUp() throws IOException {
+        fDir = Files.createTempDirectory("uftrace").toFile();
+        for (int i = 0; i < NB_FILES; i++) {
+            ByteBuffer buffer = ByteBuffer.allocate(NB_RECORDS * 2 * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int k = 0; k < NB_RECORDS; k++) {
+                long time = 10 * Math.min(k, NB_RECORDS - 2) + i % 5;
+                buffer.putLong(time);
+                buffer.putLong(ENTRY | (k << 6) | ((long) (i * NB_RECORDS + k) << 16));
+            }
+            try (FileOutputStream output = new FileOutputStream(new File(fDir, (1000 + i) + ".dat"))) {
+                output.write(buffer.array());
+            }
+        }
+    }
+
+    /**
+     * Delete the data files
+     */
+    @After
+    public void tearDown() {
+        File[] files = fDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        fDir.delete();
+    }
+
+    /**
+     * Save the location of every event and read it back. The checkpoints
+     * must all have the size of the trace, the restored locations must be
+     * the same and seeking them must read the same event.
+     *
+     * @throws TmfTraceException
+     *             the trace cannot be opened
+     */
+    @Test
+    public void testCheckpoints() throws TmfTraceException {
+        Uftrace uft = new Uftrace();
+        try {
+            uft.initTrace(null, fDir.getAbsolutePath(), TmfEvent.class);
+            int checkpointSize = uft.getCheckpointSize();
+            assertTrue(checkpointSize <= ITmfCheckpoint.MAX_SERIALIZE_SIZE);
+
+            ITmfContext ctx = uft.seekEvent(0);
+            List<ITmfLocation> locations = new ArrayList<>();
+            List<ITmfEvent> events = new ArrayList<>();
+            ITmfEvent event;
+            do {
+                locations.add(ctx.getLocation());
+                event = uft.getNext(ctx);
+                if (event != null) {
+                    events.add(event);
+                }
+            } while (event != null);
+            assertEquals(NB_FILES * NB_RECORDS, events.size());
+
+            for (int i = 0; i < locations.size(); i++) {
+                ITmfLocation location = locations.get(i);
+                ByteBuffer buffer = ByteBuffer.allocate(ITmfCheckpoint.MAX_SERIALIZE_SIZE);
+                new TmfCheckpoint(TmfTimestamp.fromNanos(0L), location, i).serialize(buffer);
+                assertEquals(checkpointSize, buffer.position());
+
+                buffer.clear();
+                location.serialize(buffer);
+                buffer.flip();
+                ITmfLocation restored = uft.restoreLocation(buffer);
+                assertEquals(location, restored);
+
+                ITmfEvent next = uft.getNext(uft.seekEvent(restored));
+                if (i < events.size()) {
+                    assertNotNull(next);
+                    assertEventEquals(events.get(i), next);
+                } else {
+                    assertNull(next);
+                }
+            }
+        } finally {
+            uft.dispose();
+        }
+    }
+
+    private static void assertEventEquals(ITmfEvent expected, ITmfEvent actual) {
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(((UfEvent) expected).getTid(), ((UfEvent) actual).getTid());
+        assertEquals(((UfEvent) expected).getAddress(), ((UfEvent) actual).getAddress());
+    }
+}
@@ -13,19 +13,23 @@ import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.event.aspect.LinuxTidAspect;
 import org.eclipse.tracecompass.incubator.callstack.core.instrumented.statesystem.CallStackStateProvider;
-import org.eclipse.tracecompass.incubator.internal.uftrace.core.trace.DatEvent;
+import org.eclipse.tracecompass.incubator.internal.uftrace.core.trace.TaskParser;
+import org.eclipse.tracecompass.incubator.internal.uftrace.core.trace.UfEvent;
 import org.eclipse.tracecompass.incubator.internal.uftrace.core.trace.UfEventType;
+import org.eclipse.tracecompass.incubator.internal.uftrace.core.trace.Uftrace;
 import org.eclipse.tracecompass.incubator.internal.uftrace.core.trace.Uftrace.ExecAspect;
 import org.eclipse.tracecompass.incubator.internal.uftrace.core.trace.Uftrace.PidAspect;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
-import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
 import org.eclipse.tracecompass.tmf.core.event.aspect.MultiAspect;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 
 /**
- * UFTrace callstack provider
+ * UFTrace callstack provider. The function addresses and thread IDs are read
+ * directly from the {@link UfEvent}s, without building their content. The
+ * process of a thread is looked up in the trace's tasks once per run of
+ * events of that thread.
  *
  * @author Matthew Khouzam
  */
@@ -35,6 +39,12 @@ public class UfCallstackProvider extends CallStackStateProvider {
     private final ITmfEventAspect<String> fExecAspect;
     private final ITmfEventAspect<Integer> fTidAspect;
     private final ITmfEventAspect<Integer> fPidAspect;
+    private final @Nullable TaskParser fTasks;
+
+    /* The process of the thread of the last event */
+    private int fLastTid = -1;
+    private int fLastPid = -1;
+    private @Nullable String fLastExec = null;
 
     /**
      * Constructor
@@ -47,6 +57,7 @@ public class UfCallstackProvider extends CallStackStateProvider {
         fExecAspect = (ITmfEventAspect<String>) MultiAspect.<String>create(TmfTraceUtils.getEventAspects(trace, ExecAspect.class), ExecAspect.class);
         fTidAspect = (ITmfEventAspect<Integer>) MultiAspect.<Integer>create(TmfTraceUtils.getEventAspects(trace, LinuxTidAspect.class), LinuxTidAspect.class);
         fPidAspect = (ITmfEventAspect<Integer>) MultiAspect.<Integer>create(TmfTraceUtils.getEventAspects(trace, PidAspect.class), PidAspect.class);
+        fTasks = (trace instanceof Uftrace) ? ((Uftrace) trace).getTasks() : null;
     }
 
     @Override
@@ -66,43 +77,54 @@ public class UfCallstackProvider extends CallStackStateProvider {
 
     @Override
     protected @Nullable Object functionEntry(@NonNull ITmfEvent event) {
-        ITmfEventField content = event.getContent();
-        Object payload = content.getValue();
-        if (payload instanceof DatEvent) {
-            DatEvent ev = (DatEvent) payload;
-            if (event.getType().equals(UfEventType.ENTRY)) {
-                return ev.getAddress();
-            }
+        if (event instanceof UfEvent && event.getType() == UfEventType.ENTRY) {
+            return ((UfEvent) event).getAddress();
         }
         return null;
     }
 
     @Override
     protected @Nullable Object functionExit(@NonNull ITmfEvent event) {
-        ITmfEventField content = event.getContent();
-        Object payload = content.getValue();
-        if (payload instanceof DatEvent) {
-            DatEvent ev = (DatEvent) payload;
-            if (event.getType().equals(UfEventType.EXIT)) {
-                return ev.getAddress();
-            }
+        if (event instanceof UfEvent && event.getType() == UfEventType.EXIT) {
+            return ((UfEvent) event).getAddress();
         }
         return null;
     }
 
     @Override
     protected @Nullable String getProcessName(@NonNull ITmfEvent event) {
+        if (event instanceof UfEvent && fTasks != null) {
+            updateProcess(((UfEvent) event).getTid());
+            return fLastExec;
+        }
         return fExecAspect.resolve(event);
     }
 
     @Override
     protected int getProcessId(@NonNull ITmfEvent event) {
+        if (event instanceof UfEvent && fTasks != null) {
+            updateProcess(((UfEvent) event).getTid());
+            return fLastPid;
+        }
         Integer resolve = fPidAspect.resolve(event);
         return resolve == null ? -1 : resolve.intValue();
     }
 
+    private void updateProcess(int tid) {
+        TaskParser tasks = fTasks;
+        if (tid == fLastTid || tasks == null) {
+            return;
+        }
+        fLastTid = tid;
+        fLastPid = tasks.getPid(tid);
+        fLastExec = tasks.getExecName(tid);
+    }
+
     @Override
     protected long getThreadId(@NonNull ITmfEvent event) {
+        if (event instanceof UfEvent) {
+            return ((UfEvent) event).getTid();
+        }
         Integer resolve = fTidAspect.resolve(event);
         return resolve == null ? -1 : resolve.longValue();
     }
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.uftrace.core.trace;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * Cursor over the records of a data (.dat) file. The fields of the current
+ * record are decoded on demand from two longs, so reading a file does not
+ * create any object per record.
+ *
+ * Records with an invalid magic number are skipped.
+ *
+ * @author Matthew Khouzam
+ */
+@NonNullByDefault
+public final class DatCursor {
+
+    private final ByteBuffer fBuffer;
+    private final int fTid;
+    private long fOffset;
+    private long fTime;
+    private long fPayload;
+
+    /**
+     * Constructor, use {@link DatParser#cursor(long)}
+     *
+     * @param buffer
+     *            a view of the file, in little endian order
+     * @param tid
+     *            the thread ID of the file
+     * @param offset
+     *            the offset of the first record to read
+     */
+    DatCursor(ByteBuffer buffer, int tid, long offset) {
+        fBuffer = buffer;
+        fBuffer.position((int) Math.min(offset, buffer.limit()));
+        fTid = tid;
+        fOffset = fBuffer.position();
+    }
+
+    /**
+     * Move to the next record
+     *
+     * @return true if there is a record, false at the end of the file
+     */
+    public boolean next() {
+        while (fBuffer.remaining() >= DatParser.RECORD_SIZE) {
+            fOffset = fBuffer.position();
+            fTime = fBuffer.getLong();
+            fPayload = fBuffer.getLong();
+            if (DatEvent.isValid(fPayload)) {
+                return true;
+            }
+        }
+        fOffset = fBuffer.position();
+        return false;
+    }
+
+    /**
+     * Get the offset of the current record, or of the end of the records once
+     * {@link #next()} returned false
+     *
+     * @return the offset in bytes
+     */
+    public long getOffset() {
+        return fOffset;
+    }
+
+    /**
+     * Get the timestamp of the current record
+     *
+     * @return the time in nanoseconds
+     */
+    public long getTime() {
+        return fTime;
+    }
+
+    /**
+     * Get the raw payload of the current record
+     *
+     * @return the payload, to decode with {@link DatEvent}'s methods
+     */
+    public long getPayload() {
+        return fPayload;
+    }
+
+    /**
+     * Get the type of the current record
+     *
+     * @return the type, 0 for entry, 1 for exit, 2 for event and 3 for lost
+     */
+    public int getType() {
+        return DatEvent.typeOf(fPayload);
+    }
+
+    /**
+     * Get the call stack depth of the current record
+     *
+     * @return the depth
+     */
+    public int getDepth() {
+        return DatEvent.depthOf(fPayload);
+    }
+
+    /**
+     * Get the function address of the current record
+     *
+     * @return the address
+     */
+    public long getAddress() {
+        return DatEvent.addressOf(fPayload);
+    }
+
+    /**
+     * Get the thread ID of the records
+     *
+     * @return the TID
+     */
+    public int getTid() {
+        return fTid;
+    }
+}
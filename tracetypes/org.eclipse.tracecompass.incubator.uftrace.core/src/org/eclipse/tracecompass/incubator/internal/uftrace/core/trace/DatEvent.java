@@ -111,22 +111,73 @@ public class DatEvent {
      * @return an event
      */
     public static @Nullable DatEvent create(long nanoseconds, long payload, int tid) {
-        String type = TYPES[(int) (payload & TYPE_MASK)];
-        if (type == null) {
-            throw new IllegalStateException("Trace type cannot be null"); //$NON-NLS-1$
-        }
-        boolean moreData = (payload & MARKER_MASK) == MARKER_MASK;
-        int magic = (int) ((payload & MAGIC_MASK) >>> 3);
-        int depth = (int) ((payload & DEPTH_MASK) >>> 6);
-        long address = (payload & ADDRESS_MASK) >>> 16;
-        if (magic != UFTRACE_MAGIC_NUMBER) {
+        if (!isValid(payload)) {
             return null;
         }
-        if (moreData) {
+        if ((payload & MARKER_MASK) == MARKER_MASK) {
             // TODO: do something here
             // it seems undefined at the moment in the spec
         }
-        return new DatEvent(nanoseconds, type, depth, address, tid);
+        return new DatEvent(nanoseconds, getTypeName(typeOf(payload)), depthOf(payload), addressOf(payload), tid);
+    }
+
+    /**
+     * Check the magic number of a payload
+     *
+     * @param payload
+     *            the second half of a record
+     * @return true if the record is valid
+     */
+    public static boolean isValid(long payload) {
+        return ((payload & MAGIC_MASK) >>> 3) == UFTRACE_MAGIC_NUMBER;
+    }
+
+    /**
+     * Decode the type of a payload
+     *
+     * @param payload
+     *            the second half of a record
+     * @return the type, 0 for entry, 1 for exit, 2 for event and 3 for lost
+     */
+    public static int typeOf(long payload) {
+        return (int) (payload & TYPE_MASK);
+    }
+
+    /**
+     * Decode the call stack depth of a payload
+     *
+     * @param payload
+     *            the second half of a record
+     * @return the depth
+     */
+    public static int depthOf(long payload) {
+        return (int) ((payload & DEPTH_MASK) >>> 6);
+    }
+
+    /**
+     * Decode the function address of a payload
+     *
+     * @param payload
+     *            the second half of a record
+     * @return the address
+     */
+    public static long addressOf(long payload) {
+        return (payload & ADDRESS_MASK) >>> 16;
+    }
+
+    /**
+     * Get the name of a type
+     *
+     * @param type
+     *            the type, as returned by {@link #typeOf(long)}
+     * @return the name of the type
+     */
+    public static String getTypeName(int type) {
+        String name = TYPES[type];
+        if (name == null) {
+            throw new IllegalStateException("Trace type cannot be null"); //$NON-NLS-1$
+        }
+        return name;
     }
 
     private DatEvent(long nanoseconds, String type, int depth, long address, int tid) {
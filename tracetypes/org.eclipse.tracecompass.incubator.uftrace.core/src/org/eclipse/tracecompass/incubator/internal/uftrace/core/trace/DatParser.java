@@ -11,12 +11,14 @@ package org.eclipse.tracecompass.incubator.internal.uftrace.core.trace;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.MappedByteBuffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.file.StandardOpenOption;
 import java.util.NoSuchElementException;
 
 import org.apache.commons.lang3.math.NumberUtils;
+import org.eclipse.jdt.annotation.Nullable;
 
 import com.google.common.collect.PeekingIterator;
 
@@ -43,8 +45,15 @@ import com.google.common.collect.PeekingIterator;
  */
 public class DatParser implements Iterable<DatEvent> {
 
+    /**
+     * Size of a record: a timestamp and a payload
+     */
+    public static final int RECORD_SIZE = Long.BYTES * 2;
+
     private final File fFile;
     private final long fStart;
+    private final int fTid;
+    private @Nullable ByteBuffer fBuffer = null;
 
     /**
      * Data event parser
@@ -67,50 +76,137 @@ public class DatParser implements Iterable<DatEvent> {
     public DatParser(File file, long start) {
         fFile = file;
         fStart = start;
+        fTid = NumberUtils.toInt(file.getName().substring(0, file.getName().length() - 4));
+    }
+
+    /**
+     * Get the thread ID of the events of this file
+     *
+     * @return the TID
+     */
+    public int getTid() {
+        return fTid;
+    }
+
+    /**
+     * Get a buffer of the file content, positioned at the start of the file.
+     * The file is only mapped once, every call returns a new view of the
+     * mapping which can be used independently.
+     *
+     * @return the buffer, in little endian order
+     */
+    public synchronized ByteBuffer getBuffer() {
+        ByteBuffer buffer = fBuffer;
+        if (buffer == null) {
+            try (FileChannel fc = FileChannel.open(fFile.toPath(), StandardOpenOption.READ)) {
+                buffer = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+                if (buffer == null) {
+                    throw new IllegalStateException("cannot create a byte buffer!"); //$NON-NLS-1$
+                }
+                fBuffer = buffer;
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Get the size of the records in the file
+     *
+     * @return the size in bytes, a multiple of {@link #RECORD_SIZE}
+     */
+    public long size() {
+        return getBuffer().limit() / RECORD_SIZE * RECORD_SIZE;
+    }
+
+    /**
+     * Get the timestamp of a record
+     *
+     * @param offset
+     *            the offset of the record, smaller than {@link #size()}
+     * @return the timestamp in nanoseconds
+     */
+    public long getTimestamp(long offset) {
+        return getBuffer().getLong((int) offset);
+    }
+
+    /**
+     * Find the first record at or after a time. The records of a file are in
+     * chronological order, so this is a binary search.
+     *
+     * @param timestamp
+     *            the time in nanoseconds
+     * @return the offset of the first record whose timestamp is greater or
+     *         equal to the time, or {@link #size()} if there are none
+     */
+    public long findOffset(long timestamp) {
+        ByteBuffer bb = getBuffer();
+        int low = 0;
+        int high = bb.limit() / RECORD_SIZE;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bb.getLong(mid * RECORD_SIZE) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return (long) low * RECORD_SIZE;
+    }
+
+    /**
+     * Get a cursor over the records of the file
+     *
+     * @param offset
+     *            the offset of the first record to read
+     * @return the cursor, call {@link DatCursor#next()} to read the first
+     *         record
+     */
+    public DatCursor cursor(long offset) {
+        return new DatCursor(getBuffer(), fTid, offset);
     }
 
     @Override
     public PeekingIterator<DatEvent> iterator() {
+        ByteBuffer bb = getBuffer();
+        bb.position((int) fStart);
+        return new PeekingIterator<DatEvent>() {
+
+            private @Nullable DatEvent fCurrent = null;
 
-        try (FileChannel fc = FileChannel.open(fFile.toPath(), StandardOpenOption.READ)) {
-            MappedByteBuffer bb = fc.map(FileChannel.MapMode.READ_ONLY, fStart, fc.size());
-            if (bb == null) {
-                throw new IllegalStateException("cannot create a byte buffer!"); //$NON-NLS-1$
+            @Override
+            public DatEvent next() {
+                DatEvent current = peek();
+                fCurrent = null;
+                return current;
             }
-            return new PeekingIterator<DatEvent>() {
 
-                DatEvent fCurrent = null;
+            @Override
+            public boolean hasNext() {
+                return fCurrent != null || bb.remaining() >= RECORD_SIZE;
+            }
 
-                @Override
-                public DatEvent next() {
+            @Override
+            public DatEvent peek() {
+                DatEvent current = fCurrent;
+                if (current == null) {
                     if (!hasNext()) {
                         throw new NoSuchElementException("no more data"); //$NON-NLS-1$
                     }
-                    fCurrent = DatEvent.create(bb,
-                            NumberUtils.toInt(fFile.getName().substring(0, fFile.getName().length() - 4)));
-                    return fCurrent;
-                }
-
-                @Override
-                public boolean hasNext() {
-                    return bb.remaining() > Long.BYTES * 2;
-                }
-
-                @Override
-                public DatEvent peek() {
-                    if (fCurrent == null && hasNext()) {
-                        return next();
+                    current = DatEvent.create(bb, fTid);
+                    if (current == null) {
+                        throw new IllegalArgumentException("bad magic number"); //$NON-NLS-1$
                     }
-                    return fCurrent;
+                    fCurrent = current;
                 }
+                return current;
+            }
 
-                @Override
-                public void remove() {
-                    throw new UnsupportedOperationException("can't"); //$NON-NLS-1$
-                }
-            };
-        } catch (IOException e) {
-            throw new IllegalStateException(e);
-        }
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("can't"); //$NON-NLS-1$
+            }
+        };
     }
 }
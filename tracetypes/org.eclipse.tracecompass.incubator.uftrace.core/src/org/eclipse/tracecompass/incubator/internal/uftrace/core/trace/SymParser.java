@@ -11,13 +11,12 @@ package org.eclipse.tracecompass.incubator.internal.uftrace.core.trace;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.NavigableMap;
-import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.LineIterator;
+import org.eclipse.jdt.annotation.Nullable;
 
 /**
  *
@@ -32,7 +31,8 @@ import org.apache.commons.io.LineIterator;
  *
  */
 public class SymParser {
-    private static final Pattern REGEX = Pattern.compile("^([a-fA-F\\d]+)\\s+([PTptw])\\s*(.*)$"); //$NON-NLS-1$
+
+    private static final String VALID_TYPES = "PTptw"; //$NON-NLS-1$
 
     /**
      * Symbol for
@@ -65,7 +65,14 @@ public class SymParser {
 
     }
 
-    private final NavigableMap<Long, Symbol> fMap = new TreeMap<>();
+    /* Sorted addresses, and the symbols at the same index */
+    private final long[] fAddresses;
+    private final Symbol[] fSymbols;
+
+    private SymParser(long[] addresses, Symbol[] symbols) {
+        fAddresses = addresses;
+        fSymbols = symbols;
+    }
 
     /**
      * Parse a file to get a symbol
@@ -77,29 +84,136 @@ public class SymParser {
      *             the file is not able to be read.
      */
     public static SymParser parse(File file) throws IOException {
+        return parse(file, UnaryOperator.identity());
+    }
+
+    /**
+     * Parse a file to get a symbol
+     *
+     * @param file
+     *            the symbol file
+     * @param pool
+     *            the string pool for the symbol names, must be thread safe if
+     *            files are parsed concurrently
+     * @return the parser
+     * @throws IOException
+     *             the file is not able to be read.
+     */
+    public static SymParser parse(File file, UnaryOperator<String> pool) throws IOException {
+        long[] addresses = new long[256];
+        Symbol[] symbols = new Symbol[256];
+        int size = 0;
+        boolean sorted = true;
         LineIterator iter = FileUtils.lineIterator(file);
-        SymParser sp = new SymParser();
-        while (iter.hasNext()) {
-            String line = iter.next();
-            Matcher match = REGEX.matcher(line);
-            if (!match.matches()) {
-                throw new IllegalArgumentException("invalid " + line); //$NON-NLS-1$
+        try {
+            while (iter.hasNext()) {
+                String line = iter.next();
+                /* Equivalent of "^([a-fA-F\\d]+)\\s+([PTptw])\\s*(.*)$" */
+                int pos = 0;
+                int length = line.length();
+                long address = 0;
+                while (pos < length && hexValue(line.charAt(pos)) >= 0) {
+                    address = (address << 4) | hexValue(line.charAt(pos));
+                    pos++;
+                }
+                int end = pos;
+                while (pos < length && Character.isWhitespace(line.charAt(pos))) {
+                    pos++;
+                }
+                if (end == 0 || pos == end || pos >= length || VALID_TYPES.indexOf(line.charAt(pos)) < 0) {
+                    throw new IllegalArgumentException("invalid " + line); //$NON-NLS-1$
+                }
+                char type = line.charAt(pos++);
+                while (pos < length && Character.isWhitespace(line.charAt(pos))) {
+                    pos++;
+                }
+                if (size == addresses.length) {
+                    addresses = Arrays.copyOf(addresses, size * 2);
+                    symbols = Arrays.copyOf(symbols, size * 2);
+                }
+                sorted &= size == 0 || addresses[size - 1] <= address;
+                addresses[size] = address;
+                symbols[size] = new Symbol(type, pool.apply(pos < length ? line.substring(pos) : "")); //$NON-NLS-1$
+                size++;
+            }
+        } finally {
+            iter.close();
+        }
+        if (!sorted) {
+            sort(addresses, symbols, size);
+        }
+        /* Keep the last symbol of an address, like a map would */
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (count > 0 && addresses[count - 1] == addresses[i]) {
+                count--;
+            }
+            addresses[count] = addresses[i];
+            symbols[count] = symbols[i];
+            count++;
+        }
+        return new SymParser(Arrays.copyOf(addresses, count), Arrays.copyOf(symbols, count));
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static void sort(long[] addresses, Symbol[] symbols, int size) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        /* Stable, so duplicate addresses keep their order */
+        Arrays.sort(order, (o1, o2) -> Long.compare(addresses[o1], addresses[o2]));
+        long[] sortedAddresses = new long[size];
+        Symbol[] sortedSymbols = new Symbol[size];
+        for (int i = 0; i < size; i++) {
+            sortedAddresses[i] = addresses[order[i]];
+            sortedSymbols[i] = symbols[order[i]];
+        }
+        System.arraycopy(sortedAddresses, 0, addresses, 0, size);
+        System.arraycopy(sortedSymbols, 0, symbols, 0, size);
+    }
+
+    /**
+     * Get the symbol at or before an address
+     *
+     * @param address
+     *            the address, as an offset in the binary
+     * @return the symbol, or null if the address is before the first symbol
+     */
+    public @Nullable Symbol floor(long address) {
+        int low = 0;
+        int high = fAddresses.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (fAddresses[mid] <= address) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
             }
-            long range = Long.parseUnsignedLong(match.group(1), 16);
-            char c = match.group(2).charAt(0);
-            String name = (match.groupCount() < 3) ? "Anonymous" : match.group(3); //$NON-NLS-1$
-            Symbol sym = new Symbol(c, name);
-            sp.fMap.put(range, sym);
         }
-        return sp;
+        return found < 0 ? null : fSymbols[found];
     }
 
     /**
-     * Get the map of symbols for addresses.
+     * Get the number of symbols
      *
-     * @return the symbol for an address
+     * @return the number of symbols
      */
-    public NavigableMap<Long, Symbol> getMap() {
-        return fMap;
+    public int size() {
+        return fAddresses.length;
     }
 }
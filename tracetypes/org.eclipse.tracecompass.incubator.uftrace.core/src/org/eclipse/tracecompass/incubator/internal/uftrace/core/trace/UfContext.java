@@ -9,50 +9,77 @@
 
 package org.eclipse.tracecompass.incubator.internal.uftrace.core.trace;
 
+import java.util.List;
 import java.util.PriorityQueue;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
-import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
-import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
-import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
-import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
-import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
-
-import com.google.common.collect.PeekingIterator;
 
 /**
- * Naive context
+ * Context merging the data files of a trace. The merge can start at any
+ * offsets in the data files, so seeking a {@link UfLocation} does not need to
+ * read the trace from the start.
  *
  * @author Matthew Khouzam
  *
  */
 public class UfContext extends TmfContext {
 
-    private PriorityQueue<PeekingIterator<DatEvent>> fQueue = new PriorityQueue<>(
-            (o1, o2) -> Long.compare(o1.peek().getTime(), o2.peek().getTime()));
-    private ITmfTrace fTrace;
+    private final PriorityQueue<DatStream> fQueue = new PriorityQueue<>();
+    private final DatStream[] fStreams;
+    private final ITmfTrace fTrace;
+
+    /**
+     * Constructor, the context starts at the beginning of the data files
+     *
+     * @param dats
+     *            data streams
+     * @param trace
+     *            trace
+     */
+    public UfContext(List<DatParser> dats, ITmfTrace trace) {
+        this(dats, new long[dats.size()], trace);
+    }
 
     /**
      * Constructor
      *
      * @param dats
      *            data streams
+     * @param offsets
+     *            the offset of the next record to read in each data stream
      * @param trace
      *            trace
      */
-    public UfContext(Iterable<DatParser> dats, ITmfTrace trace) {
+    public UfContext(List<DatParser> dats, long[] offsets, ITmfTrace trace) {
         fTrace = trace;
-        for (DatParser dp : dats) {
-            fQueue.add(dp.iterator());
+        fStreams = new DatStream[dats.size()];
+        for (int i = 0; i < fStreams.length; i++) {
+            DatStream stream = new DatStream(dats.get(i).cursor(offsets[i]), i);
+            fStreams[i] = stream;
+            if (stream.fCursor.next()) {
+                fQueue.add(stream);
+            }
         }
     }
 
-    @Override
-    public @Nullable TmfLongLocation getLocation() {
-        return (@Nullable TmfLongLocation) super.getLocation();
+    /**
+     * Get the location of the next event to read
+     *
+     * @return the location
+     */
+    public UfLocation getPosition() {
+        long[] offsets = new long[fStreams.length];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = fStreams[i].fCursor.getOffset();
+        }
+        DatStream next = fQueue.peek();
+        if (next == null) {
+            return new UfLocation(offsets, Long.MAX_VALUE, offsets.length);
+        }
+        return new UfLocation(offsets, next.fCursor.getTime(), next.fIndex);
     }
 
     /**
@@ -60,25 +87,37 @@ public class UfContext extends TmfContext {
      *
      * @return the next event or null
      */
-    public ITmfEvent getNext() {
-        PeekingIterator<DatEvent> eventSource = fQueue.poll();
-        if (eventSource != null) {
-            DatEvent event = eventSource.next();
-            if (eventSource.hasNext()) {
-                fQueue.add(eventSource);
-            }
-            TmfEvent tmfEvent = new TmfEvent(fTrace, getRank(), TmfTimestamp.fromNanos(event.getTime()),
-                    UfEventType.lookup(event.getType()),
-                    new TmfEventField(ITmfEventField.ROOT_FIELD_ID, event, null));
-            TmfLongLocation location = getLocation();
-            if (location != null) {
-                setLocation(new TmfLongLocation(location.getLocationInfo() + Long.BYTES * 2));
-            } else {
-                setLocation(new TmfLongLocation(Long.BYTES * 2));
-            }
-            return tmfEvent;
+    public @Nullable ITmfEvent getNext() {
+        DatStream eventSource = fQueue.poll();
+        if (eventSource == null) {
+            return null;
+        }
+        DatCursor cursor = eventSource.fCursor;
+        UfEvent event = new UfEvent(fTrace, getRank(), cursor.getTime(), cursor.getPayload(), cursor.getTid());
+        if (cursor.next()) {
+            fQueue.add(eventSource);
         }
-        return null;
+        return event;
     }
 
+    /**
+     * Data file being merged. Streams are ordered by the time of their current
+     * record, then by their index so that the merge order does not depend on
+     * where it started.
+     */
+    private static final class DatStream implements Comparable<DatStream> {
+        private final DatCursor fCursor;
+        private final int fIndex;
+
+        public DatStream(DatCursor cursor, int index) {
+            fCursor = cursor;
+            fIndex = index;
+        }
+
+        @Override
+        public int compareTo(DatStream other) {
+            int compare = Long.compare(fCursor.getTime(), other.fCursor.getTime());
+            return compare != 0 ? compare : Integer.compare(fIndex, other.fIndex);
+        }
+    }
 }
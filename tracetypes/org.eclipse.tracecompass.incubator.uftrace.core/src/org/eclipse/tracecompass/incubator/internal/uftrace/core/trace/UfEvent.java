@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.uftrace.core.trace;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * Event of a uftrace record. The record is kept as the raw payload and
+ * decoded by the getters, the content with a {@link DatEvent} is only built
+ * when requested.
+ *
+ * @author Matthew Khouzam
+ */
+@NonNullByDefault
+public class UfEvent extends TmfEvent {
+
+    private final long fPayload;
+    private final int fTid;
+    private @Nullable ITmfEventField fContent = null;
+
+    /**
+     * Constructor
+     *
+     * @param trace
+     *            the trace
+     * @param rank
+     *            the rank of the event
+     * @param time
+     *            the timestamp in nanoseconds
+     * @param payload
+     *            the raw payload of the record
+     * @param tid
+     *            the thread ID of the record
+     */
+    public UfEvent(ITmfTrace trace, long rank, long time, long payload, int tid) {
+        /* The content is built lazily */
+        super(trace, rank, TmfTimestamp.fromNanos(time), UfEventType.fromType(DatEvent.typeOf(payload)), null);
+        fPayload = payload;
+        fTid = tid;
+    }
+
+    /**
+     * Get the thread ID
+     *
+     * @return the TID
+     */
+    public int getTid() {
+        return fTid;
+    }
+
+    /**
+     * Get the call stack depth
+     *
+     * @return the depth
+     */
+    public int getDepth() {
+        return DatEvent.depthOf(fPayload);
+    }
+
+    /**
+     * Get the function address
+     *
+     * @return the address
+     */
+    public long getAddress() {
+        return DatEvent.addressOf(fPayload);
+    }
+
+    @Override
+    public ITmfEventField getContent() {
+        ITmfEventField content = fContent;
+        if (content == null) {
+            content = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, DatEvent.create(getTimestamp().toNanos(), fPayload, fTid), null);
+            fContent = content;
+        }
+        return content;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * super.hashCode() + Long.hashCode(fPayload)) + fTid;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (!super.equals(obj) || !(obj instanceof UfEvent)) {
+            return false;
+        }
+        UfEvent other = (UfEvent) obj;
+        return fPayload == other.fPayload && fTid == other.fTid;
+    }
+}
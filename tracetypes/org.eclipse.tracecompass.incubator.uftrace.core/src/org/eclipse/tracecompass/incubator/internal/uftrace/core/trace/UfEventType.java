@@ -42,10 +42,23 @@ public class UfEventType extends TmfEventType {
     /** The event types */
     public static final Set<? extends ITmfEventType> TYPES = ImmutableSet.of(UfEventType.ENTRY, UfEventType.EXIT, UfEventType.EVENT, UfEventType.LOST);
 
+    private static final UfEventType[] BY_TYPE = { ENTRY, EXIT, EVENT, LOST };
+
     private UfEventType(String name) {
         super(name, ROOT);
     }
 
+    /**
+     * Get the event type of a decoded record type
+     *
+     * @param type
+     *            the type, as returned by {@link DatEvent#typeOf(long)}
+     * @return the event type
+     */
+    public static UfEventType fromType(int type) {
+        return BY_TYPE[type];
+    }
+
     /**
      * Lookup the event type from the name
      *
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.uftrace.core.trace;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+
+/**
+ * Location in a uftrace, made of the offsets in every data file. It can be
+ * serialized, so the checkpoints of the trace index are saved on disk. Only
+ * the next record to read is serialized, so the size of a checkpoint does not
+ * depend on the number of data files; the other offsets are found again from
+ * its time by {@link Uftrace#restoreLocation(ByteBuffer)}.
+ *
+ * @author Matthew Khouzam
+ */
+@NonNullByDefault
+public final class UfLocation implements ITmfLocation {
+
+    private final UfLocationInfo fInfo;
+
+    /**
+     * Constructor
+     *
+     * @param offsets
+     *            the offset of the next record of each data file
+     * @param nextTime
+     *            the timestamp of the next record to read
+     * @param nextIndex
+     *            the index of the data file of the next record to read, the
+     *            number of data files if all the records were read
+     */
+    public UfLocation(long[] offsets, long nextTime, int nextIndex) {
+        fInfo = new UfLocationInfo(offsets, nextTime, nextIndex);
+    }
+
+    @Override
+    public UfLocationInfo getLocationInfo() {
+        return fInfo;
+    }
+
+    @Override
+    public void serialize(ByteBuffer bufferOut) {
+        int nextIndex = fInfo.getNextIndex();
+        bufferOut.putLong(fInfo.getNextTime());
+        bufferOut.putInt(nextIndex);
+        bufferOut.putLong(nextIndex < fInfo.getCount() ? fInfo.getOffset(nextIndex) : 0L);
+    }
+
+    @Override
+    public int hashCode() {
+        return fInfo.hashCode();
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof UfLocation)) {
+            return false;
+        }
+        return fInfo.equals(((UfLocation) obj).fInfo);
+    }
+
+    @Override
+    public String toString() {
+        return "UfLocation [" + fInfo + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+}
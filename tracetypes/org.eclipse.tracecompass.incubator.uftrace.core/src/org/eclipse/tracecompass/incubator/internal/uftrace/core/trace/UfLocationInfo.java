@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.uftrace.core.trace;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The state of the merge of the data files: the offset of the next record to
+ * read in each data file, in the order of the trace's data files.
+ *
+ * Every record is read once when merging, so the locations are ordered by the
+ * total number of bytes read. The merge reads the records by time, then by
+ * data file, so the next record to read is enough to find all the offsets.
+ *
+ * @author Matthew Khouzam
+ */
+@NonNullByDefault
+public final class UfLocationInfo implements Comparable<UfLocationInfo> {
+
+    private final long[] fOffsets;
+    private final long fTotal;
+    private final long fNextTime;
+    private final int fNextIndex;
+
+    /**
+     * Constructor
+     *
+     * @param offsets
+     *            the offset of the next record of each data file, the array
+     *            is not copied
+     * @param nextTime
+     *            the timestamp of the next record to read
+     * @param nextIndex
+     *            the index of the data file of the next record to read, the
+     *            number of data files if all the records were read
+     */
+    public UfLocationInfo(long[] offsets, long nextTime, int nextIndex) {
+        fOffsets = offsets;
+        fNextTime = nextTime;
+        fNextIndex = nextIndex;
+        long total = 0;
+        for (long offset : offsets) {
+            total += offset;
+        }
+        fTotal = total;
+    }
+
+    /**
+     * Get the number of data files
+     *
+     * @return the number of offsets
+     */
+    public int getCount() {
+        return fOffsets.length;
+    }
+
+    /**
+     * Get the offset of the next record of a data file
+     *
+     * @param index
+     *            the index of the data file
+     * @return the offset in bytes
+     */
+    public long getOffset(int index) {
+        return fOffsets[index];
+    }
+
+    /**
+     * Get the number of bytes read in all the data files
+     *
+     * @return the sum of the offsets
+     */
+    public long getTotal() {
+        return fTotal;
+    }
+
+    /**
+     * Get the timestamp of the next record to read
+     *
+     * @return the time in nanoseconds
+     */
+    public long getNextTime() {
+        return fNextTime;
+    }
+
+    /**
+     * Get the data file of the next record to read
+     *
+     * @return the index of the data file, or {@link #getCount()} if all the
+     *         records were read
+     */
+    public int getNextIndex() {
+        return fNextIndex;
+    }
+
+    @Override
+    public int compareTo(UfLocationInfo other) {
+        int compare = Long.compare(fTotal, other.fTotal);
+        for (int i = 0; compare == 0 && i < Math.min(fOffsets.length, other.fOffsets.length); i++) {
+            compare = Long.compare(fOffsets[i], other.fOffsets[i]);
+        }
+        return compare != 0 ? compare : Integer.compare(fOffsets.length, other.fOffsets.length);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(fOffsets);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof UfLocationInfo)) {
+            return false;
+        }
+        return Arrays.equals(fOffsets, ((UfLocationInfo) obj).fOffsets);
+    }
+
+    @Override
+    public String toString() {
+        return "UfLocationInfo " + Arrays.toString(fOffsets); //$NON-NLS-1$
+    }
+}
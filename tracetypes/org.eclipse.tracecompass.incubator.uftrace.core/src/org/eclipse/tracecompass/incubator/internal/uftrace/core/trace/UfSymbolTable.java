@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.uftrace.core.trace;
+
+import java.io.File;
+import java.util.Map;
+import java.util.NavigableMap;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.internal.uftrace.core.trace.SymParser.Symbol;
+import org.eclipse.tracecompass.tmf.core.symbols.TmfResolvedSymbol;
+
+/**
+ * Symbol table of a session, compiled from the session's memory map and the
+ * symbol files of the mapped binaries. The mappings are kept in a sorted array
+ * so resolving an address is two binary searches.
+ *
+ * @author Matthew Khouzam
+ */
+@NonNullByDefault
+final class UfSymbolTable {
+
+    private final long[] fLow;
+    private final @Nullable String[] fPaths;
+    private final @Nullable SymParser[] fSyms;
+
+    /**
+     * Constructor
+     *
+     * @param map
+     *            the memory map of the session
+     * @param syms
+     *            the symbol files, by binary name
+     */
+    public UfSymbolTable(MapParser map, Map<String, SymParser> syms) {
+        NavigableMap<Long, MapEntry> data = map.getData();
+        fLow = new long[data.size()];
+        fPaths = new @Nullable String[data.size()];
+        fSyms = new @Nullable SymParser[data.size()];
+        int i = 0;
+        for (MapEntry entry : data.values()) {
+            String pathName = entry.getPathName();
+            fLow[i] = entry.getAddrLow();
+            fPaths[i] = pathName;
+            if (pathName != null) {
+                fSyms[i] = syms.get(pathName.substring(pathName.lastIndexOf(File.separator) + 1));
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Resolve an address
+     *
+     * @param address
+     *            the address in the process
+     * @return the symbol, or the address in hexadecimal if it cannot be
+     *         resolved
+     */
+    public TmfResolvedSymbol resolve(long address) {
+        int index = floor(address);
+        if (index < 0) {
+            return toHex(address);
+        }
+        String pathName = fPaths[index];
+        SymParser sym = fSyms[index];
+        if (sym == null) {
+            return pathName == null ? toHex(address) : new TmfResolvedSymbol(address, pathName + ":0x" + Long.toHexString(address)); //$NON-NLS-1$
+        }
+        Symbol symbol = sym.floor(address - fLow[index]);
+        if (symbol != null) {
+            return new TmfResolvedSymbol(address, String.valueOf(symbol.getName()));
+        }
+        return toHex(address);
+    }
+
+    /**
+     * Get the symbol of an unresolved address
+     *
+     * @param address
+     *            the address
+     * @return the symbol, named after the address in hexadecimal
+     */
+    public static TmfResolvedSymbol toHex(long address) {
+        return new TmfResolvedSymbol(address, "0x" + Long.toHexString(address)); //$NON-NLS-1$
+    }
+
+    private int floor(long address) {
+        int low = 0;
+        int high = fLow.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (fLow[mid] <= address) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+}
@@ -11,17 +11,18 @@ package org.eclipse.tracecompass.incubator.internal.uftrace.core.trace;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 import org.apache.commons.io.FilenameUtils;
 import org.eclipse.core.resources.IProject;
@@ -34,7 +35,6 @@ import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.event.aspect.LinuxPidAspect;
 import org.eclipse.tracecompass.analysis.os.linux.core.event.aspect.LinuxTidAspect;
 import org.eclipse.tracecompass.incubator.internal.uftrace.core.Activator;
-import org.eclipse.tracecompass.incubator.internal.uftrace.core.trace.SymParser.Symbol;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventType;
 import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
@@ -44,16 +44,21 @@ import org.eclipse.tracecompass.tmf.core.project.model.ITmfPropertiesProvider;
 import org.eclipse.tracecompass.tmf.core.symbols.ISymbolProvider;
 import org.eclipse.tracecompass.tmf.core.symbols.ISymbolProviderFactory;
 import org.eclipse.tracecompass.tmf.core.symbols.TmfResolvedSymbol;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceKnownSize;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceWithPreDefinedEvents;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TraceValidationStatus;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfPersistentlyIndexable;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
-import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Iterables;
 
 /**
@@ -73,16 +78,17 @@ import com.google.common.collect.Iterables;
  * @author Matthew Khouzam
  */
 public class Uftrace extends TmfTrace implements ITmfPropertiesProvider,
-        ITmfTraceKnownSize, ITmfTraceWithPreDefinedEvents {
+        ITmfTraceKnownSize, ITmfTraceWithPreDefinedEvents, ITmfPersistentlyIndexable {
 
-    private Collection<DatParser> fDats = new ArrayList<>();
+    private List<DatParser> fDats = new ArrayList<>();
     private Map<Long, MapParser> fMap = new HashMap<>();
     private Map<String, SymParser> fSyms = new HashMap<>();
     private TaskParser fTasks;
-    private TmfLongLocation fCurrentLoc = new TmfLongLocation(0L);
+    private UfLocation fCurrentLoc = new UfLocation(new long[0], Long.MAX_VALUE, 0);
     private InfoParser fInfo;
 
     private long fSize;
+    private int fCheckpointSize = -1;
 
     private final ISymbolProvider fSymbolProvider = new UfTraceSymbolProvider();
 
@@ -107,8 +113,10 @@ public class Uftrace extends TmfTrace implements ITmfPropertiesProvider,
 
                     @Override
                     public @Nullable Integer resolve(ITmfEvent event) {
-                        DatEvent fieldValue = (DatEvent) event.getContent().getValue();
-                        return fieldValue.getDepth();
+                        if (event instanceof UfEvent) {
+                            return ((UfEvent) event).getDepth();
+                        }
+                        return null;
                     }
                 }, new ITmfEventAspect<String>() {
 
@@ -124,9 +132,9 @@ public class Uftrace extends TmfTrace implements ITmfPropertiesProvider,
 
                     @Override
                     public @Nullable String resolve(ITmfEvent event) {
-                        if (event.getContent().getValue() instanceof DatEvent) {
-                            DatEvent datEvent = (DatEvent) event.getContent().getValue();
-                            TmfResolvedSymbol symbol = fSymbolProvider.getSymbol(datEvent.getTid(), 0, datEvent.getAddress());
+                        if (event instanceof UfEvent) {
+                            UfEvent ufEvent = (UfEvent) event;
+                            TmfResolvedSymbol symbol = fSymbolProvider.getSymbol(ufEvent.getTid(), 0, ufEvent.getAddress());
                             if (symbol != null) {
                                 return symbol.getSymbolName();
                             }
@@ -193,7 +201,11 @@ public class Uftrace extends TmfTrace implements ITmfPropertiesProvider,
             throw new TmfTraceException("trace is not a directory"); //$NON-NLS-1$
         }
         super.initTrace(resource, path, type);
-        for (File child : dir.listFiles()) {
+        /* The order of the data files must be stable for the saved locations */
+        File[] children = dir.listFiles();
+        Arrays.sort(children);
+        List<File> symFiles = new ArrayList<>();
+        for (File child : children) {
             String name = child.getName();
             try {
                 if (name.endsWith(".dat")) { //$NON-NLS-1$
@@ -205,7 +217,7 @@ public class Uftrace extends TmfTrace implements ITmfPropertiesProvider,
                         fMap.put(create.getSessionId(), create);
                     }
                 } else if (name.endsWith(".sym")) { //$NON-NLS-1$
-                    fSyms.put(name.substring(0, name.length() - 4), SymParser.parse(child));
+                    symFiles.add(child);
                 } else if (name.equals("task.txt")) { //$NON-NLS-1$
                     fTasks = new TaskParser(child);
                 } else if (name.equals("info")) { //$NON-NLS-1$
@@ -215,67 +227,168 @@ public class Uftrace extends TmfTrace implements ITmfPropertiesProvider,
                 throw new TmfTraceException(e.getMessage(), e);
             }
         }
+        fCurrentLoc = createLocation(new long[fDats.size()]);
+        /* The symbol files are the largest metadata, read them in parallel */
+        Interner<String> names = Interners.newStrongInterner();
+        try {
+            fSyms = symFiles.parallelStream().collect(Collectors.toConcurrentMap(
+                    file -> file.getName().substring(0, file.getName().length() - 4),
+                    file -> {
+                        try {
+                            return SymParser.parse(file, names::intern);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }));
+        } catch (UncheckedIOException e) {
+            throw new TmfTraceException(e.getMessage(), e.getCause());
+        }
     }
 
     @Override
-    public ITmfLocation getCurrentLocation() {
+    public synchronized ITmfLocation getCurrentLocation() {
         return fCurrentLoc;
     }
 
     @Override
     public double getLocationRatio(ITmfLocation location) {
-        return (long) location.getLocationInfo() / fSize;
+        if (fSize == 0 || !(location instanceof UfLocation)) {
+            return 0;
+        }
+        return (double) ((UfLocation) location).getLocationInfo().getTotal() / fSize;
     }
 
     @Override
-    public ITmfContext seekEvent(ITmfLocation location) {
-        UfContext context = new UfContext(fDats, this);
-        if (location == null) {
-            return context;
-        }
-        if (location instanceof TmfLongLocation) {
-            TmfLongLocation longLocation = (TmfLongLocation) location;
-            if (longLocation.getLocationInfo().longValue() == 0) {
-                return context;
-            }
-            while (context.getLocation() != null && Long.compare(longLocation.getLocationInfo(), Objects.requireNonNull(context.getLocation()).getLocationInfo()) >= 0) {
-                ITmfEvent next = context.getNext();
-                if (next == null) {
-                    break;
-                }
-                updateAttributes(context, next);
-                if (context.getLocation() == null) {
-                    return context;
+    public ITmfContext seekEvent(@Nullable ITmfLocation location) {
+        if (location instanceof UfLocation) {
+            UfLocationInfo info = ((UfLocation) location).getLocationInfo();
+            if (info.getCount() == fDats.size()) {
+                long[] offsets = new long[info.getCount()];
+                for (int i = 0; i < offsets.length; i++) {
+                    offsets[i] = info.getOffset(i);
                 }
+                UfContext context = new UfContext(fDats, offsets, this);
+                context.setLocation(location);
+                context.setRank(info.getTotal() == 0 ? 0 : ITmfContext.UNKNOWN_RANK);
+                return context;
             }
         }
+        UfContext context = new UfContext(fDats, this);
+        context.setLocation(createLocation(new long[fDats.size()]));
+        context.setRank(0);
         return context;
     }
 
+    /**
+     * Seek a ratio of the data. The offsets in the data files are those of
+     * the first time where the requested amount of data is read, so they are
+     * found by a binary search on the time, each data file being searched
+     * for that time.
+     */
     @Override
     public ITmfContext seekEvent(double ratio) {
-        return seekEvent(new TmfLongLocation((long) (ratio * fSize)));
+        long target = (long) (ratio * fSize);
+        long low = Long.MAX_VALUE;
+        long high = Long.MIN_VALUE;
+        for (DatParser dat : fDats) {
+            long size = dat.size();
+            if (size > 0) {
+                low = Math.min(low, dat.getTimestamp(0));
+                high = Math.max(high, dat.getTimestamp(size - DatParser.RECORD_SIZE) + 1);
+            }
+        }
+        if (low > high) {
+            return seekEvent((ITmfLocation) null);
+        }
+        while (low < high) {
+            long mid = low + (high - low) / 2;
+            long total = 0;
+            for (DatParser dat : fDats) {
+                total += dat.findOffset(mid);
+            }
+            if (total < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        long[] offsets = new long[fDats.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = fDats.get(i).findOffset(low);
+        }
+        return seekEvent(createLocation(offsets));
     }
 
-    @Override
-    public ITmfEvent parseEvent(@Nullable ITmfContext ctx) {
-        ITmfContext context = ctx;
-        if (context == null) {
-            context = seekEvent(0);
+    /**
+     * Create the location of offsets in the data files. The next record to
+     * read is the first one by time, then by data file, as in the merge.
+     */
+    private UfLocation createLocation(long[] offsets) {
+        long nextTime = Long.MAX_VALUE;
+        int nextIndex = offsets.length;
+        for (int i = 0; i < offsets.length; i++) {
+            DatParser dat = fDats.get(i);
+            if (offsets[i] < dat.size()) {
+                long time = dat.getTimestamp(offsets[i]);
+                if (time < nextTime || nextIndex == offsets.length) {
+                    nextTime = time;
+                    nextIndex = i;
+                }
+            }
         }
+        return new UfLocation(offsets, nextTime, nextIndex);
+    }
+
+    @Override
+    public synchronized @Nullable ITmfEvent parseEvent(@Nullable ITmfContext ctx) {
         if (ctx instanceof UfContext) {
             UfContext ufContext = (UfContext) ctx;
             ITmfEvent tmfEvent = ufContext.getNext();
             if (tmfEvent != null) {
-                fCurrentLoc = new TmfLongLocation(fCurrentLoc.getLocationInfo() + Long.BYTES * 2);
-                ctx.setLocation(fCurrentLoc);
-                updateAttributes(context, tmfEvent);
+                fCurrentLoc = ufContext.getPosition();
                 return tmfEvent;
             }
         }
         return null;
     }
 
+    @Override
+    public ITmfLocation restoreLocation(ByteBuffer bufferIn) {
+        long nextTime = bufferIn.getLong();
+        int nextIndex = bufferIn.getInt();
+        long nextOffset = bufferIn.getLong();
+        /*
+         * The records before the next one were read: in the data files before
+         * it, those up to its time; in the data files after it, those before
+         * its time.
+         */
+        long[] offsets = new long[fDats.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            DatParser dat = fDats.get(i);
+            if (i == nextIndex) {
+                offsets[i] = nextOffset;
+            } else if (nextIndex >= offsets.length || (i < nextIndex && nextTime == Long.MAX_VALUE)) {
+                offsets[i] = dat.size();
+            } else {
+                offsets[i] = dat.findOffset(i < nextIndex ? nextTime + 1 : nextTime);
+            }
+        }
+        return new UfLocation(offsets, nextTime, nextIndex);
+    }
+
+    @Override
+    public int getCheckpointSize() {
+        if (fCheckpointSize == -1) {
+            /* The serialized locations all have the same size */
+            TmfCheckpoint checkpoint = new TmfCheckpoint(TmfTimestamp.fromNanos(0L), new UfLocation(new long[0], Long.MAX_VALUE, 0), 0);
+            ByteBuffer buffer = ByteBuffer.allocate(ITmfCheckpoint.MAX_SERIALIZE_SIZE);
+            buffer.clear();
+            checkpoint.serialize(buffer);
+            fCheckpointSize = buffer.position();
+        }
+        return fCheckpointSize;
+    }
+
     @Override
     public Set<@NonNull ? extends ITmfEventType> getContainedEventTypes() {
         return UfEventType.TYPES;
@@ -288,7 +401,7 @@ public class Uftrace extends TmfTrace implements ITmfPropertiesProvider,
 
     @Override
     public int progress() {
-        return (int) (fCurrentLoc.getLocationInfo() / 1024);
+        return (int) (fCurrentLoc.getLocationInfo().getTotal() / 1024);
     }
 
     /**
@@ -308,9 +421,8 @@ public class Uftrace extends TmfTrace implements ITmfPropertiesProvider,
     public final class TidAspect extends LinuxTidAspect {
         @Override
         public @Nullable Integer resolve(ITmfEvent event) {
-            if (event.getContent().getValue() instanceof DatEvent) {
-                DatEvent datEvent = (DatEvent) event.getContent().getValue();
-                return datEvent.getTid();
+            if (event instanceof UfEvent) {
+                return ((UfEvent) event).getTid();
             }
             return null;
         }
@@ -324,9 +436,8 @@ public class Uftrace extends TmfTrace implements ITmfPropertiesProvider,
     public final class PidAspect extends LinuxPidAspect {
         @Override
         public @Nullable Integer resolve(ITmfEvent event) {
-            if (event.getContent().getValue() instanceof DatEvent) {
-                DatEvent datEvent = (DatEvent) event.getContent().getValue();
-                int tid = datEvent.getTid();
+            if (event instanceof UfEvent) {
+                int tid = ((UfEvent) event).getTid();
                 return fTasks.getPid(tid);
             }
             return null;
@@ -351,9 +462,8 @@ public class Uftrace extends TmfTrace implements ITmfPropertiesProvider,
 
         @Override
         public @Nullable String resolve(@NonNull ITmfEvent event) {
-            if (event.getContent().getValue() instanceof DatEvent) {
-                DatEvent datEvent = (DatEvent) event.getContent().getValue();
-                int tid = datEvent.getTid();
+            if (event instanceof UfEvent) {
+                int tid = ((UfEvent) event).getTid();
                 return fTasks.getExecName(tid);
             }
             return null;
@@ -429,46 +539,47 @@ public class Uftrace extends TmfTrace implements ITmfPropertiesProvider,
     }
 
     /**
-     * overly complicated, should clean up
+     * Symbol provider resolving through the compiled symbol table of the
+     * thread's session. The resolved symbols are kept in a bounded direct
+     * mapped cache.
      *
      * @author Matthew Khouzam
      *
      */
     private class UfTraceSymbolProvider implements ISymbolProvider {
+
+        private static final int SYMBOL_CACHE_SIZE = 1 << 14;
+
+        private final @Nullable CachedSymbol[] fSymbolCache = new @Nullable CachedSymbol[SYMBOL_CACHE_SIZE];
+        private final Map<Long, UfSymbolTable> fSymbolTables = new ConcurrentHashMap<>();
+
         @Override
         public TmfResolvedSymbol getSymbol(int tid, long timestamp, long address) {
+            int hash = Long.hashCode(address * 31 + tid);
+            int slot = (hash ^ (hash >>> 16)) & (SYMBOL_CACHE_SIZE - 1);
+            CachedSymbol cached = fSymbolCache[slot];
+            if (cached != null && cached.fTid == tid && cached.fSymbol.getBaseAddress() == address) {
+                return cached.fSymbol;
+            }
+            TmfResolvedSymbol symbol = resolve(tid, address);
+            fSymbolCache[slot] = new CachedSymbol(tid, symbol);
+            return symbol;
+        }
+
+        private TmfResolvedSymbol resolve(int tid, long address) {
             String execName = fTasks.getExecName(tid);
             if (execName == null) {
-                return new TmfResolvedSymbol(address, "0x" + Long.toHexString(address)); //$NON-NLS-1$
+                return UfSymbolTable.toHex(address);
             }
             Long session = fTasks.getSessName(tid);
             if (session == null) {
-                return new TmfResolvedSymbol(address, "0x" + Long.toHexString(address)); //$NON-NLS-1$
+                return UfSymbolTable.toHex(address);
             }
             MapParser mapParser = fMap.get(session);
             if (mapParser == null) {
-                return new TmfResolvedSymbol(address, "0x" + Long.toHexString(address)); //$NON-NLS-1$
-            }
-            Entry<Long, MapEntry> key = mapParser.getData().floorEntry(address);
-            if (key == null) {
-                return new TmfResolvedSymbol(address, "0x" + Long.toHexString(address)); //$NON-NLS-1$
-            }
-            long offset = address - key.getValue().getAddrLow();
-            String pathName = key.getValue().getPathName();
-            String substring = pathName.substring(pathName.lastIndexOf(File.separator) + 1);
-            SymParser sym = fSyms.get(substring);
-            if (sym == null) {
-                return new TmfResolvedSymbol(address, pathName + ":0x" + Long.toHexString(address)); //$NON-NLS-1$
+                return UfSymbolTable.toHex(address);
             }
-            Entry<Long, Symbol> floorEntry = sym.getMap().floorEntry(offset);
-            if (floorEntry != null) {
-                Symbol value = floorEntry.getValue();
-                if (value != null) {
-                    String name = String.valueOf(value.getName());
-                    return new TmfResolvedSymbol(address, name);
-                }
-            }
-            return new TmfResolvedSymbol(address, "0x" + Long.toHexString(address)); //$NON-NLS-1$
+            return fSymbolTables.computeIfAbsent(session, sessionId -> new UfSymbolTable(mapParser, fSyms)).resolve(address);
         }
 
         /* needed for ISymbolProvider */
@@ -489,4 +600,14 @@ public class Uftrace extends TmfTrace implements ITmfPropertiesProvider,
 
     }
 
+    private static final class CachedSymbol {
+        private final int fTid;
+        private final TmfResolvedSymbol fSymbol;
+
+        public CachedSymbol(int tid, TmfResolvedSymbol symbol) {
+            fTid = tid;
+            fSymbol = symbol;
+        }
+    }
+
 }
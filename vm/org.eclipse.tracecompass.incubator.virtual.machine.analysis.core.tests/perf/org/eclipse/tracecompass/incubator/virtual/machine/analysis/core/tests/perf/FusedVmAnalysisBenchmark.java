@@ -0,0 +1,282 @@
+/*******************************************************************************
+ * Copyright (c) 2018 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.virtual.machine.analysis.core.tests.perf;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.analysis.os.linux.core.kernel.KernelAnalysisModule;
+import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.fused.FusedVirtualMachineAnalysis;
+import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.trace.VirtualMachineExperiment;
+import org.eclipse.tracecompass.incubator.virtual.machine.analysis.core.tests.shared.trace.VmXmlKernelTraceStub;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceOpenedSignal;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
+import org.junit.Test;
+
+/**
+ * Benchmarks the fused virtual machine analysis on a synthetic experiment
+ * with a host running many guests. Each virtual CPU of a guest is run by a
+ * thread of the host on the physical CPU of the same number. The guests take
+ * turns on the physical CPUs, entering and exiting them while they do system
+ * calls and context switches.
+ *
+ * The analysis is measured when it handles the events sequentially and when
+ * it handles the events of each machine in parallel, fused on the
+ * synchronization events.
+ *
+ * @author Geneviève Bastien
+ */
+public class FusedVmAnalysisBenchmark {
+
+    /**
+     * Test test ID for the fused virtual machine benchmarks
+     */
+    public static final String TEST_ID = "org.eclipse.tracecompass.incubator#FusedVM#";
+    private static final String TEST_ANALYSIS = "Fused VM analysis";
+    private static final String TEST_PARTITIONED = "Partitioned fused VM analysis";
+
+    private static final String HOST_ID = "benchmarkHost";
+    private static final String GUEST_ID = "benchmarkGuest";
+    private static final long VM_UID = 123456;
+
+    private static final int LOOP_COUNT = 5;
+    private static final int NB_GUESTS = 4;
+    private static final int NB_VCPUS = 4;
+    private static final int NB_ROUNDS = 1000;
+    /* Time of a guest on the physical CPUs */
+    private static final long SLICE = 200;
+
+    /**
+     * Run the benchmark
+     *
+     * @throws IOException
+     *             the traces cannot be written
+     * @throws TmfTraceException
+     *             the traces cannot be opened
+     * @throws TmfAnalysisException
+     *             the analysis cannot be set to the experiment
+     */
+    @Test
+    public void runBenchmark() throws IOException, TmfTraceException, TmfAnalysisException {
+        File hostFile = File.createTempFile("fusedBenchmarkHost", ".xml");
+        List<File> guestFiles = new ArrayList<>();
+        try {
+            writeHostTrace(hostFile);
+            for (int guest = 1; guest <= NB_GUESTS; guest++) {
+                File guestFile = File.createTempFile("fusedBenchmarkGuest", ".xml");
+                guestFiles.add(guestFile);
+                writeGuestTrace(guestFile, guest);
+            }
+            benchmark(hostFile, guestFiles, TEST_ANALYSIS, false);
+            benchmark(hostFile, guestFiles, TEST_PARTITIONED, true);
+        } finally {
+            hostFile.delete();
+            for (File guestFile : guestFiles) {
+                guestFile.delete();
+            }
+        }
+    }
+
+    private void benchmark(File hostFile, List<File> guestFiles, String testName, boolean partitioned) throws TmfTraceException, TmfAnalysisException {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = Objects.requireNonNull(perf.createPerformanceMeter(TEST_ID + testName));
+        perf.tagAsSummary(pm, testName, Dimension.CPU_TIME);
+
+        for (int i = 0; i < LOOP_COUNT; i++) {
+            Set<ITmfTrace> traces = new HashSet<>();
+            traces.add(openTrace(hostFile, HOST_ID));
+            for (int guest = 1; guest <= guestFiles.size(); guest++) {
+                traces.add(openTrace(guestFiles.get(guest - 1), GUEST_ID + guest));
+            }
+            VirtualMachineExperiment experiment = new VirtualMachineExperiment(testName, traces);
+            FusedVirtualMachineAnalysis module = new FusedVirtualMachineAnalysis();
+            try {
+                deleteSupplementaryFiles(experiment);
+                prepareExperiment(experiment);
+                module.setId(FusedVirtualMachineAnalysis.ID);
+                module.setPartitioned(partitioned);
+                module.setTrace(experiment);
+
+                pm.start();
+                module.schedule();
+                assertTrue(module.waitForCompletion());
+                pm.stop();
+                assertNotNull(module.getStateSystem());
+            } finally {
+                module.dispose();
+                experiment.dispose();
+            }
+        }
+        pm.commit();
+    }
+
+    private static ITmfTrace openTrace(File file, String hostId) throws TmfTraceException {
+        VmXmlKernelTraceStub trace = new VmXmlKernelTraceStub() {
+            @Override
+            public String getHostId() {
+                return hostId;
+            }
+        };
+        trace.initTrace(null, file.getAbsolutePath(), TmfEvent.class);
+        return trace;
+    }
+
+    private static void deleteSupplementaryFiles(VirtualMachineExperiment experiment) {
+        File[] files = new File(TmfTraceManager.getSupplementaryFileDir(experiment)).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private void prepareExperiment(VirtualMachineExperiment experiment) {
+        for (ITmfTrace trace : experiment.getTraces()) {
+            ((TmfTrace) trace).traceOpened(new TmfTraceOpenedSignal(this, trace, null));
+        }
+        /* The kernel analyses of the traces are needed by the fused analysis */
+        for (ITmfTrace trace : experiment.getTraces()) {
+            for (KernelAnalysisModule module : TmfTraceUtils.getAnalysisModulesOfClass(trace, KernelAnalysisModule.class)) {
+                module.schedule();
+                module.waitForCompletion();
+            }
+        }
+        experiment.traceOpened(new TmfTraceOpenedSignal(this, experiment, null));
+    }
+
+    private static long getSliceStart(int round, int guest) {
+        return (NB_GUESTS + 2) * 100L + (round * NB_GUESTS + guest - 1) * SLICE;
+    }
+
+    /**
+     * The host has one thread per virtual CPU of each guest. The threads of a
+     * guest are scheduled on the physical CPUs and enter the guest at each of
+     * its slices.
+     */
+    private static void writeHostTrace(File file) throws IOException {
+        try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write("<trace>\n<set_aspects>\n<field name=\"cpu\" value=\"1\" type=\"int\" />\n</set_aspects>\n");
+            /* A kvm event identifies the host */
+            writeKvmExit(writer, 3, 0);
+            /* Identify the threads of the virtual CPUs of each guest */
+            for (int guest = 1; guest <= NB_GUESTS; guest++) {
+                long time = guest * 100L;
+                for (int cpu = 0; cpu < NB_VCPUS; cpu++) {
+                    int prevTid = guest == 1 ? 10 + cpu : getVcpuTid(guest - 1, cpu);
+                    writeSchedSwitch(writer, time + cpu, cpu, prevTid, getVcpuTid(guest, cpu));
+                }
+                for (int cpu = 0; cpu < NB_VCPUS; cpu++) {
+                    writeVmsync(writer, time + 30 + cpu, "vmsync_gh_host", cpu, guest);
+                }
+            }
+            for (int round = 0; round < NB_ROUNDS; round++) {
+                for (int guest = 1; guest <= NB_GUESTS; guest++) {
+                    long time = getSliceStart(round, guest);
+                    for (int cpu = 0; cpu < NB_VCPUS; cpu++) {
+                        int prevTid = guest == 1 ? getVcpuTid(NB_GUESTS, cpu) : getVcpuTid(guest - 1, cpu);
+                        writeSchedSwitch(writer, time + 5 * cpu, cpu, prevTid, getVcpuTid(guest, cpu));
+                        writeKvmEntry(writer, time + 5 * cpu + 1, cpu);
+                    }
+                    for (int cpu = 0; cpu < NB_VCPUS; cpu++) {
+                        writeKvmExit(writer, time + 5 * cpu + 150, cpu);
+                    }
+                }
+            }
+            writer.write("</trace>\n");
+        }
+    }
+
+    /**
+     * A guest does a system call and a context switch on each of its CPUs at
+     * each of its slices
+     */
+    private static void writeGuestTrace(File file, int guest) throws IOException {
+        try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write("<trace>\n<set_aspects>\n<field name=\"cpu\" value=\"1\" type=\"int\" />\n</set_aspects>\n");
+            writeVmsync(writer, guest * 100L + 20, "vmsync_gh_guest", 0, guest);
+            for (int round = 0; round < NB_ROUNDS; round++) {
+                long time = getSliceStart(round, guest);
+                for (int cpu = 0; cpu < NB_VCPUS; cpu++) {
+                    writer.write(startEvent(time + 5 * cpu + 30, "sys_read", cpu));
+                    writer.write("<field name=\"fd\" value=\"3\" type=\"long\" />\n</event>\n");
+                }
+                for (int cpu = 0; cpu < NB_VCPUS; cpu++) {
+                    writer.write(startEvent(time + 5 * cpu + 60, "exit_syscall", cpu));
+                    writer.write("<field name=\"ret\" value=\"0\" type=\"long\" />\n</event>\n");
+                }
+                for (int cpu = 0; cpu < NB_VCPUS; cpu++) {
+                    int prev = (round % 2 == 0) ? 2000 + cpu : 3000 + cpu;
+                    int next = (round % 2 == 0) ? 3000 + cpu : 2000 + cpu;
+                    writeSchedSwitch(writer, time + 5 * cpu + 90, cpu, prev, next);
+                }
+            }
+            writer.write("</trace>\n");
+        }
+    }
+
+    private static int getVcpuTid(int guest, int cpu) {
+        return 1000 * guest + cpu;
+    }
+
+    private static String startEvent(long time, String name, int cpu) {
+        return "<event timestamp=\"" + time + "\" name=\"" + name + "\">\n<field name=\"cpu\" value=\"" + cpu + "\" type=\"int\" />\n";
+    }
+
+    private static void writeVmsync(Writer writer, long time, String name, int cpu, int guest) throws IOException {
+        writer.write(startEvent(time, name, cpu));
+        writer.write("<field name=\"cnt\" value=\"1\" type=\"int\" />\n");
+        writer.write("<field name=\"vm_uid\" value=\"" + (VM_UID + guest) + "\" type=\"long\" />\n</event>\n");
+    }
+
+    private static void writeKvmEntry(Writer writer, long time, int cpu) throws IOException {
+        writer.write(startEvent(time, "kvm_entry", cpu));
+        writer.write("<field name=\"vcpu_id\" value=\"" + cpu + "\" type=\"long\" />\n</event>\n");
+    }
+
+    private static void writeKvmExit(Writer writer, long time, int cpu) throws IOException {
+        writer.write(startEvent(time, "kvm_exit", cpu));
+        writer.write("<field name=\"exit_reason\" value=\"32\" type=\"long\" />\n");
+        writer.write("<field name=\"guest_rip\" value=\"123456\" type=\"long\" />\n");
+        writer.write("<field name=\"isa\" value=\"1\" type=\"int\" />\n");
+        writer.write("<field name=\"info1\" value=\"654654\" type=\"long\" />\n");
+        writer.write("<field name=\"info2\" value=\"456789\" type=\"long\" />\n</event>\n");
+    }
+
+    private static void writeSchedSwitch(Writer writer, long time, int cpu, int prevTid, int nextTid) throws IOException {
+        writer.write(startEvent(time, "sched_switch", cpu));
+        writer.write("<field name=\"prev_comm\" value=\"proc" + prevTid + "\" type=\"string\" />\n");
+        writer.write("<field name=\"prev_tid\" value=\"" + prevTid + "\" type=\"long\" />\n");
+        writer.write("<field name=\"prev_prio\" value=\"20\" type=\"long\" />\n");
+        writer.write("<field name=\"prev_state\" value=\"0\" type=\"long\" />\n");
+        writer.write("<field name=\"next_comm\" value=\"proc" + nextTid + "\" type=\"string\" />\n");
+        writer.write("<field name=\"next_tid\" value=\"" + nextTid + "\" type=\"long\" />\n");
+        writer.write("<field name=\"next_prio\" value=\"20\" type=\"long\" />\n</event>\n");
+    }
+}
@@ -46,7 +46,12 @@ public enum VmTestExperiment {
     /**
      * Virtual machine experiment: 1 guest, 1 host, guest has a container
      */
-    TWO_HOSTS(VmTraces.HOST_ONE_QEMUKVM, VmTraces.GUEST_ONE_QEMUKVM, VmTraces.ONE_CONTAINER);
+    TWO_HOSTS(VmTraces.HOST_ONE_QEMUKVM, VmTraces.GUEST_ONE_QEMUKVM, VmTraces.ONE_CONTAINER),
+    /**
+     * Virtual machine experiment: 3 guests with 2 virtual CPUs each, taking
+     * turns on the 2 physical CPUs of 1 host, using QEMU/KVM model
+     */
+    MULTI_GUESTS(VmTraces.HOST_MULTI_GUESTS, VmTraces.GUEST1_MULTI_GUESTS, VmTraces.GUEST2_MULTI_GUESTS, VmTraces.GUEST3_MULTI_GUESTS);
 
     private @NonNull Set<VmTraces> fTraces = new HashSet<>();
 
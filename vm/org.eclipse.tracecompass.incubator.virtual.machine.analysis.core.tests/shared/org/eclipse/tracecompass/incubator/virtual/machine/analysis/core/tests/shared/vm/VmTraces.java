@@ -44,7 +44,15 @@ public enum VmTraces {
     /** Host from simple QEMU/KVM experiment */
     HOST_QEMUKVM_CONTAINER("vm/QemuContainer/host.xml", "host"),
     /** Guest from simple QEMU/KVM experiment */
-    GUEST_QEMUKVM_CONTAINER("vm/QemuContainer/guest.xml", "guest"),;
+    GUEST_QEMUKVM_CONTAINER("vm/QemuContainer/guest.xml", "guest"),
+    /** Host from QEMU/KVM experiment with many guests */
+    HOST_MULTI_GUESTS("vm/MultiGuests/host.xml", "multiHost"),
+    /** First guest from QEMU/KVM experiment with many guests */
+    GUEST1_MULTI_GUESTS("vm/MultiGuests/guest1.xml", "multiGuest1"),
+    /** Second guest from QEMU/KVM experiment with many guests */
+    GUEST2_MULTI_GUESTS("vm/MultiGuests/guest2.xml", "multiGuest2"),
+    /** Third guest from QEMU/KVM experiment with many guests */
+    GUEST3_MULTI_GUESTS("vm/MultiGuests/guest3.xml", "multiGuest3"),;
 
     private static final @NonNull String filePath = "testfiles";
 
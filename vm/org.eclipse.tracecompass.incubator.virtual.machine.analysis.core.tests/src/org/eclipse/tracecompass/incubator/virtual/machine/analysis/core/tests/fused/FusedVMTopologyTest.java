@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2018 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.virtual.machine.analysis.core.tests.fused;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.fused.FusedAttributes;
+import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.fused.FusedVMInformationProvider;
+import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.virtual.resources.StateValues;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the snapshot of the machines of a fused state system while it is being
+ * built: it is kept while the state system only moves in time, and read again
+ * when attributes are added or when the provider changes the machines.
+ *
+ * @author Geneviève Bastien
+ */
+public class FusedVMTopologyTest {
+
+    private static final String HOST = "host";
+    private static final String GUEST = "guest";
+
+    private final ITmfStateSystemBuilder fSs = StateSystemFactory.newStateSystem(StateHistoryBackendFactory.createInMemoryBackend("Test", 0L));
+
+    /**
+     * Create a state system with a host with two CPUs and a container
+     */
+    @Before
+    public void setUp() {
+        ITmfStateSystemBuilder ss = fSs;
+        int hostQuark = ss.getQuarkAbsoluteAndAdd(FusedAttributes.HOSTS, HOST);
+        ss.updateOngoingState(StateValues.MACHINE_HOST, hostQuark);
+        ss.updateOngoingState("Host trace", ss.getQuarkRelativeAndAdd(hostQuark, FusedAttributes.MACHINE_NAME));
+        ss.getQuarkRelativeAndAdd(hostQuark, FusedAttributes.CPUS, "0");
+        ss.getQuarkRelativeAndAdd(hostQuark, FusedAttributes.CPUS, "1");
+        ss.getQuarkRelativeAndAdd(hostQuark, FusedAttributes.CONTAINERS, "4026531836");
+    }
+
+    /**
+     * Dispose the state system
+     */
+    @After
+    public void tearDown() {
+        fSs.dispose();
+    }
+
+    /**
+     * Test that the snapshot is kept while the state system is built and
+     * read again when it changes
+     */
+    @Test
+    public void testSnapshot() {
+        ITmfStateSystemBuilder ss = fSs;
+        assertEquals(Arrays.asList(HOST), FusedVMInformationProvider.getMachinesTraced(ss));
+        assertEquals(2, FusedVMInformationProvider.getNbCPUs(ss, HOST));
+        assertEquals(StateValues.MACHINE_HOST, FusedVMInformationProvider.getTypeMachine(ss, HOST));
+        assertEquals("Host trace", FusedVMInformationProvider.getMachineName(ss, HOST));
+        Collection<Integer> containers = FusedVMInformationProvider.getMachineContainersQuarks(ss, HOST);
+        assertEquals(1, containers.size());
+
+        // The state system moves in time, the machines are the same
+        int cpuQuark = ss.getQuarkAbsoluteAndAdd(FusedAttributes.HOSTS, HOST, FusedAttributes.CPUS, "0");
+        ss.modifyAttribute(10L, 1, cpuQuark);
+        ss.modifyAttribute(20L, 2, cpuQuark);
+        assertSame(containers, FusedVMInformationProvider.getMachineContainersQuarks(ss, HOST));
+
+        // A guest is added, the machines are read again
+        int guestQuark = ss.getQuarkAbsoluteAndAdd(FusedAttributes.HOSTS, GUEST);
+        ss.getQuarkRelativeAndAdd(guestQuark, FusedAttributes.CPUS, "0");
+        int parentQuark = ss.getQuarkRelativeAndAdd(guestQuark, FusedAttributes.PARENT);
+        assertEquals(Arrays.asList(HOST, GUEST), FusedVMInformationProvider.getMachinesTraced(ss));
+        assertEquals(1, FusedVMInformationProvider.getNbCPUs(ss, GUEST));
+        assertEquals(-1, FusedVMInformationProvider.getTypeMachine(ss, GUEST));
+        containers = FusedVMInformationProvider.getMachineContainersQuarks(ss, HOST);
+
+        // The provider sets the role and parent of the guest, without new attributes
+        ss.updateOngoingState(StateValues.MACHINE_GUEST, guestQuark);
+        ss.updateOngoingState(HOST, parentQuark);
+        assertSame(containers, FusedVMInformationProvider.getMachineContainersQuarks(ss, HOST));
+        FusedVMInformationProvider.machinesChanged(ss);
+        assertEquals(StateValues.MACHINE_GUEST, FusedVMInformationProvider.getTypeMachine(ss, GUEST));
+        assertEquals(HOST, FusedVMInformationProvider.getParentMachineHostId(ss, GUEST));
+        Collection<Integer> newContainers = FusedVMInformationProvider.getMachineContainersQuarks(ss, HOST);
+        assertNotSame(containers, newContainers);
+        assertEquals(containers, newContainers);
+
+        // The state system is built, the machines are the same
+        ss.closeHistory(30L);
+        assertSame(newContainers, FusedVMInformationProvider.getMachineContainersQuarks(ss, HOST));
+        assertEquals(StateValues.MACHINE_GUEST, FusedVMInformationProvider.getTypeMachine(ss, GUEST));
+    }
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2019 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.virtual.machine.analysis.core.tests.fused;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.tracecompass.analysis.os.linux.core.kernel.KernelAnalysisModule;
+import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.fused.FusedVirtualMachineAnalysis;
+import org.eclipse.tracecompass.incubator.virtual.machine.analysis.core.tests.shared.vm.VmTestExperiment;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.StateSystemUtils;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceOpenedSignal;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
+import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test that the fused virtual machine analysis built in parallel partitions
+ * gives the same state system as the sequential one, on an experiment with
+ * many guests sharing the CPUs of a host
+ *
+ * @author Geneviève Bastien
+ */
+public class PartitionedFusedVmAnalysisTest {
+
+    private static final VmTestExperiment EXPERIMENT = VmTestExperiment.MULTI_GUESTS;
+
+    /*
+     * The experiment is opened twice, as the hypervisor model of an
+     * experiment keeps the state of the run of its analysis
+     */
+    private final TmfExperiment fSequential = EXPERIMENT.getExperiment(true);
+    private final TmfExperiment fPartitioned = EXPERIMENT.getExperiment(true);
+
+    /**
+     * Clean up
+     */
+    @After
+    public void tearDown() {
+        fSequential.dispose();
+        fPartitioned.dispose();
+    }
+
+    private void openExperiment(TmfExperiment experiment) {
+        for (ITmfTrace trace : experiment.getTraces()) {
+            ((TmfTrace) trace).traceOpened(new TmfTraceOpenedSignal(this, trace, null));
+        }
+        /* The kernel analyses of the traces are needed by the fused analysis */
+        for (ITmfTrace trace : experiment.getTraces()) {
+            for (KernelAnalysisModule module : TmfTraceUtils.getAnalysisModulesOfClass(trace, KernelAnalysisModule.class)) {
+                module.schedule();
+                module.waitForCompletion();
+            }
+        }
+        experiment.traceOpened(new TmfTraceOpenedSignal(this, experiment, null));
+    }
+
+    /**
+     * Test that every attribute has the same intervals in both state systems
+     *
+     * @throws TmfAnalysisException
+     *             the analysis cannot be set to the experiment
+     * @throws StateSystemDisposedException
+     *             a state system was disposed
+     */
+    @Test
+    public void testSameStateSystem() throws TmfAnalysisException, StateSystemDisposedException {
+        openExperiment(fSequential);
+        FusedVirtualMachineAnalysis sequential = TmfTraceUtils.getAnalysisModuleOfClass(fSequential, FusedVirtualMachineAnalysis.class, FusedVirtualMachineAnalysis.ID);
+        assertNotNull(sequential);
+        sequential.schedule();
+        assertTrue(sequential.waitForCompletion());
+
+        openExperiment(fPartitioned);
+        FusedVirtualMachineAnalysis partitioned = new FusedVirtualMachineAnalysis();
+        try {
+            partitioned.setId(FusedVirtualMachineAnalysis.ID + ".partitioned");
+            partitioned.setPartitioned(true);
+            partitioned.setTrace(fPartitioned);
+            partitioned.schedule();
+            assertTrue(partitioned.waitForCompletion());
+
+            ITmfStateSystem expected = sequential.getStateSystem();
+            ITmfStateSystem actual = partitioned.getStateSystem();
+            assertNotNull(expected);
+            assertNotNull(actual);
+            assertEquals("Start time", expected.getStartTime(), actual.getStartTime());
+            assertEquals("End time", expected.getCurrentEndTime(), actual.getCurrentEndTime());
+            assertEquals("Number of attributes", expected.getNbAttributes(), actual.getNbAttributes());
+
+            for (int quark = 0; quark < expected.getNbAttributes(); quark++) {
+                String[] path = expected.getFullAttributePathArray(quark);
+                String name = Arrays.toString(path);
+                int actualQuark = actual.optQuarkAbsolute(path);
+                assertNotEquals(name, ITmfStateSystem.INVALID_ATTRIBUTE, actualQuark);
+
+                List<ITmfStateInterval> expectedIntervals = StateSystemUtils.queryHistoryRange(expected, quark, expected.getStartTime(), expected.getCurrentEndTime());
+                List<ITmfStateInterval> actualIntervals = StateSystemUtils.queryHistoryRange(actual, actualQuark, actual.getStartTime(), actual.getCurrentEndTime());
+                assertEquals(name + ": number of intervals", expectedIntervals.size(), actualIntervals.size());
+                for (int i = 0; i < expectedIntervals.size(); i++) {
+                    ITmfStateInterval expectedInterval = expectedIntervals.get(i);
+                    ITmfStateInterval actualInterval = actualIntervals.get(i);
+                    assertEquals(name + ": start of interval " + i, expectedInterval.getStartTime(), actualInterval.getStartTime());
+                    assertEquals(name + ": end of interval " + i, expectedInterval.getEndTime(), actualInterval.getEndTime());
+                    assertEquals(name + ": value of interval " + i, expectedInterval.getValue(), actualInterval.getValue());
+                }
+            }
+        } finally {
+            partitioned.dispose();
+        }
+    }
+}
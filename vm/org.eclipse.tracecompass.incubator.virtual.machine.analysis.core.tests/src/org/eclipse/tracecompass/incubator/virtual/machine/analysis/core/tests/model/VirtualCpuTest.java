@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2018 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.virtual.machine.analysis.core.tests.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.model.VirtualCPU;
+import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.model.VirtualMachine;
+import org.junit.Test;
+
+/**
+ * Test the lookup of the {@link VirtualCPU}s of each {@link VirtualMachine}
+ *
+ * @author Geneviève Bastien
+ */
+public class VirtualCpuTest {
+
+    private static final int NB_THREADS = 8;
+    private static final int NB_CPUS = 64;
+
+    /**
+     * Test that a virtual CPU is created once per machine and CPU ID, for
+     * indexed, large and negative CPU IDs
+     */
+    @Test
+    public void testLookup() {
+        VirtualMachine guest = VirtualMachine.newGuestMachine(1L, "guest", "Guest trace");
+        VirtualMachine other = VirtualMachine.newGuestMachine(2L, "other", "Other trace");
+
+        VirtualCPU vcpu5 = VirtualCPU.getVirtualCPU(guest, 5L);
+        assertSame(guest, vcpu5.getVm());
+        assertEquals(Long.valueOf(5), vcpu5.getCpuId());
+        // A lower CPU ID is added, the other CPUs are kept
+        VirtualCPU vcpu2 = VirtualCPU.getVirtualCPU(guest, 2L);
+        assertSame(vcpu5, VirtualCPU.getVirtualCPU(guest, 5L));
+        assertSame(vcpu2, guest.getVirtualCpu(2L));
+
+        // IDs that are not in the array
+        VirtualCPU large = VirtualCPU.getVirtualCPU(guest, 100000L);
+        VirtualCPU negative = VirtualCPU.getVirtualCPU(guest, -1L);
+        assertSame(large, VirtualCPU.getVirtualCPU(guest, 100000L));
+        assertSame(negative, VirtualCPU.getVirtualCPU(guest, -1L));
+        assertEquals(Long.valueOf(100000), large.getCpuId());
+
+        // Another machine has its own CPUs
+        VirtualCPU otherVcpu5 = VirtualCPU.getVirtualCPU(other, 5L);
+        assertNotSame(vcpu5, otherVcpu5);
+        assertSame(other, otherVcpu5.getVm());
+
+        Map<Long, VirtualCPU> vcpus = VirtualCPU.getVirtualCPUs(guest);
+        assertEquals(Arrays.asList(-1L, 2L, 5L, 100000L), new ArrayList<>(vcpus.keySet()));
+        assertSame(vcpu5, vcpus.get(5L));
+        assertEquals(1, VirtualCPU.getVirtualCPUs(other).size());
+    }
+
+    /**
+     * Test that threads looking up the same CPUs at the same time get the
+     * same virtual CPUs
+     *
+     * @throws InterruptedException
+     *             the threads were interrupted
+     * @throws ExecutionException
+     *             a lookup failed
+     */
+    @Test
+    public void testConcurrentLookup() throws InterruptedException, ExecutionException {
+        VirtualMachine guest = VirtualMachine.newGuestMachine(1L, "guest", "Guest trace");
+        ExecutorService executor = Executors.newFixedThreadPool(NB_THREADS);
+        try {
+            List<Future<VirtualCPU[]>> results = new ArrayList<>();
+            for (int i = 0; i < NB_THREADS; i++) {
+                results.add(executor.submit(() -> {
+                    VirtualCPU[] vcpus = new VirtualCPU[NB_CPUS];
+                    for (int cpu = NB_CPUS - 1; cpu >= 0; cpu--) {
+                        vcpus[cpu] = guest.getVirtualCpu(cpu);
+                    }
+                    return vcpus;
+                }));
+            }
+            for (Future<VirtualCPU[]> result : results) {
+                VirtualCPU[] vcpus = result.get();
+                for (int cpu = 0; cpu < NB_CPUS; cpu++) {
+                    assertSame(guest.getVirtualCpu(cpu), vcpus[cpu]);
+                }
+            }
+            assertEquals(NB_CPUS, guest.getVirtualCpus().size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
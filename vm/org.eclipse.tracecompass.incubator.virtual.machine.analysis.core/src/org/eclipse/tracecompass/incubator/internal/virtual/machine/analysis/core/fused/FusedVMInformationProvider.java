@@ -15,15 +15,19 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.fused.FusedVMTopology.Machine;
 import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.virtual.resources.StateValues;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
-import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+
+import com.google.common.collect.MapMaker;
 
 /**
  * Utility methods to retrieve information from the virtual machine analysis
@@ -33,9 +37,34 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
  */
 public final class FusedVMInformationProvider {
 
+    /* The topology of each fused state system, released with it */
+    private static final Map<ITmfStateSystem, FusedVMTopology> TOPOLOGIES = new MapMaker().weakKeys().makeMap();
+
     private FusedVMInformationProvider() {
     }
 
+    private static FusedVMTopology getTopology(ITmfStateSystem ssq) {
+        FusedVMTopology topology = TOPOLOGIES.get(ssq);
+        if (topology != null) {
+            return topology;
+        }
+        return Objects.requireNonNull(TOPOLOGIES.computeIfAbsent(ssq, ss -> new FusedVMTopology()));
+    }
+
+    /**
+     * Notify that the state provider changed the values of the machines of a
+     * state system, so that the machines are read again at the next query
+     *
+     * @param ssq
+     *            The state system
+     */
+    public static void machinesChanged(ITmfStateSystem ssq) {
+        FusedVMTopology topology = TOPOLOGIES.get(ssq);
+        if (topology != null) {
+            topology.machinesChanged();
+        }
+    }
+
     /**
      * Get the list of host IDs of the machines traced. The machines correspond
      * to either physical machines or virtual machines running their own kernel.
@@ -45,13 +74,7 @@ public final class FusedVMInformationProvider {
      * @return The list of machines traced.
      */
     public static Collection<String> getMachinesTraced(ITmfStateSystem ssq) {
-        List<String> list = new LinkedList<>();
-        List<Integer> machinesQuarks = ssq.getQuarks(FusedAttributes.HOSTS, "*"); //$NON-NLS-1$
-        for (Integer machineQuark : machinesQuarks) {
-            String machineName = ssq.getAttributeName(machineQuark);
-            list.add(machineName);
-        }
-        return list;
+        return new ArrayList<>(getTopology(ssq).getMachines(ssq).keySet());
     }
 
     /**
@@ -65,8 +88,8 @@ public final class FusedVMInformationProvider {
      * @return The number of CPUs available to the machine
      */
     public static int getNbCPUs(ITmfStateSystem ssq, String hostId) {
-        List<Integer> vCpuquarks = ssq.getQuarks(FusedAttributes.HOSTS, hostId, FusedAttributes.CPUS, "*"); //$NON-NLS-1$
-        return vCpuquarks.size();
+        Machine machine = getTopology(ssq).getMachine(ssq, hostId);
+        return machine == null ? 0 : machine.getCpus().size();
     }
 
     /**
@@ -80,12 +103,8 @@ public final class FusedVMInformationProvider {
      * @return The list of container names
      */
     public static List<String> getMachineContainers(ITmfStateSystem ssq, String hostId) {
-        List<String> containers = new LinkedList<>();
-        List<Integer> containersQuark = ssq.getQuarks(FusedAttributes.HOSTS, hostId, FusedAttributes.CONTAINERS, "*"); //$NON-NLS-1$
-        for (Integer containerQuark : containersQuark) {
-            containers.add(ssq.getAttributeName(containerQuark));
-        }
-        return containers;
+        Machine machine = getTopology(ssq).getMachine(ssq, hostId);
+        return machine == null ? new ArrayList<>() : new ArrayList<>(machine.getContainers());
     }
 
     /**
@@ -99,7 +118,8 @@ public final class FusedVMInformationProvider {
      * @return The quarks for the containers
      */
     public static Collection<Integer> getMachineContainersQuarks(ITmfStateSystem ssq, String hostId) {
-        return ssq.getQuarks(FusedAttributes.HOSTS, hostId, FusedAttributes.CONTAINERS, "*"); //$NON-NLS-1$
+        Machine machine = getTopology(ssq).getMachine(ssq, hostId);
+        return machine == null ? new ArrayList<>() : machine.getContainerQuarks();
     }
 
     /**
@@ -157,17 +177,8 @@ public final class FusedVMInformationProvider {
      *         not a known machine
      */
     public static int getTypeMachine(ITmfStateSystem ssq, String hostId) {
-        int quark;
-        try {
-            quark = ssq.optQuarkAbsolute(FusedAttributes.HOSTS, hostId);
-            if (quark == ITmfStateSystem.INVALID_ATTRIBUTE) {
-                return -1;
-            }
-            return ssq.querySingleState(ssq.getStartTime(), quark).getStateValue().unboxInt();
-        } catch (StateSystemDisposedException e) {
-            // About to close, ignore
-        }
-        return -1;
+        Machine machine = getTopology(ssq).getMachine(ssq, hostId);
+        return machine == null ? -1 : machine.getType();
     }
 
     /**
@@ -237,102 +248,7 @@ public final class FusedVMInformationProvider {
      *         virtual layer.
      */
     public static List<String> getAllMachines(ITmfStateSystem ssq, int physicalCpu, long time) {
-        List<String> machines = new ArrayList<>();
-        // We'll need a few values, so query the full state at the time and get
-        // the values from there
-        try {
-            List<ITmfStateInterval> states = ssq.queryFullState(time);
-            // Get the thread on the CPU
-            int quarkCurrentThread = ssq.optQuarkAbsolute(FusedAttributes.CPUS, String.valueOf(physicalCpu), FusedAttributes.CURRENT_THREAD);
-            if (quarkCurrentThread == ITmfStateSystem.INVALID_ATTRIBUTE) {
-                return machines;
-            }
-            int tid = states.get(quarkCurrentThread).getStateValue().unboxInt();
-            if (tid < 0) {
-                return machines;
-            }
-            int quarkCurrentMachine = ssq.optQuarkAbsolute(FusedAttributes.CPUS, String.valueOf(physicalCpu), FusedAttributes.MACHINE_NAME);
-            if (quarkCurrentMachine == ITmfStateSystem.INVALID_ATTRIBUTE) {
-                return machines;
-            }
-            ITmfStateValue stateValue = states.get(quarkCurrentMachine).getStateValue();
-            if (stateValue.isNull()) {
-                return machines;
-            }
-            machines.add(stateValue.unboxStr());
-
-            // Follow this thread's namespaces
-            machines.addAll(getContainersOf(ssq, stateValue.unboxStr(), tid, states));
-
-            // Follow the CPU through virtual machines
-            int quarkCpuState = ssq.optQuarkAbsolute(FusedAttributes.CPUS, String.valueOf(physicalCpu), FusedAttributes.CONDITION);
-            int quarkVirtualCpu = ssq.optQuarkAbsolute(FusedAttributes.CPUS, String.valueOf(physicalCpu), FusedAttributes.VIRTUAL_CPU);
-
-            if (quarkCpuState == ITmfStateSystem.INVALID_ATTRIBUTE || quarkVirtualCpu == ITmfStateSystem.INVALID_ATTRIBUTE) {
-                return machines;
-            }
-            int vmCondition = states.get(quarkCpuState).getStateValue().unboxInt();
-            if (vmCondition == StateValues.CONDITION_IN_VM) {
-                machines.addAll(0, getParentMachines(ssq, stateValue.unboxStr(), states.get(quarkVirtualCpu).getStateValue().unboxInt(), states));
-            }
-
-        } catch (StateSystemDisposedException e) {
-            // Nothing to do, about to be disposed
-        }
-
-        return machines;
-    }
-
-    private static Collection<String> getParentMachines(ITmfStateSystem ssq, String hostId, int vcpu, List<ITmfStateInterval> states) {
-        List<String> machines = new ArrayList<>();
-        int machineQuark = ssq.optQuarkAbsolute(FusedAttributes.HOSTS, hostId);
-        if (machineQuark == ITmfStateSystem.INVALID_ATTRIBUTE) {
-            return machines;
-        }
-        int quarkParent = ssq.optQuarkRelative(machineQuark, FusedAttributes.PARENT);
-        int quarkVCpu = ssq.optQuarkRelative(machineQuark, FusedAttributes.CPUS, String.valueOf(vcpu));
-        if (quarkParent == ITmfStateSystem.INVALID_ATTRIBUTE || quarkVCpu == ITmfStateSystem.INVALID_ATTRIBUTE) {
-            return machines;
-        }
-        ITmfStateValue parentValue = states.get(quarkParent).getStateValue();
-        if (parentValue.isNull()) {
-            return machines;
-        }
-        machines.add(parentValue.unboxStr());
-        ITmfStateValue vcpuValue = states.get(quarkVCpu).getStateValue();
-        if (vcpuValue.isNull()) {
-            return machines;
-        }
-        machines.addAll(getContainersOf(ssq, parentValue.unboxStr(), vcpuValue.unboxInt(), states));
-        return machines;
-    }
-
-    private static List<String> getContainersOf(ITmfStateSystem ssq, String machine, int tid, List<ITmfStateInterval> states) {
-        List<String> containers = new ArrayList<>();
-        int threadQuark = ssq.optQuarkAbsolute(FusedAttributes.THREADS, machine, String.valueOf(tid));
-        if (threadQuark == ITmfStateSystem.INVALID_ATTRIBUTE) {
-            return containers;
-        }
-        int quarkMaxLv = ssq.optQuarkRelative(threadQuark, FusedAttributes.NS_MAX_LEVEL);
-        if (quarkMaxLv == ITmfStateSystem.INVALID_ATTRIBUTE) {
-            return containers;
-        }
-        int maxLv = states.get(quarkMaxLv).getStateValue().unboxInt();
-        // Start at lv 1, as level 0 is the main host
-        for (int i = 1; i < maxLv; i++) {
-            threadQuark = ssq.optQuarkRelative(threadQuark, FusedAttributes.VTID);
-            int inumQuark = ssq.optQuarkRelative(threadQuark, FusedAttributes.NS_INUM);
-            if (threadQuark == ITmfStateSystem.INVALID_ATTRIBUTE || inumQuark == ITmfStateSystem.INVALID_ATTRIBUTE) {
-                break;
-            }
-            ITmfStateValue inumValue = states.get(inumQuark).getStateValue();
-            if (inumValue.isNull()) {
-                continue;
-            }
-            containers.add(String.valueOf(inumValue.unboxLong()));
-        }
-
-        return containers;
+        return getTopology(ssq).getAllMachines(ssq, physicalCpu, time);
     }
 
     /**
@@ -345,20 +261,8 @@ public final class FusedVMInformationProvider {
      * @return The parent's host ID
      */
     public static String getParentMachineHostId(ITmfStateSystem ssq, String hostId) {
-        String parentHostId = ""; //$NON-NLS-1$
-        try {
-            int parenthostQuark = ssq.optQuarkAbsolute(FusedAttributes.HOSTS, hostId, FusedAttributes.PARENT);
-            if (parenthostQuark == ITmfStateSystem.INVALID_ATTRIBUTE) {
-                return parentHostId;
-            }
-            ITmfStateValue stateValue = ssq.querySingleState(ssq.getStartTime(), parenthostQuark).getStateValue();
-            if (!stateValue.isNull()) {
-                parentHostId = stateValue.unboxStr();
-            }
-        } catch (StateSystemDisposedException e) {
-            // About to be disposed, ignore
-        }
-        return parentHostId;
+        Machine machine = getTopology(ssq).getMachine(ssq, hostId);
+        return machine == null ? "" : machine.getParent(); //$NON-NLS-1$
     }
 
     /**
@@ -371,21 +275,17 @@ public final class FusedVMInformationProvider {
      * @return The physical CPUs used by the machine
      */
     public static Collection<String> getPhysicalCpusUsedByMachine(ITmfStateSystem ssq, String hostId) {
-        List<String> pcpus = new LinkedList<>();
-        List<Integer> pCpuquarks = new LinkedList<>();
-        int type = getTypeMachine(ssq, hostId);
-        if (type < 0) {
-            return pcpus;
+        Machine machine = getTopology(ssq).getMachine(ssq, hostId);
+        int type = machine == null ? -1 : machine.getType();
+        if (machine == null || type < 0) {
+            return new LinkedList<>();
         }
         if ((type & StateValues.MACHINE_GUEST) == StateValues.MACHINE_GUEST) {
-            pCpuquarks = ssq.getQuarks(FusedAttributes.HOSTS, hostId, FusedAttributes.PCPUS, "*"); //$NON-NLS-1$
+            return new LinkedList<>(machine.getPhysicalCpus());
         } else if (type == StateValues.MACHINE_HOST) {
-            pCpuquarks = ssq.getQuarks(FusedAttributes.HOSTS, hostId, FusedAttributes.CPUS, "*"); //$NON-NLS-1$
+            return new LinkedList<>(machine.getCpus());
         }
-        for (Integer quark : pCpuquarks) {
-            pcpus.add(ssq.getAttributeName(quark));
-        }
-        return pcpus;
+        return new LinkedList<>();
     }
 
     /**
@@ -399,17 +299,11 @@ public final class FusedVMInformationProvider {
      * @return The CPUs, virtual if the machine is a guest, used by the machine.
      */
     public static Collection<String> getCpusUsedByMachine(ITmfStateSystem ssq, String hostId) {
-        List<String> cpus = new LinkedList<>();
-        List<Integer> cpuQuarks = new LinkedList<>();
-        int type = getTypeMachine(ssq, hostId);
-        if (type < 0) {
-            return cpus;
+        Machine machine = getTopology(ssq).getMachine(ssq, hostId);
+        if (machine == null || machine.getType() < 0) {
+            return new LinkedList<>();
         }
-        cpuQuarks = ssq.getQuarks(FusedAttributes.HOSTS, hostId, FusedAttributes.CPUS, "*"); //$NON-NLS-1$
-        for (Integer quark : cpuQuarks) {
-            cpus.add(ssq.getAttributeName(quark));
-        }
-        return cpus;
+        return new LinkedList<>(machine.getCpus());
     }
 
     /**
@@ -504,16 +398,8 @@ public final class FusedVMInformationProvider {
      * @return The friendly name for this machine
      */
     public static String getMachineName(ITmfStateSystem ssq, String machineHost) {
-        int machineNameQuark = ssq.optQuarkAbsolute(FusedAttributes.HOSTS, machineHost, FusedAttributes.MACHINE_NAME);
-        if (machineNameQuark == ITmfStateSystem.INVALID_ATTRIBUTE) {
-            return machineHost;
-        }
-        try {
-            return ssq.querySingleState(ssq.getStartTime(), machineNameQuark).getStateValue().unboxStr();
-        } catch (StateSystemDisposedException e) {
-            /* About to close, ignore */
-        }
-        return machineHost;
+        Machine machine = getTopology(ssq).getMachine(ssq, machineHost);
+        return machine == null ? machineHost : machine.getName();
     }
 
 }
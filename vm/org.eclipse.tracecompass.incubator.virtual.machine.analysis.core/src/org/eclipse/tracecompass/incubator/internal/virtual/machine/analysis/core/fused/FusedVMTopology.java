@@ -0,0 +1,375 @@
+/*******************************************************************************
+ * Copyright (c) 2018 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.fused;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.virtual.resources.StateValues;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+
+/**
+ * The topology of the machines of a fused virtual machine state system: the
+ * machines with their type, parent, CPUs, physical CPUs and containers, and
+ * the quarks of the attributes of the physical CPUs.
+ *
+ * The machines are kept in a snapshot that is read again only when attributes
+ * were added to the state system, or when the state provider notifies that it
+ * changed the values of the machines, with {@link #machinesChanged()}. The
+ * values that change over time are read with single attribute queries, so no
+ * full state query is needed.
+ *
+ * The topology does not keep a reference to its state system, which is passed
+ * to each method, so that it can be kept in a map with weak keys.
+ *
+ * @author Geneviève Bastien
+ */
+final class FusedVMTopology {
+
+    /**
+     * A machine of the topology
+     */
+    static final class Machine {
+        private final int fType;
+        private final String fParent;
+        private final String fName;
+        private final List<String> fCpus;
+        private final List<String> fPhysicalCpus;
+        private final List<String> fContainers;
+        private final List<Integer> fContainerQuarks;
+
+        private Machine(ITmfStateSystem ss, String hostId, int quark) throws StateSystemDisposedException {
+            long start = ss.getStartTime();
+            ITmfStateValue type = ss.querySingleState(start, quark).getStateValue();
+            fType = type.isNull() ? -1 : type.unboxInt();
+            fParent = getString(ss, ss.optQuarkRelative(quark, FusedAttributes.PARENT), ""); //$NON-NLS-1$
+            fName = getString(ss, ss.optQuarkRelative(quark, FusedAttributes.MACHINE_NAME), hostId);
+            fCpus = getNames(ss, ss.getQuarks(quark, FusedAttributes.CPUS, "*")); //$NON-NLS-1$
+            fPhysicalCpus = getNames(ss, ss.getQuarks(quark, FusedAttributes.PCPUS, "*")); //$NON-NLS-1$
+            fContainerQuarks = Collections.unmodifiableList(ss.getQuarks(quark, FusedAttributes.CONTAINERS, "*")); //$NON-NLS-1$
+            fContainers = getNames(ss, fContainerQuarks);
+        }
+
+        /**
+         * Get the type of the machine
+         *
+         * @return The type, a negative value if it is not known
+         */
+        public int getType() {
+            return fType;
+        }
+
+        /**
+         * Get the host ID of the parent machine
+         *
+         * @return The parent's host ID, or an empty string if there is none
+         */
+        public String getParent() {
+            return fParent;
+        }
+
+        /**
+         * Get the friendly name of the machine
+         *
+         * @return The name
+         */
+        public String getName() {
+            return fName;
+        }
+
+        /**
+         * Get the CPUs of the machine, virtual if the machine is a guest
+         *
+         * @return The CPUs
+         */
+        public List<String> getCpus() {
+            return fCpus;
+        }
+
+        /**
+         * Get the physical CPUs used by the machine, if it is a guest
+         *
+         * @return The physical CPUs
+         */
+        public List<String> getPhysicalCpus() {
+            return fPhysicalCpus;
+        }
+
+        /**
+         * Get the containers of the machine
+         *
+         * @return The container IDs
+         */
+        public List<String> getContainers() {
+            return fContainers;
+        }
+
+        /**
+         * Get the quarks of the containers of the machine
+         *
+         * @return The container quarks
+         */
+        public List<Integer> getContainerQuarks() {
+            return fContainerQuarks;
+        }
+
+        private static String getString(ITmfStateSystem ss, int quark, String defaultValue) throws StateSystemDisposedException {
+            if (quark == ITmfStateSystem.INVALID_ATTRIBUTE) {
+                return defaultValue;
+            }
+            ITmfStateValue value = ss.querySingleState(ss.getStartTime(), quark).getStateValue();
+            return value.isNull() ? defaultValue : value.unboxStr();
+        }
+
+        private static List<String> getNames(ITmfStateSystem ss, List<Integer> quarks) {
+            List<String> names = new ArrayList<>(quarks.size());
+            for (Integer quark : quarks) {
+                names.add(ss.getAttributeName(quark));
+            }
+            return Collections.unmodifiableList(names);
+        }
+    }
+
+    private static final class Snapshot {
+        private final int fNbAttributes;
+        private final int fGeneration;
+        private final Map<String, Machine> fMachines;
+
+        public Snapshot(int nbAttributes, int generation, Map<String, Machine> machines) {
+            fNbAttributes = nbAttributes;
+            fGeneration = generation;
+            fMachines = machines;
+        }
+    }
+
+    /*
+     * The quarks of the attributes of a physical CPU used to follow the
+     * machines running on it
+     */
+    private static final class CpuQuarks {
+        private final int fCurrentThread;
+        private final int fMachineName;
+        private final int fCondition;
+        private final int fVirtualCpu;
+
+        public CpuQuarks(ITmfStateSystem ss, int cpu) {
+            int cpuQuark = ss.optQuarkAbsolute(FusedAttributes.CPUS, String.valueOf(cpu));
+            fCurrentThread = optQuark(ss, cpuQuark, FusedAttributes.CURRENT_THREAD);
+            fMachineName = optQuark(ss, cpuQuark, FusedAttributes.MACHINE_NAME);
+            fCondition = optQuark(ss, cpuQuark, FusedAttributes.CONDITION);
+            fVirtualCpu = optQuark(ss, cpuQuark, FusedAttributes.VIRTUAL_CPU);
+        }
+
+        private static int optQuark(ITmfStateSystem ss, int cpuQuark, String attribute) {
+            if (cpuQuark == ITmfStateSystem.INVALID_ATTRIBUTE) {
+                return ITmfStateSystem.INVALID_ATTRIBUTE;
+            }
+            return ss.optQuarkRelative(cpuQuark, attribute);
+        }
+
+        public boolean isComplete() {
+            return fCurrentThread != ITmfStateSystem.INVALID_ATTRIBUTE
+                    && fMachineName != ITmfStateSystem.INVALID_ATTRIBUTE
+                    && fCondition != ITmfStateSystem.INVALID_ATTRIBUTE
+                    && fVirtualCpu != ITmfStateSystem.INVALID_ATTRIBUTE;
+        }
+    }
+
+    private volatile @Nullable Snapshot fSnapshot = null;
+    /* Incremented each time the values of the machines change */
+    private final AtomicInteger fGeneration = new AtomicInteger();
+    /* The quarks of the physical CPUs whose attributes all exist */
+    private volatile @Nullable CpuQuarks[] fCpuQuarks = new CpuQuarks[0];
+
+    /**
+     * Get the machines of the state system, in the order of their attributes
+     *
+     * @param ss
+     *            The fused virtual machine state system of this topology
+     * @return The machines by host ID
+     */
+    public Map<String, Machine> getMachines(ITmfStateSystem ss) {
+        /* Read the versions before the values, so they are at least as recent */
+        int generation = fGeneration.get();
+        int nbAttributes = ss.getNbAttributes();
+        Snapshot snapshot = fSnapshot;
+        if (snapshot != null && snapshot.fNbAttributes == nbAttributes && snapshot.fGeneration == generation) {
+            return snapshot.fMachines;
+        }
+        Map<String, Machine> machines = new LinkedHashMap<>();
+        try {
+            for (Integer quark : ss.getQuarks(FusedAttributes.HOSTS, "*")) { //$NON-NLS-1$
+                String hostId = ss.getAttributeName(quark);
+                machines.put(hostId, new Machine(ss, hostId, quark));
+            }
+        } catch (StateSystemDisposedException | TimeRangeException e) {
+            /* About to close or nothing in the state system yet */
+            return Collections.emptyMap();
+        }
+        machines = Collections.unmodifiableMap(machines);
+        fSnapshot = new Snapshot(nbAttributes, generation, machines);
+        return machines;
+    }
+
+    /**
+     * Notify that the values of the machines changed in the state system,
+     * their type, name or parent. The attributes added to the state system
+     * are noticed without notification.
+     */
+    public void machinesChanged() {
+        fGeneration.incrementAndGet();
+    }
+
+    /**
+     * Get a machine of the state system
+     *
+     * @param ss
+     *            The fused virtual machine state system of this topology
+     * @param hostId
+     *            The host ID of the machine
+     * @return The machine, or <code>null</code> if it is not in the state
+     *         system
+     */
+    public @Nullable Machine getMachine(ITmfStateSystem ss, String hostId) {
+        return getMachines(ss).get(hostId);
+    }
+
+    /**
+     * Get the list of machine names, sorted from the closest to hardware to
+     * most virtual, that were involved on a given CPU at a certain time
+     *
+     * @param ss
+     *            The fused virtual machine state system of this topology
+     * @param physicalCpu
+     *            The number of the physical processor to query
+     * @param time
+     *            The time at which to query the machines
+     * @return The list of machine names involved on the CPU at the requested
+     *         time.
+     */
+    public List<String> getAllMachines(ITmfStateSystem ss, int physicalCpu, long time) {
+        List<String> machines = new ArrayList<>();
+        CpuQuarks quarks = getCpuQuarks(ss, physicalCpu);
+        if (quarks.fCurrentThread == ITmfStateSystem.INVALID_ATTRIBUTE || quarks.fMachineName == ITmfStateSystem.INVALID_ATTRIBUTE) {
+            return machines;
+        }
+        try {
+            // Get the thread on the CPU
+            int tid = getInt(ss, quarks.fCurrentThread, time);
+            if (tid < 0) {
+                return machines;
+            }
+            ITmfStateValue stateValue = ss.querySingleState(time, quarks.fMachineName).getStateValue();
+            if (stateValue.isNull()) {
+                return machines;
+            }
+            String machineName = stateValue.unboxStr();
+            machines.add(machineName);
+
+            // Follow this thread's namespaces
+            machines.addAll(getContainersOf(ss, machineName, tid, time));
+
+            // Follow the CPU through virtual machines
+            if (quarks.fCondition == ITmfStateSystem.INVALID_ATTRIBUTE || quarks.fVirtualCpu == ITmfStateSystem.INVALID_ATTRIBUTE) {
+                return machines;
+            }
+            if (getInt(ss, quarks.fCondition, time) == StateValues.CONDITION_IN_VM) {
+                machines.addAll(0, getParentMachines(ss, machineName, getInt(ss, quarks.fVirtualCpu, time), time));
+            }
+        } catch (StateSystemDisposedException | TimeRangeException e) {
+            // Nothing to do, about to be disposed or out of the trace
+        }
+        return machines;
+    }
+
+    private CpuQuarks getCpuQuarks(ITmfStateSystem ss, int cpu) {
+        if (cpu < 0) {
+            return new CpuQuarks(ss, cpu);
+        }
+        @Nullable CpuQuarks[] cpuQuarks = fCpuQuarks;
+        CpuQuarks quarks = cpu < cpuQuarks.length ? cpuQuarks[cpu] : null;
+        if (quarks != null) {
+            return quarks;
+        }
+        quarks = new CpuQuarks(ss, cpu);
+        if (quarks.isComplete()) {
+            /* The quarks of this CPU will not change anymore, keep them */
+            synchronized (this) {
+                @Nullable CpuQuarks[] newQuarks = Arrays.copyOf(fCpuQuarks, Math.max(fCpuQuarks.length, cpu + 1));
+                newQuarks[cpu] = quarks;
+                fCpuQuarks = newQuarks;
+            }
+        }
+        return quarks;
+    }
+
+    private List<String> getParentMachines(ITmfStateSystem ss, String hostId, int vcpu, long time) throws StateSystemDisposedException {
+        List<String> machines = new ArrayList<>();
+        Machine machine = getMachine(ss, hostId);
+        if (machine == null || machine.getParent().isEmpty()) {
+            return machines;
+        }
+        int quarkVCpu = ss.optQuarkAbsolute(FusedAttributes.HOSTS, hostId, FusedAttributes.CPUS, String.valueOf(vcpu));
+        if (quarkVCpu == ITmfStateSystem.INVALID_ATTRIBUTE) {
+            return machines;
+        }
+        machines.add(machine.getParent());
+        ITmfStateValue vcpuValue = ss.querySingleState(time, quarkVCpu).getStateValue();
+        if (vcpuValue.isNull()) {
+            return machines;
+        }
+        machines.addAll(getContainersOf(ss, machine.getParent(), vcpuValue.unboxInt(), time));
+        return machines;
+    }
+
+    private static List<String> getContainersOf(ITmfStateSystem ss, String machine, int tid, long time) throws StateSystemDisposedException {
+        List<String> containers = new ArrayList<>();
+        int threadQuark = ss.optQuarkAbsolute(FusedAttributes.THREADS, machine, String.valueOf(tid));
+        if (threadQuark == ITmfStateSystem.INVALID_ATTRIBUTE) {
+            return containers;
+        }
+        int quarkMaxLv = ss.optQuarkRelative(threadQuark, FusedAttributes.NS_MAX_LEVEL);
+        if (quarkMaxLv == ITmfStateSystem.INVALID_ATTRIBUTE) {
+            return containers;
+        }
+        int maxLv = getInt(ss, quarkMaxLv, time);
+        // Start at lv 1, as level 0 is the main host
+        for (int i = 1; i < maxLv; i++) {
+            threadQuark = ss.optQuarkRelative(threadQuark, FusedAttributes.VTID);
+            if (threadQuark == ITmfStateSystem.INVALID_ATTRIBUTE) {
+                break;
+            }
+            int inumQuark = ss.optQuarkRelative(threadQuark, FusedAttributes.NS_INUM);
+            if (inumQuark == ITmfStateSystem.INVALID_ATTRIBUTE) {
+                break;
+            }
+            ITmfStateValue inumValue = ss.querySingleState(time, inumQuark).getStateValue();
+            if (inumValue.isNull()) {
+                continue;
+            }
+            containers.add(String.valueOf(inumValue.unboxLong()));
+        }
+        return containers;
+    }
+
+    private static int getInt(ITmfStateSystem ss, int quark, long time) throws StateSystemDisposedException {
+        ITmfStateValue value = ss.querySingleState(time, quark).getStateValue();
+        return value.isNull() ? -1 : value.unboxInt();
+    }
+}
@@ -17,6 +17,7 @@ import java.util.Set;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
 import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.fused.handlers.FusedVirtualMachineStateProvider;
+import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.fused.handlers.PartitionedFusedVirtualMachineStateProvider;
 import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.virtual.resources.Messages;
 import org.eclipse.tracecompass.tmf.core.analysis.requirements.TmfAbstractAnalysisRequirement;
 import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
@@ -84,6 +85,21 @@ public class FusedVirtualMachineAnalysis extends TmfStateSystemAnalysisModule {
         REQUIREMENTS = checkNotNull(Collections.EMPTY_SET);
     }
 
+    private boolean fPartitioned = false;
+
+    /**
+     * Build the state system by handling the events of each trace in parallel
+     * in partial state systems, fused on the synchronization events of the
+     * machines. It must be set before the analysis is scheduled.
+     *
+     * @param partitioned
+     *            true to build the state system in parallel
+     * @see PartitionedFusedVirtualMachineStateProvider
+     */
+    public void setPartitioned(boolean partitioned) {
+        fPartitioned = partitioned;
+    }
+
     @Override
     protected @NonNull ITmfStateProvider createStateProvider() {
         ITmfTrace trace = getTrace();
@@ -91,6 +107,9 @@ public class FusedVirtualMachineAnalysis extends TmfStateSystemAnalysisModule {
             throw new IllegalStateException();
         }
 
+        if (fPartitioned) {
+            return new PartitionedFusedVirtualMachineStateProvider((TmfExperiment) trace);
+        }
         return new FusedVirtualMachineStateProvider((TmfExperiment) trace);
     }
 
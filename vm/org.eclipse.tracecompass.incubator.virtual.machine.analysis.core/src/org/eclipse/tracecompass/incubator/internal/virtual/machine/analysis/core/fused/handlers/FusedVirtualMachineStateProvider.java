@@ -14,7 +14,10 @@ package org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.cor
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.jdt.annotation.Nullable;
@@ -22,6 +25,7 @@ import org.eclipse.tracecompass.analysis.os.linux.core.model.HostThread;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelTrace;
 import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.fused.FusedAttributes;
+import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.fused.FusedVMInformationProvider;
 import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.model.VirtualCPU;
 import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.model.VirtualMachine;
 import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.model.lxc.LxcModel;
@@ -35,10 +39,11 @@ import org.eclipse.tracecompass.tmf.core.event.aspect.TmfCpuAspect;
 import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
-import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 
 /**
  * State provider for the Fused Virtual Machine analysis. It is based on the
@@ -63,10 +68,18 @@ public class FusedVirtualMachineStateProvider extends AbstractTmfStateProvider {
 
     private final Map<String, VMKernelEventHandler> fEventNames;
     private final Map<ITmfTrace, LayoutHandler> fLayouts = new HashMap<>();
+    private final Map<ITmfTrace, List<TmfCpuAspect>> fCpuAspects = new HashMap<>();
     private QemuKvmVmModel fKvmModel;
     private LxcModel fContainerModel;
     private int fCurrentThreadNode; // quark to current thread node
     private boolean fAllRolesFound = false;
+    /* Number of known machines whose roles are in the state system */
+    private int fNbMachinesWithRoles = -1;
+
+    /* Quarks of the physical CPUs, indexed by CPU number */
+    private @Nullable CpuQuarks[] fCpuQuarks = new CpuQuarks[0];
+    /* Quarks of the machines, by host ID */
+    private final Map<String, MachineQuarks> fMachineQuarks = new HashMap<>();
 
     // ------------------------------------------------------------------------
     // Layout handling class and methods
@@ -92,6 +105,8 @@ public class FusedVirtualMachineStateProvider extends AbstractTmfStateProvider {
         protected final VMKernelEventHandler fKvmExitHandler;
         protected final VMKernelEventHandler fKvmNestedVmExitInjectHandler;
         protected final VMKernelEventHandler fKvmMmuGetPageHandler;
+        /* The handler of each event name seen so far, null if none */
+        private final Map<String, @Nullable VMKernelEventHandler> fHandlers = new HashMap<>();
 
         public LayoutHandler(IKernelAnalysisEventLayout layout) {
             fLayout = layout;
@@ -102,6 +117,140 @@ public class FusedVirtualMachineStateProvider extends AbstractTmfStateProvider {
             fKvmMmuGetPageHandler = new KvmMmuGetPageHandler(layout, FusedVirtualMachineStateProvider.this);
             fKvmNestedVmExitInjectHandler = new KvmNestedVmExitInjectHandler(layout, FusedVirtualMachineStateProvider.this);
         }
+
+        public @Nullable VMKernelEventHandler getHandler(String eventName) {
+            VMKernelEventHandler handler = fHandlers.get(eventName);
+            if (handler == null && !fHandlers.containsKey(eventName)) {
+                handler = resolveHandler(eventName);
+                fHandlers.put(eventName, handler);
+            }
+            return handler;
+        }
+
+        private @Nullable VMKernelEventHandler resolveHandler(String eventName) {
+            VMKernelEventHandler handler = fEventNames.get(eventName);
+            if (handler != null) {
+                return handler;
+            }
+            if (isSyscallExit(eventName, fLayout)) {
+                return fSysExitHandler;
+            } else if (isSyscallEntry(eventName, fLayout)) {
+                return fSysEntryHandler;
+            } else if (isKvmEntry(eventName)) {
+                return fKvmEntryHandler;
+            } else if (isKvmExit(eventName)) {
+                return fKvmExitHandler;
+            } else if (isKvmMmuGetPage(eventName)) {
+                return fKvmMmuGetPageHandler;
+            } else if (isKvmNestedVmExitInject(eventName)) {
+                return fKvmNestedVmExitInjectHandler;
+            }
+            return null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Quarks caches
+    // ------------------------------------------------------------------------
+
+    /**
+     * The attributes of a physical CPU that are updated for every event
+     */
+    private static final class CpuQuarks {
+        private final int fNode;
+        private final int fCondition;
+        private final int fCurrentThread;
+        private final int fMachineName;
+        private int fVirtualCpu = ITmfStateSystem.INVALID_ATTRIBUTE;
+
+        public CpuQuarks(ITmfStateSystemBuilder ss, int cpu) {
+            fNode = ss.getQuarkRelativeAndAdd(getNodeCPUs(ss), String.valueOf(cpu));
+            fCondition = ss.getQuarkRelativeAndAdd(fNode, FusedAttributes.CONDITION);
+            fCurrentThread = ss.getQuarkRelativeAndAdd(fNode, FusedAttributes.CURRENT_THREAD);
+            fMachineName = ss.getQuarkRelativeAndAdd(fNode, FusedAttributes.MACHINE_NAME);
+        }
+
+        public int getVirtualCpu(ITmfStateSystemBuilder ss) {
+            int quark = fVirtualCpu;
+            if (quark == ITmfStateSystem.INVALID_ATTRIBUTE) {
+                quark = ss.getQuarkRelativeAndAdd(fNode, FusedAttributes.VIRTUAL_CPU);
+                fVirtualCpu = quark;
+            }
+            return quark;
+        }
+    }
+
+    /**
+     * The attributes of a machine that are updated for every event
+     */
+    private static final class MachineQuarks {
+        private final String fHostId;
+        private final int fMachine;
+        private final int fThreads;
+        private final BitSet fCpus = new BitSet();
+        private final BitSet fPhysicalCpus = new BitSet();
+        private final Map<Integer, Integer> fThreadQuarks = new HashMap<>();
+
+        public MachineQuarks(ITmfStateSystemBuilder ss, String hostId) {
+            fHostId = hostId;
+            fMachine = ss.getQuarkRelativeAndAdd(FusedVMEventHandlerUtils.getMachinesNode(ss), hostId);
+            fThreads = getNodeThreads(ss, hostId);
+        }
+
+        /* Remember that the machine has this CPU */
+        public void addCpu(ITmfStateSystemBuilder ss, int cpu) {
+            if (cpu < 0 || !fCpus.get(cpu)) {
+                ss.getQuarkRelativeAndAdd(fMachine, FusedAttributes.CPUS, String.valueOf(cpu));
+                if (cpu >= 0) {
+                    fCpus.set(cpu);
+                }
+            }
+        }
+
+        /* Remember that the machine is using this physical CPU */
+        public void addPhysicalCpu(ITmfStateSystemBuilder ss, int cpu) {
+            if (cpu < 0 || !fPhysicalCpus.get(cpu)) {
+                ss.getQuarkRelativeAndAdd(FusedVMEventHandlerUtils.getMachinepCPUsNode(ss, fHostId), String.valueOf(cpu));
+                if (cpu >= 0) {
+                    fPhysicalCpus.set(cpu);
+                }
+            }
+        }
+
+        public int getThread(ITmfStateSystemBuilder ss, int thread) {
+            Integer quark = fThreadQuarks.get(thread);
+            if (quark == null) {
+                quark = ss.getQuarkRelativeAndAdd(fThreads, String.valueOf(thread));
+                fThreadQuarks.put(thread, quark);
+            }
+            return quark;
+        }
+    }
+
+    private CpuQuarks getCpuQuarks(ITmfStateSystemBuilder ss, int cpu) {
+        if (cpu < 0) {
+            return new CpuQuarks(ss, cpu);
+        }
+        @Nullable CpuQuarks[] cpuQuarks = fCpuQuarks;
+        if (cpu >= cpuQuarks.length) {
+            cpuQuarks = Arrays.copyOf(cpuQuarks, cpu + 1);
+            fCpuQuarks = cpuQuarks;
+        }
+        CpuQuarks quarks = cpuQuarks[cpu];
+        if (quarks == null) {
+            quarks = new CpuQuarks(ss, cpu);
+            cpuQuarks[cpu] = quarks;
+        }
+        return quarks;
+    }
+
+    private MachineQuarks getMachineQuarks(ITmfStateSystemBuilder ss, String hostId) {
+        MachineQuarks quarks = fMachineQuarks.get(hostId);
+        if (quarks == null) {
+            quarks = new MachineQuarks(ss, hostId);
+            fMachineQuarks.put(hostId, quarks);
+        }
+        return quarks;
     }
 
     // ------------------------------------------------------------------------
@@ -185,8 +334,21 @@ public class FusedVirtualMachineStateProvider extends AbstractTmfStateProvider {
         if (event == null) {
             return;
         }
+        handleEvent(checkNotNull(getStateSystemBuilder()), event);
+    }
 
-        Integer cpu = TmfTraceUtils.resolveIntEventAspectOfClassForEvent(event.getTrace(), TmfCpuAspect.class, event);
+    /**
+     * Handle an event in a state system. The state system is the one of this
+     * provider, except for the partial state systems of the partitioned
+     * analysis.
+     *
+     * @param ss
+     *            The state system to update
+     * @param event
+     *            The event to handle
+     */
+    void handleEvent(ITmfStateSystemBuilder ss, ITmfEvent event) {
+        Integer cpu = resolveCpu(event);
         if (cpu == null) {
             /* We couldn't find any CPU information, ignore this event */
             return;
@@ -221,7 +383,7 @@ public class FusedVirtualMachineStateProvider extends AbstractTmfStateProvider {
         // }
 
         // What is this condition?
-        if (!fContainerModel.getRequiredEvents(layoutHandler.fLayout).contains(event.getName()) && !allRolesFound()) {
+        if (!allRolesFound() && !fContainerModel.getRequiredEvents(layoutHandler.fLayout).contains(event.getName())) {
             return;
         }
 
@@ -245,110 +407,100 @@ public class FusedVirtualMachineStateProvider extends AbstractTmfStateProvider {
         final String eventName = event.getName();
         final long ts = event.getTimestamp().getValue();
 
-        final ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
-
         /*
          * Do this block only all machines have their roles
          */
         if (allRolesFound()) {
-            /* Shortcut for the "current CPU" attribute node */
-            int currentCPUNode = ss.getQuarkRelativeAndAdd(getNodeCPUs(ss), String.valueOf(cpu));
+            CpuQuarks cpuQuarks = getCpuQuarks(ss, cpu);
+            MachineQuarks machineQuarks = getMachineQuarks(ss, traceHost);
 
             /*
              * Add in the state system the state of the cpu (in or out vm).
              */
-            int quarkCondition = ss.getQuarkRelativeAndAdd(currentCPUNode, FusedAttributes.CONDITION);
             Integer valueCondition = StateValues.CONDITION_UNKNOWN;
-            int quarkMachines = FusedVMEventHandlerUtils.getMachinesNode(ss);
-            int machineHostQuark = ss.getQuarkRelativeAndAdd(quarkMachines, traceHost);
-            // if (inVM) {
             if (host != null && host.isGuest()) {
                 valueCondition = StateValues.CONDITION_IN_VM;
-                int quarkVCpu = ss.getQuarkRelativeAndAdd(currentCPUNode, FusedAttributes.VIRTUAL_CPU);
-                ss.modifyAttribute(ts, currentVCpu, quarkVCpu);
+                ss.modifyAttribute(ts, currentVCpu, cpuQuarks.getVirtualCpu(ss));
 
                 /*
                  * This part is used to remember how many cpus a machine has
                  */
-                // if (host != null && host.isGuest()) {
-                ss.getQuarkRelativeAndAdd(machineHostQuark, FusedAttributes.CPUS, currentVCpu.toString());
-                // }
+                machineQuarks.addCpu(ss, currentVCpu);
                 /* Remember that this VM is using this pcpu. */
-                int quarkPCPUs = FusedVMEventHandlerUtils.getMachinepCPUsNode(ss, traceHost);
-                ss.getQuarkRelativeAndAdd(quarkPCPUs, cpu.toString());
+                machineQuarks.addPhysicalCpu(ss, cpu);
             } else {
                 /*
                  * We still need to check here if we are a guest because the
                  * guest's trace can be longer than the host's and we might be
-                 * in a vm even if inVM == false //
+                 * in a vm even if inVM == false
                  */
-                // if (host != null && host.isGuest()) {
-                // ss.getQuarkRelativeAndAdd(machineNameQuark, Attributes.CPUS,
-                // currentVCpu.toString());
-                // } else {
-                ss.getQuarkRelativeAndAdd(quarkMachines, traceHost, FusedAttributes.CPUS, cpu.toString());
-                // }
+                machineQuarks.addCpu(ss, cpu);
                 valueCondition = StateValues.CONDITION_OUT_VM;
             }
             /*
-             * Add the role of the machine in the state system
+             * Add the role of the machine in the state system, if machines
+             * were added since the last time
              */
-            setMachinesRoles(ss);
-            setMachinesParents(ss);
+            int nbMachines = getKnownMachines().size();
+            if (nbMachines != fNbMachinesWithRoles) {
+                setMachinesRoles(ss);
+                setMachinesParents(ss);
+                FusedVMInformationProvider.machinesChanged(ss);
+                fNbMachinesWithRoles = nbMachines;
+            }
 
             /*
              * Set the condition value in the state system (in or out vm)
              */
-            if (host != null && host.isHost() && !host.isGuest()) {
-                ss.modifyAttribute(ts, valueCondition, quarkCondition);
+            if (host != null && ownsCpu(host)) {
+                ss.modifyAttribute(ts, valueCondition, cpuQuarks.fCondition);
             }
 
             /*
              * Shortcut for the "current thread" attribute node. It requires
              * querying the current CPU's current thread.
              */
-            int quark = ss.getQuarkRelativeAndAdd(currentCPUNode, FusedAttributes.CURRENT_THREAD);
-
-            Object value = ss.queryOngoing(quark);
+            Object value = ss.queryOngoing(cpuQuarks.fCurrentThread);
             int thread = value instanceof Integer ? (int) value : -1;
 
-            fCurrentThreadNode = ss.getQuarkRelativeAndAdd(getNodeThreads(ss, traceHost), String.valueOf(thread));
+            fCurrentThreadNode = machineQuarks.getThread(ss, thread);
 
             /* Set the name of the machine running on the cpu */
-            quark = ss.getQuarkRelativeAndAdd(currentCPUNode, FusedAttributes.MACHINE_NAME);
-            value = event.getTrace().getHostId();
-            if (host != null && host.isHost() && !host.isGuest()) {
-                ss.modifyAttribute(ts, value, quark);
+            if (host != null && ownsCpu(host)) {
+                ss.modifyAttribute(ts, traceHost, cpuQuarks.fMachineName);
             }
         }
         /*
          * Feed event to the history system if it's known to cause a state
          * transition.
          */
-        VMKernelEventHandler handler = fEventNames.get(eventName);
-        // TODO: maybe put the other handlers also in fEventNames
-        if (handler == null) {
-            IKernelAnalysisEventLayout layout = layoutHandler.fLayout;
-            if (isSyscallExit(eventName, layout)) {
-                handler = layoutHandler.fSysExitHandler;
-            } else if (isSyscallEntry(eventName, layout)) {
-                handler = layoutHandler.fSysEntryHandler;
-            } else if (isKvmEntry(eventName)) {
-                handler = layoutHandler.fKvmEntryHandler;
-            } else if (isKvmExit(eventName)) {
-                handler = layoutHandler.fKvmExitHandler;
-            } else if (isKvmMmuGetPage(eventName)) {
-                handler = layoutHandler.fKvmMmuGetPageHandler;
-            } else if (isKvmNestedVmExitInject(eventName)) {
-                handler = layoutHandler.fKvmNestedVmExitInjectHandler;
-            }
-        }
+        VMKernelEventHandler handler = layoutHandler.getHandler(eventName);
         if (handler != null) {
             handler.handleEvent(ss, event);
         }
 
     }
 
+    @Nullable
+    Integer resolveCpu(ITmfEvent event) {
+        ITmfTrace trace = event.getTrace();
+        List<TmfCpuAspect> aspects = fCpuAspects.get(trace);
+        if (aspects == null) {
+            aspects = ImmutableList.copyOf(Iterables.filter(trace.getEventAspects(), TmfCpuAspect.class));
+            /* Some traces only have their aspects once they are read */
+            if (!aspects.isEmpty()) {
+                fCpuAspects.put(trace, aspects);
+            }
+        }
+        for (TmfCpuAspect aspect : aspects) {
+            Integer cpu = aspect.resolve(event);
+            if (cpu != null) {
+                return cpu;
+            }
+        }
+        return null;
+    }
+
     // ------------------------------------------------------------------------
     // Convenience methods for commonly-used attribute tree locations
     // Either private or package private so they can be used by the handlers
@@ -389,6 +541,32 @@ public class FusedVirtualMachineStateProvider extends AbstractTmfStateProvider {
         return fCurrentThreadNode;
     }
 
+    /**
+     * Tell if the events of a machine set the condition and machine name of
+     * the CPU they happen on. Only the hosts own their physical CPUs, the
+     * guests run on them between the kvm_entry and kvm_exit of their host.
+     */
+    boolean ownsCpu(VirtualMachine machine) {
+        return machine.isHost() && !machine.isGuest();
+    }
+
+    /**
+     * Tell if an event synchronizes the machines: the events of the hypervisor
+     * model, that map the virtual CPUs to the physical ones and move them in
+     * and out of the virtual machines.
+     */
+    boolean isSyncEvent(String eventName, IKernelAnalysisEventLayout layout) {
+        return fKvmModel.getRequiredEvents(layout).contains(eventName)
+                || isKvmMmuGetPage(eventName)
+                || isKvmNestedVmExitInject(eventName);
+    }
+
+    @Nullable
+    IKernelAnalysisEventLayout getLayout(ITmfTrace trace) {
+        LayoutHandler layoutHandler = fLayouts.get(trace);
+        return layoutHandler == null ? null : layoutHandler.fLayout;
+    }
+
     @Nullable
     Integer getPhysicalCPU(VirtualMachine host, Integer cpu) {
         VirtualCPU vcpu = VirtualCPU.getVirtualCPU(host, cpu.longValue());
@@ -468,7 +646,7 @@ public class FusedVirtualMachineStateProvider extends AbstractTmfStateProvider {
      *
      * @return true if all roles were found
      */
-    private boolean allRolesFound() {
+    boolean allRolesFound() {
         if (fAllRolesFound) {
             return fAllRolesFound;
         }
@@ -0,0 +1,420 @@
+/*******************************************************************************
+ * Copyright (c) 2019 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.fused.handlers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.fused.FusedAttributes;
+import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.model.VirtualCPU;
+import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.model.VirtualMachine;
+import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.virtual.resources.StateValues;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
+
+/**
+ * A partition of the {@link PartitionedFusedVirtualMachineStateProvider}: the
+ * state of one machine, built by a worker from the events of its trace in a
+ * partial state system, without the synchronization events.
+ *
+ * The partition starts from the fused state at the time all the roles of the
+ * machines were found. A guest runs as if it owned its virtual CPUs: the
+ * attributes of a physical CPU in the fused state system are the ones of a
+ * virtual CPU in the partial state system, they are moved to the physical CPU
+ * when they are fused.
+ *
+ * @author Geneviève Bastien
+ */
+final class PartialFusedVirtualMachineStateProvider extends FusedVirtualMachineStateProvider {
+
+    private static final String PARTIAL_ID = "org.eclipse.tracecompass.incubator.virtual.machine.analysis.partial."; //$NON-NLS-1$
+    private static final int BATCH_SIZE = 1024;
+    private static final int QUEUE_SIZE = 4;
+    /** Marks the end of the events for the worker */
+    private static final List<ITmfEvent> END = new ArrayList<>();
+
+    private final int fTraceIndex;
+    private final VirtualMachine fMachine;
+    private final ITmfStateSystemBuilder fSs;
+    private final BlockingQueue<List<ITmfEvent>> fQueue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private List<ITmfEvent> fBatch = new ArrayList<>(BATCH_SIZE);
+    /* The virtual CPUs of a guest whose state was initialized */
+    private final BitSet fStartedCpus = new BitSet();
+
+    /*
+     * For the fusion, by quark of the partial state system: the current value,
+     * the index of the virtual CPU in the path (-1 if none), the virtual CPU
+     * and the quark in the fused state system with the physical CPU it was
+     * resolved for
+     */
+    private @Nullable Object[] fValues = new Object[0];
+    private int[] fCpuIndexes = new int[0];
+    private int[] fVirtualCpus = new int[0];
+    private int[] fFusedQuarks = new int[0];
+    private int[] fFusedCpus = new int[0];
+    /* Attributes of the virtual CPUs whose values are set by the host */
+    private final BitSet fHostValues = new BitSet();
+    /* Attributes whose value is the number of their CPU */
+    private final BitSet fCpuValues = new BitSet();
+    private List<Integer> fCpuQuarks = new ArrayList<>();
+
+    /**
+     * Constructor. The partial state system starts with the ongoing state of
+     * the fused one, except for the attributes of the physical CPUs if the
+     * machine is a guest.
+     *
+     * @param experiment
+     *            The experiment
+     * @param traceIndex
+     *            The index of the trace of the machine in the experiment
+     * @param machine
+     *            The machine of this partition
+     * @param fused
+     *            The fused state system
+     */
+    PartialFusedVirtualMachineStateProvider(TmfExperiment experiment, int traceIndex, VirtualMachine machine, ITmfStateSystemBuilder fused) {
+        super(experiment);
+        fTraceIndex = traceIndex;
+        fMachine = machine;
+        fSs = StateSystemFactory.newStateSystem(StateHistoryBackendFactory.createInMemoryBackend(PARTIAL_ID + machine.getHostId(), getStartTime()));
+        for (int quark = 0; quark < fused.getNbAttributes(); quark++) {
+            String[] path = fused.getFullAttributePathArray(quark);
+            if (getCpuIndex(path) >= 0) {
+                continue;
+            }
+            int partialQuark = fSs.getQuarkAbsoluteAndAdd(path);
+            Object value = fused.queryOngoing(quark);
+            if (value != null) {
+                fSs.updateOngoingState(value, partialQuark);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Partial state
+    // ------------------------------------------------------------------------
+
+    @Override
+    boolean allRolesFound() {
+        /* The partition starts once the roles are found */
+        return true;
+    }
+
+    @Override
+    boolean ownsCpu(VirtualMachine machine) {
+        /* There is only one machine on the CPUs of the partial state system */
+        return true;
+    }
+
+    @Override
+    @Nullable
+    Integer getPhysicalCPU(VirtualMachine host, Integer cpu) {
+        /* The virtual CPUs of a guest are its CPUs in the partial state system */
+        return cpu;
+    }
+
+    @Override
+    void handleEvent(ITmfStateSystemBuilder ss, ITmfEvent event) {
+        if (fMachine.isGuest()) {
+            Integer cpu = resolveCpu(event);
+            if (cpu != null && cpu >= 0 && !fStartedCpus.get(cpu)) {
+                /*
+                 * A virtual CPU enters its machine idle, as its virtual CPU
+                 * object, the fusion skips this initial state
+                 */
+                int cpuQuark = ss.getQuarkAbsoluteAndAdd(FusedAttributes.CPUS, String.valueOf(cpu));
+                int quark = ss.getQuarkRelativeAndAdd(cpuQuark, FusedAttributes.STATUS);
+                if (ss.queryOngoing(quark) == null) {
+                    ss.updateOngoingState(StateValues.CPU_STATUS_IDLE, quark);
+                }
+                quark = ss.getQuarkRelativeAndAdd(cpuQuark, FusedAttributes.CURRENT_THREAD);
+                if (ss.queryOngoing(quark) == null) {
+                    ss.updateOngoingState(-1, quark);
+                }
+                fStartedCpus.set(cpu);
+            }
+        }
+        super.handleEvent(ss, event);
+    }
+
+    /**
+     * Add an event to the batch of the worker
+     *
+     * @param event
+     *            The event, of the trace of this partition
+     * @throws InterruptedException
+     *             Interrupted while waiting for the worker
+     */
+    void add(ITmfEvent event) throws InterruptedException {
+        fBatch.add(event);
+        if (fBatch.size() == BATCH_SIZE) {
+            fQueue.put(fBatch);
+            fBatch = new ArrayList<>(BATCH_SIZE);
+        }
+    }
+
+    /**
+     * Send the last batch and stop the worker once it is handled
+     *
+     * @throws InterruptedException
+     *             Interrupted while waiting for the worker
+     */
+    void end() throws InterruptedException {
+        if (!fBatch.isEmpty()) {
+            fQueue.put(fBatch);
+            fBatch = new ArrayList<>();
+        }
+        fQueue.put(END);
+    }
+
+    /**
+     * Handle the batches of events, until the end. This is the worker of the
+     * partition.
+     *
+     * @throws InterruptedException
+     *             Interrupted while waiting for the events
+     */
+    void handleEvents() throws InterruptedException {
+        List<ITmfEvent> batch = fQueue.take();
+        try {
+            while (batch != END) {
+                for (ITmfEvent event : batch) {
+                    handleEvent(fSs, event);
+                }
+                batch = fQueue.take();
+            }
+        } catch (RuntimeException e) {
+            /* Keep taking the batches so the provider is not blocked */
+            while (batch != END) {
+                batch = fQueue.take();
+            }
+            throw e;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Fusion
+    // ------------------------------------------------------------------------
+
+    int getTraceIndex() {
+        return fTraceIndex;
+    }
+
+    VirtualMachine getMachine() {
+        return fMachine;
+    }
+
+    ITmfStateSystemBuilder getPartialStateSystem() {
+        return fSs;
+    }
+
+    /**
+     * Close the partial state system, once the worker is done, and prepare
+     * its attributes for the fusion
+     *
+     * @param endTime
+     *            The time of the last event of the experiment
+     */
+    void close(long endTime) {
+        fSs.closeHistory(Math.max(endTime, fSs.getStartTime()));
+        int nbAttributes = fSs.getNbAttributes();
+        fValues = new Object[nbAttributes];
+        fCpuIndexes = new int[nbAttributes];
+        fVirtualCpus = new int[nbAttributes];
+        fFusedQuarks = new int[nbAttributes];
+        fFusedCpus = new int[nbAttributes];
+        Arrays.fill(fFusedQuarks, ITmfStateSystem.INVALID_ATTRIBUTE);
+        for (int quark = 0; quark < nbAttributes; quark++) {
+            String[] path = fSs.getFullAttributePathArray(quark);
+            int index = getCpuIndex(path);
+            int cpu = index < 0 ? -1 : parseCpu(path[index]);
+            if (cpu < 0) {
+                index = -1;
+            }
+            fCpuIndexes[quark] = index;
+            fVirtualCpus[quark] = cpu;
+            if (index == 1 && path.length == 3) {
+                String name = path[2];
+                if (name.equals(FusedAttributes.CONDITION) || name.equals(FusedAttributes.MACHINE_NAME) || name.equals(FusedAttributes.VIRTUAL_CPU)) {
+                    fHostValues.set(quark);
+                }
+            } else if (index == 1 && path.length == 4 && path[2].equals(FusedAttributes.IRQS)) {
+                fCpuValues.set(quark);
+            }
+        }
+        int cpusQuark = fSs.optQuarkAbsolute(FusedAttributes.CPUS);
+        if (cpusQuark != ITmfStateSystem.INVALID_ATTRIBUTE) {
+            fCpuQuarks = fSs.getSubAttributes(cpusQuark, false);
+        }
+    }
+
+    /**
+     * Set the current value of an attribute, as the fusion reaches its changes
+     *
+     * @param quark
+     *            The quark in the partial state system
+     * @param value
+     *            The value
+     */
+    void setValue(int quark, @Nullable Object value) {
+        fValues[quark] = value;
+    }
+
+    /**
+     * Get the virtual CPU of an attribute of a guest
+     *
+     * @param quark
+     *            The quark in the partial state system
+     * @return The virtual CPU, or -1 if the attribute is not on a CPU
+     */
+    int getVirtualCpu(int quark) {
+        return fVirtualCpus[quark];
+    }
+
+    /**
+     * Tell if the values of an attribute are not fused, because the host sets
+     * them on the physical CPU
+     *
+     * @param quark
+     *            The quark in the partial state system
+     * @return true if the values are not fused
+     */
+    boolean isHostValue(int quark) {
+        return fHostValues.get(quark);
+    }
+
+    /**
+     * Tell if the value of an attribute is the number of its CPU
+     *
+     * @param quark
+     *            The quark in the partial state system
+     * @return true if the value is a CPU number
+     */
+    boolean isCpuValue(int quark) {
+        return fCpuValues.get(quark);
+    }
+
+    /**
+     * Get the quark of an attribute in the fused state system, adding it if
+     * needed
+     *
+     * @param ss
+     *            The fused state system
+     * @param quark
+     *            The quark in the partial state system
+     * @param physicalCpu
+     *            The physical CPU of the virtual CPU of the attribute, or -1
+     *            if it is not on a CPU
+     * @return The quark in the fused state system
+     */
+    int getFusedQuark(ITmfStateSystemBuilder ss, int quark, int physicalCpu) {
+        int fusedQuark = fFusedQuarks[quark];
+        if (fusedQuark != ITmfStateSystem.INVALID_ATTRIBUTE && fFusedCpus[quark] == physicalCpu) {
+            return fusedQuark;
+        }
+        String[] path = fSs.getFullAttributePathArray(quark).clone();
+        int index = fCpuIndexes[quark];
+        if (index >= 0) {
+            String cpu = String.valueOf(physicalCpu);
+            path[index] = path[index].startsWith(FusedAttributes.THREAD_0_PREFIX) ? FusedAttributes.THREAD_0_PREFIX + cpu : cpu;
+        }
+        fusedQuark = ss.getQuarkAbsoluteAndAdd(path);
+        fFusedQuarks[quark] = fusedQuark;
+        fFusedCpus[quark] = physicalCpu;
+        return fusedQuark;
+    }
+
+    /**
+     * Set the state of a CPU object to the state of its CPU at the time the
+     * fusion is at
+     *
+     * @param cpuObject
+     *            The CPU object of the machine
+     * @param cpu
+     *            The CPU in the partial state system
+     */
+    void restoreCpu(VirtualCPU cpuObject, int cpu) {
+        Object thread = getValue(FusedAttributes.CPUS, String.valueOf(cpu), FusedAttributes.CURRENT_THREAD);
+        cpuObject.setCurrentThread(thread instanceof Integer ? (Integer) thread : -1);
+        Object status = getValue(FusedAttributes.CPUS, String.valueOf(cpu), FusedAttributes.STATUS);
+        cpuObject.setCurrentState(status instanceof Integer ? (Integer) status : StateValues.CPU_STATUS_IDLE);
+    }
+
+    /**
+     * Set the state of the virtual CPU objects of a guest to the state of
+     * their CPUs at the time the fusion is at
+     */
+    void restoreVirtualCpus() {
+        for (Integer cpuQuark : fCpuQuarks) {
+            int cpu = parseCpu(fSs.getAttributeName(cpuQuark));
+            if (cpu >= 0) {
+                restoreCpu(VirtualCPU.getVirtualCPU(fMachine, (long) cpu), cpu);
+            }
+        }
+    }
+
+    private @Nullable Object getValue(String... path) {
+        int quark = fSs.optQuarkAbsolute(path);
+        return quark == ITmfStateSystem.INVALID_ATTRIBUTE ? null : fValues[quark];
+    }
+
+    /**
+     * Dispose the partial state system
+     */
+    void disposePartialStateSystem() {
+        fSs.dispose();
+    }
+
+    /**
+     * Get the index of the CPU in the path of an attribute of a guest that
+     * depends on the physical CPU it runs on: the CPUs, the idle threads and
+     * the physical CPUs of the machine and its containers.
+     */
+    private int getCpuIndex(String[] path) {
+        if (!fMachine.isGuest() || path.length < 2) {
+            return -1;
+        }
+        String hostId = fMachine.getHostId();
+        if (path[0].equals(FusedAttributes.CPUS)) {
+            return 1;
+        }
+        if (path[0].equals(FusedAttributes.THREADS) && path.length >= 3 && path[1].equals(hostId)
+                && path[2].startsWith(FusedAttributes.THREAD_0_PREFIX)) {
+            return 2;
+        }
+        if (path[0].equals(FusedAttributes.HOSTS) && path[1].equals(hostId)) {
+            if (path.length == 4 && path[2].equals(FusedAttributes.PCPUS)) {
+                return 3;
+            }
+            if (path.length == 6 && path[2].equals(FusedAttributes.CONTAINERS) && path[4].equals(FusedAttributes.PCPUS)) {
+                return 5;
+            }
+        }
+        return -1;
+    }
+
+    private static int parseCpu(String name) {
+        String cpu = name.startsWith(FusedAttributes.THREAD_0_PREFIX) ? name.substring(FusedAttributes.THREAD_0_PREFIX.length()) : name;
+        try {
+            return Integer.parseInt(cpu);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
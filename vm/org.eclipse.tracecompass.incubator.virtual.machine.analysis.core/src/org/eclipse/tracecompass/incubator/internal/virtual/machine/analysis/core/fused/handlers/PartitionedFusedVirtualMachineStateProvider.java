@@ -0,0 +1,353 @@
+/*******************************************************************************
+ * Copyright (c) 2019 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.fused.handlers;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
+import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.Activator;
+import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.model.VirtualCPU;
+import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.model.VirtualMachine;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
+
+/**
+ * State provider of the fused virtual machine analysis that handles the events
+ * of each machine in parallel.
+ *
+ * Until the roles of all the machines are found, the events are handled as by
+ * the {@link FusedVirtualMachineStateProvider}. Then, each trace gets a worker
+ * that handles its events in a partial state system, with the virtual CPUs of
+ * a guest standing for the physical CPUs. The synchronization events of the
+ * machines (kvm_entry, kvm_exit, vmsync, ...) are kept aside. When the last
+ * event is read, the changes of the partial state systems are fused, in time
+ * order, with the synchronization events: they map the virtual CPUs to the
+ * physical ones and switch the physical CPUs between the host and the guests.
+ *
+ * The fused state system is the same as the sequential one if the machines
+ * behave as Qemu/KVM traces do:
+ * <ul>
+ * <li>the roles of the machines are found before the first kvm_entry;</li>
+ * <li>the events of a guest are between the kvm_entry and kvm_exit of its
+ * virtual CPU, and the host has no events on that physical CPU in between;</li>
+ * <li>the host thread and status of the physical CPU are known at the
+ * kvm_entry;</li>
+ * <li>the interrupts do not span a kvm_entry or kvm_exit;</li>
+ * <li>the virtual CPUs stay on the same physical CPU;</li>
+ * <li>the events of different machines have different timestamps;</li>
+ * <li>the machines are not nested, a nested experiment is handled
+ * sequentially.</li>
+ * </ul>
+ *
+ * @author Geneviève Bastien
+ */
+public class PartitionedFusedVirtualMachineStateProvider extends FusedVirtualMachineStateProvider {
+
+    private final Map<ITmfTrace, Integer> fTraceIndexes = new HashMap<>();
+    private @Nullable Map<ITmfTrace, PartialFusedVirtualMachineStateProvider> fPartitions = null;
+    private final List<ITmfEvent> fSyncEvents = new ArrayList<>();
+    private @Nullable ExecutorService fExecutor = null;
+    private final List<Future<?>> fWorkers = new ArrayList<>();
+    /* Time at which the partitions start */
+    private long fStart;
+    /* Time of the last event */
+    private long fEnd;
+
+    /**
+     * A change of an attribute of a partial state system
+     */
+    private static final class Change {
+        private final long fTime;
+        private final PartialFusedVirtualMachineStateProvider fPartition;
+        private final int fQuark;
+        private final @Nullable Object fValue;
+
+        public Change(long time, PartialFusedVirtualMachineStateProvider partition, int quark, @Nullable Object value) {
+            fTime = time;
+            fPartition = partition;
+            fQuark = quark;
+            fValue = value;
+        }
+    }
+
+    /**
+     * Instantiate a new state provider plugin.
+     *
+     * @param experiment
+     *            The experiment that will be analyzed.
+     */
+    public PartitionedFusedVirtualMachineStateProvider(TmfExperiment experiment) {
+        super(experiment);
+        List<ITmfTrace> traces = experiment.getTraces();
+        for (int i = 0; i < traces.size(); i++) {
+            fTraceIndexes.put(traces.get(i), i);
+        }
+    }
+
+    @Override
+    public PartitionedFusedVirtualMachineStateProvider getNewInstance() {
+        return new PartitionedFusedVirtualMachineStateProvider(getTrace());
+    }
+
+    @Override
+    protected void eventHandle(@Nullable ITmfEvent event) {
+        if (event == null) {
+            return;
+        }
+        long ts = event.getTimestamp().getValue();
+        fEnd = ts;
+        Map<ITmfTrace, PartialFusedVirtualMachineStateProvider> partitions = fPartitions;
+        if (partitions == null) {
+            super.eventHandle(event);
+            if (allRolesFound()) {
+                startPartitions(ts);
+            }
+            return;
+        }
+        ITmfTrace trace = event.getTrace();
+        PartialFusedVirtualMachineStateProvider partition = partitions.get(trace);
+        IKernelAnalysisEventLayout layout = getLayout(trace);
+        if (partition == null || layout == null || isSyncEvent(event.getName(), layout)) {
+            fSyncEvents.add(event);
+            return;
+        }
+        try {
+            partition.add(event);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Start a worker for the trace of each machine, from the current fused
+     * state
+     */
+    private void startPartitions(long start) {
+        fStart = start;
+        Map<ITmfTrace, PartialFusedVirtualMachineStateProvider> partitions = new HashMap<>();
+        fPartitions = partitions;
+        Map<String, VirtualMachine> machines = getKnownMachines();
+        for (VirtualMachine machine : machines.values()) {
+            if (machine.isHost() && machine.isGuest()) {
+                /* Nested machines are fused sequentially */
+                return;
+            }
+        }
+        ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
+        for (ITmfTrace trace : getTrace().getTraces()) {
+            VirtualMachine machine = machines.get(trace.getHostId());
+            if (machine == null || getLayout(trace) == null) {
+                continue;
+            }
+            partitions.put(trace, new PartialFusedVirtualMachineStateProvider(getTrace(), checkNotNull(fTraceIndexes.get(trace)), machine, ss));
+        }
+        if (partitions.isEmpty()) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(partitions.size());
+        fExecutor = executor;
+        for (PartialFusedVirtualMachineStateProvider partition : partitions.values()) {
+            fWorkers.add(executor.submit(() -> {
+                partition.handleEvents();
+                return null;
+            }));
+        }
+    }
+
+    @Override
+    public void done() {
+        Map<ITmfTrace, PartialFusedVirtualMachineStateProvider> partitions = fPartitions;
+        if (partitions != null) {
+            try {
+                fuse(checkNotNull(getStateSystemBuilder()), partitions);
+            } finally {
+                for (PartialFusedVirtualMachineStateProvider partition : partitions.values()) {
+                    partition.disposePartialStateSystem();
+                }
+                fSyncEvents.clear();
+            }
+        }
+        super.done();
+    }
+
+    @Override
+    public void dispose() {
+        ExecutorService executor = fExecutor;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        super.dispose();
+    }
+
+    // ------------------------------------------------------------------------
+    // Fusion
+    // ------------------------------------------------------------------------
+
+    private void fuse(ITmfStateSystemBuilder ss, Map<ITmfTrace, PartialFusedVirtualMachineStateProvider> partitions) {
+        /* Wait for the workers */
+        try {
+            for (PartialFusedVirtualMachineStateProvider partition : partitions.values()) {
+                partition.end();
+            }
+            for (Future<?> worker : fWorkers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            Activator.getInstance().logError("Error building a partition of the fused analysis", e.getCause()); //$NON-NLS-1$
+            return;
+        } finally {
+            ExecutorService executor = fExecutor;
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        /* The changes of all the partitions, in time then trace order */
+        List<Change> changes = new ArrayList<>();
+        for (PartialFusedVirtualMachineStateProvider partition : partitions.values()) {
+            partition.close(fEnd);
+            ITmfStateSystemBuilder partial = partition.getPartialStateSystem();
+            List<Integer> quarks = new ArrayList<>();
+            for (int quark = 0; quark < partial.getNbAttributes(); quark++) {
+                quarks.add(quark);
+            }
+            try {
+                for (ITmfStateInterval interval : partial.query2D(quarks, partial.getStartTime(), partial.getCurrentEndTime())) {
+                    changes.add(new Change(interval.getStartTime(), partition, interval.getAttribute(), interval.getValue()));
+                }
+            } catch (StateSystemDisposedException e) {
+                return;
+            }
+        }
+        changes.sort(Comparator.<Change> comparingLong(change -> change.fTime).thenComparingInt(change -> change.fPartition.getTraceIndex()));
+
+        Iterator<ITmfEvent> syncEvents = fSyncEvents.iterator();
+        ITmfEvent syncEvent = syncEvents.hasNext() ? syncEvents.next() : null;
+        for (Change change : changes) {
+            while (syncEvent != null && isBefore(syncEvent, change)) {
+                handleSyncEvent(ss, syncEvent, partitions);
+                syncEvent = syncEvents.hasNext() ? syncEvents.next() : null;
+            }
+            apply(ss, change);
+        }
+        while (syncEvent != null) {
+            handleSyncEvent(ss, syncEvent, partitions);
+            syncEvent = syncEvents.hasNext() ? syncEvents.next() : null;
+        }
+
+        /*
+         * Add the attributes of the virtual CPUs that were not on a physical
+         * CPU when they changed
+         */
+        for (PartialFusedVirtualMachineStateProvider partition : partitions.values()) {
+            for (int quark = 0; quark < partition.getPartialStateSystem().getNbAttributes(); quark++) {
+                int cpu = getPhysicalCpu(partition, quark);
+                if (cpu != Integer.MIN_VALUE) {
+                    partition.getFusedQuark(ss, quark, cpu);
+                }
+            }
+        }
+    }
+
+    private boolean isBefore(ITmfEvent event, Change change) {
+        long ts = event.getTimestamp().getValue();
+        if (ts != change.fTime) {
+            return ts < change.fTime;
+        }
+        Integer index = fTraceIndexes.get(event.getTrace());
+        return index != null && index < change.fPartition.getTraceIndex();
+    }
+
+    /**
+     * Handle a synchronization event, after setting the CPU objects it uses to
+     * their state at the time of the event
+     */
+    private void handleSyncEvent(ITmfStateSystemBuilder ss, ITmfEvent event, Map<ITmfTrace, PartialFusedVirtualMachineStateProvider> partitions) {
+        Integer cpu = resolveCpu(event);
+        VirtualMachine machine = getCurrentMachine(event);
+        IKernelAnalysisEventLayout layout = getLayout(event.getTrace());
+        if (cpu != null && machine != null && layout != null) {
+            PartialFusedVirtualMachineStateProvider partition = partitions.get(event.getTrace());
+            if (partition != null && ownsCpu(machine)) {
+                partition.restoreCpu(VirtualCPU.getVirtualCPU(machine, cpu.longValue()), cpu);
+            }
+            if (layout.eventsKVMEntry().contains(event.getName())) {
+                for (PartialFusedVirtualMachineStateProvider guest : partitions.values()) {
+                    if (guest.getMachine().isGuest()) {
+                        guest.restoreVirtualCpus();
+                    }
+                }
+            }
+        }
+        handleEvent(ss, event);
+    }
+
+    /**
+     * Apply the change of a partial state system to the fused state system
+     */
+    private void apply(ITmfStateSystemBuilder ss, Change change) {
+        PartialFusedVirtualMachineStateProvider partition = change.fPartition;
+        int quark = change.fQuark;
+        Object value = change.fValue;
+        partition.setValue(quark, value);
+        int cpu = getPhysicalCpu(partition, quark);
+        if (cpu == Integer.MIN_VALUE) {
+            /* The virtual CPU is not on a physical CPU yet */
+            return;
+        }
+        int fusedQuark = partition.getFusedQuark(ss, quark, cpu);
+        if (change.fTime < fStart || partition.isHostValue(quark)) {
+            /* The initial state, or a value set by the synchronization events */
+            return;
+        }
+        if (partition.isCpuValue(quark) && Objects.equals(value, partition.getVirtualCpu(quark))) {
+            value = cpu;
+        }
+        if (!Objects.equals(ss.queryOngoing(fusedQuark), value)) {
+            ss.modifyAttribute(change.fTime, value, fusedQuark);
+        }
+    }
+
+    /**
+     * Get the physical CPU of an attribute of a partial state system
+     *
+     * @return the physical CPU, -1 if the attribute is not on a CPU or
+     *         {@link Integer#MIN_VALUE} if its virtual CPU is not on a
+     *         physical CPU
+     */
+    private int getPhysicalCpu(PartialFusedVirtualMachineStateProvider partition, int quark) {
+        int virtualCpu = partition.getVirtualCpu(quark);
+        if (virtualCpu < 0) {
+            return -1;
+        }
+        Integer cpu = getPhysicalCPU(partition.getMachine(), virtualCpu);
+        return cpu == null ? Integer.MIN_VALUE : cpu;
+    }
+}
@@ -17,12 +17,11 @@ import java.util.Map;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.virtual.resources.StateValues;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
-
 /**
  * This class represents a virtual CPU, which is a CPU running on a guest. It
- * associates the guest CPU ID to a virtual machine of the model.
+ * associates the guest CPU ID to a virtual machine of the model. The virtual
+ * CPUs are owned by their virtual machine, so they are released with the model
+ * of the experiment.
  *
  * @TODO Review this class's API with the new virtual machine environment
  *
@@ -30,8 +29,6 @@ import com.google.common.collect.Table;
  */
 public final class VirtualCPU {
 
-    private static final Table<VirtualMachine, Long, @Nullable VirtualCPU> VIRTUAL_CPU_TABLE = HashBasedTable.create();
-
     private final VirtualMachine fVm;
     private final Long fCpuId;
     /* Current state of the cpu. */
@@ -50,13 +47,8 @@ public final class VirtualCPU {
      *            the CPU number
      * @return the virtual CPU
      */
-    public static synchronized VirtualCPU getVirtualCPU(VirtualMachine vm, Long cpu) {
-        VirtualCPU ht = VIRTUAL_CPU_TABLE.get(vm, cpu);
-        if (ht == null) {
-            ht = new VirtualCPU(vm, cpu);
-            VIRTUAL_CPU_TABLE.put(vm, cpu, ht);
-        }
-        return ht;
+    public static VirtualCPU getVirtualCPU(VirtualMachine vm, Long cpu) {
+        return vm.getVirtualCpu(cpu);
     }
 
     /**
@@ -66,11 +58,11 @@ public final class VirtualCPU {
      *            The Virtual Machine to get the CPUs for
      * @return The map of virtual CPUs for this machine
      */
-    public static synchronized @Nullable Map<Long, @Nullable VirtualCPU> getVirtualCPUs(VirtualMachine machine) {
-        return VIRTUAL_CPU_TABLE.row(machine);
+    public static Map<Long, VirtualCPU> getVirtualCPUs(VirtualMachine machine) {
+        return machine.getVirtualCpus();
     }
 
-    private VirtualCPU(VirtualMachine vm, Long cpu) {
+    VirtualCPU(VirtualMachine vm, Long cpu) {
         fVm = vm;
         fCpuId = cpu;
         fCurrentState = StateValues.CPU_STATUS_IDLE;
@@ -12,7 +12,12 @@
 
 package org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.model;
 
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.model.HostThread;
@@ -31,6 +36,8 @@ public final class VirtualMachine {
     private static final int HOST = (1 << 0);
     private static final int GUEST = (1 << 1);
     private static final int CONTAINER = (1 << 2);
+    /* The CPU IDs above this one are not kept in the array */
+    private static final int MAX_INDEXED_CPU = 1024;
 
     private long fVmUid;
     private final String fHostId;
@@ -40,6 +47,12 @@ public final class VirtualMachine {
     private HashSet<VirtualMachine> fChildren = new HashSet<>();
     private HashSet<HostThread> fThreadsWaitingForNextLayer = new HashSet<>();
     private HashSet<HostThread> fThreadsReadyForNextLayer = new HashSet<>();
+    /*
+     * The virtual CPUs of this machine, indexed by CPU ID. The array is
+     * replaced when a CPU is added, so it can be read without locking.
+     */
+    private volatile @Nullable VirtualCPU[] fVirtualCpus = new VirtualCPU[0];
+    private final Map<Long, VirtualCPU> fOtherVirtualCpus = new ConcurrentHashMap<>();
 
     /**
      * Create an unknown machine for a host
@@ -196,6 +209,55 @@ public final class VirtualMachine {
         return "VirtualMachine: " + fHostId; //$NON-NLS-1$
     }
 
+    /**
+     * Get the virtual CPU of this machine with a CPU ID, creating it if it
+     * does not exist yet
+     *
+     * @param cpu
+     *            The CPU ID
+     * @return The virtual CPU
+     */
+    public VirtualCPU getVirtualCpu(long cpu) {
+        if (cpu < 0 || cpu > MAX_INDEXED_CPU) {
+            return Objects.requireNonNull(fOtherVirtualCpus.computeIfAbsent(cpu, c -> new VirtualCPU(this, c)));
+        }
+        @Nullable VirtualCPU[] vcpus = fVirtualCpus;
+        VirtualCPU vcpu = cpu < vcpus.length ? vcpus[(int) cpu] : null;
+        if (vcpu != null) {
+            return vcpu;
+        }
+        return addVirtualCpu((int) cpu);
+    }
+
+    private synchronized VirtualCPU addVirtualCpu(int cpu) {
+        // Check again, the CPU may have been added by another thread
+        @Nullable VirtualCPU[] vcpus = fVirtualCpus;
+        VirtualCPU vcpu = cpu < vcpus.length ? vcpus[cpu] : null;
+        if (vcpu != null) {
+            return vcpu;
+        }
+        vcpu = new VirtualCPU(this, (long) cpu);
+        @Nullable VirtualCPU[] newVcpus = Arrays.copyOf(vcpus, Math.max(vcpus.length, cpu + 1));
+        newVcpus[cpu] = vcpu;
+        fVirtualCpus = newVcpus;
+        return vcpu;
+    }
+
+    /**
+     * Get the virtual CPUs of this machine
+     *
+     * @return The map of virtual CPUs by CPU ID
+     */
+    public Map<Long, VirtualCPU> getVirtualCpus() {
+        Map<Long, VirtualCPU> vcpus = new TreeMap<>(fOtherVirtualCpus);
+        for (VirtualCPU vcpu : fVirtualCpus) {
+            if (vcpu != null) {
+                vcpus.put(vcpu.getCpuId(), vcpu);
+            }
+        }
+        return vcpus;
+    }
+
     /**
      * Get the children of the machine
      *
@@ -13,19 +13,20 @@
 
 package org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.model.qemukvm;
 
+import java.lang.ref.WeakReference;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.kernel.KernelAnalysisModule;
 import org.eclipse.tracecompass.analysis.os.linux.core.kernel.KernelThreadInformationProvider;
 import org.eclipse.tracecompass.analysis.os.linux.core.model.HostThread;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
-import org.eclipse.tracecompass.common.core.NonNullUtils;
 import org.eclipse.tracecompass.incubator.analysis.core.model.IHostModel;
 import org.eclipse.tracecompass.incubator.analysis.core.model.ModelManager;
 import org.eclipse.tracecompass.incubator.internal.virtual.machine.analysis.core.model.IVirtualMachineModel;
@@ -40,9 +41,8 @@ import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
 import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperimentUtils;
 
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Table;
+import com.google.common.collect.MapMaker;
 
 /**
  * The virtual machine model corresponding to the Qemu/KVM hypervisor. It uses
@@ -59,18 +59,24 @@ public class QemuKvmVmModel implements IVirtualMachineModel {
 
     private static final String KVM = "kvm_"; //$NON-NLS-1$
 
-    private static final Map<TmfExperiment, QemuKvmVmModel> MODELS = new HashMap<>();
+    /*
+     * The models of the experiments, released with them. A model only keeps a
+     * weak reference to its experiment, so that the key can be collected.
+     */
+    private static final Map<TmfExperiment, QemuKvmVmModel> MODELS = new MapMaker().weakKeys().makeMap();
 
     /* Associate a host's thread to a virtual CPU */
-    private final Map<HostThread, VirtualCPU> fTidToVcpu = new HashMap<>();
+    private final Map<HostThread, VirtualCPU> fTidToVcpu = new ConcurrentHashMap<>();
+    /* Associate a virtual CPU to the host's thread running it */
+    private final Map<VirtualCPU, HostThread> fVcpuToTid = new ConcurrentHashMap<>();
     /* Associate a host's thread to a virtual machine */
-    private final Map<HostThread, VirtualMachine> fTidToVm = new HashMap<>();
+    private final Map<HostThread, VirtualMachine> fTidToVm = new ConcurrentHashMap<>();
     /* Maps a virtual machine name to a virtual machine */
-    private final Map<String, VirtualMachine> fKnownMachines = new HashMap<>();
+    private final Map<String, VirtualMachine> fKnownMachines = new ConcurrentHashMap<>();
     /* Associate a VM and a VCPU to a PCPU */
-    private final Table<VirtualMachine, VirtualCPU, Long> fVirtualToPhysicalCpu = NonNullUtils.checkNotNull(HashBasedTable.<VirtualMachine, VirtualCPU, Long> create());
+    private final Map<VirtualMachine, Map<VirtualCPU, Long>> fVirtualToPhysicalCpu = new ConcurrentHashMap<>();
 
-    private final TmfExperiment fExperiment;
+    private final WeakReference<TmfExperiment> fExperiment;
 
     private Map<IKernelAnalysisEventLayout, Set<String>> fRequiredEvents = new HashMap<>();
 
@@ -87,13 +93,12 @@ public class QemuKvmVmModel implements IVirtualMachineModel {
      *            The experiment
      * @return The Qemu Kvm model
      */
-    public static synchronized QemuKvmVmModel get(TmfExperiment exp) {
+    public static QemuKvmVmModel get(TmfExperiment exp) {
         QemuKvmVmModel model = MODELS.get(exp);
-        if (model == null) {
-            model = new QemuKvmVmModel(exp);
-            MODELS.put(exp, model);
+        if (model != null) {
+            return model;
         }
-        return model;
+        return Objects.requireNonNull(MODELS.computeIfAbsent(exp, QemuKvmVmModel::new));
     }
 
     /**
@@ -103,7 +108,7 @@ public class QemuKvmVmModel implements IVirtualMachineModel {
      *            The experiment this model applies to
      */
     private QemuKvmVmModel(TmfExperiment exp) {
-        fExperiment = exp;
+        fExperiment = new WeakReference<>(exp);
         /* If there is only one trace we consider it as a host */
         if (exp.getTraces().size() == 1) {
             ITmfTrace trace = exp.getTraces().get(0);
@@ -222,6 +227,7 @@ public class QemuKvmVmModel implements IVirtualMachineModel {
 
         VirtualCPU virtualCPU = VirtualCPU.getVirtualCPU(vm, vcpu_id);
         fTidToVcpu.put(ht, virtualCPU);
+        fVcpuToTid.put(virtualCPU, ht);
 
         return virtualCPU;
     }
@@ -247,25 +253,20 @@ public class QemuKvmVmModel implements IVirtualMachineModel {
 
     @Override
     public @Nullable HostThread getVirtualCpuTid(VirtualCPU vcpu) {
-        for (Entry<HostThread, VirtualCPU> entry : fTidToVcpu.entrySet()) {
-            if (entry.getValue().equals(vcpu)) {
-                return entry.getKey();
-            }
-        }
-        return null;
+        return fVcpuToTid.get(vcpu);
     }
 
     @Override
     public void handleEvent(ITmfEvent event, IKernelAnalysisEventLayout layout) {
         /* Is the event handled by this model */
         final String eventName = event.getName();
-        VirtualMachine host = fKnownMachines.get(event.getTrace().getHostId());
         switch (eventName) {
         case QemuKvmStrings.VMSYNC_GH_HOST: {
 
             final ITmfEventField content = event.getContent();
             final long ts = event.getTimestamp().toNanos();
             final String hostId = event.getTrace().getHostId();
+            VirtualMachine host = fKnownMachines.get(hostId);
 
             Integer cpu = TmfTraceUtils.resolveIntEventAspectOfClassForEvent(event.getTrace(), TmfCpuAspect.class, event);
             if (cpu == null) {
@@ -356,7 +357,7 @@ public class QemuKvmVmModel implements IVirtualMachineModel {
             if (virtualMachine == null || vcpu == null) {
                 return;
             }
-            fVirtualToPhysicalCpu.put(virtualMachine, vcpu, cpu.longValue());
+            fVirtualToPhysicalCpu.computeIfAbsent(virtualMachine, vm -> new ConcurrentHashMap<>()).put(vcpu, cpu.longValue());
         }
             break;
         default:
@@ -366,7 +367,11 @@ public class QemuKvmVmModel implements IVirtualMachineModel {
     }
 
     private @Nullable KernelAnalysisModule getLttngKernelModuleFor(String hostId) {
-        return TmfExperimentUtils.getAnalysisModuleOfClassForHost(fExperiment, hostId, KernelAnalysisModule.class);
+        TmfExperiment experiment = fExperiment.get();
+        if (experiment == null) {
+            return null;
+        }
+        return TmfExperimentUtils.getAnalysisModuleOfClassForHost(experiment, hostId, KernelAnalysisModule.class);
     }
 
     /**
@@ -413,17 +418,22 @@ public class QemuKvmVmModel implements IVirtualMachineModel {
      * @return The physical cpu.
      */
     public @Nullable Long getPhysicalCpuFromVcpu(VirtualMachine virtualMachine, VirtualCPU vcpu) {
-        Long pcpu = fVirtualToPhysicalCpu.get(virtualMachine, vcpu);
+        Long pcpu = getPhysicalCpu(virtualMachine, vcpu);
         if (pcpu == null) {
             return null;
         }
         VirtualMachine parent = virtualMachine.getParent();
         if (parent != null && parent.isGuest()) {
-            pcpu = fVirtualToPhysicalCpu.get(parent, VirtualCPU.getVirtualCPU(parent, pcpu));
+            pcpu = getPhysicalCpu(parent, VirtualCPU.getVirtualCPU(parent, pcpu));
         }
         return pcpu;
     }
 
+    private @Nullable Long getPhysicalCpu(VirtualMachine virtualMachine, VirtualCPU vcpu) {
+        Map<VirtualCPU, Long> vcpus = fVirtualToPhysicalCpu.get(virtualMachine);
+        return vcpus == null ? null : vcpus.get(vcpu);
+    }
+
     /**
      * Get the vm that a host thread is running.
      *